@@ -0,0 +1,13 @@
+package com.ryanfranklin.myretail.client;
+
+/**
+ * An in-memory stand-in for the product name resource, so benchmarks measure the service rather than the network.
+ * Every id has the name {@code "Product <id>"}.
+ */
+public class InMemoryProductNameClient extends ResilientProductNameClient {
+
+    @Override
+    public String fetchName(String id) {
+        return "Product " + id;
+    }
+}
@@ -0,0 +1,57 @@
+package com.ryanfranklin.myretail.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading the product name from recorded product name resource payloads, against reading the whole payload
+ * into a tree as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductNameExtractorBenchmark {
+
+    @Param({"pdp-13860428.json", "pdp-title-escaped.json", "pdp-no-title.json"})
+    private String payload;
+
+    private final ProductNameExtractor productNameExtractor = new ProductNameExtractor();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] body;
+
+    @Setup
+    public void readPayload() throws IOException {
+
+        try (InputStream in = getClass().getResourceAsStream("/redsky/" + payload)) {
+            body = ByteStreams.toByteArray(in);
+        }
+    }
+
+    @Benchmark
+    public String extractName() throws IOException {
+        return productNameExtractor.extractName(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public String readTree() throws IOException {
+        JsonNode title = objectMapper.readTree(new ByteArrayInputStream(body))
+                .path("product").path("item").path("product_description").path("title");
+        return title.isTextual() ? title.asText() : null;
+    }
+}
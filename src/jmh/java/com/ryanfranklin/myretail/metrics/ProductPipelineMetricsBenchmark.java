@@ -0,0 +1,39 @@
+package com.ryanfranklin.myretail.metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of timing a stage from several threads at once. Run with {@code -prof gc} to check that recording
+ * allocates nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class ProductPipelineMetricsBenchmark {
+
+    private final ProductPipelineMetrics pipelineMetrics = new ProductPipelineMetrics();
+    private final RuntimeException error = new IllegalStateException();
+
+    @Benchmark
+    public void end() {
+
+        long start = pipelineMetrics.begin(ProductPipelineMetrics.Stage.FIND_ONE);
+        pipelineMetrics.end(ProductPipelineMetrics.Stage.FIND_ONE, start);
+    }
+
+    @Benchmark
+    public void fail() {
+
+        long start = pipelineMetrics.begin(ProductPipelineMetrics.Stage.FIND_ONE);
+        pipelineMetrics.fail(ProductPipelineMetrics.Stage.FIND_ONE, start, error);
+    }
+}
@@ -0,0 +1,144 @@
+package com.ryanfranklin.myretail.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures writing and reading a {@link Product}, and a full {@link ProductPage}, as json and as Smile, and writing a
+ * page compressed with gzip as it is when the response is large enough.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductJsonBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    private ObjectWriter productWriter;
+    private ObjectReader productReader;
+    private ObjectWriter pageWriter;
+    private ObjectReader pageReader;
+
+    private Product product;
+    private ProductPage page;
+    private byte[] productJson;
+    private byte[] pageJson;
+
+    private ObjectWriter productSmileWriter;
+    private ObjectReader productSmileReader;
+    private ObjectWriter pageSmileWriter;
+    private ObjectReader pageSmileReader;
+    private byte[] productSmile;
+    private byte[] pageSmile;
+
+    @Setup
+    public void createProducts() throws IOException {
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        productWriter = objectMapper.writerFor(Product.class);
+        productReader = objectMapper.readerFor(Product.class);
+        pageWriter = objectMapper.writerFor(ProductPage.class);
+        pageReader = objectMapper.readerFor(ProductPage.class);
+
+        product = product(13860428);
+        List<Product> products = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            products.add(product(13860428 + i));
+        }
+        page = new ProductPage(products, "MToxMzg2MDUyNw");
+
+        productJson = productWriter.writeValueAsBytes(product);
+        pageJson = pageWriter.writeValueAsBytes(page);
+
+        ObjectMapper smileObjectMapper = new ObjectMapper(new SmileFactory());
+        productSmileWriter = smileObjectMapper.writerFor(Product.class);
+        productSmileReader = smileObjectMapper.readerFor(Product.class);
+        pageSmileWriter = smileObjectMapper.writerFor(ProductPage.class);
+        pageSmileReader = smileObjectMapper.readerFor(ProductPage.class);
+        productSmile = productSmileWriter.writeValueAsBytes(product);
+        pageSmile = pageSmileWriter.writeValueAsBytes(page);
+    }
+
+    private static Product product(int id) {
+
+        Product.CurrentPrice currentPrice = new Product.CurrentPrice();
+        currentPrice.setValue("13.49");
+        currentPrice.setCurrencyCode("USD");
+        return new Product(String.valueOf(id), "The Big Lebowski (Blu-ray) (Widescreen)", currentPrice);
+    }
+
+    @Benchmark
+    public byte[] writeProduct() throws IOException {
+        return productWriter.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public Product readProduct() throws IOException {
+        return productReader.readValue(productJson);
+    }
+
+    @Benchmark
+    public byte[] writePage() throws IOException {
+        return pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public ProductPage readPage() throws IOException {
+        return pageReader.readValue(pageJson);
+    }
+
+    @Benchmark
+    public byte[] writeProductSmile() throws IOException {
+        return productSmileWriter.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public Product readProductSmile() throws IOException {
+        return productSmileReader.readValue(productSmile);
+    }
+
+    @Benchmark
+    public byte[] writePageSmile() throws IOException {
+        return pageSmileWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public ProductPage readPageSmile() throws IOException {
+        return pageSmileReader.readValue(pageSmile);
+    }
+
+    @Benchmark
+    public byte[] writePageGzip() throws IOException {
+        return gzip(pageWriter, page);
+    }
+
+    @Benchmark
+    public byte[] writePageSmileGzip() throws IOException {
+        return gzip(pageSmileWriter, page);
+    }
+
+    private static byte[] gzip(ObjectWriter writer, Object value) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            writer.writeValue(gzipOutputStream, value);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,153 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.ryanfranklin.myretail.model.PriceAmounts;
+import com.ryanfranklin.myretail.model.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An in-memory stand-in for {@link ProductCurrentPriceRepository}, so benchmarks measure the service rather than the
+ * datastore. Only the queries the {@link ProductImplRepository} read and update paths use are supported.
+ */
+class InMemoryCurrentPriceRepository implements InvocationHandler {
+
+    private final ConcurrentSkipListMap<String, Product.CurrentPrice> currentPrices = new ConcurrentSkipListMap<>();
+
+    /**
+     * Creates a repository holding {@code currentPrices}.
+     * @param currentPrices the current prices, not null
+     * @return the repository, not null
+     */
+    static ProductCurrentPriceRepository of(Collection<Product.CurrentPrice> currentPrices) {
+
+        InMemoryCurrentPriceRepository handler = new InMemoryCurrentPriceRepository();
+        for (Product.CurrentPrice currentPrice : currentPrices) {
+            handler.currentPrices.put(currentPrice.getId(), currentPrice);
+        }
+        return (ProductCurrentPriceRepository) Proxy.newProxyInstance(
+                ProductCurrentPriceRepository.class.getClassLoader(),
+                new Class<?>[]{ProductCurrentPriceRepository.class}, handler);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) {
+
+        switch (method.getName()) {
+            case "findOne":
+            case "findProjected":
+                return currentPrices.get(args[0]);
+            case "exists":
+                return currentPrices.containsKey(args[0]);
+            case "findAll":
+                return args == null ? new ArrayList<>(currentPrices.values()) : findAll((Iterable<String>) args[0]);
+            case "findAllBy":
+                return slice(currentPrices, (Pageable) args[0]);
+            case "findByIdGreaterThan":
+                return slice(currentPrices.tailMap((String) args[0], false), (Pageable) args[1]);
+            case "findAndUpdatePrice":
+                return findAndUpdatePrice((String) args[0], (String) args[1], (String) args[2], (Long) args[3]);
+            case "updateName":
+                updateName((String) args[0], (String) args[1], (Date) args[2]);
+                return null;
+            case "findCatalogVersion":
+                return currentPrices.size() + "-0";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "InMemoryCurrentPriceRepository";
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private List<Product.CurrentPrice> findAll(Iterable<String> ids) {
+
+        List<Product.CurrentPrice> found = new ArrayList<>();
+        for (String id : ids) {
+            Product.CurrentPrice currentPrice = currentPrices.get(id);
+            if (currentPrice != null) {
+                found.add(currentPrice);
+            }
+        }
+        return found;
+    }
+
+    private static Slice<Product.CurrentPrice> slice(NavigableMap<String, Product.CurrentPrice> currentPrices,
+                                                     Pageable pageable) {
+
+        List<Product.CurrentPrice> content = new ArrayList<>(pageable.getPageSize());
+        for (Map.Entry<String, Product.CurrentPrice> entry : currentPrices.entrySet()) {
+            if (content.size() == pageable.getPageSize()) {
+                return new SliceImpl<>(content, pageable, true);
+            }
+            content.add(entry.getValue());
+        }
+        return new SliceImpl<>(content, pageable, false);
+    }
+
+    private Product.CurrentPrice findAndUpdatePrice(String id, String value, String currencyCode, Long expectedVersion) {
+
+        Product.CurrentPrice[] old = new Product.CurrentPrice[1];
+        currentPrices.computeIfPresent(id, (key, currentPrice) -> {
+            long version = ProductImplRepository.versionOf(currentPrice);
+            if (expectedVersion != null && expectedVersion != version) {
+                return currentPrice;
+            }
+            old[0] = currentPrice;
+            Product.CurrentPrice updated = currentPrice(id, value, currencyCode, version + 1);
+            updated.setName(currentPrice.getName());
+            updated.setNameFetchedAt(currentPrice.getNameFetchedAt());
+            return updated;
+        });
+        return old[0];
+    }
+
+    private void updateName(String id, String name, Date fetchedAt) {
+
+        currentPrices.computeIfPresent(id, (key, currentPrice) -> {
+            Product.CurrentPrice updated = currentPrice(id, currentPrice.getValue(), currentPrice.getCurrencyCode(),
+                    ProductImplRepository.versionOf(currentPrice));
+            updated.setName(name);
+            updated.setNameFetchedAt(fetchedAt);
+            return updated;
+        });
+    }
+
+    /**
+     * Creates a current price the way the datastore would read it.
+     * @param id the id of the product, not null
+     * @param value the price value, not null
+     * @param currencyCode the currency code, not null
+     * @param version the version of the price
+     * @return the current price, not null
+     */
+    static Product.CurrentPrice currentPrice(String id, String value, String currencyCode, long version) {
+
+        Product.CurrentPrice currentPrice = new Product.CurrentPrice();
+        Field idField = ReflectionUtils.findField(Product.CurrentPrice.class, "id");
+        ReflectionUtils.makeAccessible(idField);
+        ReflectionUtils.setField(idField, currentPrice, id);
+        currentPrice.setValue(value);
+        currentPrice.setCurrencyCode(currencyCode);
+        currentPrice.setMinorUnits(PriceAmounts.toMinorUnits(value, currencyCode));
+        currentPrice.setVersion(version);
+        return currentPrice;
+    }
+}
@@ -0,0 +1,172 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryanfranklin.myretail.client.InMemoryProductNameClient;
+import com.ryanfranklin.myretail.config.ProductNameProperties;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics;
+import com.ryanfranklin.myretail.model.Product;
+import com.ryanfranklin.myretail.model.ProductFields;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.domain.Slice;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the {@link ProductImplRepository} assembles products and updates prices, with in-memory stand-ins for
+ * the datastore and the product name resource. With a name cache of 0 entries and names not stored, every read loads
+ * the name again. {@link #findOneAsJson()} also writes the product as json through the {@link ProductJsonCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductImplRepositoryBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final ProductFields PRICE_ONLY = ProductFields.parse("id,currentPrice");
+
+    @Param({"1000"})
+    private int catalogSize;
+
+    @Param({"100000", "0"})
+    private long nameCacheMaxEntries;
+
+    @Param({"true", "false"})
+    private boolean storeNames;
+
+    private ProductImplRepository productImplRepository;
+    private ExecutorService productNameExecutor;
+    private ExecutorService productPriceExecutor;
+    private PriceChangeStream priceChangeStream;
+    private ProductJsonCache productJsonCache;
+
+    private String[] ids;
+    private int next;
+    private Product update;
+
+    @Setup
+    public void createRepository() {
+
+        ids = new String[catalogSize];
+        List<Product.CurrentPrice> currentPrices = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            ids[i] = String.valueOf(13860428 + i);
+            currentPrices.add(InMemoryCurrentPriceRepository.currentPrice(ids[i], "13.49", "USD", 0));
+        }
+
+        ProductNameProperties productNameProperties = new ProductNameProperties();
+        productNameProperties.getCache().setMaxEntries(nameCacheMaxEntries);
+        productNameProperties.getStore().setEnabled(storeNames);
+        productNameExecutor = executor(productNameProperties.getLookup().getPoolSize());
+        productPriceExecutor = executor(new ProductPriceProperties().getLookup().getPoolSize());
+
+        ProductPriceProperties productPriceProperties = new ProductPriceProperties();
+        priceChangeStream = new PriceChangeStream();
+        inject(priceChangeStream, "productPriceProperties", productPriceProperties);
+        priceChangeStream.initStream();
+
+        ProductPipelineMetrics pipelineMetrics = new ProductPipelineMetrics();
+        productJsonCache = new ProductJsonCache();
+        inject(productJsonCache, "objectMapper", new ObjectMapper());
+        inject(productJsonCache, "productPriceProperties", productPriceProperties);
+        inject(productJsonCache, "pipelineMetrics", pipelineMetrics);
+        productJsonCache.initCache();
+
+        productImplRepository = new ProductImplRepository();
+        inject("currentPriceRepository", InMemoryCurrentPriceRepository.of(currentPrices));
+        inject("productNameClient", new InMemoryProductNameClient());
+        inject("productNameExecutor", productNameExecutor);
+        inject("productPriceExecutor", productPriceExecutor);
+        inject("productNameProperties", productNameProperties);
+        inject("productPriceProperties", productPriceProperties);
+        inject("pipelineMetrics", pipelineMetrics);
+        inject("priceChangeStream", priceChangeStream);
+        inject("productJsonCache", productJsonCache);
+        inject("productIdFilter", new ProductIdFilter());
+        productImplRepository.initNameCaches();
+        productImplRepository.initCatalogVersion();
+
+        Product.CurrentPrice price = new Product.CurrentPrice();
+        price.setValue("12.99");
+        price.setCurrencyCode("USD");
+        update = new Product(null, "The Big Lebowski (Blu-ray) (Widescreen)", price);
+    }
+
+    @TearDown
+    public void shutdownExecutors() {
+
+        productNameExecutor.shutdownNow();
+        productPriceExecutor.shutdownNow();
+        priceChangeStream.stopStream();
+    }
+
+    private void inject(String fieldName, Object value) {
+        inject(productImplRepository, fieldName, value);
+    }
+
+    private static void inject(Object target, String fieldName, Object value) {
+
+        Field field = ReflectionUtils.findField(target.getClass(), fieldName);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    private static ExecutorService executor(int poolSize) {
+
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private String nextId() {
+
+        String id = ids[next];
+        next = (next + 1) % ids.length;
+        return id;
+    }
+
+    @Benchmark
+    public Product findOne() {
+        return productImplRepository.findOne(nextId());
+    }
+
+    @Benchmark
+    public byte[] findOneAsJson() {
+        return productJsonCache.getJson(productImplRepository.findOne(nextId()));
+    }
+
+    @Benchmark
+    public Product findOnePriceOnly() {
+        return productImplRepository.findOne(nextId(), PRICE_ONLY);
+    }
+
+    @Benchmark
+    public Slice<Product> findPage() {
+        return productImplRepository.findPage(null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Product> findAll() {
+        return productImplRepository.findAll();
+    }
+
+    @Benchmark
+    public long update() {
+        return productImplRepository.update(nextId(), update, null);
+    }
+}
@@ -0,0 +1,109 @@
+package com.ryanfranklin.myretail.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The latencies and errors of each {@link Operation} over the measured part of a load test run.
+ */
+final class LoadReport {
+
+    private static final long HIGHEST_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    LoadReport() {
+
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(HIGHEST_LATENCY_NANOS, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Records a completed request.
+     * @param operation the operation of the request, not null
+     * @param latencyNanos the time from when the request was due to be sent until its response, in nanoseconds
+     * @param failed whether the response was an error, or no response was received
+     */
+    void record(Operation operation, long latencyNanos, boolean failed) {
+
+        latencies.get(operation).recordValue(Math.min(latencyNanos, HIGHEST_LATENCY_NANOS));
+        if (failed) {
+            errors.get(operation).increment();
+        }
+    }
+
+    /**
+     * Prints a line per operation with its throughput and latency percentiles.
+     * @param out the stream to print to, not null
+     * @param durationSeconds the measured duration of the run
+     */
+    void print(PrintStream out, int durationSeconds) {
+
+        out.printf("%-6s %10s %8s %10s %10s %10s %10s %10s%n",
+                "op", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<Operation, Map<String, Object>> entry : results(durationSeconds).entrySet()) {
+            Map<String, Object> result = entry.getValue();
+            out.printf("%-6s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", entry.getKey().name().toLowerCase(),
+                    result.get("requests"), result.get("errors"), result.get("throughput"), result.get("p50Millis"),
+                    result.get("p99Millis"), result.get("p999Millis"), result.get("maxMillis"));
+        }
+    }
+
+    /**
+     * Writes the settings and the results of each operation as json.
+     * @param file the file to write, its directory is created if needed
+     * @param settings the settings of the run, not null
+     * @throws IOException if the file could not be written
+     */
+    void write(File file, LoadTestSettings settings) throws IOException {
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings.toMap());
+        report.put("results", results(settings.durationSeconds));
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+    }
+
+    private Map<Operation, Map<String, Object>> results(int durationSeconds) {
+
+        Map<Operation, Map<String, Object>> results = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("requests", histogram.getTotalCount());
+            result.put("errors", errors.get(operation).sum());
+            result.put("throughput", histogram.getTotalCount() / (double) durationSeconds);
+            result.put("p50Millis", millis(histogram.getValueAtPercentile(50)));
+            result.put("p99Millis", millis(histogram.getValueAtPercentile(99)));
+            result.put("p999Millis", millis(histogram.getValueAtPercentile(99.9)));
+            result.put("maxMillis", millis(histogram.getMaxValue()));
+            results.put(operation, result);
+        }
+        return results;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+}
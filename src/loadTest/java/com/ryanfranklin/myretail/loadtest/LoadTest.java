@@ -0,0 +1,217 @@
+package com.ryanfranklin.myretail.loadtest;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.ryanfranklin.myretail.MyRetailApplication;
+import com.ryanfranklin.myretail.model.Product;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the application against a {@link RedskyStub} and an in-memory Mongo, and sends it a mix of reads and writes at
+ * a fixed rate. Requests are sent on schedule whether or not earlier ones have completed, and latency is measured from
+ * when a request was due rather than when it was sent, so a stalled server shows up in the percentiles instead of
+ * slowing the test down. Settings are read from {@code loadtest.*} system properties, see {@link LoadTestSettings}.
+ */
+public final class LoadTest {
+
+    private static final long FIRST_ID = 10000000;
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private final LoadTestSettings settings;
+    private final String baseUrl;
+    private final CloseableHttpClient httpClient;
+    private final Operation[] mix;
+
+    private LoadTest(LoadTestSettings settings, String baseUrl) {
+
+        this.settings = settings;
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClients.custom()
+                .setMaxConnTotal(settings.concurrency)
+                .setMaxConnPerRoute(settings.concurrency)
+                .build();
+        this.mix = expandMix(settings.mix);
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        LoadTestSettings settings = new LoadTestSettings();
+
+        MongoServer mongo = new MongoServer(new MemoryBackend());
+        InetSocketAddress mongoAddress = mongo.bind();
+        try (RedskyStub redsky = RedskyStub.start(settings)) {
+
+            ConfigurableApplicationContext application = new SpringApplicationBuilder(MyRetailApplication.class).run(
+                    "--server.port=0",
+                    "--spring.data.mongodb.host=" + mongoAddress.getHostString(),
+                    "--spring.data.mongodb.port=" + mongoAddress.getPort(),
+                    "--myretail.product-name.client.base-url=" + redsky.getBaseUrl(),
+                    "--logging.level.org.springframework.web=INFO",
+                    "--logging.level.com.ryanfranklin=INFO",
+                    "--logging.level.de.bwaldvogel=ERROR");
+            try {
+                seed(application.getBean(MongoOperations.class), settings.catalogSize);
+
+                String baseUrl = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+                LoadReport report = new LoadTest(settings, baseUrl).run();
+
+                report.print(System.out, settings.durationSeconds);
+                File resultsFile = new File(settings.resultsFile);
+                report.write(resultsFile, settings);
+                System.out.println("Results written to " + resultsFile.getAbsolutePath());
+            } finally {
+                application.close();
+            }
+        } finally {
+            mongo.shutdownNow();
+        }
+    }
+
+    /**
+     * Inserts a price for each product of the catalog, with the ids starting at {@link #FIRST_ID}.
+     */
+    private static void seed(MongoOperations mongoOperations, int catalogSize) {
+
+        String collectionName = mongoOperations.getCollectionName(Product.CurrentPrice.class);
+        List<DBObject> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < catalogSize; i++) {
+            long minorUnits = 100 + i % 10000;
+            batch.add(new BasicDBObject("_id", String.valueOf(FIRST_ID + i))
+                    .append("value", String.format("%d.%02d", minorUnits / 100, minorUnits % 100))
+                    .append("currencyCode", "USD")
+                    .append("minorUnits", minorUnits));
+            if (batch.size() == SEED_BATCH_SIZE || i == catalogSize - 1) {
+                mongoOperations.getCollection(collectionName).insert(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Expands operation weights into a table that an operation is picked from at random.
+     */
+    private static Operation[] expandMix(Map<Operation, Integer> weights) {
+
+        List<Operation> table = new ArrayList<>();
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            for (int i = 0; i < weight.getValue(); i++) {
+                table.add(weight.getKey());
+            }
+        }
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix must give at least one operation a weight.");
+        }
+        return table.toArray(new Operation[0]);
+    }
+
+    /**
+     * Sends requests at the configured rate through the warmup and the measured duration, and waits for the last of
+     * them to complete. Only requests due after the warmup are recorded.
+     * @return the report of the measured requests, not null
+     */
+    private LoadReport run() throws InterruptedException, IOException {
+
+        LoadReport report = new LoadReport();
+        ExecutorService workers = Executors.newFixedThreadPool(settings.concurrency);
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / settings.rate);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(settings.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(settings.durationSeconds);
+        System.out.printf("Sending %.0f requests per second to %s for %d + %d seconds%n",
+                settings.rate, baseUrl, settings.warmupSeconds, settings.durationSeconds);
+
+        for (long due = start; due < end; due += intervalNanos) {
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long dueAt = due;
+            boolean measured = due >= measureFrom;
+            Operation operation = mix[ThreadLocalRandom.current().nextInt(mix.length)];
+            workers.execute(() -> {
+                boolean failed = !send(operation);
+                if (measured) {
+                    report.record(operation, System.nanoTime() - dueAt, failed);
+                }
+            });
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        httpClient.close();
+        return report;
+    }
+
+    /**
+     * Sends a request for {@code operation} and reads its response.
+     * @return whether the response was successful or not modified
+     */
+    private boolean send(Operation operation) {
+
+        try {
+            HttpResponse response = httpClient.execute(request(operation));
+            EntityUtils.consume(response.getEntity());
+            int status = response.getStatusLine().getStatusCode();
+            return status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private HttpUriRequest request(Operation operation) {
+
+        switch (operation) {
+            case GET:
+                return new HttpGet(baseUrl + "/products/" + randomId());
+            case PUT:
+                String id = randomId();
+                HttpPut put = new HttpPut(baseUrl + "/products/" + id);
+                long minorUnits = ThreadLocalRandom.current().nextLong(100, 10000);
+                put.setEntity(new StringEntity(String.format(
+                        "{\"id\":\"%s\",\"name\":\"Product %s\",\"currentPrice\":{\"value\":\"%d.%02d\",\"currencyCode\":\"USD\"}}",
+                        id, id, minorUnits / 100, minorUnits % 100), ContentType.APPLICATION_JSON));
+                return put;
+            case LIST:
+                return new HttpGet(baseUrl + "/products?limit=100");
+            case BATCH:
+                StringJoiner ids = new StringJoiner(",");
+                for (int i = 0; i < settings.batchSize; i++) {
+                    ids.add(randomId());
+                }
+                return new HttpGet(baseUrl + "/products?ids=" + ids);
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    private String randomId() {
+        return String.valueOf(FIRST_ID + ThreadLocalRandom.current().nextInt(settings.catalogSize));
+    }
+}
@@ -0,0 +1,88 @@
+package com.ryanfranklin.myretail.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, read from {@code loadtest.*} system properties.
+ */
+final class LoadTestSettings {
+
+    /** The requests started per second, whether or not earlier requests have completed */
+    final double rate = doubleProperty("loadtest.rate", 200);
+
+    /** How long requests are sent before latencies are recorded, in seconds */
+    final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+
+    /** How long latencies are recorded, in seconds */
+    final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+
+    /** The number of requests that may be in flight at once */
+    final int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+
+    /** The number of products in the catalog */
+    final int catalogSize = Integer.getInteger("loadtest.catalog-size", 10000);
+
+    /** The number of ids requested by a batch read */
+    final int batchSize = Integer.getInteger("loadtest.batch-size", 20);
+
+    /** The relative weight of each operation, as {@code operation:weight,...} */
+    final Map<Operation, Integer> mix = parseMix(System.getProperty("loadtest.mix", "get:70,put:15,list:5,batch:10"));
+
+    /** The time the redsky stub takes to answer, in milliseconds */
+    final long redskyLatencyMillis = Long.getLong("loadtest.redsky.latency-millis", 50);
+
+    /** The most time added at random to the redsky stub latency, in milliseconds */
+    final long redskyLatencyJitterMillis = Long.getLong("loadtest.redsky.latency-jitter-millis", 20);
+
+    /** The share of redsky stub responses that are server errors, between 0 and 1 */
+    final double redskyErrorRate = doubleProperty("loadtest.redsky.error-rate", 0.01);
+
+    /** The size the redsky stub pads its payloads to, in bytes, 0 to keep the recorded payload size */
+    final int redskyPayloadBytes = Integer.getInteger("loadtest.redsky.payload-bytes", 0);
+
+    /** The file the results are written to as json */
+    final String resultsFile = System.getProperty("loadtest.results-file", "build/reports/loadtest/results.json");
+
+    private static double doubleProperty(String key, double defaultValue) {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] operationWeight = entry.trim().split(":");
+            if (operationWeight.length != 2) {
+                throw new IllegalArgumentException("loadtest.mix entries must be operation:weight, was: " + entry);
+            }
+            weights.put(Operation.valueOf(operationWeight[0].trim().toUpperCase()),
+                    Integer.parseInt(operationWeight[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * Gets the settings as a map, to be reported with the results.
+     * @return the settings by property name, not null
+     */
+    Map<String, Object> toMap() {
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("rate", rate);
+        settings.put("warmupSeconds", warmupSeconds);
+        settings.put("durationSeconds", durationSeconds);
+        settings.put("concurrency", concurrency);
+        settings.put("catalogSize", catalogSize);
+        settings.put("batchSize", batchSize);
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        mix.forEach((operation, weight) -> weights.put(operation.name().toLowerCase(), weight));
+        settings.put("mix", weights);
+        settings.put("redskyLatencyMillis", redskyLatencyMillis);
+        settings.put("redskyLatencyJitterMillis", redskyLatencyJitterMillis);
+        settings.put("redskyErrorRate", redskyErrorRate);
+        settings.put("redskyPayloadBytes", redskyPayloadBytes);
+        return settings;
+    }
+}
@@ -0,0 +1,19 @@
+package com.ryanfranklin.myretail.loadtest;
+
+/**
+ * The requests a load test sends.
+ */
+enum Operation {
+
+    /** GET /products/{id} */
+    GET,
+
+    /** PUT /products/{id} with a new price */
+    PUT,
+
+    /** GET /products?limit=100, the first page of the catalog */
+    LIST,
+
+    /** GET /products?ids=..., a batch read of random ids */
+    BATCH
+}
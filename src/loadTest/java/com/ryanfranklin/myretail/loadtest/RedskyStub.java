@@ -0,0 +1,118 @@
+package com.ryanfranklin.myretail.loadtest;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local stand-in for the redsky pdp endpoint. It answers every id with the recorded payload, titled
+ * {@code "Product <id>"}, after a configurable latency, and fails a configurable share of requests with a server error.
+ */
+final class RedskyStub implements AutoCloseable {
+
+    private static final String PAYLOAD = "/redsky/pdp-13860428.json";
+    private static final String RECORDED_TITLE = "The Big Lebowski (Blu-ray)";
+    private static final String PATH_PREFIX = "/v2/pdp/tcin/";
+
+    private final LoadTestSettings settings;
+    private final String payload;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private RedskyStub(LoadTestSettings settings) throws IOException {
+
+        this.settings = settings;
+        this.payload = pad(readPayload(), settings.redskyPayloadBytes);
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(PATH_PREFIX, this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts a stub on a free local port.
+     * @param settings the latency, error rate and payload size of the stub, not null
+     * @return the started stub, not null
+     * @throws IOException if the stub could not start
+     */
+    static RedskyStub start(LoadTestSettings settings) throws IOException {
+
+        RedskyStub stub = new RedskyStub(settings);
+        stub.server.start();
+        return stub;
+    }
+
+    /**
+     * Gets the base URL of the stub, to use as {@code myretail.product-name.client.base-url}.
+     * @return the base URL, not null
+     */
+    String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try {
+            long jitter = settings.redskyLatencyJitterMillis > 0
+                    ? ThreadLocalRandom.current().nextLong(settings.redskyLatencyJitterMillis + 1) : 0;
+            TimeUnit.MILLISECONDS.sleep(settings.redskyLatencyMillis + jitter);
+
+            if (ThreadLocalRandom.current().nextDouble() < settings.redskyErrorRate) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            String id = exchange.getRequestURI().getPath().substring(PATH_PREFIX.length());
+            byte[] body = payload.replace(RECORDED_TITLE, "Product " + id).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String readPayload() throws IOException {
+
+        try (InputStream in = RedskyStub.class.getResourceAsStream(PAYLOAD)) {
+            return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Pads {@code payload} to {@code size} bytes with a field ahead of the product, which the name extractor has to
+     * skip over the same way as the large fields of a real payload.
+     */
+    private static String pad(String payload, int size) {
+
+        int padding = size - payload.length() - "\"padding\":\"\",".length();
+        if (padding <= 0) {
+            return payload;
+        }
+        int start = payload.indexOf('{') + 1;
+        return payload.substring(0, start) + "\"padding\":\"" + Strings.repeat("x", padding) + "\","
+                + payload.substring(start);
+    }
+
+    @Override
+    public void close() {
+
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,191 @@
+package com.ryanfranklin.myretail.client;
+
+import com.google.common.base.Ticker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A circuit breaker that counts slow calls as failures. It opens when the share of failed or slow calls among the
+ * most recent calls reaches a threshold, rejects calls while open, and after a while lets a few trial calls through.
+ * The circuit closes again when all trial calls succeed, and opens again as soon as one fails.
+ */
+public class CircuitBreaker {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRatePercent;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final Ticker ticker;
+
+    /** Whether each of the most recent calls failed or was slow, as a ring **/
+    private final boolean[] outcomes;
+    private int nextOutcome;
+    private int outcomeCount;
+    private int failureCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private long openedCount;
+    private long rejectedCount;
+
+    /**
+     * Constructs a CircuitBreaker.
+     * @param name the name of the dependency, used in logs, not null
+     * @param windowSize the number of most recent calls the failure rate is computed over
+     * @param minimumCalls the number of calls in the window before the circuit may open
+     * @param failureRatePercent the percentage of failed or slow calls in the window that opens the circuit
+     * @param slowCallMillis a call slower than this counts as failed, in milliseconds
+     * @param openMillis how long the circuit stays open before trial calls are let through, in milliseconds
+     * @param halfOpenCalls the number of trial calls that must all succeed to close the circuit again
+     * @param ticker the source of time, not null
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRatePercent, long slowCallMillis,
+                          long openMillis, int halfOpenCalls, Ticker ticker) {
+
+        checkArgument(windowSize > 0 && halfOpenCalls > 0);
+
+        this.name = checkNotNull(name);
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRatePercent = failureRatePercent;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.halfOpenCalls = halfOpenCalls;
+        this.ticker = checkNotNull(ticker);
+    }
+
+    /**
+     * Asks to make a call. Every permitted call must be followed by {@link #onResult(long, boolean)}.
+     * @return whether the call may be made
+     */
+    public synchronized boolean tryAcquirePermission() {
+
+        if (state == State.OPEN) {
+            if (ticker.read() - openedAt < openNanos) {
+                rejectedCount++;
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                rejectedCount++;
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     * @param latencyNanos how long the call took, in nanoseconds
+     * @param failed whether the call failed
+     */
+    public synchronized void onResult(long latencyNanos, boolean failed) {
+
+        boolean failure = failed || latencyNanos > slowCallNanos;
+        switch (state) {
+            case HALF_OPEN:
+                if (failure) {
+                    open();
+                } else if (++halfOpenSuccesses == halfOpenCalls) {
+                    close();
+                }
+                break;
+            case CLOSED:
+                record(failure);
+                if (outcomeCount >= minimumCalls && failureCount * 100L >= failureRatePercent * (long) outcomeCount) {
+                    open();
+                }
+                break;
+            default:
+                // A call permitted before the circuit opened says nothing about the dependency now
+                break;
+        }
+    }
+
+    private void record(boolean failure) {
+
+        if (outcomeCount == outcomes.length) {
+            if (outcomes[nextOutcome]) {
+                failureCount--;
+            }
+        } else {
+            outcomeCount++;
+        }
+        outcomes[nextOutcome] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+    }
+
+    private void open() {
+
+        transitionTo(State.OPEN);
+        openedAt = ticker.read();
+        openedCount++;
+    }
+
+    private void close() {
+
+        transitionTo(State.CLOSED);
+        nextOutcome = 0;
+        outcomeCount = 0;
+        failureCount = 0;
+    }
+
+    private void transitionTo(State next) {
+
+        if (next == State.OPEN) {
+            logger.warn("Circuit breaker {} opened from {}", name, state);
+        } else {
+            logger.info("Circuit breaker {} moved from {} to {}", name, state, next);
+        }
+        state = next;
+    }
+
+    /**
+     * Gets state
+     *
+     * @return the state of the circuit
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Gets openedCount
+     *
+     * @return the number of times the circuit opened
+     */
+    public synchronized long getOpenedCount() {
+        return openedCount;
+    }
+
+    /**
+     * Gets rejectedCount
+     *
+     * @return the number of calls rejected while the circuit was not closed
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+}
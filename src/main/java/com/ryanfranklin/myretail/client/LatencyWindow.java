@@ -0,0 +1,84 @@
+package com.ryanfranklin.myretail.client;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The latencies of the most recent calls, from which a percentile can be read. A percentile is sorted out of the
+ * window again only once another twentieth of the window was recorded, and read from the last sort until then.
+ */
+final class LatencyWindow {
+
+    private final long[] latencies;
+    private final int minimumCalls;
+    private final int recordsPerSort;
+    private int next;
+    private int count;
+    private long recorded;
+
+    /** The last percentile sorted out of the window, and the number of latencies recorded when it was **/
+    private double sortedPercentile = Double.NaN;
+    private long sortedLatency;
+    private long sortedAtRecorded;
+
+    /**
+     * Constructs a LatencyWindow.
+     * @param size the number of most recent latencies kept
+     * @param minimumCalls the number of latencies needed before a percentile is given
+     */
+    LatencyWindow(int size, int minimumCalls) {
+
+        checkArgument(size > 0);
+
+        this.latencies = new long[size];
+        this.minimumCalls = Math.min(minimumCalls, size);
+        this.recordsPerSort = Math.max(1, size / 20);
+    }
+
+    /**
+     * Records the latency of a call.
+     * @param latencyNanos the latency, in nanoseconds
+     */
+    synchronized void record(long latencyNanos) {
+
+        latencies[next] = latencyNanos;
+        next = (next + 1) % latencies.length;
+        if (count < latencies.length) {
+            count++;
+        }
+        recorded++;
+    }
+
+    /**
+     * Gets a percentile of the recorded latencies, as of the last sort of the window.
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency at the percentile in nanoseconds, or -1 if too few latencies were recorded
+     */
+    long percentile(double percentile) {
+
+        long[] sorted;
+        long sortedAt;
+        synchronized (this) {
+            if (count < minimumCalls || count == 0) {
+                return -1;
+            }
+            if (percentile == sortedPercentile && recorded - sortedAtRecorded < recordsPerSort) {
+                return sortedLatency;
+            }
+            sorted = Arrays.copyOf(latencies, count);
+            sortedAt = recorded;
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        long latency = sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        synchronized (this) {
+            if (sortedAt >= sortedAtRecorded) {
+                sortedPercentile = percentile;
+                sortedLatency = latency;
+                sortedAtRecorded = sortedAt;
+            }
+        }
+        return latency;
+    }
+}
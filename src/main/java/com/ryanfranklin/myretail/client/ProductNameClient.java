@@ -0,0 +1,130 @@
+package com.ryanfranklin.myretail.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.ryanfranklin.myretail.config.ProductNameProperties;
+import com.ryanfranklin.myretail.exception.NotFoundException;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics.Stage;
+import com.ryanfranklin.myretail.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Client of the product name resource. All calls share the pooled {@code productNameRestTemplate}, and the name is
+ * read straight from the response stream by the {@link ProductNameExtractor}.
+ */
+@Component
+public class ProductNameClient {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The resource path, relative to the configured base URL, to get the product name by id **/
+    private static final String PRODUCT_NAME_RESOURCE_PATH = "/v2/pdp/tcin/{id}?" +
+            "excludes=taxonomy,price,promotion,bulk_ship,rating_and_review_reviews,rating_and_review_statistics," +
+            "question_answer_statistics,deep_red_labels,available_to_promise_network";
+
+    @Autowired
+    @Qualifier("productNameRestTemplate")
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ProductNameProperties productNameProperties;
+
+    @Autowired
+    private ProductNameExtractor productNameExtractor;
+
+    @Autowired
+    private ProductPipelineMetrics pipelineMetrics;
+
+    /** The URL template to get the product name by id **/
+    private String productNameUrl;
+
+    /** Reads the product name from the response body, shared by all calls **/
+    private final ResponseExtractor<String> nameResponseExtractor = this::readName;
+
+    @PostConstruct
+    void initProductNameUrl() {
+        productNameUrl = productNameProperties.getClient().getBaseUrl() + PRODUCT_NAME_RESOURCE_PATH;
+    }
+
+    /**
+     * Fetches a {@link Product} name by {@code id} from the product name resource.
+     * @param id the id of the product, not null
+     * @return a product name, not null
+     */
+    public String fetchName(String id) {
+
+        checkNotNull(id);
+
+        long start = pipelineMetrics.begin(Stage.NAME_FETCH);
+        try {
+            String name = requestName(id);
+            pipelineMetrics.end(Stage.NAME_FETCH, start);
+            return name;
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.NAME_FETCH, start, e);
+            throw e;
+        }
+    }
+
+    private String requestName(String id) {
+
+        String name;
+        try {
+            name = restTemplate.execute(productNameUrl, HttpMethod.GET, null, nameResponseExtractor, id);
+        } catch (HttpClientErrorException e)   {
+            if (e.getStatusCode() != HttpStatus.NOT_FOUND) {
+                throw e;
+            } else {
+                logger.debug("Could not find the product's name by id: {}", id);
+                throw new NotFoundException();
+            }
+        }
+
+        if (name == null || name.isEmpty()) {
+            logger.debug("Unable to read product name from response body by id: {}.", id);
+            throw new RestClientException("Unable to read product name.");
+        } else {
+            logger.trace("Read product name by id: {}: {}", id, name);
+            return name;
+        }
+    }
+
+    /**
+     * Reads the product name from the body of a product name resource response.
+     * @param response the response, not null
+     * @return the product name, or {@code null} if the body has no name
+     * @throws IOException if the body could not be read
+     */
+    private String readName(ClientHttpResponse response) throws IOException {
+
+        long start = pipelineMetrics.begin(Stage.NAME_PARSE);
+        try {
+            String name = productNameExtractor.extractName(response.getBody());
+            pipelineMetrics.end(Stage.NAME_PARSE, start);
+            return name;
+        } catch (JsonProcessingException e) {
+            pipelineMetrics.fail(Stage.NAME_PARSE, start, e);
+            logger.debug("Unable to parse the response body to get the product name.", e);
+            throw new RestClientException("Unable to read product name.");
+        } catch (IOException | RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.NAME_PARSE, start, e);
+            throw e;
+        }
+    }
+}
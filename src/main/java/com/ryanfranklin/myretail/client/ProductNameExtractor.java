@@ -0,0 +1,64 @@
+package com.ryanfranklin.myretail.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the product name from a product name resource response body. The body is read as a token stream and the
+ * read stops as soon as the name is found, so the rest of the payload is never parsed. Thread safe.
+ */
+@Component
+public class ProductNameExtractor {
+
+    /** The json path for the product name is: product.item.product_description.title **/
+    private static final String[] JSON_PATH_NAME = {"product", "item", "product_description", "title"};
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Reads the product name from {@code body}. The stream is left open for the caller to close.
+     * @param body the response body, not null
+     * @return the product name, or {@code null} if the body has no name
+     * @throws IOException if the body could not be read or is not valid json up to the name
+     */
+    public String extractName(InputStream body) throws IOException {
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            return findName(parser, 0);
+        }
+    }
+
+    /**
+     * Reads the fields of the object the parser is in until the field at {@code depth} of the name path is found.
+     * Field names are canonicalized by the parser, so matching them does not allocate.
+     * @param parser the parser positioned on the start of an object, not null
+     * @param depth the index of the field to find in the name path
+     * @return the product name, or {@code null} if the object has no name
+     * @throws IOException if the body could not be read
+     */
+    private String findName(JsonParser parser, int depth) throws IOException {
+
+        String fieldName = JSON_PATH_NAME[depth];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean isField = fieldName.equals(parser.getCurrentName());
+            JsonToken value = parser.nextToken();
+            if (isField) {
+                if (depth == JSON_PATH_NAME.length - 1) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                return value == JsonToken.START_OBJECT ? findName(parser, depth + 1) : null;
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,247 @@
+package com.ryanfranklin.myretail.client;
+
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.ryanfranklin.myretail.config.ProductNameProperties;
+import com.ryanfranklin.myretail.exception.NotFoundException;
+import com.ryanfranklin.myretail.exception.ServiceUnavailableException;
+import com.ryanfranklin.myretail.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Isolates calls to the product name resource made by the {@link ProductNameClient}. Calls go through a bulkhead that
+ * bounds how many are in flight, and a {@link CircuitBreaker} that stops calling while the resource is failing or slow.
+ * Both reject calls right away with a {@link ServiceUnavailableException} instead of letting callers wait. When
+ * hedging is enabled, a call slower than a percentile of recent calls is sent a second time and the first name
+ * returned is used. The percentile is taken over the latencies of single calls, not of hedged fetches, so hedging
+ * does not lower it.
+ */
+@Component
+public class ResilientProductNameClient {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private ProductNameClient productNameClient;
+
+    @Autowired
+    private ProductNameProperties productNameProperties;
+
+    @Autowired
+    @Qualifier("productNameCallExecutor")
+    private ExecutorService productNameCallExecutor;
+
+    private CircuitBreaker circuitBreaker;
+
+    /** Permits for calls in flight, including hedged calls **/
+    private Semaphore bulkhead;
+
+    private LatencyWindow latencies;
+
+    private final LongAdder bulkheadRejectedCount = new LongAdder();
+    private final LongAdder hedgedCount = new LongAdder();
+    private final LongAdder hedgeWonCount = new LongAdder();
+
+    @PostConstruct
+    void initIsolation() {
+
+        ProductNameProperties.Breaker breaker = productNameProperties.getBreaker();
+        circuitBreaker = new CircuitBreaker("product-name", breaker.getWindowSize(), breaker.getMinimumCalls(),
+                breaker.getFailureRatePercent(), breaker.getSlowCallMillis(), breaker.getOpenMillis(),
+                breaker.getHalfOpenCalls(), Ticker.systemTicker());
+        bulkhead = new Semaphore(productNameProperties.getBulkhead().getMaxConcurrentCalls());
+        ProductNameProperties.Hedge hedge = productNameProperties.getHedge();
+        latencies = new LatencyWindow(hedge.getWindowSize(), hedge.getMinimumCalls());
+    }
+
+    /**
+     * Fetches a {@link Product} name by {@code id} from the product name resource, unless the bulkhead is full or the
+     * circuit is open. A name that does not exist counts as a successful call.
+     * @param id the id of the product, not null
+     * @return a product name, not null
+     * @throws NotFoundException if the product has no name
+     * @throws ServiceUnavailableException if the call was rejected
+     */
+    public String fetchName(String id) {
+
+        checkNotNull(id);
+
+        if (!bulkhead.tryAcquire()) {
+            bulkheadRejectedCount.increment();
+            throw new ServiceUnavailableException("Too many product name calls in flight.");
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            throw new ServiceUnavailableException("The product name circuit is open.");
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ProductNameProperties.Hedge hedge = productNameProperties.getHedge();
+            long hedgeDelay = hedge.isEnabled() ? latencies.percentile(hedge.getPercentile()) : -1;
+            String name = hedgeDelay < 0 ? call(id) : fetchHedged(id, hedgeDelay);
+            failed = false;
+            return name;
+        } catch (NotFoundException e) {
+            failed = false;
+            throw e;
+        } finally {
+            circuitBreaker.onResult(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Makes one call to the product name resource with a bulkhead permit already acquired, records its latency unless
+     * it failed, and releases the permit once it returns.
+     * @param id the id of the product, not null
+     * @return a product name, not null
+     */
+    private String call(String id) {
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            String name = productNameClient.fetchName(id);
+            failed = false;
+            return name;
+        } catch (NotFoundException e) {
+            failed = false;
+            throw e;
+        } finally {
+            if (!failed) {
+                latencies.record(System.nanoTime() - start);
+            }
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Makes a call on the call executor, and sends a second call if the first is slower than the hedge delay and the
+     * bulkhead has room for it. Each call holds its own bulkhead permit until it returns, so the slower call, left to
+     * finish in the background, still counts against the bulkhead.
+     * @param id the id of the product, not null
+     * @param hedgeDelay how long to wait for the first call before sending the second, in nanoseconds
+     * @return the first name returned, not null
+     */
+    private String fetchHedged(String id, long hedgeDelay) {
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> call(id), productNameCallExecutor);
+        try {
+            return first.get(hedgeDelay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.trace("Hedging the product name call by id: {} after {} ns", id, hedgeDelay);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while fetching the product name.");
+        }
+
+        if (!bulkhead.tryAcquire()) {
+            return join(first);
+        }
+        hedgedCount.increment();
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> call(id), productNameCallExecutor);
+
+        CompletableFuture<CompletableFuture<String>> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        first.whenComplete((name, e) -> completeWithWinner(winner, first, e, failures));
+        second.whenComplete((name, e) -> completeWithWinner(winner, second, e, failures));
+        CompletableFuture<String> winningCall = winner.join();
+        String name = join(winningCall);
+        if (winningCall == second) {
+            hedgeWonCount.increment();
+        }
+        return name;
+    }
+
+    /**
+     * Completes {@code winner} with the first call that returned a name, or with the last call when both fail.
+     */
+    private static void completeWithWinner(CompletableFuture<CompletableFuture<String>> winner,
+                                           CompletableFuture<String> call, Throwable e, AtomicInteger failures) {
+
+        if (e == null || failures.incrementAndGet() == 2) {
+            winner.complete(call);
+        }
+    }
+
+    private static String join(CompletableFuture<String> name) {
+
+        try {
+            return name.join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    /**
+     * Gets circuitBreaker
+     *
+     * @return the circuit breaker of the product name resource
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Gets the number of calls that may still be made before the bulkhead rejects calls.
+     * @return the available bulkhead permits
+     */
+    public int getBulkheadAvailable() {
+        return bulkhead.availablePermits();
+    }
+
+    /**
+     * Gets the number of calls the bulkhead rejected.
+     * @return the bulkhead rejections
+     */
+    public long getBulkheadRejectedCount() {
+        return bulkheadRejectedCount.sum();
+    }
+
+    /**
+     * Gets the number of calls sent a second time.
+     * @return the hedged calls
+     */
+    public long getHedgedCount() {
+        return hedgedCount.sum();
+    }
+
+    /**
+     * Gets the number of hedged calls where the second call returned the name first.
+     * @return the hedged calls won by the second call
+     */
+    public long getHedgeWonCount() {
+        return hedgeWonCount.sum();
+    }
+
+    /**
+     * Gets the delay after which a call is hedged.
+     * @return the hedge delay in milliseconds, or -1 if too few calls were made to know it
+     */
+    public double getHedgeDelayMillis() {
+        long hedgeDelay = latencies.percentile(productNameProperties.getHedge().getPercentile());
+        return hedgeDelay < 0 ? -1 : hedgeDelay / 1000000.0;
+    }
+}
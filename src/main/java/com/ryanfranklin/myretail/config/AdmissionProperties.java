@@ -0,0 +1,241 @@
+package com.ryanfranklin.myretail.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the admission control of the product API, bound from the {@code myretail.web.admission} properties.
+ */
+@ConfigurationProperties(prefix = "myretail.web.admission")
+public class AdmissionProperties {
+
+    /** Whether requests are shed once an endpoint has as many requests in flight as its limit */
+    private boolean enabled = true;
+
+    /** The limit of requests in flight an endpoint starts with */
+    private int initialLimit = 50;
+
+    /** The lowest limit of a read endpoint */
+    private int minLimit = 5;
+
+    /** The lowest limit of an endpoint that updates prices, kept higher so updates are never starved */
+    private int updateMinLimit = 20;
+
+    /** The highest limit of an endpoint */
+    private int maxLimit = 200;
+
+    /** The number of requests whose average latency decides each change of a limit */
+    private int windowSize = 20;
+
+    /** How many times the usual latency an average latency may be before the limit is lowered */
+    private double tolerance = 2.0;
+
+    /** The ratio a limit is multiplied by when the latency is too high */
+    private double backoffRatio = 0.9;
+
+    /** The highest number of requests in flight across every endpoint */
+    private int overallLimit = 200;
+
+    /** The permits of the overall limit that only endpoints that update prices may take */
+    private int updateReserve = 20;
+
+    /** The seconds a shed request is told to wait in its Retry-After header */
+    private int retryAfterSeconds = 1;
+
+    /**
+     * Gets enabled
+     *
+     * @return the enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets enabled
+     *
+     * @param enabled the enabled of the AdmissionProperties
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets initialLimit
+     *
+     * @return the initialLimit
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * Sets initialLimit
+     *
+     * @param initialLimit the initialLimit of the AdmissionProperties
+     */
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    /**
+     * Gets minLimit
+     *
+     * @return the minLimit
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Sets minLimit
+     *
+     * @param minLimit the minLimit of the AdmissionProperties
+     */
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    /**
+     * Gets updateMinLimit
+     *
+     * @return the updateMinLimit
+     */
+    public int getUpdateMinLimit() {
+        return updateMinLimit;
+    }
+
+    /**
+     * Sets updateMinLimit
+     *
+     * @param updateMinLimit the updateMinLimit of the AdmissionProperties
+     */
+    public void setUpdateMinLimit(int updateMinLimit) {
+        this.updateMinLimit = updateMinLimit;
+    }
+
+    /**
+     * Gets maxLimit
+     *
+     * @return the maxLimit
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Sets maxLimit
+     *
+     * @param maxLimit the maxLimit of the AdmissionProperties
+     */
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Gets windowSize
+     *
+     * @return the windowSize
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Sets windowSize
+     *
+     * @param windowSize the windowSize of the AdmissionProperties
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Gets tolerance
+     *
+     * @return the tolerance
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Sets tolerance
+     *
+     * @param tolerance the tolerance of the AdmissionProperties
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Gets backoffRatio
+     *
+     * @return the backoffRatio
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * Sets backoffRatio
+     *
+     * @param backoffRatio the backoffRatio of the AdmissionProperties
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Gets overallLimit
+     *
+     * @return the overallLimit
+     */
+    public int getOverallLimit() {
+        return overallLimit;
+    }
+
+    /**
+     * Sets overallLimit
+     *
+     * @param overallLimit the overallLimit of the AdmissionProperties
+     */
+    public void setOverallLimit(int overallLimit) {
+        this.overallLimit = overallLimit;
+    }
+
+    /**
+     * Gets updateReserve
+     *
+     * @return the updateReserve
+     */
+    public int getUpdateReserve() {
+        return updateReserve;
+    }
+
+    /**
+     * Sets updateReserve
+     *
+     * @param updateReserve the updateReserve of the AdmissionProperties
+     */
+    public void setUpdateReserve(int updateReserve) {
+        this.updateReserve = updateReserve;
+    }
+
+    /**
+     * Gets retryAfterSeconds
+     *
+     * @return the retryAfterSeconds
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Sets retryAfterSeconds
+     *
+     * @param retryAfterSeconds the retryAfterSeconds of the AdmissionProperties
+     */
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
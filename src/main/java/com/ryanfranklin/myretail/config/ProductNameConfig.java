@@ -0,0 +1,107 @@
+package com.ryanfranklin.myretail.config;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties(ProductNameProperties.class)
+public class ProductNameConfig {
+
+    /**
+     * Creates the executor that runs remote product name lookups. When the queue is full the lookup is rejected, and
+     * the caller treats the name as missing rather than running the lookup on its own thread past its deadline.
+     *
+     * @param properties the product name settings, not null
+     * @return the executor for name lookups, not null
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService productNameExecutor(ProductNameProperties properties) {
+
+        ProductNameProperties.Lookup lookup = properties.getLookup();
+        return new ThreadPoolExecutor(lookup.getPoolSize(), lookup.getPoolSize(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(lookup.getQueueCapacity()),
+                new ThreadFactoryBuilder().setNameFormat("product-name-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Creates the executor that runs hedged calls to the product name resource. It has a thread for every call the
+     * bulkhead lets through, so calls never wait in a queue; a call that finds no idle thread runs on the calling
+     * thread and is not hedged.
+     *
+     * @param properties the product name settings, not null
+     * @return the executor for hedged name calls, not null
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService productNameCallExecutor(ProductNameProperties properties) {
+
+        int maxConcurrentCalls = properties.getBulkhead().getMaxConcurrentCalls();
+        return new ThreadPoolExecutor(0, maxConcurrentCalls * 2, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("product-name-call-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Creates the pooled HTTP client for the product name resource. Connections are kept alive for as long as the
+     * server allows, or {@code keepAliveMillis} when it does not say, and idle connections are closed after that.
+     *
+     * @param properties the product name settings, not null
+     * @return the HTTP client for the product name resource, not null
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient productNameHttpClient(ProductNameProperties properties) {
+
+        ProductNameProperties.Client client = properties.getClient();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(client.getMaxConnectionsPerRoute());
+        connectionManager.setMaxTotal(client.getMaxConnectionsTotal());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(client.getConnectTimeoutMillis())
+                .setSocketTimeout(client.getReadTimeoutMillis())
+                .setConnectionRequestTimeout(client.getConnectionRequestTimeoutMillis())
+                .build();
+
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : client.getKeepAliveMillis();
+        };
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(client.getKeepAliveMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Creates the {@link RestTemplate} shared by all calls to the product name resource.
+     *
+     * @param productNameHttpClient the pooled HTTP client for the product name resource, not null
+     * @return the rest template for the product name resource, not null
+     */
+    @Bean
+    public RestTemplate productNameRestTemplate(CloseableHttpClient productNameHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(productNameHttpClient));
+    }
+}
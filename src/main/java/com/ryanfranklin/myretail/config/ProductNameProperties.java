@@ -0,0 +1,964 @@
+package com.ryanfranklin.myretail.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for resolving product names, bound from the {@code myretail.product-name} properties.
+ */
+@ConfigurationProperties(prefix = "myretail.product-name")
+public class ProductNameProperties {
+
+    /** Settings for concurrent name lookups */
+    private final Lookup lookup = new Lookup();
+
+    /** Settings for the in-process name cache */
+    private final Cache cache = new Cache();
+
+    /** Settings for the HTTP client of the product name resource */
+    private final Client client = new Client();
+
+    /** Settings for the circuit breaker of the product name resource */
+    private final Breaker breaker = new Breaker();
+
+    /** Settings for the bulkhead that bounds calls to the product name resource */
+    private final Bulkhead bulkhead = new Bulkhead();
+
+    /** Settings for hedged calls to the product name resource */
+    private final Hedge hedge = new Hedge();
+
+    /** Settings for storing names in the datastore next to the current prices */
+    private final Store store = new Store();
+
+    /** Settings for loading the names of the catalog at startup */
+    private final Warmup warmup = new Warmup();
+
+    /** Settings for refreshing cached names in the background before they expire */
+    private final Refresh refresh = new Refresh();
+
+    /**
+     * Gets lookup
+     *
+     * @return the lookup settings
+     */
+    public Lookup getLookup() {
+        return lookup;
+    }
+
+    /**
+     * Gets cache
+     *
+     * @return the cache settings
+     */
+    public Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * Gets client
+     *
+     * @return the client settings
+     */
+    public Client getClient() {
+        return client;
+    }
+
+    /**
+     * Gets breaker
+     *
+     * @return the breaker settings
+     */
+    public Breaker getBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Gets bulkhead
+     *
+     * @return the bulkhead settings
+     */
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * Gets hedge
+     *
+     * @return the hedge settings
+     */
+    public Hedge getHedge() {
+        return hedge;
+    }
+
+    /**
+     * Gets store
+     *
+     * @return the store settings
+     */
+    public Store getStore() {
+        return store;
+    }
+
+    /**
+     * Gets warmup
+     *
+     * @return the warmup settings
+     */
+    public Warmup getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * Gets refresh
+     *
+     * @return the refresh settings
+     */
+    public Refresh getRefresh() {
+        return refresh;
+    }
+
+    public static class Lookup {
+
+        /** The number of threads dedicated to name lookups */
+        private int poolSize = 32;
+
+        /** The number of lookups waiting for a thread before more lookups are rejected and their names missing */
+        private int queueCapacity = 1000;
+
+        /** The maximum number of name lookups a single request may have in flight */
+        private int maxConcurrency = 16;
+
+        /** The overall time a single request may spend resolving names, in milliseconds */
+        private long deadlineMillis = 2000;
+
+        /**
+         * Gets poolSize
+         *
+         * @return the poolSize
+         */
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        /**
+         * Sets poolSize
+         *
+         * @param poolSize the poolSize of the Lookup
+         */
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        /**
+         * Gets queueCapacity
+         *
+         * @return the queueCapacity
+         */
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        /**
+         * Sets queueCapacity
+         *
+         * @param queueCapacity the queueCapacity of the Lookup
+         */
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        /**
+         * Gets maxConcurrency
+         *
+         * @return the maxConcurrency
+         */
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        /**
+         * Sets maxConcurrency
+         *
+         * @param maxConcurrency the maxConcurrency of the Lookup
+         */
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        /**
+         * Gets deadlineMillis
+         *
+         * @return the deadlineMillis
+         */
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        /**
+         * Sets deadlineMillis
+         *
+         * @param deadlineMillis the deadlineMillis of the Lookup
+         */
+        public void setDeadlineMillis(long deadlineMillis) {
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+
+    public static class Cache {
+
+        /** The maximum number of names kept in the cache */
+        private long maxEntries = 100000;
+
+        /** How long a name is kept after it was fetched, in milliseconds */
+        private long expireAfterWriteMillis = 86400000;
+
+        /** How long after it was fetched a name is reloaded in the background on its next read, in milliseconds */
+        private long refreshAfterWriteMillis = 3600000;
+
+        /** The maximum number of ids remembered as having no name */
+        private long notFoundMaxEntries = 10000;
+
+        /** How long an id is remembered as having no name, in milliseconds */
+        private long notFoundExpireAfterWriteMillis = 60000;
+
+        /** The maximum number of last known names kept to serve when a name cannot be fetched */
+        private long lastKnownMaxEntries = 100000;
+
+        /**
+         * Gets maxEntries
+         *
+         * @return the maxEntries
+         */
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        /**
+         * Sets maxEntries
+         *
+         * @param maxEntries the maxEntries of the Cache
+         */
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * Gets expireAfterWriteMillis
+         *
+         * @return the expireAfterWriteMillis
+         */
+        public long getExpireAfterWriteMillis() {
+            return expireAfterWriteMillis;
+        }
+
+        /**
+         * Sets expireAfterWriteMillis
+         *
+         * @param expireAfterWriteMillis the expireAfterWriteMillis of the Cache
+         */
+        public void setExpireAfterWriteMillis(long expireAfterWriteMillis) {
+            this.expireAfterWriteMillis = expireAfterWriteMillis;
+        }
+
+        /**
+         * Gets refreshAfterWriteMillis
+         *
+         * @return the refreshAfterWriteMillis
+         */
+        public long getRefreshAfterWriteMillis() {
+            return refreshAfterWriteMillis;
+        }
+
+        /**
+         * Sets refreshAfterWriteMillis
+         *
+         * @param refreshAfterWriteMillis the refreshAfterWriteMillis of the Cache
+         */
+        public void setRefreshAfterWriteMillis(long refreshAfterWriteMillis) {
+            this.refreshAfterWriteMillis = refreshAfterWriteMillis;
+        }
+
+        /**
+         * Gets notFoundMaxEntries
+         *
+         * @return the notFoundMaxEntries
+         */
+        public long getNotFoundMaxEntries() {
+            return notFoundMaxEntries;
+        }
+
+        /**
+         * Sets notFoundMaxEntries
+         *
+         * @param notFoundMaxEntries the notFoundMaxEntries of the Cache
+         */
+        public void setNotFoundMaxEntries(long notFoundMaxEntries) {
+            this.notFoundMaxEntries = notFoundMaxEntries;
+        }
+
+        /**
+         * Gets notFoundExpireAfterWriteMillis
+         *
+         * @return the notFoundExpireAfterWriteMillis
+         */
+        public long getNotFoundExpireAfterWriteMillis() {
+            return notFoundExpireAfterWriteMillis;
+        }
+
+        /**
+         * Sets notFoundExpireAfterWriteMillis
+         *
+         * @param notFoundExpireAfterWriteMillis the notFoundExpireAfterWriteMillis of the Cache
+         */
+        public void setNotFoundExpireAfterWriteMillis(long notFoundExpireAfterWriteMillis) {
+            this.notFoundExpireAfterWriteMillis = notFoundExpireAfterWriteMillis;
+        }
+
+        /**
+         * Gets lastKnownMaxEntries
+         *
+         * @return the lastKnownMaxEntries
+         */
+        public long getLastKnownMaxEntries() {
+            return lastKnownMaxEntries;
+        }
+
+        /**
+         * Sets lastKnownMaxEntries
+         *
+         * @param lastKnownMaxEntries the lastKnownMaxEntries of the Cache
+         */
+        public void setLastKnownMaxEntries(long lastKnownMaxEntries) {
+            this.lastKnownMaxEntries = lastKnownMaxEntries;
+        }
+    }
+
+    public static class Client {
+
+        /** The scheme, host and port of the product name resource */
+        private String baseUrl = "http://redsky.target.com";
+
+        /** The maximum number of pooled connections to the product name resource */
+        private int maxConnectionsPerRoute = 50;
+
+        /** The maximum number of pooled connections in total */
+        private int maxConnectionsTotal = 100;
+
+        /** How long to wait to establish a connection, in milliseconds */
+        private int connectTimeoutMillis = 1000;
+
+        /** How long to wait for data on an established connection, in milliseconds */
+        private int readTimeoutMillis = 2000;
+
+        /** How long to wait for a connection from the pool, in milliseconds */
+        private int connectionRequestTimeoutMillis = 500;
+
+        /** How long an idle connection is kept open when the server does not say, in milliseconds */
+        private long keepAliveMillis = 30000;
+
+        /**
+         * Gets baseUrl
+         *
+         * @return the baseUrl
+         */
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * Sets baseUrl
+         *
+         * @param baseUrl the baseUrl of the Client
+         */
+        public void setBaseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        /**
+         * Gets maxConnectionsPerRoute
+         *
+         * @return the maxConnectionsPerRoute
+         */
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        /**
+         * Sets maxConnectionsPerRoute
+         *
+         * @param maxConnectionsPerRoute the maxConnectionsPerRoute of the Client
+         */
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        /**
+         * Gets maxConnectionsTotal
+         *
+         * @return the maxConnectionsTotal
+         */
+        public int getMaxConnectionsTotal() {
+            return maxConnectionsTotal;
+        }
+
+        /**
+         * Sets maxConnectionsTotal
+         *
+         * @param maxConnectionsTotal the maxConnectionsTotal of the Client
+         */
+        public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+            this.maxConnectionsTotal = maxConnectionsTotal;
+        }
+
+        /**
+         * Gets connectTimeoutMillis
+         *
+         * @return the connectTimeoutMillis
+         */
+        public int getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        /**
+         * Sets connectTimeoutMillis
+         *
+         * @param connectTimeoutMillis the connectTimeoutMillis of the Client
+         */
+        public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+        }
+
+        /**
+         * Gets readTimeoutMillis
+         *
+         * @return the readTimeoutMillis
+         */
+        public int getReadTimeoutMillis() {
+            return readTimeoutMillis;
+        }
+
+        /**
+         * Sets readTimeoutMillis
+         *
+         * @param readTimeoutMillis the readTimeoutMillis of the Client
+         */
+        public void setReadTimeoutMillis(int readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+        }
+
+        /**
+         * Gets connectionRequestTimeoutMillis
+         *
+         * @return the connectionRequestTimeoutMillis
+         */
+        public int getConnectionRequestTimeoutMillis() {
+            return connectionRequestTimeoutMillis;
+        }
+
+        /**
+         * Sets connectionRequestTimeoutMillis
+         *
+         * @param connectionRequestTimeoutMillis the connectionRequestTimeoutMillis of the Client
+         */
+        public void setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+            this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+        }
+
+        /**
+         * Gets keepAliveMillis
+         *
+         * @return the keepAliveMillis
+         */
+        public long getKeepAliveMillis() {
+            return keepAliveMillis;
+        }
+
+        /**
+         * Sets keepAliveMillis
+         *
+         * @param keepAliveMillis the keepAliveMillis of the Client
+         */
+        public void setKeepAliveMillis(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+        }
+    }
+
+    public static class Breaker {
+
+        /** The number of most recent calls the failure rate is computed over */
+        private int windowSize = 100;
+
+        /** The number of calls in the window before the circuit may open */
+        private int minimumCalls = 20;
+
+        /** The percentage of failed or slow calls in the window that opens the circuit */
+        private int failureRatePercent = 50;
+
+        /** A call slower than this counts as failed, in milliseconds */
+        private long slowCallMillis = 1000;
+
+        /** How long the circuit stays open before trial calls are let through, in milliseconds */
+        private long openMillis = 10000;
+
+        /** The number of trial calls that must all succeed to close the circuit again */
+        private int halfOpenCalls = 5;
+
+        /**
+         * Gets windowSize
+         *
+         * @return the windowSize
+         */
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        /**
+         * Sets windowSize
+         *
+         * @param windowSize the windowSize of the Breaker
+         */
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        /**
+         * Gets minimumCalls
+         *
+         * @return the minimumCalls
+         */
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        /**
+         * Sets minimumCalls
+         *
+         * @param minimumCalls the minimumCalls of the Breaker
+         */
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        /**
+         * Gets failureRatePercent
+         *
+         * @return the failureRatePercent
+         */
+        public int getFailureRatePercent() {
+            return failureRatePercent;
+        }
+
+        /**
+         * Sets failureRatePercent
+         *
+         * @param failureRatePercent the failureRatePercent of the Breaker
+         */
+        public void setFailureRatePercent(int failureRatePercent) {
+            this.failureRatePercent = failureRatePercent;
+        }
+
+        /**
+         * Gets slowCallMillis
+         *
+         * @return the slowCallMillis
+         */
+        public long getSlowCallMillis() {
+            return slowCallMillis;
+        }
+
+        /**
+         * Sets slowCallMillis
+         *
+         * @param slowCallMillis the slowCallMillis of the Breaker
+         */
+        public void setSlowCallMillis(long slowCallMillis) {
+            this.slowCallMillis = slowCallMillis;
+        }
+
+        /**
+         * Gets openMillis
+         *
+         * @return the openMillis
+         */
+        public long getOpenMillis() {
+            return openMillis;
+        }
+
+        /**
+         * Sets openMillis
+         *
+         * @param openMillis the openMillis of the Breaker
+         */
+        public void setOpenMillis(long openMillis) {
+            this.openMillis = openMillis;
+        }
+
+        /**
+         * Gets halfOpenCalls
+         *
+         * @return the halfOpenCalls
+         */
+        public int getHalfOpenCalls() {
+            return halfOpenCalls;
+        }
+
+        /**
+         * Sets halfOpenCalls
+         *
+         * @param halfOpenCalls the halfOpenCalls of the Breaker
+         */
+        public void setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+        }
+    }
+
+    public static class Bulkhead {
+
+        /** The maximum number of calls in flight, beyond which calls are rejected instead of waiting */
+        private int maxConcurrentCalls = 32;
+
+        /**
+         * Gets maxConcurrentCalls
+         *
+         * @return the maxConcurrentCalls
+         */
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        /**
+         * Sets maxConcurrentCalls
+         *
+         * @param maxConcurrentCalls the maxConcurrentCalls of the Bulkhead
+         */
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+    }
+
+    public static class Hedge {
+
+        /** Whether a second call is sent when the first is slower than the percentile below */
+        private boolean enabled = false;
+
+        /** The percentile of recent call latencies after which the second call is sent */
+        private double percentile = 95.0;
+
+        /** The number of most recent call latencies the percentile is computed over */
+        private int windowSize = 1000;
+
+        /** The number of latencies in the window before calls are hedged */
+        private int minimumCalls = 100;
+
+        /**
+         * Gets enabled
+         *
+         * @return the enabled
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets enabled
+         *
+         * @param enabled the enabled of the Hedge
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Gets percentile
+         *
+         * @return the percentile
+         */
+        public double getPercentile() {
+            return percentile;
+        }
+
+        /**
+         * Sets percentile
+         *
+         * @param percentile the percentile of the Hedge
+         */
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        /**
+         * Gets windowSize
+         *
+         * @return the windowSize
+         */
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        /**
+         * Sets windowSize
+         *
+         * @param windowSize the windowSize of the Hedge
+         */
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        /**
+         * Gets minimumCalls
+         *
+         * @return the minimumCalls
+         */
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        /**
+         * Sets minimumCalls
+         *
+         * @param minimumCalls the minimumCalls of the Hedge
+         */
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+    }
+
+    public static class Store {
+
+        /** Whether names are stored with the current prices and read from there instead of the product name resource */
+        private boolean enabled = false;
+
+        /** The age after which a stored name is served while it is fetched again in the background */
+        private long staleAfterMillis = 3600000;
+
+        /**
+         * Gets enabled
+         *
+         * @return the enabled
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets enabled
+         *
+         * @param enabled the enabled of the Store
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Gets staleAfterMillis
+         *
+         * @return the staleAfterMillis
+         */
+        public long getStaleAfterMillis() {
+            return staleAfterMillis;
+        }
+
+        /**
+         * Sets staleAfterMillis
+         *
+         * @param staleAfterMillis the staleAfterMillis of the Store
+         */
+        public void setStaleAfterMillis(long staleAfterMillis) {
+            this.staleAfterMillis = staleAfterMillis;
+        }
+    }
+
+    public static class Warmup {
+
+        /** Whether the names of the catalog are loaded at startup, before the instance reports it is up */
+        private boolean enabled = false;
+
+        /** The most names loaded per second */
+        private double ratePerSecond = 100.0;
+
+        /** The most names loaded at once */
+        private int concurrency = 8;
+
+        /** The most time spent loading names, after which startup goes on with the names loaded so far */
+        private long budgetMillis = 60000;
+
+        /** The number of ids read from the datastore at a time */
+        private int pageSize = 1000;
+
+        /**
+         * Gets enabled
+         *
+         * @return the enabled
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets enabled
+         *
+         * @param enabled the enabled of the Warmup
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Gets ratePerSecond
+         *
+         * @return the ratePerSecond
+         */
+        public double getRatePerSecond() {
+            return ratePerSecond;
+        }
+
+        /**
+         * Sets ratePerSecond
+         *
+         * @param ratePerSecond the ratePerSecond of the Warmup
+         */
+        public void setRatePerSecond(double ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        /**
+         * Gets concurrency
+         *
+         * @return the concurrency
+         */
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * Sets concurrency
+         *
+         * @param concurrency the concurrency of the Warmup
+         */
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        /**
+         * Gets budgetMillis
+         *
+         * @return the budgetMillis
+         */
+        public long getBudgetMillis() {
+            return budgetMillis;
+        }
+
+        /**
+         * Sets budgetMillis
+         *
+         * @param budgetMillis the budgetMillis of the Warmup
+         */
+        public void setBudgetMillis(long budgetMillis) {
+            this.budgetMillis = budgetMillis;
+        }
+
+        /**
+         * Gets pageSize
+         *
+         * @return the pageSize
+         */
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        /**
+         * Sets pageSize
+         *
+         * @param pageSize the pageSize of the Warmup
+         */
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+    }
+
+    public static class Refresh {
+
+        /** Whether cached names are refreshed in the background before they expire */
+        private boolean enabled = false;
+
+        /** The time between looks for names about to expire */
+        private long intervalMillis = 60000;
+
+        /** How long before expiry a name is refreshed */
+        private long aheadMillis = 3600000;
+
+        /** The most names refreshed per second */
+        private double ratePerSecond = 20.0;
+
+        /**
+         * Gets enabled
+         *
+         * @return the enabled
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets enabled
+         *
+         * @param enabled the enabled of the Refresh
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Gets intervalMillis
+         *
+         * @return the intervalMillis
+         */
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        /**
+         * Sets intervalMillis
+         *
+         * @param intervalMillis the intervalMillis of the Refresh
+         */
+        public void setIntervalMillis(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        /**
+         * Gets aheadMillis
+         *
+         * @return the aheadMillis
+         */
+        public long getAheadMillis() {
+            return aheadMillis;
+        }
+
+        /**
+         * Sets aheadMillis
+         *
+         * @param aheadMillis the aheadMillis of the Refresh
+         */
+        public void setAheadMillis(long aheadMillis) {
+            this.aheadMillis = aheadMillis;
+        }
+
+        /**
+         * Gets ratePerSecond
+         *
+         * @return the ratePerSecond
+         */
+        public double getRatePerSecond() {
+            return ratePerSecond;
+        }
+
+        /**
+         * Sets ratePerSecond
+         *
+         * @param ratePerSecond the ratePerSecond of the Refresh
+         */
+        public void setRatePerSecond(double ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+        }
+    }
+}
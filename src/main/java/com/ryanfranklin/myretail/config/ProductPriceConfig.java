@@ -0,0 +1,48 @@
+package com.ryanfranklin.myretail.config;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.MongoClientOptions;
+import com.ryanfranklin.myretail.metrics.DatastoreCommandListener;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties(ProductPriceProperties.class)
+public class ProductPriceConfig {
+
+    /**
+     * Creates the executor that runs price lookups alongside name lookups. When the queue is full the lookup runs on
+     * the calling thread.
+     *
+     * @param properties the product price settings, not null
+     * @return the executor for price lookups, not null
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService productPriceExecutor(ProductPriceProperties properties) {
+
+        ProductPriceProperties.Lookup lookup = properties.getLookup();
+        return new ThreadPoolExecutor(lookup.getPoolSize(), lookup.getPoolSize(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(lookup.getQueueCapacity()),
+                new ThreadFactoryBuilder().setNameFormat("product-price-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Creates the options of the Mongo client, with the default settings and every command timed in the pipeline
+     * metrics.
+     *
+     * @param pipelineMetrics the metrics to record the commands in, not null
+     * @return the Mongo client options, not null
+     */
+    @Bean
+    public MongoClientOptions mongoClientOptions(ProductPipelineMetrics pipelineMetrics) {
+        return MongoClientOptions.builder().addCommandListener(new DatastoreCommandListener(pipelineMetrics)).build();
+    }
+}
@@ -0,0 +1,592 @@
+package com.ryanfranklin.myretail.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for reading and writing product prices, bound from the {@code myretail.product-price} properties.
+ */
+@ConfigurationProperties(prefix = "myretail.product-price")
+public class ProductPriceProperties {
+
+    /** Settings for concurrent price lookups */
+    private final Lookup lookup = new Lookup();
+
+    /** Settings for bulk price updates */
+    private final Bulk bulk = new Bulk();
+
+    /** Settings for the migration of prices written before minor units existed */
+    private final Migration migration = new Migration();
+
+    /** Settings for the version of the whole catalog */
+    private final Catalog catalog = new Catalog();
+
+    /** Settings for the stream of price changes */
+    private final Changes changes = new Changes();
+
+    /** Settings for the compact snapshot of the catalog */
+    private final Snapshot snapshot = new Snapshot();
+
+    /** Settings for the cache of products serialized as json */
+    private final JsonCache jsonCache = new JsonCache();
+
+    /** Settings for the filter of known product ids */
+    private final IdFilter idFilter = new IdFilter();
+
+    /**
+     * Gets lookup
+     *
+     * @return the lookup settings
+     */
+    public Lookup getLookup() {
+        return lookup;
+    }
+
+    /**
+     * Gets bulk
+     *
+     * @return the bulk settings
+     */
+    public Bulk getBulk() {
+        return bulk;
+    }
+
+    /**
+     * Gets migration
+     *
+     * @return the migration settings
+     */
+    public Migration getMigration() {
+        return migration;
+    }
+
+    /**
+     * Gets catalog
+     *
+     * @return the catalog settings
+     */
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Gets changes
+     *
+     * @return the price change stream settings
+     */
+    public Changes getChanges() {
+        return changes;
+    }
+
+    /**
+     * Gets snapshot
+     *
+     * @return the catalog snapshot settings
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets jsonCache
+     *
+     * @return the json cache settings
+     */
+    public JsonCache getJsonCache() {
+        return jsonCache;
+    }
+
+    /**
+     * Gets idFilter
+     *
+     * @return the id filter settings
+     */
+    public IdFilter getIdFilter() {
+        return idFilter;
+    }
+
+    public static class Lookup {
+
+        /** The number of threads dedicated to price lookups */
+        private int poolSize = 32;
+
+        /** The number of lookups waiting for a thread before callers run them on their own thread */
+        private int queueCapacity = 1000;
+
+        /**
+         * Gets poolSize
+         *
+         * @return the poolSize
+         */
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        /**
+         * Sets poolSize
+         *
+         * @param poolSize the poolSize of the Lookup
+         */
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        /**
+         * Gets queueCapacity
+         *
+         * @return the queueCapacity
+         */
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        /**
+         * Sets queueCapacity
+         *
+         * @param queueCapacity the queueCapacity of the Lookup
+         */
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class Bulk {
+
+        /** The number of price updates sent to the datastore in one bulk write */
+        private int chunkSize = 1000;
+
+        /**
+         * Gets chunkSize
+         *
+         * @return the chunkSize
+         */
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        /**
+         * Sets chunkSize
+         *
+         * @param chunkSize the chunkSize of the Bulk
+         */
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+    }
+
+    public static class Migration {
+
+        /** Whether to backfill the minor units of existing prices at startup */
+        private boolean enabled = false;
+
+        /** The number of prices read and written at a time */
+        private int batchSize = 1000;
+
+        /**
+         * Gets enabled
+         *
+         * @return the enabled
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets enabled
+         *
+         * @param enabled the enabled of the Migration
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Gets batchSize
+         *
+         * @return the batchSize
+         */
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        /**
+         * Sets batchSize
+         *
+         * @param batchSize the batchSize of the Migration
+         */
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class Catalog {
+
+        /** How long a computed catalog version is reused before it is computed again, 0 to compute it every time */
+        private long versionTtlMillis = 1000;
+
+        /**
+         * Gets versionTtlMillis
+         *
+         * @return the versionTtlMillis
+         */
+        public long getVersionTtlMillis() {
+            return versionTtlMillis;
+        }
+
+        /**
+         * Sets versionTtlMillis
+         *
+         * @param versionTtlMillis the versionTtlMillis of the Catalog
+         */
+        public void setVersionTtlMillis(long versionTtlMillis) {
+            this.versionTtlMillis = versionTtlMillis;
+        }
+    }
+
+    public static class Changes {
+
+        /** The number of most recent price changes kept, and so how far behind a subscriber may fall */
+        private int bufferSize = 10000;
+
+        /** The largest number of subscribers streaming at once */
+        private int maxSubscribers = 100;
+
+        /** The number of threads sending heartbeats and price changes to subscribers in this process */
+        private int poolSize = 4;
+
+        /** How long a send to a remote subscriber may take before the subscriber is dropped as stalled */
+        private long sendTimeoutMillis = 10000;
+
+        /** How often an idle subscriber is sent a comment, to keep the connection open and find closed ones */
+        private long heartbeatMillis = 15000;
+
+        /** How long a subscriber streams before the stream is closed and the subscriber reconnects */
+        private long timeoutMillis = 3600000;
+
+        /**
+         * Gets bufferSize
+         *
+         * @return the bufferSize
+         */
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        /**
+         * Sets bufferSize
+         *
+         * @param bufferSize the bufferSize of the Changes
+         */
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        /**
+         * Gets maxSubscribers
+         *
+         * @return the maxSubscribers
+         */
+        public int getMaxSubscribers() {
+            return maxSubscribers;
+        }
+
+        /**
+         * Sets maxSubscribers
+         *
+         * @param maxSubscribers the maxSubscribers of the Changes
+         */
+        public void setMaxSubscribers(int maxSubscribers) {
+            this.maxSubscribers = maxSubscribers;
+        }
+
+        /**
+         * Gets poolSize
+         *
+         * @return the poolSize
+         */
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        /**
+         * Sets poolSize
+         *
+         * @param poolSize the poolSize of the Changes
+         */
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        /**
+         * Gets sendTimeoutMillis
+         *
+         * @return the sendTimeoutMillis
+         */
+        public long getSendTimeoutMillis() {
+            return sendTimeoutMillis;
+        }
+
+        /**
+         * Sets sendTimeoutMillis
+         *
+         * @param sendTimeoutMillis the sendTimeoutMillis of the Changes
+         */
+        public void setSendTimeoutMillis(long sendTimeoutMillis) {
+            this.sendTimeoutMillis = sendTimeoutMillis;
+        }
+
+        /**
+         * Gets heartbeatMillis
+         *
+         * @return the heartbeatMillis
+         */
+        public long getHeartbeatMillis() {
+            return heartbeatMillis;
+        }
+
+        /**
+         * Sets heartbeatMillis
+         *
+         * @param heartbeatMillis the heartbeatMillis of the Changes
+         */
+        public void setHeartbeatMillis(long heartbeatMillis) {
+            this.heartbeatMillis = heartbeatMillis;
+        }
+
+        /**
+         * Gets timeoutMillis
+         *
+         * @return the timeoutMillis
+         */
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        /**
+         * Sets timeoutMillis
+         *
+         * @param timeoutMillis the timeoutMillis of the Changes
+         */
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+
+    public static class Snapshot {
+
+        /** Whether pages of the catalog are written from a compact snapshot instead of the datastore */
+        private boolean enabled = false;
+
+        /** How often the snapshot is built again, picking up new products and names */
+        private long rebuildMillis = 600000;
+
+        /** The number of products read at once while building the snapshot */
+        private int pageSize = 1000;
+
+        /** How often the number of products is compared with the snapshot, which is built again when they differ */
+        private long checkMillis = 10000;
+
+        /**
+         * Gets enabled
+         *
+         * @return the enabled
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets enabled
+         *
+         * @param enabled the enabled of the Snapshot
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Gets rebuildMillis
+         *
+         * @return the rebuildMillis
+         */
+        public long getRebuildMillis() {
+            return rebuildMillis;
+        }
+
+        /**
+         * Sets rebuildMillis
+         *
+         * @param rebuildMillis the rebuildMillis of the Snapshot
+         */
+        public void setRebuildMillis(long rebuildMillis) {
+            this.rebuildMillis = rebuildMillis;
+        }
+
+        /**
+         * Gets pageSize
+         *
+         * @return the pageSize
+         */
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        /**
+         * Sets pageSize
+         *
+         * @param pageSize the pageSize of the Snapshot
+         */
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * Gets checkMillis
+         *
+         * @return the checkMillis
+         */
+        public long getCheckMillis() {
+            return checkMillis;
+        }
+
+        /**
+         * Sets checkMillis
+         *
+         * @param checkMillis the checkMillis of the Snapshot
+         */
+        public void setCheckMillis(long checkMillis) {
+            this.checkMillis = checkMillis;
+        }
+    }
+
+    public static class JsonCache {
+
+        /** Whether products are written from json cached by id, price version and name */
+        private boolean enabled = true;
+
+        /** The most bytes of json cached */
+        private long maxBytes = 67108864;
+
+        /**
+         * Gets enabled
+         *
+         * @return the enabled
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets enabled
+         *
+         * @param enabled the enabled of the JsonCache
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Gets maxBytes
+         *
+         * @return the maxBytes
+         */
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        /**
+         * Sets maxBytes
+         *
+         * @param maxBytes the maxBytes of the JsonCache
+         */
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    public static class IdFilter {
+
+        /** Whether lookups of ids the filter of known ids has never seen fail without reading anything */
+        private boolean enabled = false;
+
+        /** The share of unknown ids the filter may take for known ones */
+        private double falsePositiveRate = 0.01;
+
+        /** How often the filter is built again, picking up products added outside the service */
+        private long rebuildMillis = 300000;
+
+        /** The number of ids read at once while building the filter */
+        private int pageSize = 10000;
+
+        /**
+         * Gets enabled
+         *
+         * @return the enabled
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets enabled
+         *
+         * @param enabled the enabled of the IdFilter
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Gets falsePositiveRate
+         *
+         * @return the falsePositiveRate
+         */
+        public double getFalsePositiveRate() {
+            return falsePositiveRate;
+        }
+
+        /**
+         * Sets falsePositiveRate
+         *
+         * @param falsePositiveRate the falsePositiveRate of the IdFilter
+         */
+        public void setFalsePositiveRate(double falsePositiveRate) {
+            this.falsePositiveRate = falsePositiveRate;
+        }
+
+        /**
+         * Gets rebuildMillis
+         *
+         * @return the rebuildMillis
+         */
+        public long getRebuildMillis() {
+            return rebuildMillis;
+        }
+
+        /**
+         * Sets rebuildMillis
+         *
+         * @param rebuildMillis the rebuildMillis of the IdFilter
+         */
+        public void setRebuildMillis(long rebuildMillis) {
+            this.rebuildMillis = rebuildMillis;
+        }
+
+        /**
+         * Gets pageSize
+         *
+         * @return the pageSize
+         */
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        /**
+         * Sets pageSize
+         *
+         * @param pageSize the pageSize of the IdFilter
+         */
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.ryanfranklin.myretail.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.ryanfranklin.myretail.controller.ProductAdmissionInterceptor;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+@Configuration
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class WebConfig extends WebMvcConfigurerAdapter {
+
+    @Value("${myretail.web.async.pool-size:16}")
+    private int asyncPoolSize;
+
+    @Value("${myretail.web.async.queue-capacity:100}")
+    private int asyncQueueCapacity;
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Autowired
+    private ProductPipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private ProductAdmissionInterceptor productAdmissionInterceptor;
+
+    /**
+     * Creates the executor that writes streamed responses, instead of a new thread per streamed request.
+     *
+     * @return the executor for streamed responses, not null
+     */
+    @Bean
+    public ThreadPoolTaskExecutor webAsyncExecutor() {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(asyncPoolSize);
+        executor.setMaxPoolSize(asyncPoolSize);
+        executor.setQueueCapacity(asyncQueueCapacity);
+        executor.setThreadNamePrefix("web-async-");
+        return executor;
+    }
+
+    /**
+     * Creates the converter that writes json response bodies, timing each write as the
+     * {@link ProductPipelineMetrics.Stage#SERIALIZE} stage.
+     *
+     * @param objectMapper the object mapper of the application, not null
+     * @param pipelineMetrics the metrics to record the writes in, not null
+     * @return the json message converter, not null
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(
+            ObjectMapper objectMapper, ProductPipelineMetrics pipelineMetrics) {
+
+        return new MappingJackson2HttpMessageConverter(objectMapper) {
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+                timeWrite(pipelineMetrics, () -> super.writeInternal(object, type, outputMessage));
+            }
+        };
+    }
+
+    /**
+     * Writes a response body.
+     */
+    @FunctionalInterface
+    private interface Write {
+        void write() throws IOException;
+    }
+
+    private static void timeWrite(ProductPipelineMetrics pipelineMetrics, Write write) throws IOException {
+
+        long start = pipelineMetrics.begin(ProductPipelineMetrics.Stage.SERIALIZE);
+        try {
+            write.write();
+            pipelineMetrics.end(ProductPipelineMetrics.Stage.SERIALIZE, start);
+        } catch (IOException | RuntimeException | Error e) {
+            pipelineMetrics.fail(ProductPipelineMetrics.Stage.SERIALIZE, start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(webAsyncExecutor());
+    }
+
+    /**
+     * Puts admission control in front of the product API. The stream of price changes is left out, since its
+     * requests stay open for as long as the client listens.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(productAdmissionInterceptor)
+                .addPathPatterns("/products/**")
+                .excludePathPatterns("/products/prices/changes");
+    }
+
+    /**
+     * Adds a converter that writes response bodies as Smile, a binary encoding of the same json, for clients that
+     * accept {@code application/x-jackson-smile}. It is added after the json converter, so json is still written for
+     * {@code Accept: *}{@code /*}, and it is not a bean, so the rest templates built by Spring Boot do not ask for
+     * Smile. Its object mapper has the same settings as the json one, and each write is timed as the
+     * {@link ProductPipelineMetrics.Stage#SERIALIZE} stage.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+
+        ObjectMapper smileObjectMapper = new ObjectMapper(new SmileFactory());
+        objectMapperBuilder.configure(smileObjectMapper);
+        converters.add(new SmileHttpMessageConverter(smileObjectMapper) {
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+                timeWrite(pipelineMetrics, () -> super.writeInternal(object, type, outputMessage));
+            }
+        });
+    }
+}
@@ -0,0 +1,164 @@
+package com.ryanfranklin.myretail.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A limit of the requests in flight that adapts to their latency. The latencies of each window of completed requests
+ * are averaged and compared with the usual latency, the lowest average seen, which slowly follows higher averages so
+ * a lasting change of the dependencies does not keep the limit low. When the average is more than {@code tolerance}
+ * times the usual latency the limit is multiplied by {@code backoffRatio}, and otherwise it grows by one if at least
+ * half of it was used, so the limit settles where latency starts to rise.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The share of the distance to a higher average the usual latency moves by each window **/
+    private static final double BASELINE_DRIFT = 0.05;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int windowSize;
+    private final double tolerance;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight;
+
+    private int windowCount;
+    private long windowNanos;
+    private int windowMaxInFlight;
+    private long baselineNanos = -1;
+
+    private long admittedCount;
+    private long shedCount;
+
+    /**
+     * Constructs an AdaptiveConcurrencyLimit.
+     * @param name the name of the endpoint, used in logs and metrics, not null
+     * @param initialLimit the limit to start with
+     * @param minLimit the lowest limit
+     * @param maxLimit the highest limit
+     * @param windowSize the number of completed requests whose average latency decides each change of the limit
+     * @param tolerance how many times the usual latency the average may be before the limit is lowered
+     * @param backoffRatio the ratio the limit is multiplied by when the latency is too high, between 0 and 1
+     */
+    public AdaptiveConcurrencyLimit(String name, int initialLimit, int minLimit, int maxLimit, int windowSize,
+                                    double tolerance, double backoffRatio) {
+
+        checkArgument(minLimit > 0 && minLimit <= maxLimit && windowSize > 0 && tolerance >= 1);
+        checkArgument(backoffRatio > 0 && backoffRatio < 1);
+
+        this.name = checkNotNull(name);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowSize = windowSize;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+    }
+
+    /**
+     * Asks to admit a request. Every admitted request must be followed by {@link #release(long)}.
+     * @return whether the request may go on, or false if as many requests as the limit are in flight
+     */
+    public synchronized boolean tryAcquire() {
+
+        if (inFlight >= (int) limit) {
+            shedCount++;
+            return false;
+        }
+        inFlight++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        admittedCount++;
+        return true;
+    }
+
+    /**
+     * Records the completion of an admitted request, and changes the limit at the end of a window.
+     * @param latencyNanos how long the request took, in nanoseconds
+     */
+    public synchronized void release(long latencyNanos) {
+
+        inFlight--;
+        windowNanos += latencyNanos;
+        if (++windowCount < windowSize) {
+            return;
+        }
+
+        long average = windowNanos / windowCount;
+        if (baselineNanos >= 0) {
+            if (average > tolerance * baselineNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                logger.debug("Limit of {} lowered to {} at an average latency of {}ns", name, (int) limit, average);
+            } else if (windowMaxInFlight * 2 >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+        baselineNanos = baselineNanos < 0 || average < baselineNanos
+                ? average
+                : baselineNanos + (long) ((average - baselineNanos) * BASELINE_DRIFT);
+        windowCount = 0;
+        windowNanos = 0;
+        windowMaxInFlight = inFlight;
+    }
+
+    /**
+     * Gets name
+     *
+     * @return the name of the endpoint
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets limit
+     *
+     * @return the number of requests that may be in flight
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Gets inFlight
+     *
+     * @return the number of admitted requests not yet released
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets baselineLatencyNanos
+     *
+     * @return the usual latency the average latency is compared with, in nanoseconds, or -1 before the first window
+     */
+    public synchronized long getBaselineLatencyNanos() {
+        return baselineNanos;
+    }
+
+    /**
+     * Gets admittedCount
+     *
+     * @return the number of requests admitted
+     */
+    public synchronized long getAdmittedCount() {
+        return admittedCount;
+    }
+
+    /**
+     * Gets shedCount
+     *
+     * @return the number of requests turned away because the limit was reached
+     */
+    public synchronized long getShedCount() {
+        return shedCount;
+    }
+}
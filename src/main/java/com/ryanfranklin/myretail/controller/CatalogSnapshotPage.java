@@ -0,0 +1,59 @@
+package com.ryanfranklin.myretail.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.ryanfranklin.myretail.model.ProductPage;
+import com.ryanfranklin.myretail.repository.CatalogSnapshot;
+
+import java.io.IOException;
+
+/**
+ * A page of products written from the {@link CatalogSnapshot} while the response body is written, in the same json as
+ * a {@link ProductPage}, so the products of the page are never held as objects.
+ */
+final class CatalogSnapshotPage extends JsonSerializable.Base {
+
+    /**
+     * Writes the products of a page.
+     */
+    @FunctionalInterface
+    interface ProductsWriter {
+
+        /**
+         * Writes the products of the page to {@code generator}.
+         * @return the cursor to the next page, or {@code null} for the last page
+         */
+        String write(JsonGenerator generator) throws IOException;
+    }
+
+    private final ProductsWriter productsWriter;
+
+    /**
+     * Constructs a CatalogSnapshotPage.
+     * @param productsWriter writes the products of the page, not null
+     */
+    CatalogSnapshotPage(ProductsWriter productsWriter) {
+        this.productsWriter = productsWriter;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("products");
+        String nextCursor = productsWriter.write(generator);
+        generator.writeEndArray();
+        if (nextCursor != null) {
+            generator.writeStringField("nextCursor", nextCursor);
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer)
+            throws IOException {
+        serialize(generator, serializers);
+    }
+}
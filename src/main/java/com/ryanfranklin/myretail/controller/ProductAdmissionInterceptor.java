@@ -0,0 +1,207 @@
+package com.ryanfranklin.myretail.controller;
+
+import com.google.common.base.CaseFormat;
+import com.google.common.base.Ticker;
+import com.ryanfranklin.myretail.config.AdmissionProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admits requests to the product API only while their endpoint has fewer requests in flight than its
+ * {@link AdaptiveConcurrencyLimit}, and otherwise answers 503 with a Retry-After header at once, so that when Mongo or
+ * redsky degrade a few clients are turned away quickly instead of every client waiting in Tomcat's queue. Each endpoint
+ * has its own limit, so list scans can never take the permits of price updates, and the limits of endpoints that
+ * update prices never drop below {@link AdmissionProperties#getUpdateMinLimit()}. Requests in flight across every
+ * endpoint are also kept under {@link AdmissionProperties#getOverallLimit()}, whose last
+ * {@link AdmissionProperties#getUpdateReserve()} permits only endpoints that update prices may take, so the reads of
+ * many endpoints together can neither exceed what the server can serve nor crowd out price updates. A streamed
+ * response holds its permits until it is written.
+ */
+@Component
+public class ProductAdmissionInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String PERMIT_ATTRIBUTE = ProductAdmissionInterceptor.class.getName() + ".permit";
+
+    @Autowired
+    private AdmissionProperties admissionProperties;
+
+    private final ConcurrentMap<String, AdaptiveConcurrencyLimit> limits = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder overallShedCount = new LongAdder();
+
+    private Ticker ticker = Ticker.systemTicker();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+
+        if (!admissionProperties.isEnabled() || !(handler instanceof HandlerMethod)
+                || request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            return true;
+        }
+
+        boolean update = isUpdate(request);
+        if (!tryAcquireOverall(update)) {
+            overallShedCount.increment();
+            shed(response);
+            return false;
+        }
+        AdaptiveConcurrencyLimit limit = limits.computeIfAbsent(endpoint((HandlerMethod) handler),
+                endpoint -> newLimit(endpoint, update));
+        if (!limit.tryAcquire()) {
+            inFlight.decrementAndGet();
+            shed(response);
+            return false;
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, new Permit(limit, ticker.read()));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+
+        Permit permit = (Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            request.getAsyncContext().addListener(permit);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+
+        Permit permit = (Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    /**
+     * Gets limits
+     *
+     * @return the limits of the endpoints that have been called, not null
+     */
+    public Collection<AdaptiveConcurrencyLimit> getLimits() {
+        return new ArrayList<>(limits.values());
+    }
+
+    /**
+     * Gets the requests in flight across every endpoint.
+     * @return the admitted requests that have not completed
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Gets the number of requests shed because of the overall limit.
+     * @return the requests shed while the overall limit was reached
+     */
+    public long getOverallShedCount() {
+        return overallShedCount.sum();
+    }
+
+    /**
+     * Takes a permit of the overall limit, leaving the update reserve to requests that update prices.
+     * @param update whether the request updates prices
+     * @return whether a permit was taken
+     */
+    private boolean tryAcquireOverall(boolean update) {
+
+        int limit = update
+                ? admissionProperties.getOverallLimit()
+                : admissionProperties.getOverallLimit() - admissionProperties.getUpdateReserve();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void shed(HttpServletResponse response) {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(admissionProperties.getRetryAfterSeconds()));
+    }
+
+    private static String endpoint(HandlerMethod handlerMethod) {
+        return CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_HYPHEN, handlerMethod.getMethod().getName());
+    }
+
+    private static boolean isUpdate(HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod());
+    }
+
+    private AdaptiveConcurrencyLimit newLimit(String endpoint, boolean update) {
+
+        int minLimit = update
+                ? Math.max(admissionProperties.getMinLimit(), admissionProperties.getUpdateMinLimit())
+                : admissionProperties.getMinLimit();
+        int maxLimit = Math.max(minLimit, admissionProperties.getMaxLimit());
+        return new AdaptiveConcurrencyLimit(endpoint, admissionProperties.getInitialLimit(), minLimit, maxLimit,
+                admissionProperties.getWindowSize(), admissionProperties.getTolerance(),
+                admissionProperties.getBackoffRatio());
+    }
+
+    /**
+     * A permit of an admitted request, released once when the request completes, on the request thread or, for an
+     * asynchronous request, when its response is complete.
+     */
+    private final class Permit implements AsyncListener {
+
+        private final AdaptiveConcurrencyLimit limit;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(AdaptiveConcurrencyLimit limit, long startNanos) {
+            this.limit = limit;
+            this.startNanos = startNanos;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                limit.release(ticker.read() - startNanos);
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -1,40 +1,463 @@
 package com.ryanfranklin.myretail.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import com.ryanfranklin.myretail.config.SmileHttpMessageConverter;
+import com.ryanfranklin.myretail.exception.BadRequestException;
+import com.ryanfranklin.myretail.model.PriceAmounts;
+import com.ryanfranklin.myretail.model.PriceChange;
+import com.ryanfranklin.myretail.model.PricePosition;
+import com.ryanfranklin.myretail.model.PriceUpdate;
+import com.ryanfranklin.myretail.model.PriceUpdateResult;
 import com.ryanfranklin.myretail.model.Product;
+import com.ryanfranklin.myretail.model.ProductBatch;
+import com.ryanfranklin.myretail.model.ProductFields;
+import com.ryanfranklin.myretail.model.ProductPage;
+import com.ryanfranklin.myretail.repository.CatalogSnapshot;
+import com.ryanfranklin.myretail.repository.PriceChangeStream;
 import com.ryanfranklin.myretail.repository.ProductImplRepository;
+import com.ryanfranklin.myretail.repository.ProductJsonCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/products")
 public class ProductController {
 
+    /** The number of products in a page when no limit is requested **/
+    static final int DEFAULT_PAGE_LIMIT = 100;
+
+    /** The largest number of products a page may have, also used to read the catalog when streaming it **/
+    static final int MAX_PAGE_LIMIT = 1000;
+
+    /** The media type of newline delimited json **/
+    static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+
+    /** The largest number of ids that may be requested at once **/
+    static final int MAX_BATCH_SIZE = 1000;
+
+    /** The header a reconnecting event stream client sends the id of the last event it received in **/
+    static final String HEADER_LAST_EVENT_ID = "Last-Event-ID";
+
+    /** The names of the price change stream events **/
+    static final String EVENT_PRICE_CHANGE = "price-change";
+    static final String EVENT_RESET = "reset";
+
     @Autowired
     private ProductImplRepository productImplRepository;
 
+    @Autowired
+    private PriceChangeStream priceChangeStream;
+
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private ProductJsonCache productJsonCache;
+
+    @Autowired
+    private ProductPriceProperties productPriceProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final SmileFactory smileFactory = new SmileFactory();
+
+
+    /**
+     * Streams every product as a json array. Products are read and written one page at a time, so memory use is
+     * bounded by the page size rather than the catalog size. Like every read of the collection, the response has a
+     * weak entity tag of the catalog version, and 304 is returned without reading any product when it matches. When the
+     * {@link CatalogSnapshot} is ready, products are written from it instead, under the version of the snapshot. With
+     * {@code fields}, only those fields of each product are read and written. The array is written as Smile when the
+     * {@code Accept} header prefers it.
+     */
+    @RequestMapping(method=RequestMethod.GET, params={"!ids", "!currency", "!limit", "!cursor"})
+    public ResponseEntity<StreamingResponseBody> getProducts(
+            @RequestParam(value="fields", required=false) String fields,
+            @RequestHeader(value=HttpHeaders.ACCEPT, required=false) String accept,
+            @RequestHeader(value=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch) {
+
+        ProductFields productFields = productFields(fields);
+        MediaType mediaType = ProductMediaType.negotiate(accept);
+        boolean fromSnapshot = catalogSnapshot.isReady();
+        String eTag = catalogETag(fromSnapshot);
+        if (ProductETag.matches(ifNoneMatch, eTag)) {
+            return notModified(eTag);
+        }
 
-    @RequestMapping(method=RequestMethod.GET)
-    public Iterable<Product> getProducts() {
-        return productImplRepository.findAll();
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = createGenerator(mediaType, outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                String afterId = null;
+                if (fromSnapshot) {
+                    do {
+                        afterId = catalogSnapshot.writePage(generator, afterId, MAX_PAGE_LIMIT, productFields);
+                        generator.flush();
+                    } while (afterId != null);
+                } else {
+                    Slice<Product> page;
+                    do {
+                        page = productImplRepository.findPage(afterId, MAX_PAGE_LIMIT, productFields);
+                        for (Product product : page) {
+                            writeProduct(generator, product, productFields);
+                        }
+                        generator.flush();
+                        afterId = lastId(page);
+                    } while (page.hasNext());
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ok(eTag).contentType(mediaType).body(body);
     }
 
+    /**
+     * Gets a page of products ordered by id. The page holds a cursor to the next page unless it is the last page.
+     * When the {@link CatalogSnapshot} is ready, the page is written from it. With {@code fields}, only those fields
+     * of each product are read and written.
+     */
+    @RequestMapping(method=RequestMethod.GET, params={"!ids", "!currency"})
+    public ResponseEntity<?> getProductPage(@RequestParam(value="limit", required=false) Integer limit,
+                                                      @RequestParam(value="cursor", required=false) String cursor,
+                                                      @RequestParam(value="fields", required=false) String fields,
+                                                      @RequestHeader(value=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch) {
+
+        int pageLimit = pageLimit(limit);
+        String afterId = cursor == null ? null : ProductCursor.decode(cursor);
+        ProductFields productFields = productFields(fields);
+        boolean fromSnapshot = catalogSnapshot.isReady();
+        String eTag = catalogETag(fromSnapshot);
+        if (ProductETag.matches(ifNoneMatch, eTag)) {
+            return notModified(eTag);
+        }
+
+        if (fromSnapshot) {
+            return ok(eTag).body(new CatalogSnapshotPage(generator -> {
+                String lastId = catalogSnapshot.writePage(generator, afterId, pageLimit, productFields);
+                return lastId == null ? null : ProductCursor.encode(lastId);
+            }));
+        }
+
+        Slice<Product> page = productImplRepository.findPage(afterId, pageLimit, productFields);
+        String nextCursor = page.hasNext() ? ProductCursor.encode(lastId(page)) : null;
+        return ok(eTag).body(productPage(page, nextCursor, productFields));
+    }
+
+    /**
+     * Gets a page of the products priced in a currency, optionally between a minimum and maximum price inclusive,
+     * ordered by price and then id. The page holds a cursor to the next page unless it is the last page. When the
+     * {@link CatalogSnapshot} is ready, the page is written from it. With {@code fields}, only those fields of each
+     * product are read and written.
+     */
+    @RequestMapping(method=RequestMethod.GET, params={"currency", "!ids"})
+    public ResponseEntity<?> getProductsByPrice(@RequestParam("currency") String currency,
+                                                          @RequestParam(value="minPrice", required=false) String minPrice,
+                                                          @RequestParam(value="maxPrice", required=false) String maxPrice,
+                                                          @RequestParam(value="limit", required=false) Integer limit,
+                                                          @RequestParam(value="cursor", required=false) String cursor,
+                                                          @RequestParam(value="fields", required=false) String fields,
+                                                          @RequestHeader(value=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch) {
+
+        int pageLimit = pageLimit(limit);
+        long minMinorUnits = minPrice == null ? Long.MIN_VALUE : minorUnits(minPrice, currency);
+        long maxMinorUnits = maxPrice == null ? Long.MAX_VALUE : minorUnits(maxPrice, currency);
+        PricePosition after = cursor == null ? null : ProductCursor.decodePricePosition(cursor);
+        ProductFields productFields = productFields(fields);
+        boolean fromSnapshot = catalogSnapshot.isReady();
+        String eTag = catalogETag(fromSnapshot);
+        if (ProductETag.matches(ifNoneMatch, eTag)) {
+            return notModified(eTag);
+        }
+
+        if (fromSnapshot) {
+            return ok(eTag).body(new CatalogSnapshotPage(generator -> {
+                PricePosition last = catalogSnapshot.writePriceRange(generator, currency, minMinorUnits,
+                        maxMinorUnits, after, pageLimit, productFields);
+                return last == null ? null : ProductCursor.encode(last);
+            }));
+        }
+
+        Slice<Product> page = productImplRepository.findByPriceRange(currency, minMinorUnits, maxMinorUnits,
+                after, pageLimit, productFields);
+        String nextCursor = null;
+        if (page.hasNext()) {
+            Product last = page.getContent().get(page.getNumberOfElements() - 1);
+            nextCursor = ProductCursor.encode(new PricePosition(last.getCurrentPrice().getMinorUnits(), last.getId()));
+        }
+        return ok(eTag).body(productPage(page, nextCursor, productFields));
+    }
+
+    /**
+     * Gets the products with the given ids in one call. Ids without a product are listed in the response instead
+     * of failing the whole request. With {@code fields}, only those fields of each product are read and written.
+     */
+    @RequestMapping(method=RequestMethod.GET, params="ids")
+    public ResponseEntity<?> getProductsByIds(@RequestParam("ids") List<String> ids,
+                                              @RequestParam(value="fields", required=false) String fields,
+                                              @RequestHeader(value=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch) {
+
+        if (ids.isEmpty() || ids.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("Between 1 and " + MAX_BATCH_SIZE + " ids must be requested.");
+        }
+        ProductFields productFields = productFields(fields);
+        String eTag = ProductETag.ofCatalog(productImplRepository.getCatalogVersion());
+        if (ProductETag.matches(ifNoneMatch, eTag)) {
+            return notModified(eTag);
+        }
+        ProductBatch batch = productImplRepository.findAll(ids, productFields);
+        return ok(eTag).body(productFields.isAll() ? batch : ProjectedProducts.batch(batch, productFields));
+    }
+
+    /**
+     * Gets a product with a strong entity tag of its price version and name. With an {@code If-None-Match} header
+     * and a cached name, the entity tag is checked against the price alone, and 304 is returned without calling the
+     * product name service. The product is written as json from the {@link ProductJsonCache}, so it is only serialized
+     * again when its price or name changed. With {@code fields}, only those fields are read and written, and without
+     * the name the product name service is never called. The product is written as Smile instead when the
+     * {@code Accept} header prefers it, under an entity tag of its own.
+     */
     @RequestMapping(method= RequestMethod.GET, value="/{id}")
 
-    public ResponseEntity<Product> getProductById(@PathVariable String id) {
+    public ResponseEntity<byte[]> getProductById(@PathVariable String id,
+                                                 @RequestParam(value="fields", required=false) String fields,
+                                                 @RequestHeader(value=HttpHeaders.ACCEPT, required=false) String accept,
+                                                 @RequestHeader(value=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch) {
+
+        ProductFields productFields = productFields(fields);
+        MediaType mediaType = ProductMediaType.negotiate(accept);
+        if (!productFields.isAll()) {
+            Product product = productImplRepository.findOne(id, productFields);
+            String eTag = ProductETag.of(ProductImplRepository.versionOf(product.getCurrentPrice()), product.getName(),
+                    mediaType);
+            if (ProductETag.matches(ifNoneMatch, eTag)) {
+                return notModified(eTag);
+            }
+            return ok(eTag).contentType(mediaType).body(writeProduct(product, productFields, mediaType));
+        }
+
+        if (ifNoneMatch != null) {
+            String name = productImplRepository.getCachedName(id);
+            if (name != null) {
+                Product.CurrentPrice currentPrice = productImplRepository.getCurrentPrice(id);
+                String eTag = ProductETag.of(ProductImplRepository.versionOf(currentPrice), name, mediaType);
+                if (ProductETag.matches(ifNoneMatch, eTag)) {
+                    return notModified(eTag);
+                }
+            }
+        }
+
         Product product = productImplRepository.findOne(id);
-        return new ResponseEntity<>(product, HttpStatus.OK);
+        String eTag = ProductETag.of(ProductImplRepository.versionOf(product.getCurrentPrice()), product.getName(),
+                mediaType);
+        if (ProductETag.matches(ifNoneMatch, eTag)) {
+            return notModified(eTag);
+        }
+        return ok(eTag).contentType(mediaType).body(writeProduct(product, productFields, mediaType));
     }
 
+    /**
+     * Updates the current price of a product. With an {@code If-Match} header the update only applies if the price
+     * has not changed since the entity tag was read, and fails with 412 otherwise.
+     */
     @RequestMapping(method=RequestMethod.PUT, value="/{id}", consumes= MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Product> updateProductById(@PathVariable String id, @RequestBody @Valid Product product) {
+    public ResponseEntity<Product> updateProductById(@PathVariable String id, @RequestBody @Valid Product product,
+                                                     @RequestHeader(value=HttpHeaders.IF_MATCH, required=false) String ifMatch) {
+
+        long version = productImplRepository.update(id, product, ProductETag.parseVersion(ifMatch));
+
+        // The entity tag covers the name, so it is only known here when the name is cached
+        String name = productImplRepository.getCachedName(id);
+        if (name == null) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.ok().eTag(ProductETag.of(version, name)).build();
+    }
+
+    /**
+     * Updates the current prices of many products from a json array, or from newline delimited json objects, of
+     * price updates. The body is read as a stream, and the result of every price update is returned in the order
+     * the updates were applied, each with its position in the request.
+     */
+    @RequestMapping(method=RequestMethod.POST, value="/prices", consumes={MediaType.APPLICATION_JSON_VALUE, MEDIA_TYPE_NDJSON})
+    public ResponseEntity<List<PriceUpdateResult>> updatePrices(InputStream body,
+                                                                @RequestParam(value="ordered", defaultValue="false") boolean ordered)
+            throws IOException {
+
+        MappingIterator<PriceUpdate> priceUpdates;
+        try {
+            priceUpdates = objectMapper.readerFor(PriceUpdate.class).readValues(body);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Unable to read the price updates.");
+        }
+
+        try {
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT)
+                    .body(productImplRepository.updatePrices(priceUpdates, ordered));
+        } finally {
+            priceUpdates.close();
+        }
+    }
+
+    /**
+     * Streams price changes as server-sent events, from the next change, or after the change of the
+     * {@code Last-Event-ID} header when reconnecting. Each change is a {@code price-change} event whose id resumes the
+     * stream after it. A {@code reset} event means changes were missed, and the catalog should be read again before
+     * going on from the id of the reset.
+     */
+    @RequestMapping(method=RequestMethod.GET, value="/prices/changes", produces=MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPriceChanges(@RequestHeader(value=HEADER_LAST_EVENT_ID, required=false) String lastEventId) {
+
+        SseEmitter emitter = new SseEmitter(productPriceProperties.getChanges().getTimeoutMillis());
+        PriceChangeStream.Subscription subscription = priceChangeStream.subscribe(lastEventId,
+                new PriceChangeStream.Subscriber() {
+                    @Override
+                    public void send(String token, PriceChange priceChange) throws IOException {
+                        emitter.send(SseEmitter.event().id(token).name(EVENT_PRICE_CHANGE)
+                                .data(priceChange, MediaType.APPLICATION_JSON));
+                    }
+
+                    @Override
+                    public void reset(String token) throws IOException {
+                        emitter.send(SseEmitter.event().id(token).name(EVENT_RESET)
+                                .data("Price changes were missed."));
+                    }
+
+                    @Override
+                    public void heartbeat() throws IOException {
+                        emitter.send(SseEmitter.event().comment(""));
+                    }
+
+                    @Override
+                    public void close() {
+                        emitter.complete();
+                    }
+                });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        return emitter;
+    }
+
+    /**
+     * Gets the weak entity tag of a read of the catalog. A read written from the {@link CatalogSnapshot} gets the
+     * version of the snapshot rather than of the datastore, so a client never keeps a page of the snapshot under the
+     * entity tag of newer data.
+     */
+    private String catalogETag(boolean fromSnapshot) {
+        return ProductETag.ofCatalog(fromSnapshot
+                ? catalogSnapshot.getVersion()
+                : productImplRepository.getCatalogVersion());
+    }
+
+    /**
+     * Starts a response with {@code eTag}, varying by the {@code Accept} header since products may be written as json
+     * or as Smile.
+     */
+    private static ResponseEntity.BodyBuilder ok(String eTag) {
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT);
+    }
+
+    private static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+    }
+
+    private static ProductFields productFields(String fields) {
+
+        ProductFields productFields = ProductFields.parse(fields);
+        if (productFields == null) {
+            throw new BadRequestException(
+                    "The fields must be among id, name, currentPrice, currentPrice.value and currentPrice.currencyCode.");
+        }
+        return productFields;
+    }
+
+    private static Object productPage(Slice<Product> page, String nextCursor, ProductFields fields) {
+        return fields.isAll()
+                ? new ProductPage(page.getContent(), nextCursor)
+                : ProjectedProducts.page(page.getContent(), nextCursor, fields);
+    }
+
+    /**
+     * Creates a generator that writes to {@code outputStream} in {@code mediaType}. Smile generators map objects with
+     * the json object mapper, so both have the same field names and values.
+     */
+    private JsonGenerator createGenerator(MediaType mediaType, OutputStream outputStream) throws IOException {
+
+        if (SmileHttpMessageConverter.SMILE.equals(mediaType)) {
+            return smileFactory.createGenerator(outputStream).setCodec(objectMapper);
+        }
+        return objectMapper.getFactory().createGenerator(outputStream);
+    }
+
+    /**
+     * Writes {@code product} in {@code mediaType}. The json of a whole product comes from the {@link ProductJsonCache}.
+     */
+    private byte[] writeProduct(Product product, ProductFields fields, MediaType mediaType) {
+
+        if (fields.isAll() && !SmileHttpMessageConverter.SMILE.equals(mediaType)) {
+            return productJsonCache.getJson(product);
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = createGenerator(mediaType, outputStream)) {
+            writeProduct(generator, product, fields);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void writeProduct(JsonGenerator generator, Product product, ProductFields fields)
+            throws IOException {
+
+        if (fields.isAll()) {
+            generator.writeObject(product);
+        } else {
+            fields.write(generator, product);
+        }
+    }
+
+    private static int pageLimit(Integer limit) {
+
+        int pageLimit = limit == null ? DEFAULT_PAGE_LIMIT : limit;
+        if (pageLimit < 1 || pageLimit > MAX_PAGE_LIMIT) {
+            throw new BadRequestException("The limit must be between 1 and " + MAX_PAGE_LIMIT + ".");
+        }
+        return pageLimit;
+    }
+
+    private static long minorUnits(String price, String currency) {
+
+        Long minorUnits = PriceAmounts.toMinorUnits(price, currency);
+        if (minorUnits == null) {
+            throw new BadRequestException("The price " + price + " is not a valid amount of " + currency + ".");
+        }
+        return minorUnits;
+    }
 
-        productImplRepository.update(id, product);
-        return new ResponseEntity<>(HttpStatus.OK);
+    private static String lastId(Slice<Product> page) {
+        List<Product> products = page.getContent();
+        return products.isEmpty() ? null : products.get(products.size() - 1).getId();
     }
 
 }
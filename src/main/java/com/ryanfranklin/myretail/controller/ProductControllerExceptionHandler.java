@@ -1,6 +1,9 @@
 package com.ryanfranklin.myretail.controller;
 
+import com.ryanfranklin.myretail.exception.BadRequestException;
 import com.ryanfranklin.myretail.exception.NotFoundException;
+import com.ryanfranklin.myretail.exception.PreconditionFailedException;
+import com.ryanfranklin.myretail.exception.ServiceUnavailableException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -13,4 +16,19 @@ public class ProductControllerExceptionHandler {
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public void handleNotFound() {
     }
+
+    @ExceptionHandler(BadRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void handleBadRequest() {
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public void handlePreconditionFailed() {
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void handleServiceUnavailable() {
+    }
 }
@@ -0,0 +1,87 @@
+package com.ryanfranklin.myretail.controller;
+
+import com.ryanfranklin.myretail.exception.BadRequestException;
+import com.ryanfranklin.myretail.model.PricePosition;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the position in the product collection as an opaque cursor. The cursor holds the id, and for listings by
+ * price also the price, of the last product returned, so the next page starts right after it no matter how many
+ * products were added or removed since.
+ */
+final class ProductCursor {
+
+    private static final String VERSION_PREFIX = "1:";
+    private static final String PRICE_VERSION_PREFIX = "p1:";
+    private static final char SEPARATOR = ':';
+
+    private ProductCursor() {}
+
+    /**
+     * Encodes the cursor that starts after {@code lastId}.
+     * @param lastId the id of the last product returned, not null
+     * @return the cursor, not null
+     */
+    static String encode(String lastId) {
+        return toBase64(VERSION_PREFIX + lastId);
+    }
+
+    /**
+     * Encodes the cursor of a listing by price that starts after {@code last}.
+     * @param last the position of the last product returned, not null
+     * @return the cursor, not null
+     */
+    static String encode(PricePosition last) {
+        return toBase64(PRICE_VERSION_PREFIX + last.getMinorUnits() + SEPARATOR + last.getId());
+    }
+
+    /**
+     * Decodes the id of the last product returned from {@code cursor}.
+     * @param cursor a cursor from {@link #encode(String)}, not null
+     * @return the id of the last product returned, not null
+     * @throws BadRequestException if the cursor was not made by {@link #encode(String)}
+     */
+    static String decode(String cursor) {
+
+        String decoded = fromBase64(cursor);
+        if (!decoded.startsWith(VERSION_PREFIX) || decoded.length() == VERSION_PREFIX.length()) {
+            throw new BadRequestException("Invalid cursor.");
+        }
+        return decoded.substring(VERSION_PREFIX.length());
+    }
+
+    /**
+     * Decodes the position of the last product returned from the cursor of a listing by price.
+     * @param cursor a cursor from {@link #encode(PricePosition)}, not null
+     * @return the position of the last product returned, not null
+     * @throws BadRequestException if the cursor was not made by {@link #encode(PricePosition)}
+     */
+    static PricePosition decodePricePosition(String cursor) {
+
+        String decoded = fromBase64(cursor);
+        int separator = decoded.indexOf(SEPARATOR, PRICE_VERSION_PREFIX.length());
+        if (!decoded.startsWith(PRICE_VERSION_PREFIX) || separator < 0 || separator == decoded.length() - 1) {
+            throw new BadRequestException("Invalid cursor.");
+        }
+        try {
+            long minorUnits = Long.parseLong(decoded.substring(PRICE_VERSION_PREFIX.length(), separator));
+            return new PricePosition(minorUnits, decoded.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid cursor.");
+        }
+    }
+
+    private static String toBase64(String decoded) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String fromBase64(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor.");
+        }
+    }
+}
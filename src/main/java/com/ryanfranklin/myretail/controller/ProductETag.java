@@ -0,0 +1,114 @@
+package com.ryanfranklin.myretail.controller;
+
+import com.google.common.hash.Hashing;
+import com.ryanfranklin.myretail.exception.PreconditionFailedException;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts between the version of a product's current price, its name and its entity tag. A product's entity tag
+ * is {@code "<version>-<name hash>"}, so it changes whenever the price is updated or the name changes. A product
+ * written in another media type than json gets {@code "<version>-<name hash>-<subtype>"}, since the strong entity tags
+ * of representations with different bytes must differ.
+ */
+final class ProductETag {
+
+    private static final String ANY = "*";
+
+    private static final char SEPARATOR = '-';
+
+    private static final String WEAK_PREFIX = "W/";
+
+    private ProductETag() {}
+
+    /**
+     * Gets the entity tag of a product whose current price has {@code version}, written as json.
+     * @param version the version of the current price
+     * @param name the name of the product, may be null
+     * @return the quoted entity tag, not null
+     */
+    static String of(long version, String name) {
+        return of(version, name, MediaType.APPLICATION_JSON_UTF8);
+    }
+
+    /**
+     * Gets the entity tag of a product whose current price has {@code version}, written in {@code mediaType}.
+     * @param version the version of the current price
+     * @param name the name of the product, may be null
+     * @param mediaType the media type the product is written in, not null
+     * @return the quoted entity tag, not null
+     */
+    static String of(long version, String name, MediaType mediaType) {
+
+        String nameHash = Hashing.murmur3_32().hashString(name == null ? "" : name, StandardCharsets.UTF_8).toString();
+        String eTag = version + String.valueOf(SEPARATOR) + nameHash;
+        if (!mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+            eTag += SEPARATOR + mediaType.getSubtype();
+        }
+        return "\"" + eTag + "\"";
+    }
+
+    /**
+     * Gets the weak entity tag of the whole catalog.
+     * @param catalogVersion the version of the catalog, not null
+     * @return the quoted weak entity tag, not null
+     */
+    static String ofCatalog(String catalogVersion) {
+        return WEAK_PREFIX + "\"" + catalogVersion + "\"";
+    }
+
+    /**
+     * Gets whether an {@code If-None-Match} header matches {@code eTag}, using the weak comparison that conditional
+     * reads call for.
+     * @param ifNoneMatch the If-None-Match header value, may be null
+     * @param eTag the quoted entity tag of the current representation, not null
+     * @return whether the client's copy is still current
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = withoutWeakPrefix(eTag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals(ANY) || withoutWeakPrefix(trimmed).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String withoutWeakPrefix(String eTag) {
+        return eTag.startsWith(WEAK_PREFIX) ? eTag.substring(WEAK_PREFIX.length()) : eTag;
+    }
+
+    /**
+     * Gets the version of the current price an {@code If-Match} header requires. Only the version part of the
+     * entity tag is compared, since updating a price does not depend on the name.
+     * @param ifMatch the If-Match header value, may be null
+     * @return the required version, or {@code null} if any version matches
+     * @throws PreconditionFailedException if the header is not an entity tag made by {@link #of(long, String)}
+     */
+    static Long parseVersion(String ifMatch) {
+
+        if (ifMatch == null || ifMatch.trim().equals(ANY)) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.length() < 3 || eTag.charAt(0) != '"' || eTag.charAt(eTag.length() - 1) != '"') {
+            throw new PreconditionFailedException();
+        }
+        String version = eTag.substring(1, eTag.length() - 1);
+        int separator = version.indexOf(SEPARATOR);
+        if (separator >= 0) {
+            version = version.substring(0, separator);
+        }
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException();
+        }
+    }
+}
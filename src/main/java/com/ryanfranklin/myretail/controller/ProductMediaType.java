@@ -0,0 +1,53 @@
+package com.ryanfranklin.myretail.controller;
+
+import com.ryanfranklin.myretail.config.SmileHttpMessageConverter;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Chooses the media type of the product responses written by the controller itself, rather than by a message
+ * converter. Products are written as json, or as Smile when the {@code Accept} header prefers it. Smile is a binary
+ * encoding of the same json, with the same field names and values.
+ */
+final class ProductMediaType {
+
+    private ProductMediaType() {}
+
+    /**
+     * Gets the media type to write products in for an {@code Accept} header. Each type gets the quality of the most
+     * specific accepted range that includes it, and Smile is chosen only when its quality is higher than json's, so
+     * json is chosen for {@code *}{@code /*} or when the header is missing or invalid.
+     * @param accept the Accept header value, may be null
+     * @return {@link SmileHttpMessageConverter#SMILE} if it is preferred, or {@link MediaType#APPLICATION_JSON_UTF8}
+     * otherwise
+     */
+    static MediaType negotiate(String accept) {
+
+        if (accept == null) {
+            return MediaType.APPLICATION_JSON_UTF8;
+        }
+
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON_UTF8;
+        }
+        MediaType.sortBySpecificity(mediaTypes);
+        return quality(mediaTypes, SmileHttpMessageConverter.SMILE) > quality(mediaTypes, MediaType.APPLICATION_JSON)
+                ? SmileHttpMessageConverter.SMILE
+                : MediaType.APPLICATION_JSON_UTF8;
+    }
+
+    private static double quality(List<MediaType> mediaTypes, MediaType mediaType) {
+
+        for (MediaType accepted : mediaTypes) {
+            if (accepted.includes(mediaType)) {
+                return accepted.getQualityValue();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,82 @@
+package com.ryanfranklin.myretail.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.ryanfranklin.myretail.model.Product;
+import com.ryanfranklin.myretail.model.ProductBatch;
+import com.ryanfranklin.myretail.model.ProductFields;
+import com.ryanfranklin.myretail.model.ProductPage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A page or a batch of products written with only the requested {@link ProductFields}, in the same json as a
+ * {@link ProductPage} or a {@link ProductBatch} without the fields that were not requested.
+ */
+final class ProjectedProducts extends JsonSerializable.Base {
+
+    private final List<Product> products;
+    private final ProductFields fields;
+    private final String nextCursor;
+    private final List<String> missingIds;
+
+    private ProjectedProducts(List<Product> products, ProductFields fields, String nextCursor,
+                              List<String> missingIds) {
+        this.products = products;
+        this.fields = fields;
+        this.nextCursor = nextCursor;
+        this.missingIds = missingIds;
+    }
+
+    /**
+     * Creates a page of products written with only {@code fields}.
+     * @param products the products of the page, not null
+     * @param nextCursor the cursor to the next page, or {@code null} for the last page
+     * @param fields the fields of the products to write, not null
+     * @return the page, not null
+     */
+    static ProjectedProducts page(List<Product> products, String nextCursor, ProductFields fields) {
+        return new ProjectedProducts(products, fields, nextCursor, null);
+    }
+
+    /**
+     * Creates a batch of products written with only {@code fields}.
+     * @param batch the products found and the ids that have no product, not null
+     * @param fields the fields of the products to write, not null
+     * @return the batch, not null
+     */
+    static ProjectedProducts batch(ProductBatch batch, ProductFields fields) {
+        return new ProjectedProducts(batch.getProducts(), fields, null, batch.getMissingIds());
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("products");
+        for (Product product : products) {
+            fields.write(generator, product);
+        }
+        generator.writeEndArray();
+        if (nextCursor != null) {
+            generator.writeStringField("nextCursor", nextCursor);
+        }
+        if (missingIds != null) {
+            generator.writeArrayFieldStart("missingIds");
+            for (String missingId : missingIds) {
+                generator.writeString(missingId);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer)
+            throws IOException {
+        serialize(generator, serializers);
+    }
+}
@@ -0,0 +1,16 @@
+package com.ryanfranklin.myretail.exception;
+
+
+/**
+ * Exception regarding when a request has invalid parameters.
+ */
+public class BadRequestException extends RuntimeException {
+
+    /**
+     * Constructs a BadRequestException.
+     * @param message the reason the request is invalid
+     */
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
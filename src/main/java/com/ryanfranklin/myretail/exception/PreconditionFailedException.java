@@ -0,0 +1,8 @@
+package com.ryanfranklin.myretail.exception;
+
+
+/**
+ * Exception regarding when a conditional request no longer matches the current state of an item.
+ */
+public class PreconditionFailedException extends RuntimeException {
+}
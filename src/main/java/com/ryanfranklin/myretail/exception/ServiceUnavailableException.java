@@ -0,0 +1,16 @@
+package com.ryanfranklin.myretail.exception;
+
+
+/**
+ * Exception regarding when a dependency refuses a call to protect itself or the service.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    /**
+     * Constructs a ServiceUnavailableException.
+     * @param message the reason the call was refused
+     */
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,36 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.ryanfranklin.myretail.repository.CatalogSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes the size, age and builds of the catalog snapshot, and the price changes applied to it, on the
+ * {@code /metrics} endpoint.
+ */
+@Component
+public class CatalogSnapshotMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "snapshot.catalog.";
+
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "products", catalogSnapshot.getSize()));
+        metrics.add(new Metric<>(PREFIX + "bytes", catalogSnapshot.getBytes()));
+        metrics.add(new Metric<>(PREFIX + "age-millis", catalogSnapshot.getAgeMillis()));
+        metrics.add(new Metric<>(PREFIX + "builds", catalogSnapshot.getBuildCount()));
+        metrics.add(new Metric<>(PREFIX + "changes-applied", catalogSnapshot.getAppliedCount()));
+        return metrics;
+    }
+}
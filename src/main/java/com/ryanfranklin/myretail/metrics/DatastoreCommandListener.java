@@ -0,0 +1,57 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Times every command the Mongo driver sends as a {@link ProductPipelineMetrics.Stage#DATASTORE_READ} or
+ * {@link ProductPipelineMetrics.Stage#DATASTORE_WRITE} stage, using the latency measured by the driver.
+ */
+public class DatastoreCommandListener implements CommandListener {
+
+    private final ProductPipelineMetrics pipelineMetrics;
+
+    /**
+     * Constructs a DatastoreCommandListener.
+     * @param pipelineMetrics the metrics to record the commands in, not null
+     */
+    public DatastoreCommandListener(ProductPipelineMetrics pipelineMetrics) {
+        this.pipelineMetrics = checkNotNull(pipelineMetrics);
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        pipelineMetrics.begin(stageOf(event.getCommandName()));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        pipelineMetrics.completed(stageOf(event.getCommandName()), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        pipelineMetrics.failed(stageOf(event.getCommandName()), event.getElapsedTime(TimeUnit.NANOSECONDS),
+                event.getThrowable());
+    }
+
+    private static ProductPipelineMetrics.Stage stageOf(String commandName) {
+
+        switch (commandName) {
+            case "insert":
+            case "update":
+            case "delete":
+            case "findAndModify":
+            case "createIndexes":
+                return ProductPipelineMetrics.Stage.DATASTORE_WRITE;
+            default:
+                return ProductPipelineMetrics.Stage.DATASTORE_READ;
+        }
+    }
+}
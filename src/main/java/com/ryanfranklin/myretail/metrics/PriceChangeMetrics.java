@@ -0,0 +1,35 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.ryanfranklin.myretail.repository.PriceChangeStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes how many subscribers stream price changes, how many changes were published, how many resets were sent to
+ * subscribers that missed changes, and how many stalled subscribers were dropped, on the {@code /metrics} endpoint.
+ */
+@Component
+public class PriceChangeMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "stream.price-changes.";
+
+    @Autowired
+    private PriceChangeStream priceChangeStream;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "subscribers", priceChangeStream.getSubscriberCount()));
+        metrics.add(new Metric<>(PREFIX + "published", priceChangeStream.getPublishedCount()));
+        metrics.add(new Metric<>(PREFIX + "resets", priceChangeStream.getResetCount()));
+        metrics.add(new Metric<>(PREFIX + "stalled", priceChangeStream.getStalledCount()));
+        return metrics;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.ryanfranklin.myretail.controller.AdaptiveConcurrencyLimit;
+import com.ryanfranklin.myretail.controller.ProductAdmissionInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes the admission control of each product endpoint that has been called on the {@code /metrics} endpoint: its
+ * current limit, the requests in flight, the usual latency the limit adapts to, and the requests admitted and shed.
+ * The requests in flight across every endpoint, and the requests shed by the overall limit, are published too.
+ */
+@Component
+public class ProductAdmissionMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "admission.";
+
+    private static final String OVERALL_PREFIX = PREFIX + "overall.";
+
+    @Autowired
+    private ProductAdmissionInterceptor productAdmissionInterceptor;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(OVERALL_PREFIX + "in-flight", productAdmissionInterceptor.getInFlight()));
+        metrics.add(new Metric<>(OVERALL_PREFIX + "shed", productAdmissionInterceptor.getOverallShedCount()));
+        for (AdaptiveConcurrencyLimit limit : productAdmissionInterceptor.getLimits()) {
+            String prefix = PREFIX + limit.getName() + ".";
+            metrics.add(new Metric<>(prefix + "limit", limit.getLimit()));
+            metrics.add(new Metric<>(prefix + "in-flight", limit.getInFlight()));
+            if (limit.getBaselineLatencyNanos() >= 0) {
+                metrics.add(new Metric<>(prefix + "baseline-latency-millis",
+                        limit.getBaselineLatencyNanos() / 1000000.0));
+            }
+            metrics.add(new Metric<>(prefix + "admitted", limit.getAdmittedCount()));
+            metrics.add(new Metric<>(prefix + "shed", limit.getShedCount()));
+        }
+        return metrics;
+    }
+}
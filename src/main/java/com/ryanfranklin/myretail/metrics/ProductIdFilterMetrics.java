@@ -0,0 +1,46 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.ryanfranklin.myretail.repository.ProductIdFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes the size, memory and false positive rate of the product id filter, and the lookups it turned away, on the
+ * {@code /metrics} endpoint. The observed false positive rate is the share of lookups of unknown ids that the filter
+ * let through.
+ */
+@Component
+public class ProductIdFilterMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "filter.product-id.";
+
+    @Autowired
+    private ProductIdFilter productIdFilter;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+
+        long rejected = productIdFilter.getRejectedCount();
+        long falsePositives = productIdFilter.getFalsePositiveCount();
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "ids", productIdFilter.getSize()));
+        metrics.add(new Metric<>(PREFIX + "capacity", productIdFilter.getCapacity()));
+        metrics.add(new Metric<>(PREFIX + "bytes", productIdFilter.getBytes()));
+        metrics.add(new Metric<>(PREFIX + "age-millis", productIdFilter.getAgeMillis()));
+        metrics.add(new Metric<>(PREFIX + "builds", productIdFilter.getBuildCount()));
+        metrics.add(new Metric<>(PREFIX + "rejected", rejected));
+        metrics.add(new Metric<>(PREFIX + "false-positives", falsePositives));
+        metrics.add(new Metric<>(PREFIX + "expected-false-positive-rate",
+                productIdFilter.getExpectedFalsePositiveRate()));
+        metrics.add(new Metric<>(PREFIX + "observed-false-positive-rate",
+                rejected + falsePositives == 0 ? 0.0 : (double) falsePositives / (rejected + falsePositives)));
+        return metrics;
+    }
+}
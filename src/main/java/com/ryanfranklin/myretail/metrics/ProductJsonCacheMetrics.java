@@ -0,0 +1,41 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.ryanfranklin.myretail.repository.ProductJsonCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes the statistics of the cache of products serialized as json on the {@code /metrics} endpoint.
+ */
+@Component
+public class ProductJsonCacheMetrics implements PublicMetrics {
+
+    private static final String PREFIX_JSON_CACHE = "cache.product-json.";
+
+    @Autowired
+    private ProductJsonCache productJsonCache;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+
+        long hits = productJsonCache.getHitCount();
+        long misses = productJsonCache.getMissCount();
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX_JSON_CACHE + "size", productJsonCache.getSize()));
+        metrics.add(new Metric<>(PREFIX_JSON_CACHE + "bytes", productJsonCache.getBytes()));
+        metrics.add(new Metric<>(PREFIX_JSON_CACHE + "hits", hits));
+        metrics.add(new Metric<>(PREFIX_JSON_CACHE + "misses", misses));
+        metrics.add(new Metric<>(PREFIX_JSON_CACHE + "hit-ratio",
+                hits + misses == 0 ? 1.0 : (double) hits / (hits + misses)));
+        metrics.add(new Metric<>(PREFIX_JSON_CACHE + "invalidations", productJsonCache.getInvalidationCount()));
+        metrics.add(new Metric<>(PREFIX_JSON_CACHE + "evictions", productJsonCache.getStats().evictionCount()));
+        return metrics;
+    }
+}
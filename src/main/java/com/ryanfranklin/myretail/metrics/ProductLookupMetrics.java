@@ -0,0 +1,47 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.ryanfranklin.myretail.repository.ProductImplRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes how many product name and current price lookups were coalesced, and how many products were served with a
+ * fallback name, on the {@code /metrics} endpoint.
+ */
+@Component
+public class ProductLookupMetrics implements PublicMetrics {
+
+    private static final String PREFIX_NAME_LOOKUP = "lookup.product-name.";
+    private static final String PREFIX_CURRENT_PRICE_LOOKUP = "lookup.product-price.";
+
+    @Autowired
+    private ProductImplRepository productImplRepository;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        addLookupMetrics(metrics, PREFIX_NAME_LOOKUP,
+                productImplRepository.getNameLookupsCoalesced(), productImplRepository.getNameLookupsInFlight());
+        addLookupMetrics(metrics, PREFIX_CURRENT_PRICE_LOOKUP,
+                productImplRepository.getCurrentPriceLookupsCoalesced(),
+                productImplRepository.getCurrentPriceLookupsInFlight());
+        metrics.add(new Metric<>(PREFIX_NAME_LOOKUP + "fallback-last-known",
+                productImplRepository.getLastKnownNameFallbackCount()));
+        metrics.add(new Metric<>(PREFIX_NAME_LOOKUP + "fallback-missing",
+                productImplRepository.getMissingNameFallbackCount()));
+        return metrics;
+    }
+
+    private void addLookupMetrics(List<Metric<?>> metrics, String prefix, long coalesced, int inFlight) {
+
+        metrics.add(new Metric<>(prefix + "coalesced", coalesced));
+        metrics.add(new Metric<>(prefix + "in-flight", inFlight));
+    }
+}
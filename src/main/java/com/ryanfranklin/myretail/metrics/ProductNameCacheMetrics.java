@@ -0,0 +1,53 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.google.common.cache.CacheStats;
+import com.ryanfranklin.myretail.repository.ProductImplRepository;
+import com.ryanfranklin.myretail.repository.ProductNameRefresher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes the product name cache statistics, and the names refreshed before they expired, on the
+ * {@code /metrics} endpoint.
+ */
+@Component
+public class ProductNameCacheMetrics implements PublicMetrics {
+
+    private static final String PREFIX_NAME_CACHE = "cache.product-name.";
+    private static final String PREFIX_NOT_FOUND_NAME_CACHE = "cache.product-name-not-found.";
+
+    @Autowired
+    private ProductImplRepository productImplRepository;
+
+    @Autowired
+    private ProductNameRefresher productNameRefresher;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        addCacheMetrics(metrics, PREFIX_NAME_CACHE,
+                productImplRepository.getNameCacheStats(), productImplRepository.getNameCacheSize());
+        addCacheMetrics(metrics, PREFIX_NOT_FOUND_NAME_CACHE,
+                productImplRepository.getNotFoundNameCacheStats(), productImplRepository.getNotFoundNameCacheSize());
+        metrics.add(new Metric<>(PREFIX_NAME_CACHE + "refreshed-ahead", productNameRefresher.getRefreshedCount()));
+        return metrics;
+    }
+
+    private void addCacheMetrics(List<Metric<?>> metrics, String prefix, CacheStats stats, long size) {
+
+        metrics.add(new Metric<>(prefix + "size", size));
+        metrics.add(new Metric<>(prefix + "hits", stats.hitCount()));
+        metrics.add(new Metric<>(prefix + "misses", stats.missCount()));
+        metrics.add(new Metric<>(prefix + "hit-ratio", stats.hitRate()));
+        metrics.add(new Metric<>(prefix + "evictions", stats.evictionCount()));
+        metrics.add(new Metric<>(prefix + "load-failures", stats.loadExceptionCount()));
+        metrics.add(new Metric<>(prefix + "average-load-millis", stats.averageLoadPenalty() / 1000000.0));
+    }
+}
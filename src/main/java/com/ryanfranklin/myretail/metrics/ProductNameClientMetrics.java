@@ -0,0 +1,46 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.ryanfranklin.myretail.client.CircuitBreaker;
+import com.ryanfranklin.myretail.client.ResilientProductNameClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes the state of the circuit breaker, bulkhead and hedging of the product name resource on the
+ * {@code /metrics} endpoint. The circuit state is 0 when closed, 1 when open and 2 when half open.
+ */
+@Component
+public class ProductNameClientMetrics implements PublicMetrics {
+
+    private static final String PREFIX_CIRCUIT = "circuit.product-name.";
+    private static final String PREFIX_BULKHEAD = "bulkhead.product-name.";
+    private static final String PREFIX_HEDGE = "hedge.product-name.";
+
+    @Autowired
+    private ResilientProductNameClient productNameClient;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+
+        List<Metric<?>> metrics = new ArrayList<>();
+
+        CircuitBreaker circuitBreaker = productNameClient.getCircuitBreaker();
+        metrics.add(new Metric<>(PREFIX_CIRCUIT + "state", circuitBreaker.getState().ordinal()));
+        metrics.add(new Metric<>(PREFIX_CIRCUIT + "opened", circuitBreaker.getOpenedCount()));
+        metrics.add(new Metric<>(PREFIX_CIRCUIT + "rejected", circuitBreaker.getRejectedCount()));
+
+        metrics.add(new Metric<>(PREFIX_BULKHEAD + "available", productNameClient.getBulkheadAvailable()));
+        metrics.add(new Metric<>(PREFIX_BULKHEAD + "rejected", productNameClient.getBulkheadRejectedCount()));
+
+        metrics.add(new Metric<>(PREFIX_HEDGE + "sent", productNameClient.getHedgedCount()));
+        metrics.add(new Metric<>(PREFIX_HEDGE + "won", productNameClient.getHedgeWonCount()));
+        metrics.add(new Metric<>(PREFIX_HEDGE + "delay-millis", productNameClient.getHedgeDelayMillis()));
+        return metrics;
+    }
+}
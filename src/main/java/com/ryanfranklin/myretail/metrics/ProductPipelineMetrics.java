@@ -0,0 +1,265 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.mongodb.MongoException;
+import com.ryanfranklin.myretail.exception.NotFoundException;
+import com.ryanfranklin.myretail.exception.PreconditionFailedException;
+import com.ryanfranklin.myretail.exception.ServiceUnavailableException;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency, errors and calls in flight of each {@link Stage} of reading and writing products, and
+ * publishes them on the {@code /metrics} endpoint. A stage is timed with {@link #begin(Stage)} and then
+ * {@link #end(Stage, long)} or {@link #fail(Stage, long, Throwable)}, which allocate nothing, so they can be used on
+ * every request. Latencies are kept in HDR histograms since startup, and published in milliseconds.
+ */
+@Component
+public class ProductPipelineMetrics implements PublicMetrics {
+
+    private static final String PREFIX_STAGE = "stage.";
+
+    /** Latencies above this are recorded as this, in nanoseconds **/
+    private static final long HIGHEST_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * The timed stages. The outer stages are the calls of the product repository, and the inner stages are the
+     * datastore, product name resource and serialization work done within them.
+     */
+    public enum Stage {
+
+        /** Reading one product by id **/
+        FIND_ONE("find-one"),
+
+        /** Reading many products, by page, price range or ids **/
+        FIND_ALL("find-all"),
+
+        /** Resolving one product name, from the cache or the product name resource **/
+        GET_NAME("get-name"),
+
+        /** Updating the price of one product **/
+        UPDATE("update"),
+
+        /** Running a query or aggregation in the datastore **/
+        DATASTORE_READ("datastore-read"),
+
+        /** Running an insert, update or delete in the datastore **/
+        DATASTORE_WRITE("datastore-write"),
+
+        /** Calling the product name resource, including reading the name from the response **/
+        NAME_FETCH("name-fetch"),
+
+        /** Parsing the name out of a product name resource response as it is read **/
+        NAME_PARSE("name-parse"),
+
+        /** Writing a response body as json **/
+        SERIALIZE("serialize");
+
+        private final String metricName;
+
+        Stage(String metricName) {
+            this.metricName = metricName;
+        }
+
+        /**
+         * Gets metricName
+         *
+         * @return the name of the stage in the published metrics
+         */
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    /**
+     * The causes errors are counted by.
+     */
+    public enum ErrorCause {
+
+        /** The product, price or name does not exist **/
+        NOT_FOUND("not-found"),
+
+        /** The price was not at the expected version **/
+        PRECONDITION_FAILED("precondition-failed"),
+
+        /** A call was rejected by a bulkhead or an open circuit **/
+        UNAVAILABLE("unavailable"),
+
+        /** A call or a connection timed out **/
+        TIMEOUT("timeout"),
+
+        /** The product name resource answered with an error or an unreadable body **/
+        NAME_RESOURCE("name-resource"),
+
+        /** The datastore failed, or was not reachable **/
+        DATASTORE("datastore"),
+
+        /** Any other error **/
+        OTHER("other");
+
+        private final String metricName;
+
+        ErrorCause(String metricName) {
+            this.metricName = metricName;
+        }
+
+        /**
+         * Gets the cause of an error, from the error or the first of its causes that is recognized.
+         * @param e the error, not null
+         * @return the cause, not null
+         */
+        public static ErrorCause of(Throwable e) {
+
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof NotFoundException) {
+                    return NOT_FOUND;
+                } else if (cause instanceof PreconditionFailedException) {
+                    return PRECONDITION_FAILED;
+                } else if (cause instanceof ServiceUnavailableException) {
+                    return UNAVAILABLE;
+                } else if (cause instanceof TimeoutException || cause instanceof ResourceAccessException) {
+                    return TIMEOUT;
+                } else if (cause instanceof RestClientException) {
+                    return NAME_RESOURCE;
+                } else if (cause instanceof DataAccessException || cause instanceof MongoException) {
+                    return DATASTORE;
+                }
+            }
+            return OTHER;
+        }
+    }
+
+    private final StageRecorder[] recorders = new StageRecorder[Stage.values().length];
+
+    public ProductPipelineMetrics() {
+
+        for (Stage stage : Stage.values()) {
+            recorders[stage.ordinal()] = new StageRecorder();
+        }
+    }
+
+    /**
+     * Marks the start of a stage.
+     * @param stage the stage, not null
+     * @return the start time to pass to {@link #end(Stage, long)} or {@link #fail(Stage, long, Throwable)}
+     */
+    public long begin(Stage stage) {
+
+        recorders[stage.ordinal()].inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a stage, and records its latency.
+     * @param stage the stage, not null
+     * @param start the start time returned by {@link #begin(Stage)}
+     */
+    public void end(Stage stage, long start) {
+        completed(stage, System.nanoTime() - start);
+    }
+
+    /**
+     * Marks the end of a stage that failed, and records its latency and the cause of the error.
+     * @param stage the stage, not null
+     * @param start the start time returned by {@link #begin(Stage)}
+     * @param e the error, not null
+     */
+    public void fail(Stage stage, long start, Throwable e) {
+        failed(stage, System.nanoTime() - start, e);
+    }
+
+    /**
+     * Marks the end of a stage that was begun with {@link #begin(Stage)} and timed elsewhere, and records its latency.
+     * @param stage the stage, not null
+     * @param latencyNanos the latency of the stage, in nanoseconds
+     */
+    public void completed(Stage stage, long latencyNanos) {
+
+        StageRecorder recorder = recorders[stage.ordinal()];
+        recorder.latencies.recordValue(Math.max(0, Math.min(latencyNanos, HIGHEST_LATENCY_NANOS)));
+        recorder.inFlight.decrement();
+    }
+
+    /**
+     * Marks the end of a stage that was begun with {@link #begin(Stage)}, timed elsewhere and failed, and records its
+     * latency and the cause of the error.
+     * @param stage the stage, not null
+     * @param latencyNanos the latency of the stage, in nanoseconds
+     * @param e the error, not null
+     */
+    public void failed(Stage stage, long latencyNanos, Throwable e) {
+
+        recorders[stage.ordinal()].errors[ErrorCause.of(e).ordinal()].increment();
+        completed(stage, latencyNanos);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            StageRecorder recorder = recorders[stage.ordinal()];
+            String prefix = PREFIX_STAGE + stage.getMetricName() + ".";
+
+            Histogram latencies = recorder.getLatencies();
+            metrics.add(new Metric<>(prefix + "count", latencies.getTotalCount()));
+            metrics.add(new Metric<>(prefix + "in-flight", recorder.inFlight.sum()));
+            metrics.add(new Metric<>(prefix + "p50-millis", millis(latencies.getValueAtPercentile(50))));
+            metrics.add(new Metric<>(prefix + "p99-millis", millis(latencies.getValueAtPercentile(99))));
+            metrics.add(new Metric<>(prefix + "p999-millis", millis(latencies.getValueAtPercentile(99.9))));
+            metrics.add(new Metric<>(prefix + "max-millis", millis(latencies.getMaxValue())));
+            for (ErrorCause cause : ErrorCause.values()) {
+                metrics.add(new Metric<>(prefix + "errors." + cause.metricName, recorder.errors[cause.ordinal()].sum()));
+            }
+        }
+        return metrics;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    /**
+     * The latencies, errors and calls in flight of one stage. Latencies are recorded without locking into a
+     * {@link Recorder}, and moved into the histogram since startup when the metrics are read.
+     */
+    private static final class StageRecorder {
+
+        private final Recorder latencies = new Recorder(1, HIGHEST_LATENCY_NANOS, 3);
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder[] errors = new LongAdder[ErrorCause.values().length];
+
+        private final Histogram total = new Histogram(1, HIGHEST_LATENCY_NANOS, 3);
+        private Histogram interval;
+
+        StageRecorder() {
+
+            for (int i = 0; i < errors.length; i++) {
+                errors[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Gets the latencies recorded since startup.
+         * @return a copy of the latencies, not null
+         */
+        synchronized Histogram getLatencies() {
+
+            interval = latencies.getIntervalHistogram(interval);
+            total.add(interval);
+            return total.copy();
+        }
+    }
+}
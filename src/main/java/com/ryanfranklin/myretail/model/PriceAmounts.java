@@ -0,0 +1,44 @@
+package com.ryanfranklin.myretail.model;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Converts between price values and their canonical amount in the minor units of a currency (ex. 13.49 USD is 1349).
+ */
+public final class PriceAmounts {
+
+    private PriceAmounts() {}
+
+    /**
+     * Gets the amount of {@code value} in the minor units of {@code currencyCode}.
+     * @param value the price value (ex. 13.49), may be null
+     * @param currencyCode the ISO 4217 currency code (ex. USD), may be null
+     * @return the amount in minor units, or {@code null} if the value is not a number that the currency can hold
+     * exactly
+     */
+    public static Long toMinorUnits(String value, String currencyCode) {
+
+        if (value == null || currencyCode == null) {
+            return null;
+        }
+
+        int fractionDigits;
+        BigDecimal amount;
+        try {
+            fractionDigits = Currency.getInstance(currencyCode).getDefaultFractionDigits();
+            amount = new BigDecimal(value.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (fractionDigits < 0) {
+            return null;
+        }
+
+        try {
+            return amount.movePointRight(fractionDigits).longValueExact();
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.ryanfranklin.myretail.model;
+
+import java.util.Objects;
+
+public class PriceChange {
+
+    /** The id of the product whose price changed */
+    private String id;
+
+    /** The price value before the change (10.00) */
+    private String oldValue;
+
+    /** The currency code of the price before the change (ex. USD) */
+    private String oldCurrencyCode;
+
+    /** The price value after the change (12.00) */
+    private String value;
+
+    /** The currency code of the price after the change (ex. USD) */
+    private String currencyCode;
+
+    /** The version of the price after the change */
+    private long version;
+
+    /** Jackson constructor **/
+    public PriceChange(){}
+
+    /**
+     * Constructs a PriceChange.
+     * @param id the id of the product, not null
+     * @param oldValue the price value before the change, may be null
+     * @param oldCurrencyCode the currency code before the change, may be null
+     * @param value the price value after the change, not null
+     * @param currencyCode the currency code after the change, not null
+     * @param version the version of the price after the change
+     */
+    public PriceChange(String id, String oldValue, String oldCurrencyCode, String value, String currencyCode,
+                       long version) {
+        this.id = id;
+        this.oldValue = oldValue;
+        this.oldCurrencyCode = oldCurrencyCode;
+        this.value = value;
+        this.currencyCode = currencyCode;
+        this.version = version;
+    }
+
+    /**
+     * Gets id
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets id
+     *
+     * @param id the of id of the PriceChange
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets oldValue
+     *
+     * @return the oldValue
+     */
+    public String getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * Sets oldValue
+     *
+     * @param oldValue the of oldValue of the PriceChange
+     */
+    public void setOldValue(String oldValue) {
+        this.oldValue = oldValue;
+    }
+
+    /**
+     * Gets oldCurrencyCode
+     *
+     * @return the oldCurrencyCode
+     */
+    public String getOldCurrencyCode() {
+        return oldCurrencyCode;
+    }
+
+    /**
+     * Sets oldCurrencyCode
+     *
+     * @param oldCurrencyCode the of oldCurrencyCode of the PriceChange
+     */
+    public void setOldCurrencyCode(String oldCurrencyCode) {
+        this.oldCurrencyCode = oldCurrencyCode;
+    }
+
+    /**
+     * Gets value
+     *
+     * @return the value
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Sets value
+     *
+     * @param value the of value of the PriceChange
+     */
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Gets currencyCode
+     *
+     * @return the currencyCode
+     */
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    /**
+     * Sets currencyCode
+     *
+     * @param currencyCode the of currencyCode of the PriceChange
+     */
+    public void setCurrencyCode(String currencyCode) {
+        this.currencyCode = currencyCode;
+    }
+
+    /**
+     * Gets version
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets version
+     *
+     * @param version the of version of the PriceChange
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PriceChange that = (PriceChange) o;
+        return version == that.version &&
+                Objects.equals(id, that.id) &&
+                Objects.equals(oldValue, that.oldValue) &&
+                Objects.equals(oldCurrencyCode, that.oldCurrencyCode) &&
+                Objects.equals(value, that.value) &&
+                Objects.equals(currencyCode, that.currencyCode);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(id, oldValue, oldCurrencyCode, value, currencyCode, version);
+    }
+}
@@ -0,0 +1,58 @@
+package com.ryanfranklin.myretail.model;
+
+import java.util.Objects;
+
+/**
+ * The position of a product in a listing ordered by price and then id.
+ */
+public class PricePosition {
+
+    /** The price of the product in minor units */
+    private final long minorUnits;
+
+    /** The id of the product */
+    private final String id;
+
+    /**
+     * Constructs a PricePosition.
+     * @param minorUnits the price of the product in minor units
+     * @param id the id of the product, not null
+     */
+    public PricePosition(long minorUnits, String id) {
+        this.minorUnits = minorUnits;
+        this.id = id;
+    }
+
+    /**
+     * Gets minorUnits
+     *
+     * @return the minorUnits
+     */
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    /**
+     * Gets id
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PricePosition that = (PricePosition) o;
+        return minorUnits == that.minorUnits &&
+                Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(minorUnits, id);
+    }
+}
@@ -0,0 +1,108 @@
+package com.ryanfranklin.myretail.model;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.Objects;
+
+public class PriceUpdate {
+
+    /** The id of the product to update */
+    @NotNull
+    @Size(min=1)
+    private String id;
+
+    /** The new price of the product as a value (10.00) */
+    @NotNull
+    @Size(min=1)
+    private String value;
+
+    /** The code that identifies the type of currency of the new price (ex. USD) */
+    @NotNull
+    @Size(min=1)
+    private String currencyCode;
+
+    /** Jackson constructor **/
+    public PriceUpdate(){}
+
+    /**
+     * Constructs a PriceUpdate.
+     * @param id the id of the product to update, not null
+     * @param value the new price value, not null
+     * @param currencyCode the new currency code, not null
+     */
+    public PriceUpdate(String id, String value, String currencyCode) {
+        this.id = id;
+        this.value = value;
+        this.currencyCode = currencyCode;
+    }
+
+    /**
+     * Gets id
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets id
+     *
+     * @param id the of id of the PriceUpdate
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets value
+     *
+     * @return the value
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Sets value
+     *
+     * @param value the of value of the PriceUpdate
+     */
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Gets currencyCode
+     *
+     * @return the currencyCode
+     */
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    /**
+     * Sets currencyCode
+     *
+     * @param currencyCode the of currencyCode of the PriceUpdate
+     */
+    public void setCurrencyCode(String currencyCode) {
+        this.currencyCode = currencyCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PriceUpdate that = (PriceUpdate) o;
+        return Objects.equals(id, that.id) &&
+                Objects.equals(value, that.value) &&
+                Objects.equals(currencyCode, that.currencyCode);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(id, value, currencyCode);
+    }
+}
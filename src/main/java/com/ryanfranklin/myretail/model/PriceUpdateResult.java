@@ -0,0 +1,142 @@
+package com.ryanfranklin.myretail.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Objects;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PriceUpdateResult {
+
+    public enum Status {
+        /** The price was updated */
+        UPDATED,
+        /** There is no price for the id */
+        NOT_FOUND,
+        /** The price update is not valid and was not applied */
+        INVALID,
+        /** The datastore rejected the update */
+        FAILED,
+        /** The price changed while the update was applied, and the update was not applied */
+        CONFLICT,
+        /** The update was not attempted because an earlier update of an ordered request failed */
+        SKIPPED
+    }
+
+    /** The position of the price update in the request, starting at 0 */
+    private int index;
+
+    /** The id of the product, null if it could not be read */
+    private String id;
+
+    /** The outcome of the price update */
+    private Status status;
+
+    /** The reason the price update was not applied, null if it was */
+    private String message;
+
+    /** Jackson constructor **/
+    public PriceUpdateResult(){}
+
+    /**
+     * Constructs a PriceUpdateResult.
+     * @param index the position of the price update in the request
+     * @param id the id of the product, may be null
+     * @param status the outcome of the price update, not null
+     * @param message the reason the price update was not applied, may be null
+     */
+    public PriceUpdateResult(int index, String id, Status status, String message) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.message = message;
+    }
+
+    /**
+     * Gets index
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets index
+     *
+     * @param index the of index of the PriceUpdateResult
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Gets id
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets id
+     *
+     * @param id the of id of the PriceUpdateResult
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets status
+     *
+     * @return the status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets status
+     *
+     * @param status the of status of the PriceUpdateResult
+     */
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    /**
+     * Gets message
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Sets message
+     *
+     * @param message the of message of the PriceUpdateResult
+     */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PriceUpdateResult that = (PriceUpdateResult) o;
+        return index == that.index &&
+                Objects.equals(id, that.id) &&
+                status == that.status &&
+                Objects.equals(message, that.message);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(index, id, status, message);
+    }
+}
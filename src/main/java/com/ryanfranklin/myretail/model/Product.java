@@ -1,12 +1,15 @@
 package com.ryanfranklin.myretail.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
+import java.util.Date;
 import java.util.Objects;
 
 public class Product {
@@ -112,6 +115,7 @@ public class Product {
     }
 
     @Document
+    @CompoundIndex(name = "currencyCode_minorUnits_id", def = "{'currencyCode': 1, 'minorUnits': 1, '_id': 1}")
     public static class CurrentPrice {
 
         /** The product id for this price */
@@ -129,6 +133,22 @@ public class Product {
         @Size(min=1)
         private String currencyCode;
 
+        /** The value in the minor units of the currency (1000 for 10.00 USD), null if the value is not a number */
+        @JsonIgnore
+        private Long minorUnits;
+
+        /** The number of times this price was updated, null if it was never updated */
+        @JsonIgnore
+        private Long version;
+
+        /** The product name stored from the product name resource, null if it was not stored yet */
+        @JsonIgnore
+        private String name;
+
+        /** When the stored name was fetched from the product name resource, null if no name was stored */
+        @JsonIgnore
+        private Date nameFetchedAt;
+
         /**
          * Gets id
          *
@@ -174,6 +194,78 @@ public class Product {
             this.currencyCode = currencyCode;
         }
 
+        /**
+         * Gets minorUnits
+         *
+         * @return the minorUnits
+         */
+        public Long getMinorUnits() {
+            return minorUnits;
+        }
+
+        /**
+         * Sets minorUnits
+         *
+         * @param minorUnits the of minorUnits of the CurrentPrice
+         */
+        public void setMinorUnits(Long minorUnits) {
+            this.minorUnits = minorUnits;
+        }
+
+        /**
+         * Gets version
+         *
+         * @return the version
+         */
+        public Long getVersion() {
+            return version;
+        }
+
+        /**
+         * Sets version
+         *
+         * @param version the of version of the CurrentPrice
+         */
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+
+        /**
+         * Gets name
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Sets name
+         *
+         * @param name the of name of the CurrentPrice
+         */
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Gets nameFetchedAt
+         *
+         * @return the nameFetchedAt
+         */
+        public Date getNameFetchedAt() {
+            return nameFetchedAt;
+        }
+
+        /**
+         * Sets nameFetchedAt
+         *
+         * @param nameFetchedAt the of nameFetchedAt of the CurrentPrice
+         */
+        public void setNameFetchedAt(Date nameFetchedAt) {
+            this.nameFetchedAt = nameFetchedAt;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -181,13 +273,17 @@ public class Product {
             CurrentPrice that = (CurrentPrice) o;
             return Objects.equals(id, that.id) &&
                     Objects.equals(value, that.value) &&
-                    Objects.equals(currencyCode, that.currencyCode);
+                    Objects.equals(currencyCode, that.currencyCode) &&
+                    Objects.equals(minorUnits, that.minorUnits) &&
+                    Objects.equals(version, that.version) &&
+                    Objects.equals(name, that.name) &&
+                    Objects.equals(nameFetchedAt, that.nameFetchedAt);
         }
 
         @Override
         public int hashCode() {
 
-            return Objects.hash(id, value, currencyCode);
+            return Objects.hash(id, value, currencyCode, minorUnits, version, name, nameFetchedAt);
         }
     }
 }
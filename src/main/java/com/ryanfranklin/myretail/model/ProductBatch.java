@@ -0,0 +1,77 @@
+package com.ryanfranklin.myretail.model;
+
+import java.util.List;
+import java.util.Objects;
+
+public class ProductBatch {
+
+    /** The products that were found, in the order they were requested */
+    private List<Product> products;
+
+    /** The requested ids that have no product */
+    private List<String> missingIds;
+
+    /** Jackson constructor **/
+    public ProductBatch(){}
+
+    /**
+     * Constructs a ProductBatch.
+     * @param products the products that were found, not null
+     * @param missingIds the requested ids that have no product, not null
+     */
+    public ProductBatch(List<Product> products, List<String> missingIds) {
+        this.products = products;
+        this.missingIds = missingIds;
+    }
+
+    /**
+     * Gets products
+     *
+     * @return the products
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Sets products
+     *
+     * @param products the of products of the ProductBatch
+     */
+    public void setProducts(List<Product> products) {
+        this.products = products;
+    }
+
+    /**
+     * Gets missingIds
+     *
+     * @return the missingIds
+     */
+    public List<String> getMissingIds() {
+        return missingIds;
+    }
+
+    /**
+     * Sets missingIds
+     *
+     * @param missingIds the of missingIds of the ProductBatch
+     */
+    public void setMissingIds(List<String> missingIds) {
+        this.missingIds = missingIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductBatch that = (ProductBatch) o;
+        return Objects.equals(products, that.products) &&
+                Objects.equals(missingIds, that.missingIds);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(products, missingIds);
+    }
+}
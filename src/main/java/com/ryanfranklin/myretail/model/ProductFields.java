@@ -0,0 +1,180 @@
+package com.ryanfranklin.myretail.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * The fields of a {@link Product} to read and write, so a caller that needs only part of a product does not pay for
+ * the rest. Fields are named as in the product json: {@code id}, {@code name} and {@code currentPrice}, or
+ * {@code currentPrice.value} and {@code currentPrice.currencyCode} for part of the price.
+ */
+public final class ProductFields {
+
+    /** The names of the fields **/
+    public static final String ID = "id";
+    public static final String NAME = "name";
+    public static final String CURRENT_PRICE = "currentPrice";
+    public static final String VALUE = "value";
+    public static final String CURRENCY_CODE = "currencyCode";
+
+    private static final String CURRENT_PRICE_PREFIX = CURRENT_PRICE + ".";
+
+    /** Every field of a product **/
+    public static final ProductFields ALL = new ProductFields(true, true, true, true);
+
+    private final boolean id;
+    private final boolean name;
+    private final boolean value;
+    private final boolean currencyCode;
+
+    private ProductFields(boolean id, boolean name, boolean value, boolean currencyCode) {
+        this.id = id;
+        this.name = name;
+        this.value = value;
+        this.currencyCode = currencyCode;
+    }
+
+    /**
+     * Gets the fields named in a comma separated list, such as {@code id,currentPrice.value}.
+     * @param fields the names of the fields, or {@code null} for every field
+     * @return the fields, or {@code null} if a name is not a field of a product
+     */
+    public static ProductFields parse(String fields) {
+
+        if (fields == null) {
+            return ALL;
+        }
+
+        boolean id = false;
+        boolean name = false;
+        boolean value = false;
+        boolean currencyCode = false;
+        for (String field : fields.split(",")) {
+            switch (field.trim()) {
+                case ID:
+                    id = true;
+                    break;
+                case NAME:
+                    name = true;
+                    break;
+                case CURRENT_PRICE:
+                    value = true;
+                    currencyCode = true;
+                    break;
+                case CURRENT_PRICE_PREFIX + VALUE:
+                    value = true;
+                    break;
+                case CURRENT_PRICE_PREFIX + CURRENCY_CODE:
+                    currencyCode = true;
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return new ProductFields(id, name, value, currencyCode);
+    }
+
+    /**
+     * Gets whether every field of a product is included.
+     * @return whether every field is included
+     */
+    public boolean isAll() {
+        return id && name && value && currencyCode;
+    }
+
+    /**
+     * Gets whether the id is included.
+     * @return whether the id is included
+     */
+    public boolean includesId() {
+        return id;
+    }
+
+    /**
+     * Gets whether the name is included. Without it, no name needs to be looked up.
+     * @return whether the name is included
+     */
+    public boolean includesName() {
+        return name;
+    }
+
+    /**
+     * Gets whether any field of the current price is included.
+     * @return whether the current price is included
+     */
+    public boolean includesCurrentPrice() {
+        return value || currencyCode;
+    }
+
+    /**
+     * Gets whether the value of the current price is included.
+     * @return whether the price value is included
+     */
+    public boolean includesValue() {
+        return value;
+    }
+
+    /**
+     * Gets whether the currency code of the current price is included.
+     * @return whether the currency code is included
+     */
+    public boolean includesCurrencyCode() {
+        return currencyCode;
+    }
+
+    /**
+     * Writes the included fields of {@code product} as a json object, in the same json as a {@link Product}.
+     * @param generator the generator to write to, not null
+     * @param product the product, not null
+     */
+    public void write(JsonGenerator generator, Product product) throws IOException {
+
+        generator.writeStartObject();
+        if (id) {
+            generator.writeStringField(ID, product.getId());
+        }
+        if (name) {
+            generator.writeStringField(NAME, product.getName());
+        }
+        if (includesCurrentPrice()) {
+            Product.CurrentPrice currentPrice = product.getCurrentPrice();
+            generator.writeObjectFieldStart(CURRENT_PRICE);
+            if (value) {
+                generator.writeStringField(VALUE, currentPrice.getValue());
+            }
+            if (currencyCode) {
+                generator.writeStringField(CURRENCY_CODE, currentPrice.getCurrencyCode());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductFields that = (ProductFields) o;
+        return id == that.id &&
+                name == that.name &&
+                value == that.value &&
+                currencyCode == that.currencyCode;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, value, currencyCode);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductFields{" +
+                "id=" + id +
+                ", name=" + name +
+                ", value=" + value +
+                ", currencyCode=" + currencyCode +
+                '}';
+    }
+}
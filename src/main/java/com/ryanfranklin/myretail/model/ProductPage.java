@@ -0,0 +1,80 @@
+package com.ryanfranklin.myretail.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Objects;
+
+public class ProductPage {
+
+    /** The products of this page */
+    private List<Product> products;
+
+    /** The cursor to get the next page, null on the last page */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    /** Jackson constructor **/
+    public ProductPage(){}
+
+    /**
+     * Constructs a ProductPage.
+     * @param products the products of this page, not null
+     * @param nextCursor the cursor to get the next page, null on the last page
+     */
+    public ProductPage(List<Product> products, String nextCursor) {
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Gets products
+     *
+     * @return the products
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Sets products
+     *
+     * @param products the of products of the ProductPage
+     */
+    public void setProducts(List<Product> products) {
+        this.products = products;
+    }
+
+    /**
+     * Gets nextCursor
+     *
+     * @return the nextCursor
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Sets nextCursor
+     *
+     * @param nextCursor the of nextCursor of the ProductPage
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductPage that = (ProductPage) o;
+        return Objects.equals(products, that.products) &&
+                Objects.equals(nextCursor, that.nextCursor);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(products, nextCursor);
+    }
+}
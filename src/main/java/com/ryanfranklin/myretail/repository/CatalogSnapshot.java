@@ -0,0 +1,947 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.json.WriterBasedJsonGenerator;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import com.ryanfranklin.myretail.model.PriceAmounts;
+import com.ryanfranklin.myretail.model.PriceChange;
+import com.ryanfranklin.myretail.model.PricePosition;
+import com.ryanfranklin.myretail.model.Product;
+import com.ryanfranklin.myretail.model.ProductFields;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A compact copy of the catalog, the id, name and price of every product, that pages of products ordered by id or by
+ * price are written from without reading the datastore, resolving names, or creating objects for each product, when
+ * {@code myretail.product-price.snapshot.enabled} is set.
+ *
+ * <p>The snapshot is built once the application is ready, by reading the catalog a page at a time, and built again
+ * every {@code rebuild-millis}. A build reads the prices with only the names already known to the service, the stored
+ * or last known name, and never looks names up, so it does not wait on the product name resource for the whole
+ * catalog; a product whose name is not known keeps its name from the previous build, and gets the name the service
+ * learns, from the name warmup or from reads of the product, at a later build. Ids, names and prices are kept as UTF-8 bytes in a few large arrays, with the position
+ * of each product's bytes in arrays of offsets, and products are kept in id order. In between builds, price changes
+ * from the {@link PriceChangeStream} are applied as they are published: the new price is appended to the price bytes
+ * and the product's offset moved to it, so a reader sees either the old or the new price. Products whose price
+ * changed are kept in a small sorted set per currency, in place of their position in the price order built with the
+ * snapshot. Names change only when the snapshot is built again. Products are only added to and removed from the
+ * catalog outside of the service, so the number of products is checked every {@code check-millis}, and the snapshot is
+ * built again as soon as it differs, dropping removed products and listing new ones.
+ *
+ * <p>The {@link #getVersion() version} of the snapshot changes with every build and every price change applied, so
+ * the entity tag of a page written from the snapshot describes the snapshot rather than the datastore.
+ */
+@Component
+public class CatalogSnapshot {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The field names of the product json **/
+    private static final SerializedString FIELD_ID = new SerializedString("id");
+    private static final SerializedString FIELD_NAME = new SerializedString("name");
+    private static final SerializedString FIELD_CURRENT_PRICE = new SerializedString("currentPrice");
+    private static final SerializedString FIELD_VALUE = new SerializedString("value");
+    private static final SerializedString FIELD_CURRENCY_CODE = new SerializedString("currencyCode");
+
+    /** The length of price bytes kept for a null value or currency code, larger than any length kept **/
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    /** The minor units kept for a price that has none **/
+    private static final long NO_MINOR_UNITS = Long.MIN_VALUE;
+
+    private static final char SEPARATOR = '-';
+
+    @Autowired
+    private ProductImplRepository productImplRepository;
+
+    @Autowired
+    private PriceChangeStream priceChangeStream;
+
+    @Autowired
+    private ProductPriceProperties productPriceProperties;
+
+    /** The latest snapshot, null until the first one is built **/
+    private volatile Columns columns;
+
+    /** The {@link System#currentTimeMillis()} the latest snapshot was built at **/
+    private volatile long builtAt;
+
+    /** The price changes applied to the latest snapshot, replaced with every build **/
+    private PriceChangeStream.Subscription subscription;
+
+    private ScheduledExecutorService scheduler;
+
+    /** Whether a build is waiting for the scheduler, so resets and growth do not queue one build each **/
+    private final AtomicBoolean buildPending = new AtomicBoolean();
+
+    private final LongAdder buildCount = new LongAdder();
+
+    /** A random id of this snapshot, so versions of snapshots in other instances or before a restart never match **/
+    private final String instanceId = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final LongAdder appliedCount = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSnapshot() {
+
+        ProductPriceProperties.Snapshot snapshot = productPriceProperties.getSnapshot();
+        if (!snapshot.isEnabled()) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("catalog-snapshot-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(this::build, 0, snapshot.getRebuildMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::checkCatalog, snapshot.getCheckMillis(), snapshot.getCheckMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopSnapshot() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Gets whether a snapshot was built and pages may be written from it.
+     * @return whether the snapshot is ready
+     */
+    public boolean isReady() {
+        return columns != null;
+    }
+
+    /**
+     * Gets the version of the snapshot, which changes whenever it is built again or a price change is applied to it.
+     * A page written after the version is read is at least as new as the version.
+     * @return the snapshot version, or {@code null} until the snapshot is built
+     */
+    public String getVersion() {
+        Columns columns = this.columns;
+        return columns == null ? null : instanceId + SEPARATOR + columns.build + SEPARATOR + columns.appliedChanges;
+    }
+
+    /**
+     * Writes a page of products ordered by id, each as a json object, in the same json as a {@link Product}.
+     * @param generator the generator to write the products to, not null
+     * @param afterId the id to start after, or {@code null} for the first page
+     * @param limit the maximum number of products in the page
+     * @param fields the fields of the products to write, not null
+     * @return the id of the last product written if there is a next page, or {@code null} for the last page
+     */
+    public String writePage(JsonGenerator generator, String afterId, int limit, ProductFields fields)
+            throws IOException {
+
+        checkNotNull(generator);
+        checkNotNull(fields);
+
+        Columns columns = readyColumns();
+        int start = afterId == null ? 0 : columns.indexAfter(afterId.getBytes(StandardCharsets.UTF_8));
+        int end = (int) Math.min((long) start + limit, columns.size);
+        for (int index = start; index < end; index++) {
+            columns.writeProduct(generator, index, fields);
+        }
+        return end < columns.size && end > start ? columns.id(end - 1) : null;
+    }
+
+    /**
+     * Writes a page of the products priced in {@code currencyCode} between two amounts, ordered by price and then id,
+     * each as a json object, in the same json as a {@link Product}.
+     * @param generator the generator to write the products to, not null
+     * @param currencyCode the currency code of the prices, not null
+     * @param minMinorUnits the smallest price in minor units, inclusive
+     * @param maxMinorUnits the largest price in minor units, inclusive
+     * @param after the position to start after, or {@code null} for the first page
+     * @param limit the maximum number of products in the page
+     * @param fields the fields of the products to write, not null
+     * @return the position of the last product written if there is a next page, or {@code null} for the last page
+     */
+    public PricePosition writePriceRange(JsonGenerator generator, String currencyCode, long minMinorUnits,
+                                         long maxMinorUnits, PricePosition after, int limit, ProductFields fields)
+            throws IOException {
+
+        checkNotNull(generator);
+        checkNotNull(currencyCode);
+        checkNotNull(fields);
+
+        Columns columns = readyColumns();
+        long fromMinorUnits = minMinorUnits;
+        int fromIndex = 0;
+        if (after != null && after.getMinorUnits() >= minMinorUnits) {
+            fromMinorUnits = after.getMinorUnits();
+            fromIndex = columns.indexAfter(after.getId().getBytes(StandardCharsets.UTF_8));
+        }
+
+        PriceOrder priceOrder = new PriceOrder(columns, currencyCode, fromMinorUnits, fromIndex, maxMinorUnits);
+        int written = 0;
+        while (written < limit && priceOrder.next()) {
+            columns.writeProduct(generator, priceOrder.index, fields);
+            written++;
+        }
+        if (written == 0 || !priceOrder.next()) {
+            return null;
+        }
+        return new PricePosition(priceOrder.lastMinorUnits, columns.id(priceOrder.lastIndex));
+    }
+
+    private Columns readyColumns() {
+
+        Columns columns = this.columns;
+        checkState(columns != null, "The catalog snapshot is not built.");
+        return columns;
+    }
+
+    /**
+     * Builds a snapshot of the catalog and applies the price changes published since the build started to it.
+     */
+    void build() {
+
+        buildPending.set(false);
+        try {
+            long start = System.currentTimeMillis();
+            String token = priceChangeStream.getLatestToken();
+            Columns built = readCatalog();
+            built.build = buildCount.sum() + 1;
+
+            // The changes published while the catalog was read are applied again, and skipped by version if read
+            PriceChangeStream.Subscription previous = subscription;
+            subscription = priceChangeStream.subscribeInProcess(token, new ChangeApplier(built));
+            columns = built;
+            builtAt = start;
+            if (previous != null) {
+                previous.cancel();
+            }
+            buildCount.increment();
+            logger.debug("Built the catalog snapshot of {} products in {} ms", built.size,
+                    System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule
+            logger.warn("Unable to build the catalog snapshot", e);
+        }
+    }
+
+    /**
+     * Builds the snapshot again when the number of products in the catalog is not the number in the snapshot.
+     */
+    void checkCatalog() {
+
+        Columns columns = this.columns;
+        try {
+            long count = productImplRepository.count();
+            if (columns != null && count != columns.size) {
+                logger.debug("The catalog has {} products and its snapshot {}, building the snapshot again", count,
+                        columns.size);
+                scheduleBuild();
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule
+            logger.warn("Unable to check the catalog snapshot", e);
+        }
+    }
+
+    private void scheduleBuild() {
+
+        if (scheduler != null && buildPending.compareAndSet(false, true)) {
+            scheduler.execute(this::build);
+        }
+    }
+
+    private Columns readCatalog() {
+
+        int pageSize = productPriceProperties.getSnapshot().getPageSize();
+        Columns previous = this.columns;
+        ColumnsBuilder builder = new ColumnsBuilder();
+        String afterId = null;
+        Slice<Product> page;
+        do {
+            page = productImplRepository.findPageWithKnownNames(afterId, pageSize);
+            for (Product product : page) {
+                if (product.getName() == null && previous != null) {
+                    int index = previous.indexOf(product.getId().getBytes(StandardCharsets.UTF_8));
+                    if (index >= 0) {
+                        product.setName(previous.name(index));
+                    }
+                }
+                builder.add(product);
+                afterId = product.getId();
+            }
+        } while (page.hasNext() && page.hasContent());
+        return builder.build();
+    }
+
+    /**
+     * Gets the number of products in the snapshot.
+     * @return the products, 0 until the snapshot is built
+     */
+    public int getSize() {
+        Columns columns = this.columns;
+        return columns == null ? 0 : columns.size;
+    }
+
+    /**
+     * Gets the number of bytes of ids, names and prices held by the snapshot, not counting offsets.
+     * @return the bytes held
+     */
+    public long getBytes() {
+        Columns columns = this.columns;
+        return columns == null ? 0 : (long) columns.idBytes.length + columns.nameBytes.length + columns.priceBytes.length;
+    }
+
+    /**
+     * Gets how long ago the snapshot was built.
+     * @return the age in milliseconds, or -1 until the snapshot is built
+     */
+    public long getAgeMillis() {
+        return columns == null ? -1 : System.currentTimeMillis() - builtAt;
+    }
+
+    /**
+     * Gets the number of times the snapshot was built.
+     * @return the builds
+     */
+    public long getBuildCount() {
+        return buildCount.sum();
+    }
+
+    /**
+     * Gets the number of price changes applied to snapshots.
+     * @return the price changes applied
+     */
+    public long getAppliedCount() {
+        return appliedCount.sum();
+    }
+
+    /**
+     * Applies the price changes of the stream to one snapshot. Calls are made from one thread at a time.
+     */
+    private class ChangeApplier implements PriceChangeStream.Subscriber {
+
+        private final Columns columns;
+
+        ChangeApplier(Columns columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public void send(String token, PriceChange priceChange) {
+
+            if (columns.apply(priceChange)) {
+                appliedCount.increment();
+            }
+            if (columns.isOvergrown()) {
+                scheduleBuild();
+            }
+        }
+
+        @Override
+        public void reset(String token) {
+            logger.debug("Price changes were missed, building the catalog snapshot again");
+            scheduleBuild();
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * The columns of one snapshot. Ids and names do not change once built. Prices are changed by one thread at a time,
+     * while any number of threads read them.
+     */
+    static final class Columns {
+
+        final int size;
+
+        /** The id of the product at an index is {@code idBytes[idStarts[index]]} up to {@code idStarts[index + 1]} **/
+        final byte[] idBytes;
+        final int[] idStarts;
+
+        /** Names are kept the same way as ids, with an empty name for each null name **/
+        final byte[] nameBytes;
+        final int[] nameStarts;
+        final BitSet nullNames;
+
+        /** The value then currency code of every price, with changed prices appended **/
+        volatile byte[] priceBytes;
+        private int priceBytesUsed;
+        private final int builtPriceBytes;
+
+        /** The position of each price in the price bytes, packed by {@link #price(int, int, int)} **/
+        final AtomicLongArray prices;
+
+        /** The version of each price, read and written only by the thread applying changes **/
+        private final long[] versions;
+
+        /** The indexes of the products with minor units by currency code, ordered by minor units when built **/
+        final Map<String, int[]> priceOrders;
+        final Map<String, long[]> priceOrderMinorUnits;
+
+        /** One bit for each product whose price changed since the build, and so is no longer in the price order **/
+        final AtomicLongArray changedPrices;
+
+        /** The products whose price changed since the build, by currency code, ordered by minor units **/
+        final ConcurrentMap<String, NavigableSet<PriceKey>> changedPriceOrders = new ConcurrentHashMap<>();
+        private final Map<Integer, PriceKey> changedPriceKeys = new HashMap<>();
+
+        /** The number of the build that created the columns, set before they are published, and the changes applied **/
+        long build;
+        volatile long appliedChanges;
+
+        Columns(int size, byte[] idBytes, int[] idStarts, byte[] nameBytes, int[] nameStarts, BitSet nullNames,
+                byte[] priceBytes, long[] prices, long[] minorUnits, long[] versions) {
+
+            this.size = size;
+            this.idBytes = idBytes;
+            this.idStarts = idStarts;
+            this.nameBytes = nameBytes;
+            this.nameStarts = nameStarts;
+            this.nullNames = nullNames;
+            this.priceBytes = priceBytes;
+            this.priceBytesUsed = priceBytes.length;
+            this.builtPriceBytes = priceBytes.length;
+            this.prices = new AtomicLongArray(prices);
+            this.versions = versions;
+            this.changedPrices = new AtomicLongArray((size + 63) / 64);
+
+            Map<String, int[]> priceOrders = new HashMap<>();
+            Map<String, long[]> priceOrderMinorUnits = new HashMap<>();
+            buildPriceOrders(minorUnits, priceOrders, priceOrderMinorUnits);
+            this.priceOrders = priceOrders;
+            this.priceOrderMinorUnits = priceOrderMinorUnits;
+        }
+
+        private void buildPriceOrders(long[] minorUnits, Map<String, int[]> priceOrders,
+                                      Map<String, long[]> priceOrderMinorUnits) {
+
+            Map<String, Integer> counts = new HashMap<>();
+            for (int index = 0; index < size; index++) {
+                if (minorUnits[index] != NO_MINOR_UNITS) {
+                    counts.merge(currencyCode(index), 1, Integer::sum);
+                }
+            }
+
+            for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                int[] indexes = new int[count.getValue()];
+                int next = 0;
+                for (int index = 0; index < size; index++) {
+                    if (minorUnits[index] != NO_MINOR_UNITS && currencyCode(index).equals(count.getKey())) {
+                        indexes[next++] = index;
+                    }
+                }
+                sortByMinorUnits(indexes, minorUnits);
+
+                long[] orderMinorUnits = new long[indexes.length];
+                for (int i = 0; i < indexes.length; i++) {
+                    orderMinorUnits[i] = minorUnits[indexes[i]];
+                }
+                priceOrders.put(count.getKey(), indexes);
+                priceOrderMinorUnits.put(count.getKey(), orderMinorUnits);
+            }
+        }
+
+        /**
+         * Sorts indexes, given in increasing order, by minor units and then index. Minor units that fit in an int are
+         * packed with the index into one long and sorted as longs, and larger ones are sorted as boxed indexes.
+         */
+        private static void sortByMinorUnits(int[] indexes, long[] minorUnits) {
+
+            boolean fitsInt = true;
+            for (int index : indexes) {
+                fitsInt &= minorUnits[index] == (int) minorUnits[index];
+            }
+
+            if (fitsInt) {
+                long[] packed = new long[indexes.length];
+                for (int i = 0; i < indexes.length; i++) {
+                    packed[i] = (minorUnits[indexes[i]] << 32) | indexes[i];
+                }
+                Arrays.sort(packed);
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = (int) packed[i];
+                }
+            } else {
+                Integer[] boxed = new Integer[indexes.length];
+                for (int i = 0; i < indexes.length; i++) {
+                    boxed[i] = indexes[i];
+                }
+                // The sort is stable, and the indexes are given in increasing order
+                Arrays.sort(boxed, (a, b) -> Long.compare(minorUnits[a], minorUnits[b]));
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = boxed[i];
+                }
+            }
+        }
+
+        /**
+         * Gets the index of the first product with an id greater than {@code id}.
+         */
+        int indexAfter(byte[] id) {
+
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int compared = compareId(middle, id);
+                if (compared < 0) {
+                    low = middle + 1;
+                } else if (compared > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle + 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Gets the index of the product with {@code id}, or -1 if it is not in the snapshot.
+         */
+        int indexOf(byte[] id) {
+
+            int index = indexAfter(id) - 1;
+            return index >= 0 && compareId(index, id) == 0 ? index : -1;
+        }
+
+        /** Compares the id at {@code index} with {@code id} as unsigned bytes, the order ids are read in **/
+        private int compareId(int index, byte[] id) {
+
+            int start = idStarts[index];
+            int length = idStarts[index + 1] - start;
+            int common = Math.min(length, id.length);
+            for (int i = 0; i < common; i++) {
+                int compared = (idBytes[start + i] & 0xFF) - (id[i] & 0xFF);
+                if (compared != 0) {
+                    return compared;
+                }
+            }
+            return length - id.length;
+        }
+
+        String id(int index) {
+            return new String(idBytes, idStarts[index], idStarts[index + 1] - idStarts[index], StandardCharsets.UTF_8);
+        }
+
+        String name(int index) {
+            return nullNames.get(index) ? null : new String(nameBytes, nameStarts[index],
+                    nameStarts[index + 1] - nameStarts[index], StandardCharsets.UTF_8);
+        }
+
+        private String currencyCode(int index) {
+
+            long price = prices.get(index);
+            int currencyCodeLength = currencyCodeLength(price);
+            return currencyCodeLength == NULL_LENGTH ? null : new String(priceBytes,
+                    currencyCodeStart(price), currencyCodeLength, StandardCharsets.UTF_8);
+        }
+
+        void writeProduct(JsonGenerator generator, int index, ProductFields fields) throws IOException {
+
+            long price = prices.get(index);
+            byte[] priceBytes = this.priceBytes;
+
+            generator.writeStartObject();
+            if (fields.includesId()) {
+                generator.writeFieldName(FIELD_ID);
+                writeString(generator, idBytes, idStarts[index], idStarts[index + 1] - idStarts[index]);
+            }
+            if (fields.includesName()) {
+                generator.writeFieldName(FIELD_NAME);
+                if (nullNames.get(index)) {
+                    generator.writeNull();
+                } else {
+                    writeString(generator, nameBytes, nameStarts[index], nameStarts[index + 1] - nameStarts[index]);
+                }
+            }
+            if (fields.includesCurrentPrice()) {
+                generator.writeFieldName(FIELD_CURRENT_PRICE);
+                generator.writeStartObject();
+                if (fields.includesValue()) {
+                    generator.writeFieldName(FIELD_VALUE);
+                    writeString(generator, priceBytes, start(price), valueLength(price));
+                }
+                if (fields.includesCurrencyCode()) {
+                    generator.writeFieldName(FIELD_CURRENCY_CODE);
+                    writeString(generator, priceBytes, currencyCodeStart(price), currencyCodeLength(price));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+
+        private static void writeString(JsonGenerator generator, byte[] bytes, int start, int length)
+                throws IOException {
+
+            if (length == NULL_LENGTH) {
+                generator.writeNull();
+            } else if (generator instanceof WriterBasedJsonGenerator) {
+                // Generators writing characters cannot write UTF-8 bytes
+                generator.writeString(new String(bytes, start, length, StandardCharsets.UTF_8));
+            } else {
+                generator.writeUTF8String(bytes, start, length);
+            }
+        }
+
+        /**
+         * Applies a price change, unless the product is not in the snapshot or its price is already at the version.
+         * @return whether the price change was applied
+         */
+        boolean apply(PriceChange priceChange) {
+
+            int index = indexOf(priceChange.getId().getBytes(StandardCharsets.UTF_8));
+            if (index < 0 || versions[index] >= priceChange.getVersion()) {
+                return false;
+            }
+
+            byte[] value = bytesOf(priceChange.getValue());
+            byte[] currencyCode = bytesOf(priceChange.getCurrencyCode());
+            int start = append(value, currencyCode);
+            Long changedMinorUnits = PriceAmounts.toMinorUnits(priceChange.getValue(), priceChange.getCurrencyCode());
+
+            // The new position in the price order is added before the old one is left, so readers never miss it
+            PriceKey previousKey = changedPriceKeys.remove(index);
+            PriceKey key = null;
+            if (changedMinorUnits != null && priceChange.getCurrencyCode() != null) {
+                key = new PriceKey(priceChange.getCurrencyCode(), changedMinorUnits, index);
+                changedPriceOrders.computeIfAbsent(key.currencyCode, currency -> new ConcurrentSkipListSet<>())
+                        .add(key);
+                changedPriceKeys.put(index, key);
+            }
+            markPriceChanged(index);
+            if (previousKey != null && !previousKey.equals(key)) {
+                changedPriceOrders.get(previousKey.currencyCode).remove(previousKey);
+            }
+
+            prices.set(index, price(start, lengthOf(value), lengthOf(currencyCode)));
+            versions[index] = priceChange.getVersion();
+            // Only the thread applying changes writes the count, and it is published after the price
+            appliedChanges++;
+            return true;
+        }
+
+        /**
+         * Appends a price to the price bytes, growing them if they are full.
+         * @return the start of the price
+         */
+        private int append(byte[] value, byte[] currencyCode) {
+
+            int length = (value == null ? 0 : value.length) + (currencyCode == null ? 0 : currencyCode.length);
+            byte[] priceBytes = this.priceBytes;
+            if (priceBytesUsed + length > priceBytes.length) {
+                priceBytes = Arrays.copyOf(priceBytes, Math.max(priceBytes.length * 2, priceBytesUsed + length) + 16);
+            }
+            int start = priceBytesUsed;
+            if (value != null) {
+                System.arraycopy(value, 0, priceBytes, start, value.length);
+            }
+            if (currencyCode != null) {
+                System.arraycopy(currencyCode, 0, priceBytes, start + length - currencyCode.length, currencyCode.length);
+            }
+            priceBytesUsed += length;
+            // Readers find the new bytes only through the price offset, which is set after the bytes are published
+            this.priceBytes = priceBytes;
+            return start;
+        }
+
+        private void markPriceChanged(int index) {
+            int word = index >>> 6;
+            changedPrices.set(word, changedPrices.get(word) | (1L << index));
+        }
+
+        boolean isPriceChanged(int index) {
+            return (changedPrices.get(index >>> 6) & (1L << index)) != 0;
+        }
+
+        /** Whether the changed prices appended at least doubled the price bytes, and a build would reclaim them **/
+        boolean isOvergrown() {
+            return priceBytesUsed > 2L * Math.max(builtPriceBytes, 1 << 20);
+        }
+
+        static long price(int start, int valueLength, int currencyCodeLength) {
+            return ((long) start << 32) | ((long) valueLength << 16) | currencyCodeLength;
+        }
+
+        private static int start(long price) {
+            return (int) (price >>> 32);
+        }
+
+        private static int valueLength(long price) {
+            return (int) (price >>> 16) & 0xFFFF;
+        }
+
+        private static int currencyCodeStart(long price) {
+            int valueLength = valueLength(price);
+            return start(price) + (valueLength == NULL_LENGTH ? 0 : valueLength);
+        }
+
+        private static int currencyCodeLength(long price) {
+            return (int) price & 0xFFFF;
+        }
+
+        static byte[] bytesOf(String string) {
+
+            byte[] bytes = string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+            if (bytes != null && bytes.length >= NULL_LENGTH) {
+                throw new IllegalArgumentException("A price of " + bytes.length + " bytes is too long to keep.");
+            }
+            return bytes;
+        }
+
+        static int lengthOf(byte[] bytes) {
+            return bytes == null ? NULL_LENGTH : bytes.length;
+        }
+    }
+
+    /**
+     * The position of a product whose price changed in the order of its currency's prices.
+     */
+    static final class PriceKey implements Comparable<PriceKey> {
+
+        final String currencyCode;
+        final long minorUnits;
+        final int index;
+
+        PriceKey(String currencyCode, long minorUnits, int index) {
+            this.currencyCode = currencyCode;
+            this.minorUnits = minorUnits;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(PriceKey other) {
+            int compared = Long.compare(minorUnits, other.minorUnits);
+            return compared != 0 ? compared : Integer.compare(index, other.index);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PriceKey that = (PriceKey) o;
+            return minorUnits == that.minorUnits &&
+                    index == that.index &&
+                    Objects.equals(currencyCode, that.currencyCode);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(currencyCode, minorUnits, index);
+        }
+    }
+
+    /**
+     * Walks the products of one currency from a position up to a largest price, in price and then id order, merging
+     * the price order built with the snapshot, less the products whose price changed, with the changed products.
+     */
+    private static final class PriceOrder {
+
+        private final Columns columns;
+        private final long maxMinorUnits;
+
+        private final int[] builtIndexes;
+        private final long[] builtMinorUnits;
+        private int built;
+
+        private final Iterator<PriceKey> changed;
+        private PriceKey nextChanged;
+
+        /** The product at the current position **/
+        int index;
+        private long minorUnits;
+
+        /** The product at the previous position **/
+        int lastIndex;
+        long lastMinorUnits;
+
+        PriceOrder(Columns columns, String currencyCode, long fromMinorUnits, int fromIndex, long maxMinorUnits) {
+
+            this.columns = columns;
+            this.maxMinorUnits = maxMinorUnits;
+
+            int[] builtIndexes = columns.priceOrders.get(currencyCode);
+            this.builtIndexes = builtIndexes == null ? new int[0] : builtIndexes;
+            long[] builtMinorUnits = columns.priceOrderMinorUnits.get(currencyCode);
+            this.builtMinorUnits = builtMinorUnits == null ? new long[0] : builtMinorUnits;
+            this.built = firstBuilt(fromMinorUnits, fromIndex);
+
+            NavigableSet<PriceKey> changed = columns.changedPriceOrders.get(currencyCode);
+            this.changed = changed == null ? Collections.emptyIterator()
+                    : changed.tailSet(new PriceKey(currencyCode, fromMinorUnits, fromIndex), true).iterator();
+            this.nextChanged = this.changed.hasNext() ? this.changed.next() : null;
+        }
+
+        /** Finds the first position in the built order at or after the minor units and index **/
+        private int firstBuilt(long fromMinorUnits, int fromIndex) {
+
+            int low = 0;
+            int high = builtIndexes.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int compared = Long.compare(builtMinorUnits[middle], fromMinorUnits);
+                if (compared == 0) {
+                    compared = Integer.compare(builtIndexes[middle], fromIndex);
+                }
+                if (compared < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Moves to the next product.
+         * @return whether there is a next product
+         */
+        boolean next() {
+
+            while (built < builtIndexes.length && columns.isPriceChanged(builtIndexes[built])) {
+                built++;
+            }
+            boolean hasBuilt = built < builtIndexes.length && builtMinorUnits[built] <= maxMinorUnits;
+            boolean hasChanged = nextChanged != null && nextChanged.minorUnits <= maxMinorUnits;
+            if (!hasBuilt && !hasChanged) {
+                return false;
+            }
+
+            lastIndex = index;
+            lastMinorUnits = minorUnits;
+            boolean takeBuilt = hasBuilt && (!hasChanged || builtMinorUnits[built] < nextChanged.minorUnits
+                    || builtMinorUnits[built] == nextChanged.minorUnits && builtIndexes[built] < nextChanged.index);
+            if (takeBuilt) {
+                index = builtIndexes[built];
+                minorUnits = builtMinorUnits[built];
+                built++;
+            } else {
+                index = nextChanged.index;
+                minorUnits = nextChanged.minorUnits;
+                nextChanged = changed.hasNext() ? changed.next() : null;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Collects the products read from the catalog, in id order, into {@link Columns}.
+     */
+    private static final class ColumnsBuilder {
+
+        private int size;
+        private final Bytes idBytes = new Bytes();
+        private final Bytes nameBytes = new Bytes();
+        private final Bytes priceBytes = new Bytes();
+        private int[] idStarts = new int[1024];
+        private int[] nameStarts = new int[1024];
+        private long[] prices = new long[1024];
+        private long[] minorUnits = new long[1024];
+        private long[] versions = new long[1024];
+        private final BitSet nullNames = new BitSet();
+
+        void add(Product product) {
+
+            if (size + 1 == idStarts.length) {
+                int capacity = idStarts.length * 2;
+                idStarts = Arrays.copyOf(idStarts, capacity);
+                nameStarts = Arrays.copyOf(nameStarts, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                minorUnits = Arrays.copyOf(minorUnits, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+            }
+
+            Product.CurrentPrice currentPrice = product.getCurrentPrice();
+            byte[] value = Columns.bytesOf(currentPrice.getValue());
+            byte[] currencyCode = Columns.bytesOf(currentPrice.getCurrencyCode());
+
+            idStarts[size] = idBytes.size;
+            idBytes.add(product.getId().getBytes(StandardCharsets.UTF_8));
+            nameStarts[size] = nameBytes.size;
+            if (product.getName() == null) {
+                nullNames.set(size);
+            } else {
+                nameBytes.add(product.getName().getBytes(StandardCharsets.UTF_8));
+            }
+            prices[size] = Columns.price(priceBytes.size, Columns.lengthOf(value), Columns.lengthOf(currencyCode));
+            priceBytes.add(value);
+            priceBytes.add(currencyCode);
+            minorUnits[size] = currentPrice.getMinorUnits() == null || currentPrice.getCurrencyCode() == null
+                    ? NO_MINOR_UNITS : currentPrice.getMinorUnits();
+            versions[size] = ProductImplRepository.versionOf(currentPrice);
+            size++;
+        }
+
+        Columns build() {
+
+            idStarts[size] = idBytes.size;
+            nameStarts[size] = nameBytes.size;
+            return new Columns(size, idBytes.toArray(), Arrays.copyOf(idStarts, size + 1),
+                    nameBytes.toArray(), Arrays.copyOf(nameStarts, size + 1), nullNames, priceBytes.toArray(),
+                    Arrays.copyOf(prices, size), Arrays.copyOf(minorUnits, size), Arrays.copyOf(versions, size));
+        }
+    }
+
+    /**
+     * A growable array of bytes.
+     */
+    private static final class Bytes {
+
+        private byte[] bytes = new byte[8192];
+        private int size;
+
+        void add(byte[] added) {
+
+            if (added == null) {
+                return;
+            }
+            if (size + added.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + added.length));
+            }
+            System.arraycopy(added, 0, bytes, size, added.length);
+            size += added.length;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import com.ryanfranklin.myretail.exception.ServiceUnavailableException;
+import com.ryanfranklin.myretail.model.PriceChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Streams committed price changes to subscribers. Changes are kept in a ring buffer of the
+ * {@code myretail.product-price.changes.buffer-size} most recent changes, each at the next offset, and every subscriber
+ * reads the buffer from its own offset, so publishing never waits on a subscriber and a subscriber never holds more than
+ * its offset. A subscriber that falls further behind than the buffer holds, or resumes from an offset the buffer no
+ * longer holds, is sent a reset and continues from the latest change; it should read the catalog again for the changes
+ * it missed. Offsets are given out as tokens holding the epoch of the stream, so a token from before a restart is
+ * answered with a reset as well.
+ * <p>
+ * Remote subscribers are written to by a writer thread of their own while they have changes to send, so a client that
+ * stops reading holds up no one else, and one whose send takes longer than
+ * {@code myretail.product-price.changes.send-timeout-millis} is dropped as stalled. In-process subscribers, which never
+ * block, are sent to on a small pool of threads apart from the writers and do not count towards
+ * {@code max-subscribers}.
+ */
+@Component
+public class PriceChangeStream {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The most changes copied from the buffer at once while sending to a subscriber **/
+    private static final int SEND_BATCH_SIZE = 100;
+
+    /**
+     * Receives the price changes of a subscription. Calls are made from one thread at a time.
+     */
+    public interface Subscriber {
+
+        /**
+         * Sends a price change.
+         * @param token the token to resume after this change, not null
+         * @param priceChange the price change, not null
+         */
+        void send(String token, PriceChange priceChange) throws IOException;
+
+        /**
+         * Sends that price changes were missed.
+         * @param token the token to resume from after reading the catalog again, not null
+         */
+        void reset(String token) throws IOException;
+
+        /**
+         * Sends nothing, to keep the connection of an idle subscriber open and find the closed ones.
+         */
+        void heartbeat() throws IOException;
+
+        /**
+         * Ends the subscription after a send failed or the stream stopped.
+         */
+        void close();
+    }
+
+    @Autowired
+    private ProductPriceProperties productPriceProperties;
+
+    /** Identifies this stream in tokens, so tokens given out before a restart are not resumed from **/
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /** The most recent changes, the change at an offset kept at the offset modulo the length **/
+    private PriceChange[] buffer;
+
+    /** The offset of the next change published, starting at 1 **/
+    private long nextOffset = 1;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    /** Sends heartbeats, checks for stalled sends and sends to in-process subscribers **/
+    private ScheduledExecutorService executor;
+
+    /** Writes to remote subscribers, a thread for each subscriber while it has something to send **/
+    private ExecutorService writer;
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder resetCount = new LongAdder();
+    private final LongAdder stalledCount = new LongAdder();
+
+    @PostConstruct
+    void initStream() {
+
+        ProductPriceProperties.Changes changes = productPriceProperties.getChanges();
+        buffer = new PriceChange[changes.getBufferSize()];
+        executor = Executors.newScheduledThreadPool(changes.getPoolSize(),
+                new ThreadFactoryBuilder().setNameFormat("price-change-%d").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this::sendHeartbeats,
+                changes.getHeartbeatMillis(), changes.getHeartbeatMillis(), TimeUnit.MILLISECONDS);
+        long stallCheckMillis = Math.max(1, changes.getSendTimeoutMillis() / 2);
+        executor.scheduleWithFixedDelay(this::dropStalledSubscribers,
+                stallCheckMillis, stallCheckMillis, TimeUnit.MILLISECONDS);
+        writer = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("price-change-writer-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    void stopStream() {
+
+        executor.shutdownNow();
+        writer.shutdownNow();
+        for (Subscription subscription : subscriptions) {
+            subscription.cancel();
+            subscription.subscriber.close();
+        }
+    }
+
+    /**
+     * Publishes committed price changes, in the order they were committed, to every subscriber.
+     * @param priceChanges the price changes, not null
+     */
+    public void publish(List<PriceChange> priceChanges) {
+
+        checkNotNull(priceChanges);
+
+        if (priceChanges.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (PriceChange priceChange : priceChanges) {
+                buffer[index(nextOffset)] = priceChange;
+                nextOffset++;
+            }
+        }
+        publishedCount.add(priceChanges.size());
+        for (Subscription subscription : subscriptions) {
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * Subscribes to price changes, from the next change published, or from after the change of {@code token}.
+     * @param token the token of the last change received, or {@code null} to start from the next change
+     * @param subscriber the subscriber, not null
+     * @return the subscription, to cancel when the subscriber goes away, not null
+     * @throws ServiceUnavailableException if there are {@code max-subscribers} subscribers already
+     */
+    public Subscription subscribe(String token, Subscriber subscriber) {
+        return subscribe(token, subscriber, false);
+    }
+
+    /**
+     * Subscribes a subscriber in this process, whose calls never block, to price changes. It is sent to apart from the
+     * remote subscribers, so it keeps up however slow they are, and is never refused.
+     * @param token the token of the last change received, or {@code null} to start from the next change
+     * @param subscriber the subscriber, not null
+     * @return the subscription, to cancel when the subscriber goes away, not null
+     */
+    public Subscription subscribeInProcess(String token, Subscriber subscriber) {
+        return subscribe(token, subscriber, true);
+    }
+
+    private Subscription subscribe(String token, Subscriber subscriber, boolean inProcess) {
+
+        checkNotNull(subscriber);
+
+        Subscription subscription;
+        synchronized (this) {
+            if (!inProcess && getRemoteSubscriberCount() >= productPriceProperties.getChanges().getMaxSubscribers()) {
+                throw new ServiceUnavailableException("Too many price change subscribers.");
+            }
+            Long offset = token == null ? null : offsetOf(token);
+            if (token == null) {
+                subscription = new Subscription(subscriber, inProcess, nextOffset, false);
+            } else if (offset != null && offset + 1 >= oldestOffset() && offset < nextOffset) {
+                subscription = new Subscription(subscriber, inProcess, offset + 1, false);
+            } else {
+                logger.debug("Unable to resume price changes from token: {}", token);
+                subscription = new Subscription(subscriber, inProcess, nextOffset, true);
+            }
+            subscriptions.add(subscription);
+        }
+        subscription.schedule();
+        return subscription;
+    }
+
+    /**
+     * Gets the token of the latest change published, to subscribe from later without missing the changes in between.
+     * @return the token of the latest change, not null
+     */
+    public synchronized String getLatestToken() {
+        return tokenOf(nextOffset - 1);
+    }
+
+    private void sendHeartbeats() {
+
+        for (Subscription subscription : subscriptions) {
+            subscription.heartbeatDue = true;
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * Drops the remote subscribers whose send has taken longer than {@code send-timeout-millis}, interrupting their
+     * writer. A writer blocked on a connection that cannot be interrupted is left to the connection's own timeout,
+     * and closes the subscriber when its send returns.
+     */
+    private void dropStalledSubscribers() {
+
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(productPriceProperties.getChanges().getSendTimeoutMillis());
+        long now = System.nanoTime();
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.inProcess && subscription.sending && now - subscription.sendStartedNanos > timeoutNanos) {
+                subscription.stall();
+            }
+        }
+    }
+
+    private long getRemoteSubscriberCount() {
+        return subscriptions.stream().filter(subscription -> !subscription.inProcess).count();
+    }
+
+    /** The offset of the oldest change still in the buffer **/
+    private long oldestOffset() {
+        return Math.max(1, nextOffset - buffer.length);
+    }
+
+    private int index(long offset) {
+        return (int) (offset % buffer.length);
+    }
+
+    private String tokenOf(long offset) {
+        return epoch + "-" + offset;
+    }
+
+    /**
+     * Gets the offset in {@code token}.
+     * @return the offset, or {@code null} if the token is not one of this stream
+     */
+    private Long offsetOf(String token) {
+
+        int separator = token.lastIndexOf('-');
+        if (separator < 0 || !token.substring(0, separator).equals(epoch)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(token.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the number of subscribers streaming.
+     * @return the subscribers
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Gets the number of price changes published.
+     * @return the price changes published
+     */
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * Gets the number of resets sent to subscribers that missed price changes.
+     * @return the resets sent
+     */
+    public long getResetCount() {
+        return resetCount.sum();
+    }
+
+    /**
+     * Gets the number of subscribers dropped because a send to them took longer than {@code send-timeout-millis}.
+     * @return the stalled subscribers dropped
+     */
+    public long getStalledCount() {
+        return stalledCount.sum();
+    }
+
+    /**
+     * A subscriber's place in the stream. At most one thread sends to the subscriber at a time.
+     */
+    public final class Subscription {
+
+        private final Subscriber subscriber;
+
+        /** Whether the subscriber is in this process, and so sent to on the pool rather than by a writer **/
+        private final boolean inProcess;
+
+        /** The offset of the next change to send **/
+        private long position;
+
+        private boolean resetDue;
+
+        private volatile boolean heartbeatDue;
+
+        private volatile boolean cancelled;
+
+        /** Whether sending is scheduled or running **/
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /** Whether a send is running, since {@code sendStartedNanos} on {@code sendingThread} **/
+        private volatile boolean sending;
+
+        private volatile long sendStartedNanos;
+
+        private volatile Thread sendingThread;
+
+        /** Whether the subscriber was dropped for a send that took too long **/
+        private volatile boolean stalled;
+
+        private Subscription(Subscriber subscriber, boolean inProcess, long position, boolean resetDue) {
+            this.subscriber = subscriber;
+            this.inProcess = inProcess;
+            this.position = position;
+            this.resetDue = resetDue;
+        }
+
+        /**
+         * Stops sending to the subscriber.
+         */
+        public void cancel() {
+
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private void schedule() {
+
+            if (cancelled || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                (inProcess ? executor : writer).execute(this::send);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+            }
+        }
+
+        /**
+         * Drops the subscriber for a send that has taken too long, and interrupts its writer.
+         */
+        private void stall() {
+
+            logger.debug("Dropping a price change subscriber whose send has stalled");
+            stalled = true;
+            cancel();
+            stalledCount.increment();
+            Thread thread = sendingThread;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        private void send() {
+
+            sendingThread = Thread.currentThread();
+            sendStartedNanos = System.nanoTime();
+            sending = true;
+            try {
+                boolean sent = sendChanges();
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    if (!sent) {
+                        subscriber.heartbeat();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Closing a price change subscriber that could not be sent to", e);
+                cancel();
+                subscriber.close();
+                return;
+            } finally {
+                sending = false;
+                sendingThread = null;
+                scheduled.set(false);
+            }
+            if (stalled) {
+                subscriber.close();
+                return;
+            }
+
+            // A change published while sending found sending scheduled, so it is sent now
+            synchronized (PriceChangeStream.this) {
+                if (position == nextOffset) {
+                    return;
+                }
+            }
+            schedule();
+        }
+
+        /**
+         * Sends the changes from the position to the latest change, after a reset if one is due.
+         * @return whether anything was sent
+         */
+        private boolean sendChanges() throws IOException {
+
+            boolean sent = false;
+            List<PriceChange> priceChanges = new ArrayList<>(SEND_BATCH_SIZE);
+            while (!cancelled) {
+                synchronized (PriceChangeStream.this) {
+                    if (position < oldestOffset()) {
+                        resetDue = true;
+                        position = nextOffset;
+                    }
+                    for (long offset = position; offset < nextOffset && priceChanges.size() < SEND_BATCH_SIZE; offset++) {
+                        priceChanges.add(buffer[index(offset)]);
+                    }
+                }
+
+                if (resetDue) {
+                    subscriber.reset(tokenOf(position - 1));
+                    resetDue = false;
+                    resetCount.increment();
+                    sent = true;
+                }
+                if (priceChanges.isEmpty()) {
+                    return sent;
+                }
+                for (PriceChange priceChange : priceChanges) {
+                    subscriber.send(tokenOf(position), priceChange);
+                    position++;
+                }
+                priceChanges.clear();
+                sent = true;
+            }
+            return sent;
+        }
+    }
+}
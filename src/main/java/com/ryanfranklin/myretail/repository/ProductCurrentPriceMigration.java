@@ -0,0 +1,43 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Backfills the minor units of the current prices written before minor units existed, when
+ * {@code myretail.product-price.migration.enabled} is set. Prices written since then already have minor units, so
+ * the migration only has work to do once. Its completion is recorded, and it is skipped at later startups.
+ */
+@Component
+public class ProductCurrentPriceMigration implements ApplicationRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private ProductCurrentPriceRepository currentPriceRepository;
+
+    @Autowired
+    private ProductPriceProperties productPriceProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+
+        ProductPriceProperties.Migration migration = productPriceProperties.getMigration();
+        if (!migration.isEnabled()) {
+            return;
+        }
+        if (currentPriceRepository.isMinorUnitsBackfilled()) {
+            logger.debug("The minor units of current prices were already backfilled");
+            return;
+        }
+
+        logger.info("Backfilling the minor units of current prices");
+        long backfilled = currentPriceRepository.backfillMinorUnits(migration.getBatchSize());
+        logger.info("Backfilled the minor units of {} current prices", backfilled);
+    }
+}
@@ -2,10 +2,27 @@ package com.ryanfranklin.myretail.repository;
 
 import com.ryanfranklin.myretail.model.Product;
 import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
-public interface ProductCurrentPriceRepository extends MongoRepository<Product.CurrentPrice, String> {
+public interface ProductCurrentPriceRepository extends MongoRepository<Product.CurrentPrice, String>,
+        ProductCurrentPriceRepositoryCustom {
 
+    /**
+     * Gets a slice of current prices without counting the whole collection.
+     * @param pageable the size and sort of the slice, not null
+     * @return the current prices of the slice, not null
+     */
+    Slice<Product.CurrentPrice> findAllBy(Pageable pageable);
+
+    /**
+     * Gets a slice of the current prices with an id after {@code id}, served by a range scan of the id index.
+     * @param id the id to start after, not null
+     * @param pageable the size and sort of the slice, not null
+     * @return the current prices of the slice, not null
+     */
+    Slice<Product.CurrentPrice> findByIdGreaterThan(String id, Pageable pageable);
 }
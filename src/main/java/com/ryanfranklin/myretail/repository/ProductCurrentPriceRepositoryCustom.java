@@ -0,0 +1,127 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.mongodb.BulkWriteError;
+import com.ryanfranklin.myretail.model.PricePosition;
+import com.ryanfranklin.myretail.model.PriceUpdate;
+import com.ryanfranklin.myretail.model.Product;
+import com.ryanfranklin.myretail.model.ProductFields;
+import org.springframework.data.domain.Slice;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Current price queries that Spring Data cannot derive, implemented by {@link ProductCurrentPriceRepositoryImpl}.
+ */
+public interface ProductCurrentPriceRepositoryCustom {
+
+    /**
+     * Atomically sets the value, currency code and minor units of the current price with {@code id} and increments
+     * its version, in a single round trip. A price that was never updated has version 0.
+     * @param id the id of the product, not null
+     * @param value the new price value, not null
+     * @param currencyCode the new currency code, not null
+     * @param expectedVersion the version the price must have to be updated, or {@code null} to update any version
+     * @return the current price as it was before the update, or {@code null} if no price matched
+     */
+    Product.CurrentPrice findAndUpdatePrice(String id, String value, String currencyCode, Long expectedVersion);
+
+    /**
+     * Applies {@code priceUpdates} in a single bulk write. Each update sets the value and currency code of a current
+     * price and increments its version, the same as {@link #findAndUpdatePrice}, only if the price still has its
+     * expected version. Updates never add a price. When fewer updates match than were attempted, the prices are read
+     * again: an update whose price has another version is reported with an error that
+     * {@link ProductCurrentPriceRepositoryImpl#isVersionConflict(BulkWriteError)} is true for, and one whose price was
+     * removed with an error that {@link ProductCurrentPriceRepositoryImpl#isNotFound(BulkWriteError)} is true for.
+     * Neither stops an ordered write, which stops only at the first update the datastore rejects.
+     * @param priceUpdates the price updates, not null
+     * @param expectedVersions the version each price must have to be updated, in the order of the updates, not null
+     * @param ordered whether to apply the updates in order and stop at the first update the datastore rejects
+     * @return the updates that were not applied, where the index of an error is the index in {@code priceUpdates},
+     *         not null
+     */
+    List<BulkWriteError> updatePrices(List<PriceUpdate> priceUpdates, List<Long> expectedVersions, boolean ordered);
+
+    /**
+     * Gets a slice of the current prices in {@code currencyCode} between two amounts, ordered by amount and then id.
+     * The query is served by the currency code, minor units and id index.
+     * @param currencyCode the currency code of the prices, not null
+     * @param minMinorUnits the smallest amount in minor units, inclusive
+     * @param maxMinorUnits the largest amount in minor units, inclusive
+     * @param after the position to start after, or {@code null} for the first slice
+     * @param limit the maximum number of prices in the slice
+     * @param fields the fields of the products to read, not null
+     * @return the current prices of the slice, with only the fields to read, not null
+     */
+    Slice<Product.CurrentPrice> findByPriceRange(String currencyCode, long minMinorUnits, long maxMinorUnits,
+                                                 PricePosition after, int limit, ProductFields fields);
+
+    /**
+     * Gets the current price with {@code id}, reading only the document fields needed for {@code fields}. The id,
+     * version and minor units are always read.
+     * @param id the id of the product, not null
+     * @param fields the fields of the product to read, not null
+     * @return the current price with only the fields to read, or {@code null} if there is none
+     */
+    Product.CurrentPrice findProjected(String id, ProductFields fields);
+
+    /**
+     * Gets the current prices with the given {@code ids} in a single query, reading only the document fields needed
+     * for {@code fields}, the same as {@link #findProjected}.
+     * @param ids the ids of the products, not null
+     * @param fields the fields of the products to read, not null
+     * @return the current prices found, in no particular order, not null
+     */
+    List<Product.CurrentPrice> findAllProjected(Collection<String> ids, ProductFields fields);
+
+    /**
+     * Gets a slice of the current prices after {@code afterId}, ordered by id, reading only the document fields needed
+     * for {@code fields}, the same as {@link #findProjected}.
+     * @param afterId the id to start after, or {@code null} for the first slice
+     * @param limit the maximum number of prices in the slice
+     * @param fields the fields of the products to read, not null
+     * @return the current prices of the slice, not null
+     */
+    Slice<Product.CurrentPrice> findPageProjected(String afterId, int limit, ProductFields fields);
+
+    /**
+     * Gets the ids of the current prices after {@code afterId}, ordered by id, reading only the id index.
+     * @param afterId the id to start after, or {@code null} to start from the first id
+     * @param limit the maximum number of ids
+     * @return the ids, not null
+     */
+    List<String> findIds(String afterId, int limit);
+
+    /**
+     * Stores the product name of the current price with {@code id}, without changing its version.
+     * @param id the id of the product, not null
+     * @param name the product name, or {@code null} to remove the stored name
+     * @param fetchedAt when the name was fetched from the product name resource, not null
+     */
+    void updateName(String id, String name, Date fetchedAt);
+
+    /**
+     * Sets the minor units of every current price written before minor units existed, {@code batchSize} prices at a
+     * time in order of id, and records that the backfill completed. Prices whose value is not a number get a null
+     * amount, so they are not read again.
+     * @param batchSize the number of prices read and written at a time
+     * @return the number of prices backfilled
+     */
+    long backfillMinorUnits(int batchSize);
+
+    /**
+     * Gets whether {@link #backfillMinorUnits(int)} has completed before.
+     * @return whether the minor units of every current price have been backfilled
+     */
+    boolean isMinorUnitsBackfilled();
+
+    /**
+     * Gets a version of the whole set of current prices, made of the number of prices and a counter of the writes
+     * made through this repository. Every method that writes current prices, names stored with them included,
+     * increments the counter after writing, and the number of prices changes when prices are added or removed outside
+     * of the service. Both are read without scanning the collection.
+     * @return the catalog version, not null
+     */
+    String findCatalogVersion();
+}
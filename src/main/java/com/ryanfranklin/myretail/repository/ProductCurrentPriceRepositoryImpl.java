@@ -0,0 +1,438 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+import com.ryanfranklin.myretail.model.PriceAmounts;
+import com.ryanfranklin.myretail.model.PricePosition;
+import com.ryanfranklin.myretail.model.PriceUpdate;
+import com.ryanfranklin.myretail.model.Product;
+import com.ryanfranklin.myretail.model.ProductFields;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class ProductCurrentPriceRepositoryImpl implements ProductCurrentPriceRepositoryCustom {
+
+    /** The fields of the current price document **/
+    static final String FIELD_ID = "id";
+    static final String FIELD_VALUE = "value";
+    static final String FIELD_CURRENCY_CODE = "currencyCode";
+    static final String FIELD_MINOR_UNITS = "minorUnits";
+    static final String FIELD_VERSION = "version";
+    static final String FIELD_NAME = "name";
+    static final String FIELD_NAME_FETCHED_AT = "nameFetchedAt";
+
+    /** The error codes given to updates of {@link #updatePrices} that matched no price, by why they did not match **/
+    static final int VERSION_CONFLICT_CODE = -1;
+    static final int NOT_FOUND_CODE = -2;
+
+    /** The collection of the catalog write counter, the id of its document and its field **/
+    static final String COLLECTION_CATALOG_VERSION = "catalogVersion";
+    static final String CATALOG_VERSION_ID = "currentPrice";
+    static final String FIELD_DOCUMENT_ID = "_id";
+    static final String FIELD_WRITES = "writes";
+
+    /** The collection of completed migrations, the id of the minor units backfill and the field of its completion **/
+    static final String COLLECTION_MIGRATIONS = "migrations";
+    static final String MIGRATION_MINOR_UNITS = "minorUnits";
+    static final String FIELD_COMPLETED_AT = "completedAt";
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Override
+    public Product.CurrentPrice findAndUpdatePrice(String id, String value, String currencyCode, Long expectedVersion) {
+
+        checkNotNull(id);
+
+        Query query = new Query(withVersion(where(FIELD_ID).is(id), expectedVersion));
+
+        Product.CurrentPrice oldPrice = mongoOperations.findAndModify(query, priceUpdate(value, currencyCode),
+                FindAndModifyOptions.options().returnNew(false), Product.CurrentPrice.class);
+        if (oldPrice != null) {
+            countWrite();
+        }
+        return oldPrice;
+    }
+
+    @Override
+    public List<BulkWriteError> updatePrices(List<PriceUpdate> priceUpdates, List<Long> expectedVersions,
+                                             boolean ordered) {
+
+        checkNotNull(priceUpdates);
+        checkArgument(expectedVersions.size() == priceUpdates.size());
+
+        if (priceUpdates.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // An update matches nothing when the price has another version or was removed, which is not an error of the
+        // bulk write; the write only counts the updates that matched
+        BulkOperations bulkOperations = mongoOperations.bulkOps(
+                ordered ? BulkOperations.BulkMode.ORDERED : BulkOperations.BulkMode.UNORDERED,
+                Product.CurrentPrice.class);
+        for (int i = 0; i < priceUpdates.size(); i++) {
+            PriceUpdate priceUpdate = priceUpdates.get(i);
+            bulkOperations.updateOne(new Query(withVersion(where(FIELD_ID).is(priceUpdate.getId()),
+                    checkNotNull(expectedVersions.get(i)))),
+                    priceUpdate(priceUpdate.getValue(), priceUpdate.getCurrencyCode()));
+        }
+
+        BulkWriteResult result;
+        List<BulkWriteError> errors = new ArrayList<>();
+        try {
+            result = bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            result = e.getResult();
+            errors.addAll(e.getErrors());
+        } finally {
+            countWrite();
+        }
+
+        // An ordered write stops at its first error, and the updates after it were not attempted
+        int attempted = priceUpdates.size();
+        if (ordered) {
+            for (BulkWriteError error : errors) {
+                attempted = Math.min(attempted, error.getIndex());
+            }
+        }
+        if (result.getMatchedCount() < attempted - (ordered ? 0 : errors.size())) {
+            errors.addAll(findUnmatched(priceUpdates, expectedVersions, attempted, errors));
+        }
+        return errors;
+    }
+
+    /**
+     * Reads the prices of the attempted updates of {@link #updatePrices} again to find the updates that matched no
+     * price. A price at the version after its expected version, with the value and currency code of its update, was
+     * updated by it.
+     * @param priceUpdates the price updates, not null
+     * @param expectedVersions the version each price had to have to be updated, not null
+     * @param attempted the number of updates from the first that were attempted
+     * @param errors the updates that failed, which did not match, not null
+     * @return an error for each update that matched no price, not null
+     */
+    private List<BulkWriteError> findUnmatched(List<PriceUpdate> priceUpdates, List<Long> expectedVersions,
+                                               int attempted, List<BulkWriteError> errors) {
+
+        List<String> ids = new ArrayList<>(attempted);
+        for (int i = 0; i < attempted; i++) {
+            ids.add(priceUpdates.get(i).getId());
+        }
+        Query query = new Query(where(FIELD_ID).in(ids));
+        query.fields().include(FIELD_ID).include(FIELD_VALUE).include(FIELD_CURRENCY_CODE).include(FIELD_VERSION);
+        Map<String, Product.CurrentPrice> currentPrices = new HashMap<>();
+        for (Product.CurrentPrice currentPrice : mongoOperations.find(query, Product.CurrentPrice.class)) {
+            currentPrices.put(currentPrice.getId(), currentPrice);
+        }
+
+        List<Integer> failed = new ArrayList<>(errors.size());
+        for (BulkWriteError error : errors) {
+            failed.add(error.getIndex());
+        }
+        List<BulkWriteError> unmatched = new ArrayList<>();
+        for (int i = 0; i < attempted; i++) {
+            PriceUpdate priceUpdate = priceUpdates.get(i);
+            Product.CurrentPrice currentPrice = currentPrices.get(priceUpdate.getId());
+            if (failed.contains(i)) {
+                continue;
+            } else if (currentPrice == null) {
+                unmatched.add(new BulkWriteError(NOT_FOUND_CODE, "The price was removed while it was updated.",
+                        new BasicDBObject(), i));
+            } else if (!isUpdatedBy(currentPrice, priceUpdate, expectedVersions.get(i))) {
+                unmatched.add(new BulkWriteError(VERSION_CONFLICT_CODE, "The price changed while it was updated.",
+                        new BasicDBObject(), i));
+            }
+        }
+        return unmatched;
+    }
+
+    private static boolean isUpdatedBy(Product.CurrentPrice currentPrice, PriceUpdate priceUpdate,
+                                       long expectedVersion) {
+        return currentPrice.getVersion() != null && currentPrice.getVersion() == expectedVersion + 1
+                && Objects.equals(currentPrice.getValue(), priceUpdate.getValue())
+                && Objects.equals(currentPrice.getCurrencyCode(), priceUpdate.getCurrencyCode());
+    }
+
+    /**
+     * Gets whether an update of {@link #updatePrices} was not applied because the price did not have its expected
+     * version.
+     * @param error the error of the update, not null
+     * @return whether the price had another version
+     */
+    static boolean isVersionConflict(BulkWriteError error) {
+        return error.getCode() == VERSION_CONFLICT_CODE;
+    }
+
+    /**
+     * Gets whether an update of {@link #updatePrices} was not applied because the price was removed since it was read.
+     * @param error the error of the update, not null
+     * @return whether the price no longer exists
+     */
+    static boolean isNotFound(BulkWriteError error) {
+        return error.getCode() == NOT_FOUND_CODE;
+    }
+
+    /**
+     * Counts a write of the current prices in the catalog write counter, after the write, so the catalog version
+     * never changes before the data it describes.
+     */
+    private void countWrite() {
+        mongoOperations.upsert(catalogVersionQuery(), new Update().inc(FIELD_WRITES, 1L), COLLECTION_CATALOG_VERSION);
+    }
+
+    /**
+     * Creates the update that sets the value and currency code of a current price and increments its version.
+     * @param value the new price value, not null
+     * @param currencyCode the new currency code, not null
+     * @return the update, not null
+     */
+    private static Update priceUpdate(String value, String currencyCode) {
+
+        return minorUnitsUpdate(new Update(), value, currencyCode)
+                .set(FIELD_VALUE, value)
+                .set(FIELD_CURRENCY_CODE, currencyCode)
+                .inc(FIELD_VERSION, 1);
+    }
+
+    /**
+     * Adds setting the minor units of {@code value} in {@code currencyCode} to {@code update}, or clearing them if the
+     * value is not a number the currency can hold.
+     * @param update the update to add to, not null
+     * @param value the price value, not null
+     * @param currencyCode the currency code, not null
+     * @return the update, not null
+     */
+    private static Update minorUnitsUpdate(Update update, String value, String currencyCode) {
+        return update.set(FIELD_MINOR_UNITS, PriceAmounts.toMinorUnits(value, currencyCode));
+    }
+
+    @Override
+    public Slice<Product.CurrentPrice> findByPriceRange(String currencyCode, long minMinorUnits, long maxMinorUnits,
+                                                        PricePosition after, int limit, ProductFields fields) {
+
+        checkNotNull(currencyCode);
+        checkNotNull(fields);
+
+        Criteria criteria = where(FIELD_CURRENCY_CODE).is(currencyCode)
+                .and(FIELD_MINOR_UNITS).gte(minMinorUnits).lte(maxMinorUnits);
+        if (after != null) {
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    where(FIELD_MINOR_UNITS).gt(after.getMinorUnits()),
+                    where(FIELD_MINOR_UNITS).is(after.getMinorUnits()).and(FIELD_ID).gt(after.getId())));
+        }
+
+        Query query = new Query(criteria)
+                .with(new Sort(Sort.Direction.ASC, FIELD_MINOR_UNITS, FIELD_ID))
+                .limit(limit + 1);
+        return findSlice(project(query, fields), limit);
+    }
+
+    @Override
+    public Product.CurrentPrice findProjected(String id, ProductFields fields) {
+
+        checkNotNull(id);
+        checkNotNull(fields);
+
+        return mongoOperations.findOne(project(new Query(where(FIELD_ID).is(id)), fields), Product.CurrentPrice.class);
+    }
+
+    @Override
+    public List<Product.CurrentPrice> findAllProjected(Collection<String> ids, ProductFields fields) {
+
+        checkNotNull(ids);
+        checkNotNull(fields);
+
+        return mongoOperations.find(project(new Query(where(FIELD_ID).in(ids)), fields), Product.CurrentPrice.class);
+    }
+
+    @Override
+    public Slice<Product.CurrentPrice> findPageProjected(String afterId, int limit, ProductFields fields) {
+
+        checkNotNull(fields);
+
+        Query query = new Query(afterId == null ? new Criteria() : where(FIELD_ID).gt(afterId))
+                .with(new Sort(Sort.Direction.ASC, FIELD_ID))
+                .limit(limit + 1);
+        return findSlice(project(query, fields), limit);
+    }
+
+    /**
+     * Reads a slice of at most {@code limit} current prices, with {@code query} limited to one more to tell whether
+     * there is a next slice.
+     * @param query the query, limited to {@code limit + 1} documents, not null
+     * @param limit the maximum number of prices in the slice
+     * @return the current prices of the slice, not null
+     */
+    private Slice<Product.CurrentPrice> findSlice(Query query, int limit) {
+
+        List<Product.CurrentPrice> currentPrices = mongoOperations.find(query, Product.CurrentPrice.class);
+
+        boolean hasNext = currentPrices.size() > limit;
+        List<Product.CurrentPrice> content = hasNext ? currentPrices.subList(0, limit) : currentPrices;
+        return new SliceImpl<>(content, new PageRequest(0, limit), hasNext);
+    }
+
+    /**
+     * Limits {@code query} to the document fields needed for {@code fields}. The id, version and minor units are
+     * always read, for entity tags and cursors, and the stored name only when the name is a field to read.
+     * @param query the query to limit, not null
+     * @param fields the fields of the products to read, not null
+     * @return the query, not null
+     */
+    private static Query project(Query query, ProductFields fields) {
+
+        if (fields.isAll()) {
+            return query;
+        }
+
+        query.fields().include(FIELD_ID).include(FIELD_VERSION).include(FIELD_MINOR_UNITS);
+        if (fields.includesValue()) {
+            query.fields().include(FIELD_VALUE);
+        }
+        if (fields.includesCurrencyCode()) {
+            query.fields().include(FIELD_CURRENCY_CODE);
+        }
+        if (fields.includesName()) {
+            query.fields().include(FIELD_NAME).include(FIELD_NAME_FETCHED_AT);
+        }
+        return query;
+    }
+
+    @Override
+    public List<String> findIds(String afterId, int limit) {
+
+        Query query = new Query(afterId == null ? new Criteria() : where(FIELD_ID).gt(afterId))
+                .with(new Sort(Sort.Direction.ASC, FIELD_ID))
+                .limit(limit);
+        query.fields().include(FIELD_ID);
+
+        List<Product.CurrentPrice> currentPrices = mongoOperations.find(query, Product.CurrentPrice.class);
+        List<String> ids = new ArrayList<>(currentPrices.size());
+        for (Product.CurrentPrice currentPrice : currentPrices) {
+            ids.add(currentPrice.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public void updateName(String id, String name, Date fetchedAt) {
+
+        checkNotNull(id);
+        checkNotNull(fetchedAt);
+
+        WriteResult result = mongoOperations.updateFirst(new Query(where(FIELD_ID).is(id)),
+                new Update().set(FIELD_NAME, name).set(FIELD_NAME_FETCHED_AT, fetchedAt), Product.CurrentPrice.class);
+        if (result.getN() > 0) {
+            countWrite();
+        }
+    }
+
+    @Override
+    public long backfillMinorUnits(int batchSize) {
+
+        long backfilled = 0;
+        String afterId = null;
+        while (true) {
+            // Walks the id index from the last id read, so each price is read once however few still lack minor units
+            Criteria criteria = where(FIELD_MINOR_UNITS).exists(false);
+            if (afterId != null) {
+                criteria = criteria.and(FIELD_ID).gt(afterId);
+            }
+            Query query = new Query(criteria)
+                    .with(new Sort(Sort.Direction.ASC, FIELD_ID))
+                    .limit(batchSize);
+            query.fields().include(FIELD_ID).include(FIELD_VALUE).include(FIELD_CURRENCY_CODE);
+            List<Product.CurrentPrice> currentPrices = mongoOperations.find(query, Product.CurrentPrice.class);
+            if (currentPrices.isEmpty()) {
+                mongoOperations.upsert(new Query(where(FIELD_DOCUMENT_ID).is(MIGRATION_MINOR_UNITS)),
+                        new Update().set(FIELD_COMPLETED_AT, new Date()), COLLECTION_MIGRATIONS);
+                return backfilled;
+            }
+
+            // Only backfill prices that were not updated since they were read; updated prices already have minor units
+            BulkOperations bulkOperations = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    Product.CurrentPrice.class);
+            for (Product.CurrentPrice currentPrice : currentPrices) {
+                Query unchanged = new Query(where(FIELD_ID).is(currentPrice.getId())
+                        .and(FIELD_MINOR_UNITS).exists(false)
+                        .and(FIELD_VALUE).is(currentPrice.getValue())
+                        .and(FIELD_CURRENCY_CODE).is(currentPrice.getCurrencyCode()));
+                bulkOperations.updateOne(unchanged,
+                        minorUnitsUpdate(new Update(), currentPrice.getValue(), currentPrice.getCurrencyCode()));
+            }
+
+            int modified = bulkOperations.execute().getModifiedCount();
+            if (modified > 0) {
+                countWrite();
+                backfilled += modified;
+            }
+            afterId = currentPrices.get(currentPrices.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public boolean isMinorUnitsBackfilled() {
+        return mongoOperations.exists(new Query(where(FIELD_DOCUMENT_ID).is(MIGRATION_MINOR_UNITS)),
+                COLLECTION_MIGRATIONS);
+    }
+
+    @Override
+    public String findCatalogVersion() {
+
+        long count = mongoOperations.count(new Query(), Product.CurrentPrice.class);
+        DBObject counter = mongoOperations.findOne(catalogVersionQuery(), DBObject.class, COLLECTION_CATALOG_VERSION);
+        return count + "-" + (counter == null ? 0 : longOf(counter.get(FIELD_WRITES)));
+    }
+
+    private static Query catalogVersionQuery() {
+        return new Query(where(FIELD_DOCUMENT_ID).is(CATALOG_VERSION_ID));
+    }
+
+    private static long longOf(Object number) {
+        return number == null ? 0 : ((Number) number).longValue();
+    }
+
+    /**
+     * Narrows {@code criteria} to documents with {@code version}. Documents written before versions existed have no
+     * version field and match version 0.
+     * @param criteria the criteria to narrow, not null
+     * @param version the version to match, or {@code null} to match any version
+     * @return the narrowed criteria, not null
+     */
+    static Criteria withVersion(Criteria criteria, Long version) {
+
+        if (version == null) {
+            return criteria;
+        } else if (version == 0) {
+            return criteria.orOperator(where(FIELD_VERSION).is(0L), where(FIELD_VERSION).exists(false));
+        } else {
+            return criteria.and(FIELD_VERSION).is(version);
+        }
+    }
+}
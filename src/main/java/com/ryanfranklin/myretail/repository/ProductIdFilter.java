@@ -0,0 +1,269 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A Bloom filter of the ids that have a current price, so lookups of ids that were never in the catalog fail without
+ * reading the datastore or calling the product name resource, when {@code myretail.product-price.id-filter.enabled}
+ * is set. The filter never turns away a known id, and lets through at most about
+ * {@code false-positive-rate} of the unknown ones.
+ *
+ * <p>The filter is built once the application is ready, by reading the ids a page at a time, and built again every
+ * {@code rebuild-millis}. Prices are only added to the datastore outside of this service, so a product added after a
+ * build is not found until the next one, or until its price is updated here. Until the first build every id is let
+ * through.
+ */
+@Component
+public class ProductIdFilter {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The filter is sized for this many times the ids it is built with, so the catalog may grow between builds **/
+    private static final int CAPACITY_FACTOR = 2;
+
+    /** The fewest ids a filter is sized for **/
+    private static final int MIN_CAPACITY = 1000;
+
+    @Autowired
+    private ProductCurrentPriceRepository currentPriceRepository;
+
+    @Autowired
+    private ProductPriceProperties productPriceProperties;
+
+    /** The latest filter, null until the first one is built **/
+    private volatile BloomFilter<CharSequence> filter;
+
+    /** The filter being built, which ids added during the build are also put in, otherwise null **/
+    private volatile BloomFilter<CharSequence> building;
+
+    /** The number of ids the latest filter is sized for **/
+    private volatile long capacity;
+
+    /** The bytes the latest filter takes up **/
+    private volatile long bytes;
+
+    /** The {@link System#currentTimeMillis()} the latest filter was built at **/
+    private volatile long builtAt;
+
+    private ScheduledExecutorService scheduler;
+
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder falsePositiveCount = new LongAdder();
+    private final LongAdder buildCount = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startFilter() {
+
+        ProductPriceProperties.IdFilter idFilter = productPriceProperties.getIdFilter();
+        if (!idFilter.isEnabled()) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("product-id-filter-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(this::build, 0, idFilter.getRebuildMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopFilter() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets whether {@code id} may have a current price. An id the filter turns away certainly has none, as of the
+     * latest build, and is counted as rejected.
+     * @param id the id of the product, not null
+     * @return {@code false} if the id has no current price, or {@code true} if it may have one or the filter is not
+     * built yet
+     */
+    public boolean mightContain(String id) {
+
+        checkNotNull(id);
+
+        BloomFilter<CharSequence> filter = this.filter;
+        if (filter == null || filter.mightContain(id)) {
+            return true;
+        }
+        rejectedCount.increment();
+        return false;
+    }
+
+    /**
+     * Adds the id of a current price that was written, so it is let through even if it was added after the build.
+     * @param id the id of the product, not null
+     */
+    public void add(String id) {
+
+        checkNotNull(id);
+
+        // The filter being built is read first, so an id is never left out of both when the build finishes meanwhile
+        BloomFilter<CharSequence> building = this.building;
+        BloomFilter<CharSequence> filter = this.filter;
+        if (building != null) {
+            building.put(id);
+        }
+        if (filter != null) {
+            filter.put(id);
+        }
+    }
+
+    /**
+     * Records that an id the filter let through has no current price, counting a false positive once it is built.
+     */
+    public void recordMissing() {
+
+        if (filter != null) {
+            falsePositiveCount.increment();
+        }
+    }
+
+    /**
+     * Builds a filter of the ids that have a current price, and replaces the latest filter with it. If the build
+     * fails, the latest filter is kept until the next build.
+     */
+    void build() {
+
+        ProductPriceProperties.IdFilter idFilter = productPriceProperties.getIdFilter();
+        long start = System.currentTimeMillis();
+        try {
+            long capacity = Math.max(MIN_CAPACITY, currentPriceRepository.count() * CAPACITY_FACTOR);
+            BloomFilter<CharSequence> next = BloomFilter.create(
+                    Funnels.stringFunnel(StandardCharsets.UTF_8), capacity, idFilter.getFalsePositiveRate());
+            building = next;
+
+            String afterId = null;
+            List<String> ids;
+            do {
+                ids = currentPriceRepository.findIds(afterId, idFilter.getPageSize());
+                for (String id : ids) {
+                    next.put(id);
+                }
+                afterId = ids.isEmpty() ? afterId : ids.get(ids.size() - 1);
+            } while (ids.size() == idFilter.getPageSize());
+
+            this.capacity = capacity;
+            this.bytes = sizeOf(next);
+            this.builtAt = System.currentTimeMillis();
+            filter = next;
+            buildCount.increment();
+            logger.info("Built the product id filter of about {} ids, {} bytes, in {} ms",
+                    next.approximateElementCount(), bytes, builtAt - start);
+        } catch (RuntimeException e) {
+            logger.warn("Unable to build the product id filter", e);
+        } finally {
+            building = null;
+        }
+    }
+
+    private static long sizeOf(BloomFilter<CharSequence> filter) {
+
+        CountingOutputStream outputStream = new CountingOutputStream(ByteStreams.nullOutputStream());
+        try {
+            filter.writeTo(outputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return outputStream.getCount();
+    }
+
+    /**
+     * Gets whether a filter was built and unknown ids are turned away.
+     * @return whether the filter is ready
+     */
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    /**
+     * Gets the approximate number of ids in the latest filter.
+     * @return the ids, or 0 before the first build
+     */
+    public long getSize() {
+
+        BloomFilter<CharSequence> filter = this.filter;
+        return filter == null ? 0 : filter.approximateElementCount();
+    }
+
+    /**
+     * Gets the number of ids the latest filter is sized for at {@code false-positive-rate}.
+     * @return the capacity, or 0 before the first build
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the bytes the latest filter takes up.
+     * @return the bytes, or 0 before the first build
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the milliseconds since the latest filter was built.
+     * @return the age of the filter, or -1 before the first build
+     */
+    public long getAgeMillis() {
+        return filter == null ? -1 : System.currentTimeMillis() - builtAt;
+    }
+
+    /**
+     * Gets the share of unknown ids the latest filter is expected to let through, given the ids in it.
+     * @return the expected false positive rate, or 0 before the first build
+     */
+    public double getExpectedFalsePositiveRate() {
+
+        BloomFilter<CharSequence> filter = this.filter;
+        return filter == null ? 0 : filter.expectedFpp();
+    }
+
+    /**
+     * Gets the number of lookups turned away by the filter.
+     * @return the rejected lookups
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Gets the number of lookups the filter let through that had no current price.
+     * @return the false positives
+     */
+    public long getFalsePositiveCount() {
+        return falsePositiveCount.sum();
+    }
+
+    /**
+     * Gets the number of filters built.
+     * @return the builds
+     */
+    public long getBuildCount() {
+        return buildCount.sum();
+    }
+}
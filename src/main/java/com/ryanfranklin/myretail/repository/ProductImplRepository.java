@@ -1,25 +1,71 @@
 package com.ryanfranklin.myretail.repository;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Ticker;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.mongodb.BulkWriteError;
+import com.ryanfranklin.myretail.client.ResilientProductNameClient;
+import com.ryanfranklin.myretail.config.ProductNameProperties;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
 import com.ryanfranklin.myretail.exception.NotFoundException;
+import com.ryanfranklin.myretail.exception.PreconditionFailedException;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics.Stage;
+import com.ryanfranklin.myretail.model.PricePosition;
+import com.ryanfranklin.myretail.model.PriceChange;
+import com.ryanfranklin.myretail.model.PriceUpdate;
+import com.ryanfranklin.myretail.model.PriceUpdateResult;
 import com.ryanfranklin.myretail.model.Product;
+import com.ryanfranklin.myretail.model.ProductBatch;
+import com.ryanfranklin.myretail.model.ProductFields;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
-import java.io.IOException;
+import javax.validation.Validator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -28,57 +74,767 @@ public class ProductImplRepository {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    /** The resource URL to get the product name by id **/
-    private static final String PRODUCT_NAME_RESOURCE_URL = "http://redsky.target.com/v2/pdp/tcin/{id}?" +
-            "excludes=taxonomy,price,promotion,bulk_ship,rating_and_review_reviews,rating_and_review_statistics," +
-            "question_answer_statistics,deep_red_labels,available_to_promise_network";
+    /** The field of the product id in the current price document **/
+    private static final String FIELD_ID = "id";
 
-    /** The URL variable tag for the id of the product **/
-    private static final String PATH_VARIABLE_TAG_ID = "id";
+    @Autowired
+    private ProductCurrentPriceRepository currentPriceRepository;
 
-    /** The json path for the product name is: product.item.product_description.title **/
-    private static final String JSON_TAG_PRODUCT = "product";
-    private static final String JSON_TAG_ITEM = "item";
-    private static final String JSON_TAG_PRODUCT_DESCRIPTION = "product_description";
-    private static final String JSON_TAG_TITLE = "title";
+    @Autowired
+    private ResilientProductNameClient productNameClient;
 
     @Autowired
-    private ProductCurrentPriceRepository currentPriceRepository;
+    @Qualifier("productNameExecutor")
+    private ExecutorService productNameExecutor;
+
+    @Autowired
+    @Qualifier("productPriceExecutor")
+    private ExecutorService productPriceExecutor;
+
+    @Autowired
+    private ProductNameProperties productNameProperties;
+
+    @Autowired
+    private ProductPriceProperties productPriceProperties;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ProductPipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private PriceChangeStream priceChangeStream;
+
+    @Autowired
+    private ProductJsonCache productJsonCache;
+
+    @Autowired
+    private ProductIdFilter productIdFilter;
+
+    /** The clock the name caches expire and refresh names by **/
+    private Ticker ticker = Ticker.systemTicker();
+
+    /** Product names by id, reloaded in the background once they reach the refresh age **/
+    private LoadingCache<String, String> nameCache;
+
+    /** Ids that recently had no product name **/
+    private Cache<String, Boolean> notFoundNameCache;
+
+    /** The last name fetched for each id, served when a name cannot be fetched **/
+    private Cache<String, String> lastKnownNameCache;
+
+    /** The {@link System#nanoTime()} each cached name was fetched at, to find the names about to expire **/
+    private final Map<String, Long> nameFetchedAt = new ConcurrentHashMap<>();
+
+    /** Ids whose stored name is being fetched again in the background **/
+    private final Set<String> storedNameRefreshes = ConcurrentHashMap.newKeySet();
+
+    /** Fetched names that differ from the last known name, part of the catalog version while names are not stored **/
+    private final LongAdder nameChanges = new LongAdder();
+
+    /** A random id of this instance, since the name changes it counts are its own **/
+    private final String instanceId = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+
+    private final LongAdder lastKnownNameFallbackCount = new LongAdder();
+    private final LongAdder missingNameFallbackCount = new LongAdder();
+
+    /** Name lookups in flight, shared by concurrent callers for the same id **/
+    private final SingleFlight<String, String> nameLookups = new SingleFlight<>();
+
+    /** Current price lookups in flight, shared by concurrent callers for the same id **/
+    private final SingleFlight<String, Product.CurrentPrice> currentPriceLookups = new SingleFlight<>();
+
+    /** Lookups of some fields of a current price in flight, shared by concurrent callers for the same id and fields **/
+    private final SingleFlight<List<Object>, Product.CurrentPrice> projectedPriceLookups = new SingleFlight<>();
+
+    /** The catalog version, reused for {@code myretail.product-price.catalog.version-ttl-millis} **/
+    private Supplier<String> catalogVersion;
+
+    @PostConstruct
+    void initNameCaches() {
+
+        ProductNameProperties.Cache cache = productNameProperties.getCache();
+        nameCache = CacheBuilder.newBuilder()
+                .maximumSize(cache.getMaxEntries())
+                .expireAfterWrite(cache.getExpireAfterWriteMillis(), TimeUnit.MILLISECONDS)
+                .refreshAfterWrite(cache.getRefreshAfterWriteMillis(), TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .removalListener((RemovalNotification<String, String> removal) -> {
+                    if (removal.getCause() != RemovalCause.REPLACED) {
+                        nameFetchedAt.remove(removal.getKey());
+                    }
+                })
+                .build(CacheLoader.asyncReloading(CacheLoader.from(this::fetchName), productNameExecutor));
+        notFoundNameCache = CacheBuilder.newBuilder()
+                .maximumSize(cache.getNotFoundMaxEntries())
+                .expireAfterWrite(cache.getNotFoundExpireAfterWriteMillis(), TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        lastKnownNameCache = CacheBuilder.newBuilder()
+                .maximumSize(cache.getLastKnownMaxEntries())
+                .build();
+    }
+
+    @PostConstruct
+    void initCatalogVersion() {
+
+        long ttlMillis = productPriceProperties.getCatalog().getVersionTtlMillis();
+        Supplier<String> findCatalogVersion = currentPriceRepository::findCatalogVersion;
+        catalogVersion = ttlMillis > 0
+                ? Suppliers.memoizeWithExpiration(findCatalogVersion, ttlMillis, TimeUnit.MILLISECONDS)
+                : findCatalogVersion;
+    }
+
+    /**
+     * Gets the statistics of the product name cache.
+     * @return the name cache statistics, not null
+     */
+    public CacheStats getNameCacheStats() {
+        return nameCache.stats();
+    }
+
+    /**
+     * Gets the number of names in the product name cache.
+     * @return the approximate number of cached names
+     */
+    public long getNameCacheSize() {
+        return nameCache.size();
+    }
+
+    /**
+     * Gets the statistics of the cache of ids without a product name.
+     * @return the not found name cache statistics, not null
+     */
+    public CacheStats getNotFoundNameCacheStats() {
+        return notFoundNameCache.stats();
+    }
 
+    /**
+     * Gets the number of ids in the cache of ids without a product name.
+     * @return the approximate number of cached ids
+     */
+    public long getNotFoundNameCacheSize() {
+        return notFoundNameCache.size();
+    }
+
+    /**
+     * Gets the number of name lookups that shared a lookup of the same id already in flight.
+     * @return the number of coalesced name lookups
+     */
+    public long getNameLookupsCoalesced() {
+        return nameLookups.getCoalescedCount();
+    }
+
+    /**
+     * Gets the number of ids with a name lookup in flight.
+     * @return the approximate number of name lookups in flight
+     */
+    public int getNameLookupsInFlight() {
+        return nameLookups.getInFlightCount();
+    }
+
+    /**
+     * Gets the number of current price lookups that shared a lookup of the same id already in flight.
+     * @return the number of coalesced current price lookups
+     */
+    public long getCurrentPriceLookupsCoalesced() {
+        return currentPriceLookups.getCoalescedCount() + projectedPriceLookups.getCoalescedCount();
+    }
+
+    /**
+     * Gets the number of ids with a current price lookup in flight.
+     * @return the approximate number of current price lookups in flight
+     */
+    public int getCurrentPriceLookupsInFlight() {
+        return currentPriceLookups.getInFlightCount() + projectedPriceLookups.getInFlightCount();
+    }
+
+    /**
+     * Gets the number of products served with their last known name because the name could not be fetched.
+     * @return the number of last known name fallbacks
+     */
+    public long getLastKnownNameFallbackCount() {
+        return lastKnownNameFallbackCount.sum();
+    }
+
+    /**
+     * Gets the number of products served without a name because the name could not be fetched and no name was known.
+     * @return the number of fallbacks without a name
+     */
+    public long getMissingNameFallbackCount() {
+        return missingNameFallbackCount.sum();
+    }
+
+    /**
+     * Gets all {@link Product}s. When names are stored with the current prices, products with a stored name are
+     * built from the datastore alone. Other names are looked up concurrently on the product name executor, with at
+     * most {@code myretail.product-name.lookup.max-concurrency} lookups in flight for this call. Any product whose name
+     * is not resolved within {@code myretail.product-name.lookup.deadline-millis}, or whose name lookup fails, is
+     * still returned with its price and its last known name, or a {@code null} name if none is known.
+     * @return all products, not null
+     */
     public List<Product> findAll() {
 
-        List<Product.CurrentPrice> currentPrices = currentPriceRepository.findAll();
-        List<Product> products = new ArrayList<>();
+        long start = pipelineMetrics.begin(Stage.FIND_ALL);
+        try {
+            List<Product> products = toProducts(currentPriceRepository.findAll());
+            pipelineMetrics.end(Stage.FIND_ALL, start);
+            return products;
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.FIND_ALL, start, e);
+            throw e;
+        }
+    }
 
-        for (Product.CurrentPrice currentPrice : currentPrices) {
-            String name = getName(currentPrice.getId());
-            products.add(new Product(currentPrice.getId(), name, currentPrice));
+    /**
+     * Gets a page of {@link Product}s ordered by id, with names resolved the same way as {@link #findAll()}.
+     * The page is read with a range scan of the id index, so its cost does not depend on how deep the page is.
+     * @param afterId the id to start after, or {@code null} for the first page
+     * @param limit the maximum number of products in the page
+     * @return the products of the page, not null
+     */
+    public Slice<Product> findPage(String afterId, int limit) {
+        return findPage(afterId, limit, ProductFields.ALL);
+    }
+
+    /**
+     * Gets a page of {@link Product}s ordered by id, the same as {@link #findPage(String, int)}, reading only the
+     * {@code fields} of the products. Without the name, no name is resolved and the products have a {@code null} name.
+     * @param afterId the id to start after, or {@code null} for the first page
+     * @param limit the maximum number of products in the page
+     * @param fields the fields of the products to read, not null
+     * @return the products of the page, not null
+     */
+    public Slice<Product> findPage(String afterId, int limit, ProductFields fields) {
+
+        checkNotNull(fields);
+
+        long start = pipelineMetrics.begin(Stage.FIND_ALL);
+        try {
+            Pageable pageable = new PageRequest(0, limit, Sort.Direction.ASC, FIELD_ID);
+            Slice<Product.CurrentPrice> currentPrices;
+            if (!fields.isAll()) {
+                currentPrices = currentPriceRepository.findPageProjected(afterId, limit, fields);
+            } else if (afterId == null) {
+                currentPrices = currentPriceRepository.findAllBy(pageable);
+            } else {
+                currentPrices = currentPriceRepository.findByIdGreaterThan(afterId, pageable);
+            }
+            Slice<Product> products = new SliceImpl<>(toProducts(currentPrices.getContent(), fields), pageable,
+                    currentPrices.hasNext());
+            pipelineMetrics.end(Stage.FIND_ALL, start);
+            return products;
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.FIND_ALL, start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets a page of {@link Product}s ordered by id, the same as {@link #findPage(String, int)}, with only the names
+     * known to this service: the stored name when names are stored, or else the last name this service fetched. No name
+     * is looked up or refreshed, so reading the whole catalog costs only the reads of the datastore however cold the name cache is,
+     * and a product whose name is not known has a {@code null} name.
+     * @param afterId the id to start after, or {@code null} for the first page
+     * @param limit the maximum number of products in the page
+     * @return the products of the page, not null
+     */
+    public Slice<Product> findPageWithKnownNames(String afterId, int limit) {
+
+        long start = pipelineMetrics.begin(Stage.FIND_ALL);
+        try {
+            Pageable pageable = new PageRequest(0, limit, Sort.Direction.ASC, FIELD_ID);
+            Slice<Product.CurrentPrice> currentPrices = afterId == null ? currentPriceRepository.findAllBy(pageable)
+                    : currentPriceRepository.findByIdGreaterThan(afterId, pageable);
+            List<Product> products = new ArrayList<>(currentPrices.getNumberOfElements());
+            for (Product.CurrentPrice currentPrice : currentPrices) {
+                products.add(new Product(currentPrice.getId(), getKnownName(currentPrice), currentPrice));
+            }
+            Slice<Product> page = new SliceImpl<>(products, pageable, currentPrices.hasNext());
+            pipelineMetrics.end(Stage.FIND_ALL, start);
+            return page;
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.FIND_ALL, start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets a page of {@link Product}s priced in {@code currencyCode} between two amounts, ordered by price and then
+     * id, with names resolved the same way as {@link #findAll()}. The page is served by the currency code and minor
+     * units index, reading only the {@code fields} of the products. Without the name, no name is resolved.
+     * @param currencyCode the currency code of the prices, not null
+     * @param minMinorUnits the smallest price in minor units, inclusive
+     * @param maxMinorUnits the largest price in minor units, inclusive
+     * @param after the position to start after, or {@code null} for the first page
+     * @param limit the maximum number of products in the page
+     * @param fields the fields of the products to read, not null
+     * @return the products of the page, not null
+     */
+    public Slice<Product> findByPriceRange(String currencyCode, long minMinorUnits, long maxMinorUnits,
+                                          PricePosition after, int limit, ProductFields fields) {
+
+        checkNotNull(currencyCode);
+        checkNotNull(fields);
+
+        long start = pipelineMetrics.begin(Stage.FIND_ALL);
+        try {
+            Slice<Product.CurrentPrice> currentPrices = currentPriceRepository.findByPriceRange(
+                    currencyCode, minMinorUnits, maxMinorUnits, after, limit, fields);
+            Slice<Product> products = new SliceImpl<>(toProducts(currentPrices.getContent(), fields),
+                    new PageRequest(0, limit), currentPrices.hasNext());
+            pipelineMetrics.end(Stage.FIND_ALL, start);
+            return products;
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.FIND_ALL, start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the {@link Product}s with the given {@code ids}. All prices are read with a single query, and names are
+     * resolved the same way as {@link #findAll()}.
+     * @param ids the ids of the products, not null
+     * @return the products found in the order of {@code ids}, and the ids that have no product, not null
+     */
+    public ProductBatch findAll(Collection<String> ids) {
+        return findAll(ids, ProductFields.ALL);
+    }
+
+    /**
+     * Gets the {@link Product}s with the given {@code ids}, the same as {@link #findAll(Collection)}, reading only the
+     * {@code fields} of the products. Without the name, no name is resolved and the products have a {@code null} name.
+     * @param ids the ids of the products, not null
+     * @param fields the fields of the products to read, not null
+     * @return the products found in the order of {@code ids}, and the ids that have no product, not null
+     */
+    public ProductBatch findAll(Collection<String> ids, ProductFields fields) {
+
+        checkNotNull(ids);
+        checkNotNull(fields);
+
+        long start = pipelineMetrics.begin(Stage.FIND_ALL);
+        try {
+            ProductBatch products = readProducts(ids, fields);
+            pipelineMetrics.end(Stage.FIND_ALL, start);
+            return products;
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.FIND_ALL, start, e);
+            throw e;
+        }
+    }
+
+    private ProductBatch readProducts(Collection<String> ids, ProductFields fields) {
+
+        Set<String> uniqueIds = new LinkedHashSet<>(ids);
+        Map<String, Product.CurrentPrice> currentPricesById = new HashMap<>();
+        Iterable<Product.CurrentPrice> found = fields.isAll()
+                ? currentPriceRepository.findAll(uniqueIds)
+                : currentPriceRepository.findAllProjected(uniqueIds, fields);
+        for (Product.CurrentPrice currentPrice : found) {
+            currentPricesById.put(currentPrice.getId(), currentPrice);
         }
 
+        List<Product.CurrentPrice> currentPrices = new ArrayList<>(currentPricesById.size());
+        List<String> missingIds = new ArrayList<>();
+        for (String id : uniqueIds) {
+            Product.CurrentPrice currentPrice = currentPricesById.get(id);
+            if (currentPrice == null) {
+                missingIds.add(id);
+            } else {
+                currentPrices.add(currentPrice);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            logger.debug("Could not find the products' current prices by ids: {}", missingIds);
+        }
+        return new ProductBatch(toProducts(currentPrices, fields), missingIds);
+    }
+
+    /**
+     * Builds a {@link Product} for each {@code currentPrice}, resolving the names that are not stored concurrently
+     * when the name is one of the {@code fields}, or with a {@code null} name otherwise.
+     * @param currentPrices the current prices of the products, not null
+     * @param fields the fields of the products, not null
+     * @return the products in the same order as {@code currentPrices}, not null
+     */
+    private List<Product> toProducts(List<Product.CurrentPrice> currentPrices, ProductFields fields) {
+
+        if (!fields.includesName()) {
+            List<Product> products = new ArrayList<>(currentPrices.size());
+            for (Product.CurrentPrice currentPrice : currentPrices) {
+                products.add(new Product(currentPrice.getId(), null, currentPrice));
+            }
+            return products;
+        }
+        return toProducts(currentPrices);
+    }
+
+    /**
+     * Builds a {@link Product} for each {@code currentPrice}, resolving the names that are not stored concurrently.
+     * @param currentPrices the current prices of the products, not null
+     * @return the products in the same order as {@code currentPrices}, not null
+     */
+    private List<Product> toProducts(List<Product.CurrentPrice> currentPrices) {
+
+        ProductNameProperties.Lookup lookup = productNameProperties.getLookup();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lookup.getDeadlineMillis());
+        Semaphore permits = new Semaphore(lookup.getMaxConcurrency());
+        List<Future<String>> names = new ArrayList<>(currentPrices.size());
+
+        try {
+            for (Product.CurrentPrice currentPrice : currentPrices) {
+                String storedName = getStoredName(currentPrice);
+                if (storedName != null) {
+                    names.add(CompletableFuture.completedFuture(storedName));
+                    continue;
+                }
+                if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    logger.debug("Name lookup deadline reached after submitting {} of {} lookups",
+                            names.size(), currentPrices.size());
+                    break;
+                }
+                String id = currentPrice.getId();
+                try {
+                    names.add(productNameExecutor.submit(() -> {
+                        try {
+                            return getNameAndStore(id);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    logger.debug("The product name executor is full, skipping the name lookup by id: {}", id);
+                    permits.release();
+                    names.add(CompletableFuture.completedFuture(getFallbackName(id)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Product> products = new ArrayList<>(currentPrices.size());
+        for (int i = 0; i < currentPrices.size(); i++) {
+            Product.CurrentPrice currentPrice = currentPrices.get(i);
+            String name = i < names.size() ? awaitName(currentPrice.getId(), names.get(i), deadline) : null;
+            products.add(new Product(currentPrice.getId(), name, currentPrice));
+        }
         return products;
     }
 
     /**
-     * Gets a {@link Product} by {@code id}.
+     * Waits until {@code deadline} for a pending name lookup.
+     * @param id the id of the product, not null
+     * @param name the pending name lookup, not null
+     * @param deadline the {@link System#nanoTime()} after which the lookup is abandoned
+     * @return the product name, the last known name if it could not be resolved in time, or {@code null}
+     */
+    private String awaitName(String id, Future<String> name, long deadline) {
+
+        try {
+            return name.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.debug("Timed out looking up the product's name by id: {}", id);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NotFoundException) {
+                return null;
+            }
+            logger.debug("Unable to look up the product's name by id: {}", id, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        name.cancel(true);
+        return getFallbackName(id);
+    }
+
+    /**
+     * Gets a {@link Product} by {@code id}. The name and the price are looked up concurrently, and the first one
+     * to miss fails the call without waiting for the other. The abandoned lookup is cancelled, although a call
+     * already in progress runs to completion in the background, bounded as described at
+     * {@link #failFast(CompletableFuture, CompletableFuture, CompletableFuture)}. A name that cannot be fetched, or is not fetched
+     * within {@code myretail.product-name.lookup.deadline-millis}, does not fail the call: the product is returned
+     * with its last known name, or without a name if none is known. When names are stored with the current prices,
+     * the price is read first, and the name is only looked up if it is not stored yet. An id the
+     * {@link ProductIdFilter} knows has no price fails without any lookup.
      * @param id the id of the product, not null
      * @return a product, not null
+     * @throws NotFoundException if there is no current price for {@code id}
      */
     public Product findOne(String id) {
 
         checkNotNull(id);
 
-        String name = getName(id);
-        Product.CurrentPrice currentPrice = currentPriceRepository.findOne(id);
+        long start = pipelineMetrics.begin(Stage.FIND_ONE);
+        try {
+            checkKnownId(id);
+            Product product = readProduct(id);
+            pipelineMetrics.end(Stage.FIND_ONE, start);
+            return product;
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.FIND_ONE, start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets a {@link Product} by {@code id}, reading only its {@code fields}. With the name, the product is read the
+     * same as {@link #findOne(String)}. Without it, only the fields of the current price are read, the product name
+     * resource is never called, and the product has a {@code null} name.
+     * @param id the id of the product, not null
+     * @param fields the fields of the product to read, not null
+     * @return a product, not null
+     * @throws NotFoundException if there is no current price for {@code id}
+     */
+    public Product findOne(String id, ProductFields fields) {
+
+        checkNotNull(id);
+        checkNotNull(fields);
+
+        if (fields.includesName()) {
+            return findOne(id);
+        }
+
+        long start = pipelineMetrics.begin(Stage.FIND_ONE);
+        try {
+            Product product = new Product(id, null, getCurrentPrice(id, fields));
+            pipelineMetrics.end(Stage.FIND_ONE, start);
+            return product;
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.FIND_ONE, start, e);
+            throw e;
+        }
+    }
+
+    private Product readProduct(String id) {
+
+        if (productNameProperties.getStore().isEnabled()) {
+            return readStoredProduct(id);
+        }
+
+        CompletableFuture<String> name = lookUpNameAsync(id);
+        CompletableFuture<Product.CurrentPrice> currentPrice =
+                CompletableFuture.supplyAsync(() -> getCurrentPrice(id), productPriceExecutor);
+
+        CompletableFuture<Product> product = name.thenCombine(currentPrice, (n, p) -> new Product(id, n, p));
+        failFast(name, currentPrice, product);
+        failFast(currentPrice, name, product);
+
+        try {
+            return product.get(productNameProperties.getLookup().getDeadlineMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.debug("Timed out looking up the product by id: {}", id);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+
+        // The price is still needed, but a late name no longer holds up the product
+        currentPrice.handle((p, e) -> null).join();
+        if (product.isDone()) {
+            return join(product);
+        }
+        return new Product(id, getFallbackName(id), join(currentPrice));
+    }
+
+    /**
+     * Gets a {@link Product} by {@code id} with one read of the datastore when its name is stored. Otherwise the name
+     * is looked up and stored, the same way and within the same deadline as {@link #findOne(String)}.
+     * @param id the id of the product, not null
+     * @return a product, not null
+     */
+    private Product readStoredProduct(String id) {
+
+        Product.CurrentPrice currentPrice = getCurrentPrice(id);
+        String name = getStoredName(currentPrice);
+        if (name != null) {
+            return new Product(id, name, currentPrice);
+        }
+
+        CompletableFuture<String> lookup = lookUpNameAsync(id);
+        try {
+            name = lookup.get(productNameProperties.getLookup().getDeadlineMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.debug("Timed out looking up the product's name by id: {}", id);
+            lookup.cancel(true);
+            name = getFallbackName(id);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        return new Product(id, name, currentPrice);
+    }
+
+    /**
+     * Looks up a {@link Product} name by {@code id} the same way as {@link #getNameOrFallback(String)} on the product
+     * name executor. When the executor is full, the lookup is skipped and the name treated as missing.
+     * @param id the id of the product, not null
+     * @return the pending name lookup, not null
+     */
+    private CompletableFuture<String> lookUpNameAsync(String id) {
+
+        try {
+            return CompletableFuture.supplyAsync(() -> getNameOrFallback(id), productNameExecutor);
+        } catch (RejectedExecutionException e) {
+            logger.debug("The product name executor is full, skipping the name lookup by id: {}", id);
+            return CompletableFuture.completedFuture(getFallbackName(id));
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    /**
+     * Fails {@code result} and cancels {@code other} as soon as {@code lookup} fails. Cancelling does not interrupt a
+     * lookup already running, which is left to finish in the background: a name lookup holds a thread of the bounded
+     * product name executor and a bulkhead permit for at most the client's read timeout, and its name still fills the
+     * name cache, while a price read ends with its Mongo query.
+     * @param lookup the lookup to watch, not null
+     * @param other the lookup to cancel when {@code lookup} fails, not null
+     * @param result the result to fail with the exception of {@code lookup}, not null
+     */
+    private static void failFast(CompletableFuture<?> lookup, CompletableFuture<?> other, CompletableFuture<?> result) {
+
+        lookup.whenComplete((value, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+                other.cancel(true);
+            }
+        });
+    }
+
+    /**
+     * Gets a {@link Product.CurrentPrice} by {@code id}. Concurrent callers for the same id share one read of the
+     * datastore, and each gets its result or exception. An id the {@link ProductIdFilter} knows has no price fails
+     * without reading the datastore.
+     * @param id the id of the product, not null
+     * @return the current price of the product, not null
+     * @throws NotFoundException if there is no current price for {@code id}
+     */
+    public Product.CurrentPrice getCurrentPrice(String id) {
+
+        checkNotNull(id);
+
+        checkKnownId(id);
+        return currentPriceLookups.execute(id, () -> readCurrentPrice(id, ProductFields.ALL));
+    }
+
+    /**
+     * Gets a {@link Product.CurrentPrice} by {@code id}, the same as {@link #getCurrentPrice(String)}, reading only
+     * the document fields needed for {@code fields}. Concurrent callers for the same id and fields share one read.
+     * @param id the id of the product, not null
+     * @param fields the fields of the product to read, not null
+     * @return the current price of the product, with only the fields to read, not null
+     * @throws NotFoundException if there is no current price for {@code id}
+     */
+    public Product.CurrentPrice getCurrentPrice(String id, ProductFields fields) {
+
+        checkNotNull(id);
+        checkNotNull(fields);
+
+        if (fields.isAll()) {
+            return getCurrentPrice(id);
+        }
+        checkKnownId(id);
+        return projectedPriceLookups.execute(Arrays.asList(id, fields), () -> readCurrentPrice(id, fields));
+    }
+
+    private Product.CurrentPrice readCurrentPrice(String id, ProductFields fields) {
+
+        Product.CurrentPrice currentPrice = fields.isAll()
+                ? currentPriceRepository.findOne(id)
+                : currentPriceRepository.findProjected(id, fields);
 
         if (currentPrice == null) {
             logger.debug("Could not find the product's current price by id: {}", id);
+            productIdFilter.recordMissing();
             throw new NotFoundException();
         }
-        return new Product(id, name, currentPrice);
+        return currentPrice;
+    }
+
+    /**
+     * Fails unless {@code id} may have a current price according to the {@link ProductIdFilter}.
+     * @param id the id of the product, not null
+     * @throws NotFoundException if there is no current price for {@code id}
+     */
+    private void checkKnownId(String id) {
+
+        if (!productIdFilter.mightContain(id)) {
+            logger.debug("The product id filter has no current price by id: {}", id);
+            throw new NotFoundException();
+        }
+    }
+
+    /**
+     * Gets a {@link Product} name by {@code id} only if it is in the name cache, without fetching it. A cached name
+     * is the name {@link #findOne(String)} would return.
+     * @param id the id of the product, not null
+     * @return the cached product name, or {@code null} if it is not cached
+     */
+    public String getCachedName(String id) {
+        return nameCache.getIfPresent(checkNotNull(id));
+    }
+
+    /**
+     * Gets the name of {@code currentPrice}'s product known to this service without looking it up: the stored name
+     * when names are stored, or else the last known name. Neither a stale stored name nor a cached name due for refresh
+     * is refreshed, since reading the name cache would schedule the refresh.
+     * @param currentPrice the current price of the product, not null
+     * @return the known name, or {@code null} if no name is known
+     */
+    private String getKnownName(Product.CurrentPrice currentPrice) {
+
+        if (productNameProperties.getStore().isEnabled() && currentPrice.getName() != null) {
+            return currentPrice.getName();
+        }
+        return lastKnownNameCache.getIfPresent(currentPrice.getId());
+    }
+
+    /**
+     * Gets the number of products in the catalog, from the collection metadata rather than a scan.
+     * @return the number of products
+     */
+    public long count() {
+        return currentPriceRepository.count();
+    }
+
+    /**
+     * Gets the version of the whole catalog, which changes whenever a current price is added, removed or updated, or a
+     * stored name changes. The datastore part of the version is read at most once every
+     * {@code myretail.product-price.catalog.version-ttl-millis}, so it may lag behind writes by up to that long. While
+     * names are not stored, the names this instance fetched that differ from the last known name are counted too.
+     * @return the catalog version, not null
+     */
+    public String getCatalogVersion() {
+
+        String version = catalogVersion.get();
+        if (productNameProperties.getStore().isEnabled()) {
+            return version;
+        }
+        return version + "-" + instanceId + "." + nameChanges.sum();
     }
 
     /**
-     * Gets a {@link Product} name by {@code id}.
+     * Gets a {@link Product} name by {@code id} from the name cache, fetching it when it is not cached.
+     * Ids without a name are remembered for a short time so repeated lookups do not leave the service. Concurrent
+     * callers for the same id share one lookup, and each gets its result or exception.
      * @param id the id of the product, not null
      * @return a product name, not null
      */
@@ -86,68 +842,453 @@ public class ProductImplRepository {
 
         checkNotNull(id);
 
-        RestTemplate restTemplate = new RestTemplate();
-        Map<String, String> uriVariables = new HashMap<>();
-        uriVariables.put(PATH_VARIABLE_TAG_ID, id);
+        long start = pipelineMetrics.begin(Stage.GET_NAME);
+        try {
+            String name = nameLookups.execute(id, () -> lookUpName(id));
+            pipelineMetrics.end(Stage.GET_NAME, start);
+            return name;
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.GET_NAME, start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets a {@link Product} name by {@code id} the same way as {@link #getName(String)}, falling back to the last
+     * known name when the name cannot be fetched.
+     * @param id the id of the product, not null
+     * @return a product name, or {@code null} if it cannot be fetched and no name is known
+     * @throws NotFoundException if the product has no name
+     */
+    private String getNameOrFallback(String id) {
 
-        ResponseEntity<String> response;
         try {
-            response =  restTemplate.getForEntity(PRODUCT_NAME_RESOURCE_URL, String.class, uriVariables);
-        } catch (HttpClientErrorException e)   {
-            if (e.getStatusCode() != HttpStatus.NOT_FOUND) {
-                throw e;
-            } else {
-                logger.debug("Could not find the product's name by id: {}", id);
-                throw new NotFoundException();
+            return getNameAndStore(id);
+        } catch (NotFoundException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            logger.debug("Unable to look up the product's name by id: {}", id, e);
+            return getFallbackName(id);
+        }
+    }
+
+    /**
+     * Gets a {@link Product} name by {@code id} the same way as {@link #getName(String)}, and stores it with the
+     * current price on the product name executor when names are stored, so a read never waits for the write.
+     * @param id the id of the product, not null
+     * @return a product name, not null
+     */
+    private String getNameAndStore(String id) {
+
+        String name = getName(id);
+        if (productNameProperties.getStore().isEnabled()) {
+            try {
+                productNameExecutor.execute(() -> storeName(id, name));
+            } catch (RejectedExecutionException e) {
+                logger.debug("The product name executor is full, not storing the product's name by id: {}", id);
             }
         }
+        return name;
+    }
 
-        String responseBody = response.getBody();
-        logger.trace("Response body to get product name by id: {}: {}", id, responseBody);
+    /**
+     * Gets the name stored with {@code currentPrice} when names are stored. A name older than
+     * {@code myretail.product-name.store.stale-after-millis} is still returned, and fetched again in the background.
+     * @param currentPrice the current price of the product, not null
+     * @return the stored name, or {@code null} if names are not stored or no name is stored for the product
+     */
+    private String getStoredName(Product.CurrentPrice currentPrice) {
+
+        ProductNameProperties.Store store = productNameProperties.getStore();
+        if (!store.isEnabled() || currentPrice.getName() == null) {
+            return null;
+        }
+
+        Date fetchedAt = currentPrice.getNameFetchedAt();
+        if (fetchedAt == null || System.currentTimeMillis() - fetchedAt.getTime() > store.getStaleAfterMillis()) {
+            refreshStoredName(currentPrice.getId());
+        }
+        return currentPrice.getName();
+    }
+
+    /**
+     * Fetches a stored {@link Product} name by {@code id} again on the product name executor, unless it is already
+     * being fetched, and stores it with the current price. A name that no longer exists is removed, and a name that
+     * cannot be fetched is kept until the next read finds it stale.
+     * @param id the id of the product, not null
+     */
+    private void refreshStoredName(String id) {
+
+        if (!storedNameRefreshes.add(id)) {
+            return;
+        }
 
-        JsonNode root;
         try {
-            root = new ObjectMapper().readTree(responseBody);
-        } catch (IOException e) {
-            logger.debug("Unable to parse the response body to get the product name.", e);
-            throw new RestClientException("Unable to read product name.");
+            productNameExecutor.execute(() -> {
+                try {
+                    String name = fetchName(id);
+                    nameCache.put(id, name);
+                    storeName(id, name);
+                } catch (NotFoundException e) {
+                    nameCache.invalidate(id);
+                    notFoundNameCache.put(id, Boolean.TRUE);
+                    storeName(id, null);
+                } catch (RuntimeException e) {
+                    logger.debug("Unable to refresh the product's stored name by id: {}", id, e);
+                } finally {
+                    storedNameRefreshes.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("The product name executor is full, refreshing the stored name by id later: {}", id);
+            storedNameRefreshes.remove(id);
         }
+    }
 
-        JsonNode nameNode = root.path(JSON_TAG_PRODUCT).path(JSON_TAG_ITEM).path(JSON_TAG_PRODUCT_DESCRIPTION).path(JSON_TAG_TITLE);
-        String name = nameNode.asText();
+    /**
+     * Stores a {@link Product} name with its current price. A name that cannot be stored is looked up again on the
+     * next read, so the failure is only logged.
+     * @param id the id of the product, not null
+     * @param name the product name, or {@code null} to remove the stored name
+     */
+    private void storeName(String id, String name) {
 
-        if (name == null || name.isEmpty()) {
-            logger.debug("Unable to read product name from response body: {}.", responseBody);
-            throw new RestClientException("Unable to read product name.");
+        try {
+            currentPriceRepository.updateName(id, name, new Date());
+        } catch (RuntimeException e) {
+            logger.debug("Unable to store the product's name by id: {}", id, e);
+        }
+    }
+
+    /**
+     * Gets the last known name of a {@link Product} whose name cannot be fetched.
+     * @param id the id of the product, not null
+     * @return the last known name, or {@code null} if no name is known
+     */
+    private String getFallbackName(String id) {
+
+        String name = lastKnownNameCache.getIfPresent(id);
+        if (name == null) {
+            missingNameFallbackCount.increment();
         } else {
+            lastKnownNameFallbackCount.increment();
+        }
+        return name;
+    }
+
+    /**
+     * Fetches a {@link Product} name by {@code id} for the name cache, and remembers it as the last known name. A name
+     * that differs from the last known name is counted as a name change.
+     * @param id the id of the product, not null
+     * @return a product name, not null
+     */
+    private String fetchName(String id) {
+
+        try {
+            String name = productNameClient.fetchName(id);
+            String lastKnownName = lastKnownNameCache.asMap().put(id, name);
+            if (lastKnownName != null && !lastKnownName.equals(name)) {
+                nameChanges.increment();
+            }
+            nameFetchedAt.put(id, System.nanoTime());
             return name;
+        } catch (NotFoundException e) {
+            if (lastKnownNameCache.asMap().remove(id) != null) {
+                nameChanges.increment();
+            }
+            nameFetchedAt.remove(id);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the name of a {@link Product} into the name cache the same way as {@link #getName(String)}, and stores it
+     * with the current price when names are stored and it is not stored yet.
+     * @param currentPrice the current price of the product, not null
+     * @return whether the product has a name
+     */
+    boolean loadName(Product.CurrentPrice currentPrice) {
+
+        if (getStoredName(currentPrice) != null) {
+            return true;
+        }
+        try {
+            getNameAndStore(currentPrice.getId());
+            return true;
+        } catch (NotFoundException e) {
+            return false;
         }
     }
 
     /**
-     * Updates a {@link Product} by {@code id}.
+     * Gets the ids of the cached names that were fetched before a point in time.
+     * @param nanoTime the {@link System#nanoTime()} to compare the fetch times with
+     * @return the ids, not null
+     */
+    List<String> getNamesFetchedBefore(long nanoTime) {
+
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, Long> fetchedAt : nameFetchedAt.entrySet()) {
+            if (fetchedAt.getValue() - nanoTime < 0) {
+                ids.add(fetchedAt.getKey());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Fetches a cached {@link Product} name by {@code id} again in the background, on the product name executor.
+     * The cached name is served until the new one is fetched, and is kept if the fetch fails.
+     * @param id the id of the product, not null
+     */
+    void refreshName(String id) {
+        nameCache.refresh(checkNotNull(id));
+    }
+
+    private String lookUpName(String id) {
+
+        if (notFoundNameCache.getIfPresent(id) != null) {
+            logger.debug("Product name by id: {} was recently not found", id);
+            throw new NotFoundException();
+        }
+
+        try {
+            return nameCache.getUnchecked(id);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof NotFoundException) {
+                notFoundNameCache.put(id, Boolean.TRUE);
+            }
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    /**
+     * Updates a {@link Product} by {@code id} with a single atomic update of its current price, invalidates its
+     * json in the {@link ProductJsonCache}, and publishes the change to the {@link PriceChangeStream}. The id is added
+     * to the {@link ProductIdFilter}, in case its price was added since the filter was built.
      *
      * @param id the id of the product, not null
      * @param product the product details to update
+     * @param expectedVersion the version the current price must have, or {@code null} to update any version
+     * @return the version of the current price after the update
+     * @throws NotFoundException if there is no current price for {@code id}
+     * @throws PreconditionFailedException if the current price does not have {@code expectedVersion}
      */
-    public void update(String id, @Valid Product product) {
+    public long update(String id, @Valid Product product, Long expectedVersion) {
 
         checkNotNull(id);
 
-        String name = product.getName();
-        // Update product name here when implementation becomes known
+        long start = pipelineMetrics.begin(Stage.UPDATE);
+        try {
+            long version = updatePrice(id, product, expectedVersion);
+            pipelineMetrics.end(Stage.UPDATE, start);
+            return version;
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.UPDATE, start, e);
+            throw e;
+        }
+    }
 
-        Product.CurrentPrice currentPrice = currentPriceRepository.findOne(id);
+    private long updatePrice(String id, Product product, Long expectedVersion) {
 
-        if (currentPrice == null) {
+        // Names are owned by the product name resource and stored from there, so the name sent here is not saved
+
+        Product.CurrentPrice newPrice = product.getCurrentPrice();
+        Product.CurrentPrice oldPrice = currentPriceRepository.findAndUpdatePrice(
+                id, newPrice.getValue(), newPrice.getCurrencyCode(), expectedVersion);
+
+        if (oldPrice == null) {
+            if (expectedVersion != null && currentPriceRepository.exists(id)) {
+                logger.debug("The product's current price by id: {} is not at version: {}", id, expectedVersion);
+                throw new PreconditionFailedException();
+            }
             logger.debug("Could not find the product's current price by id: {}", id);
             throw new NotFoundException();
         }
 
-        Product.CurrentPrice newPrice = product.getCurrentPrice();
-        currentPrice.setValue(newPrice.getValue());
-        currentPrice.setCurrencyCode(newPrice.getCurrencyCode());
+        long version = versionOf(oldPrice) + 1;
+        productIdFilter.add(id);
+        productJsonCache.invalidate(id);
+        priceChangeStream.publish(Collections.singletonList(new PriceChange(id, oldPrice.getValue(),
+                oldPrice.getCurrencyCode(), newPrice.getValue(), newPrice.getCurrencyCode(), version)));
+        return version;
+    }
+
+    /**
+     * Updates the current prices of many products. The price updates are read one at a time from
+     * {@code priceUpdates}, validated, and written in bulk writes of {@code myretail.product-price.bulk.chunk-size}
+     * updates, so memory use is bounded by the chunk size rather than the number of updates. Updates for ids without
+     * a price are reported as not found and do not stop the others. When {@code ordered}, the first update the
+     * datastore rejects stops the remaining updates, which are reported as skipped. If {@code priceUpdates} fails to
+     * read an update, the updates read so far are applied and the failure is reported as the last result. The ids of
+     * the updated products are added to the {@link ProductIdFilter}, their json is invalidated in the
+     * {@link ProductJsonCache}, and the updated prices are published to the {@link PriceChangeStream}, each with the
+     * price read just before its bulk write. Each update is written only if the price still has the version read, so
+     * an update of a price that another request changed in between is reported as a conflict instead of overwriting
+     * it, and one of a price removed in between as not found instead of adding it again; neither is published, and
+     * neither stops an ordered request.
+     *
+     * @param priceUpdates the price updates, not null
+     * @param ordered whether to apply the updates in order and stop at the first failure
+     * @return a result for every price update read, not null
+     */
+    public List<PriceUpdateResult> updatePrices(Iterator<PriceUpdate> priceUpdates, boolean ordered) {
+
+        checkNotNull(priceUpdates);
+
+        int chunkSize = productPriceProperties.getBulk().getChunkSize();
+        List<PriceUpdateResult> results = new ArrayList<>();
+        List<PriceUpdate> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(chunkSize);
+        Set<String> chunkIds = new HashSet<>();
+        boolean stopped = false;
+
+        for (int index = 0; ; index++) {
+            PriceUpdate priceUpdate;
+            try {
+                if (!priceUpdates.hasNext()) {
+                    break;
+                }
+                priceUpdate = priceUpdates.next();
+            } catch (RuntimeException e) {
+                logger.debug("Unable to read price update: {}", index, e);
+                stopped = applyPriceUpdates(chunk, chunkIndexes, ordered, stopped, results);
+                results.add(new PriceUpdateResult(index, null, PriceUpdateResult.Status.INVALID,
+                        "Unable to read the price update. The remaining price updates were not read."));
+                break;
+            }
+
+            if (stopped) {
+                results.add(new PriceUpdateResult(index, priceUpdate.getId(), PriceUpdateResult.Status.SKIPPED, null));
+                continue;
+            }
+
+            Set<ConstraintViolation<PriceUpdate>> violations = validator.validate(priceUpdate);
+            if (!violations.isEmpty()) {
+                ConstraintViolation<PriceUpdate> violation = violations.iterator().next();
+                results.add(new PriceUpdateResult(index, priceUpdate.getId(), PriceUpdateResult.Status.INVALID,
+                        violation.getPropertyPath() + " " + violation.getMessage()));
+                continue;
+            }
+
+            // A bulk write does not promise the order of updates to the same id, so they go in separate chunks
+            if (chunk.size() == chunkSize || chunkIds.contains(priceUpdate.getId())) {
+                stopped = applyPriceUpdates(chunk, chunkIndexes, ordered, stopped, results);
+                chunkIds.clear();
+                if (stopped) {
+                    results.add(new PriceUpdateResult(index, priceUpdate.getId(), PriceUpdateResult.Status.SKIPPED, null));
+                    continue;
+                }
+            }
+            chunk.add(priceUpdate);
+            chunkIndexes.add(index);
+            chunkIds.add(priceUpdate.getId());
+        }
+
+        applyPriceUpdates(chunk, chunkIndexes, ordered, stopped, results);
+        return results;
+    }
+
+    /**
+     * Applies a chunk of valid price updates in one bulk write, adds their results and clears the chunk.
+     * @param chunk the price updates, not null
+     * @param chunkIndexes the position of each price update in the request, not null
+     * @param ordered whether to stop at the first failure
+     * @param stopped whether an earlier failure already stopped an ordered request
+     * @param results the results to add to, not null
+     * @return whether an ordered request is stopped
+     */
+    private boolean applyPriceUpdates(List<PriceUpdate> chunk, List<Integer> chunkIndexes, boolean ordered,
+                                      boolean stopped, List<PriceUpdateResult> results) {
+
+        if (chunk.isEmpty() || stopped) {
+            return stopped;
+        }
 
-        currentPriceRepository.save(currentPrice);
+        List<String> ids = new ArrayList<>(chunk.size());
+        for (PriceUpdate priceUpdate : chunk) {
+            ids.add(priceUpdate.getId());
+        }
+        Map<String, Product.CurrentPrice> oldPrices = new HashMap<>();
+        for (Product.CurrentPrice currentPrice : currentPriceRepository.findAll(ids)) {
+            oldPrices.put(currentPrice.getId(), currentPrice);
+        }
+
+        List<PriceUpdate> found = new ArrayList<>(oldPrices.size());
+        List<Integer> foundIndexes = new ArrayList<>(oldPrices.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            PriceUpdate priceUpdate = chunk.get(i);
+            if (oldPrices.containsKey(priceUpdate.getId())) {
+                found.add(priceUpdate);
+                foundIndexes.add(chunkIndexes.get(i));
+            } else {
+                results.add(new PriceUpdateResult(chunkIndexes.get(i), priceUpdate.getId(),
+                        PriceUpdateResult.Status.NOT_FOUND, null));
+            }
+        }
+
+        List<Long> expectedVersions = new ArrayList<>(found.size());
+        for (PriceUpdate priceUpdate : found) {
+            expectedVersions.add(versionOf(oldPrices.get(priceUpdate.getId())));
+        }
+        // A conflict or a removed price does not stop an ordered write, only an update the datastore rejects does
+        Map<Integer, BulkWriteError> errors = new HashMap<>();
+        int firstFailure = found.size();
+        for (BulkWriteError error : currentPriceRepository.updatePrices(found, expectedVersions, ordered)) {
+            errors.put(error.getIndex(), error);
+            if (ordered && !ProductCurrentPriceRepositoryImpl.isVersionConflict(error)
+                    && !ProductCurrentPriceRepositoryImpl.isNotFound(error)) {
+                firstFailure = Math.min(firstFailure, error.getIndex());
+            }
+        }
+
+        List<PriceChange> priceChanges = new ArrayList<>(found.size());
+        List<String> updatedIds = new ArrayList<>(found.size());
+        for (int i = 0; i < found.size(); i++) {
+            PriceUpdate priceUpdate = found.get(i);
+            BulkWriteError error = errors.get(i);
+            PriceUpdateResult.Status status;
+            String message = null;
+            if (error != null && ProductCurrentPriceRepositoryImpl.isVersionConflict(error)) {
+                status = PriceUpdateResult.Status.CONFLICT;
+                message = "The price changed while it was updated.";
+            } else if (error != null && ProductCurrentPriceRepositoryImpl.isNotFound(error)) {
+                status = PriceUpdateResult.Status.NOT_FOUND;
+            } else if (error != null) {
+                status = PriceUpdateResult.Status.FAILED;
+                message = error.getMessage();
+            } else {
+                status = i > firstFailure ? PriceUpdateResult.Status.SKIPPED : PriceUpdateResult.Status.UPDATED;
+            }
+            results.add(new PriceUpdateResult(foundIndexes.get(i), priceUpdate.getId(), status, message));
+            if (status == PriceUpdateResult.Status.UPDATED) {
+                Product.CurrentPrice oldPrice = oldPrices.get(priceUpdate.getId());
+                priceChanges.add(new PriceChange(priceUpdate.getId(), oldPrice.getValue(), oldPrice.getCurrencyCode(),
+                        priceUpdate.getValue(), priceUpdate.getCurrencyCode(), versionOf(oldPrice) + 1));
+                updatedIds.add(priceUpdate.getId());
+            }
+        }
+        for (String id : updatedIds) {
+            productIdFilter.add(id);
+        }
+        productJsonCache.invalidateAll(updatedIds);
+        priceChangeStream.publish(priceChanges);
+
+        if (!errors.isEmpty()) {
+            logger.debug("Unable to apply {} of {} price updates", errors.size(), found.size());
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+        return firstFailure < found.size();
+    }
+
+    /**
+     * Gets the version of {@code currentPrice}, where a price that was never updated has version 0.
+     * @param currentPrice the current price, not null
+     * @return the version of the current price
+     */
+    public static long versionOf(Product.CurrentPrice currentPrice) {
+        return currentPrice.getVersion() == null ? 0 : currentPrice.getVersion();
     }
 }
@@ -0,0 +1,201 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics.Stage;
+import com.ryanfranklin.myretail.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Caches products serialized as UTF-8 json, so a product whose price and name have not changed is written without
+ * serializing it again. The json is cached by id and kept with the price version and name it was written from, and
+ * is only served for a product with the same version and name, so a price or name that changed is never served
+ * stale. Price updates invalidate the json of the products they update, so it does not take up room until evicted.
+ * At most {@code myretail.product-price.json-cache.max-bytes} of json is cached.
+ */
+@Component
+public class ProductJsonCache {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductPriceProperties productPriceProperties;
+
+    @Autowired
+    private ProductPipelineMetrics pipelineMetrics;
+
+    /** The json of products by id **/
+    private Cache<String, Entry> cache;
+
+    /** The bytes of json cached **/
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    @PostConstruct
+    void initCache() {
+
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(productPriceProperties.getJsonCache().getMaxBytes())
+                .weigher((String id, Entry entry) -> entry.json.length)
+                .removalListener((RemovalNotification<String, Entry> notification) ->
+                        bytes.addAndGet(-notification.getValue().json.length))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gets {@code product} as UTF-8 json, from the cache when the json cached for its id was written from the same
+     * price version and name, and serializing and caching it otherwise.
+     *
+     * @param product the product, not null
+     * @return the product as json, not null
+     * @throws UncheckedIOException if the product cannot be serialized
+     */
+    public byte[] getJson(Product product) {
+
+        checkNotNull(product);
+
+        if (!productPriceProperties.getJsonCache().isEnabled()) {
+            return serialize(product);
+        }
+
+        long version = ProductImplRepository.versionOf(product.getCurrentPrice());
+        Entry entry = cache.getIfPresent(product.getId());
+        if (entry != null && entry.version == version && Objects.equals(entry.name, product.getName())) {
+            hitCount.increment();
+            return entry.json;
+        }
+
+        missCount.increment();
+        byte[] json = serialize(product);
+        bytes.addAndGet(json.length);
+        cache.put(product.getId(), new Entry(version, product.getName(), json));
+        return json;
+    }
+
+    /**
+     * Removes the json of the product with {@code id}, after its price changed.
+     * @param id the id of the product, not null
+     */
+    public void invalidate(String id) {
+
+        checkNotNull(id);
+
+        if (cache.asMap().remove(id) != null) {
+            invalidationCount.increment();
+        }
+    }
+
+    /**
+     * Removes the json of the products with {@code ids}, after their prices changed.
+     * @param ids the ids of the products, not null
+     */
+    public void invalidateAll(Collection<String> ids) {
+
+        checkNotNull(ids);
+
+        for (String id : ids) {
+            invalidate(id);
+        }
+    }
+
+    private byte[] serialize(Product product) {
+
+        long start = pipelineMetrics.begin(Stage.SERIALIZE);
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(product);
+            pipelineMetrics.end(Stage.SERIALIZE, start);
+            return json;
+        } catch (JsonProcessingException e) {
+            pipelineMetrics.fail(Stage.SERIALIZE, start, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException | Error e) {
+            pipelineMetrics.fail(Stage.SERIALIZE, start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of products whose json is cached.
+     * @return the approximate number of products
+     */
+    public long getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Gets the bytes of json cached.
+     * @return the bytes cached
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Gets the number of products written from cached json.
+     * @return the hits
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Gets the number of products serialized, because no json was cached for the product's price version and name.
+     * @return the misses
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Gets the number of cached json removed because the price of the product changed.
+     * @return the invalidations
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.sum();
+    }
+
+    /**
+     * Gets the statistics of the cache, for its evictions.
+     * @return the cache statistics, not null
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * The json of a product, with the price version and name it was written from.
+     */
+    private static final class Entry {
+
+        private final long version;
+        private final String name;
+        private final byte[] json;
+
+        private Entry(long version, String name, byte[] json) {
+            this.version = version;
+            this.name = name;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ryanfranklin.myretail.config.ProductNameProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Refreshes cached names in the background before they expire, when {@code myretail.product-name.refresh.enabled}
+ * is set. Every {@code interval-millis} the names that will expire within {@code ahead-millis} are fetched again, at
+ * most {@code rate-per-second} per second, so requests rarely find a name expired and wait on the product name
+ * resource. Refreshing starts once the application is ready, after the names are loaded at startup.
+ */
+@Component
+public class ProductNameRefresher {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private ProductImplRepository productImplRepository;
+
+    @Autowired
+    private ProductNameProperties productNameProperties;
+
+    private ScheduledExecutorService scheduler;
+
+    private final LongAdder refreshedCount = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRefreshing() {
+
+        ProductNameProperties.Refresh refresh = productNameProperties.getRefresh();
+        if (!refresh.isEnabled()) {
+            return;
+        }
+
+        RateLimiter rateLimiter = RateLimiter.create(refresh.getRatePerSecond());
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("product-name-refresh-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(() -> refreshExpiringNames(rateLimiter),
+                refresh.getIntervalMillis(), refresh.getIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopRefreshing() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Refreshes the names fetched long enough ago to expire within {@code ahead-millis}.
+     */
+    private void refreshExpiringNames(RateLimiter rateLimiter) {
+
+        try {
+            long refreshAgeMillis = Math.max(0, productNameProperties.getCache().getExpireAfterWriteMillis()
+                    - productNameProperties.getRefresh().getAheadMillis());
+            List<String> ids = productImplRepository.getNamesFetchedBefore(
+                    System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(refreshAgeMillis));
+            if (ids.isEmpty()) {
+                return;
+            }
+
+            logger.debug("Refreshing {} product names about to expire", ids.size());
+            for (String id : ids) {
+                rateLimiter.acquire();
+                productImplRepository.refreshName(id);
+                refreshedCount.increment();
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule
+            logger.warn("Unable to refresh the product names about to expire", e);
+        }
+    }
+
+    /**
+     * Gets the number of names refreshed before they expired.
+     * @return the names refreshed
+     */
+    public long getRefreshedCount() {
+        return refreshedCount.sum();
+    }
+}
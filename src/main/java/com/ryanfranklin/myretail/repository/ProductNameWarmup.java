@@ -0,0 +1,153 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ryanfranklin.myretail.config.ProductNameProperties;
+import com.ryanfranklin.myretail.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads the names of the whole catalog into the name cache at startup, when
+ * {@code myretail.product-name.warmup.enabled} is set, so the first requests after a deploy do not all wait on the
+ * product name resource. Ids are read from the datastore a page at a time, and names are loaded at most
+ * {@code rate-per-second} per second and {@code concurrency} at once. Loading stops after {@code budget-millis}, and
+ * startup goes on with the names loaded so far. Until loading ends the health of the instance is
+ * {@code OUT_OF_SERVICE}, so it is not sent traffic yet.
+ */
+@Component
+public class ProductNameWarmup implements ApplicationRunner, HealthIndicator {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The field of the product id in the current price document **/
+    private static final String FIELD_ID = "id";
+
+    @Autowired
+    private ProductCurrentPriceRepository currentPriceRepository;
+
+    @Autowired
+    private ProductImplRepository productImplRepository;
+
+    @Autowired
+    private ProductNameProperties productNameProperties;
+
+    private volatile boolean done;
+    private volatile boolean budgetExceeded;
+    private final LongAdder loadedCount = new LongAdder();
+    private final LongAdder notFoundCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+
+        ProductNameProperties.Warmup warmup = productNameProperties.getWarmup();
+        if (!warmup.isEnabled()) {
+            done = true;
+            return;
+        }
+
+        logger.info("Loading the product names of the catalog for up to {} ms", warmup.getBudgetMillis());
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(warmup.getBudgetMillis());
+        ExecutorService executor = Executors.newFixedThreadPool(warmup.getConcurrency(),
+                new ThreadFactoryBuilder().setNameFormat("product-name-warmup-%d").setDaemon(true).build());
+        try {
+            budgetExceeded = !loadNames(warmup, executor, deadline);
+        } finally {
+            executor.shutdownNow();
+            done = true;
+        }
+        logger.info("Loaded {} product names, {} not found and {} failed in {} ms{}", loadedCount.sum(),
+                notFoundCount.sum(), failedCount.sum(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                budgetExceeded ? ", stopped at the time budget" : "");
+    }
+
+    /**
+     * Loads the name of every id in the catalog, until {@code deadline}.
+     * @return whether every name was loaded before the deadline
+     */
+    private boolean loadNames(ProductNameProperties.Warmup warmup, ExecutorService executor, long deadline)
+            throws InterruptedException {
+
+        RateLimiter rateLimiter = RateLimiter.create(warmup.getRatePerSecond());
+        Semaphore permits = new Semaphore(warmup.getConcurrency());
+        Pageable pageable = new PageRequest(0, warmup.getPageSize(), Sort.Direction.ASC, FIELD_ID);
+
+        String afterId = null;
+        Slice<Product.CurrentPrice> page;
+        do {
+            page = afterId == null
+                    ? currentPriceRepository.findAllBy(pageable)
+                    : currentPriceRepository.findByIdGreaterThan(afterId, pageable);
+            for (Product.CurrentPrice currentPrice : page) {
+                if (!rateLimiter.tryAcquire(remaining(deadline), TimeUnit.NANOSECONDS)
+                        || !permits.tryAcquire(remaining(deadline), TimeUnit.NANOSECONDS)) {
+                    return false;
+                }
+                executor.execute(() -> {
+                    try {
+                        loadName(currentPrice);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            List<Product.CurrentPrice> content = page.getContent();
+            afterId = content.isEmpty() ? null : content.get(content.size() - 1).getId();
+        } while (page.hasNext());
+
+        // Wait for the names still loading
+        return permits.tryAcquire(warmup.getConcurrency(), remaining(deadline), TimeUnit.NANOSECONDS);
+    }
+
+    private void loadName(Product.CurrentPrice currentPrice) {
+
+        try {
+            if (productImplRepository.loadName(currentPrice)) {
+                loadedCount.increment();
+            } else {
+                notFoundCount.increment();
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Unable to load the product's name by id: {}", currentPrice.getId(), e);
+            failedCount.increment();
+        }
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Reports {@code OUT_OF_SERVICE} until the names are loaded, and then {@code UP}, with the number of names
+     * loaded, not found and failed.
+     */
+    @Override
+    public Health health() {
+
+        Health.Builder health = done ? Health.up() : Health.outOfService();
+        return health.withDetail("loaded", loadedCount.sum())
+                .withDetail("notFound", notFoundCount.sum())
+                .withDetail("failed", failedCount.sum())
+                .withDetail("budgetExceeded", budgetExceeded)
+                .build();
+    }
+}
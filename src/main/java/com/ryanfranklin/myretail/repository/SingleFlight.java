@@ -0,0 +1,77 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.google.common.base.Throwables;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Deduplicates concurrent calls by key. The first caller for a key makes the call, and callers that arrive while it
+ * is in flight wait for it and get the same result or exception instead of making their own call. Nothing is kept
+ * once the call completes, so a later caller makes a new call.
+ * @param <K> the type of the keys
+ * @param <V> the type of the results
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Gets the result of {@code call} for {@code key}, or of the call for {@code key} already in flight.
+     * @param key the key of the call, not null
+     * @param call the call to make when none is in flight, not null
+     * @return the result of the call
+     */
+    V execute(K key, Supplier<V> call) {
+
+        checkNotNull(key);
+        checkNotNull(call);
+
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, own);
+        if (inFlight != null) {
+            coalesced.increment();
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw e;
+            }
+        }
+
+        try {
+            V result = call.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, own);
+        }
+    }
+
+    /**
+     * Gets the number of calls that waited for a call already in flight instead of making their own.
+     * @return the number of coalesced calls
+     */
+    long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Gets the number of calls in flight.
+     * @return the approximate number of keys with a call in flight
+     */
+    int getInFlightCount() {
+        return calls.size();
+    }
+}
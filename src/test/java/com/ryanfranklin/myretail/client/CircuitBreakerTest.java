@@ -0,0 +1,115 @@
+package com.ryanfranklin.myretail.client;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CircuitBreakerTest {
+
+    private static long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static long OPEN_NANOS = TimeUnit.MILLISECONDS.toNanos(1000);
+
+    private final FakeTicker ticker = new FakeTicker();
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker("test", 10, 4, 50, 100, 1000, 2, ticker);
+
+    @Test
+    public void staysClosedBelowMinimumCalls() {
+
+        call(false, SLOW_NANOS);
+        call(false, SLOW_NANOS);
+        call(true, FAST_NANOS);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    public void opensOnSlowCalls() {
+
+        call(false, FAST_NANOS);
+        call(false, FAST_NANOS);
+        call(false, SLOW_NANOS);
+        call(false, SLOW_NANOS);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission()).isFalse();
+        assertThat(circuitBreaker.getOpenedCount()).isEqualTo(1);
+        assertThat(circuitBreaker.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void staysClosedBelowFailureRate() {
+
+        call(false, FAST_NANOS);
+        call(false, FAST_NANOS);
+        call(false, FAST_NANOS);
+        call(true, FAST_NANOS);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void closesAfterTrialCallsSucceed() {
+
+        open();
+        ticker.advance(OPEN_NANOS);
+
+        assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+        assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission()).isFalse();
+
+        circuitBreaker.onResult(FAST_NANOS, false);
+        circuitBreaker.onResult(FAST_NANOS, false);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    public void reopensWhenTrialCallFails() {
+
+        open();
+        ticker.advance(OPEN_NANOS);
+
+        assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+        circuitBreaker.onResult(FAST_NANOS, true);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.getOpenedCount()).isEqualTo(2);
+        assertThat(circuitBreaker.tryAcquirePermission()).isFalse();
+    }
+
+    private void open() {
+
+        for (int i = 0; i < 4; i++) {
+            call(true, FAST_NANOS);
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void call(boolean failed, long latencyNanos) {
+
+        assertThat(circuitBreaker.tryAcquirePermission()).isTrue();
+        circuitBreaker.onResult(latencyNanos, failed);
+    }
+
+    private static class FakeTicker extends Ticker {
+
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long nanos) {
+            this.nanos += nanos;
+        }
+    }
+}
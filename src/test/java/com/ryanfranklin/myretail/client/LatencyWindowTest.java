@@ -0,0 +1,46 @@
+package com.ryanfranklin.myretail.client;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LatencyWindowTest {
+
+    private final LatencyWindow latencyWindow = new LatencyWindow(100, 10);
+
+    @Test
+    public void hasNoPercentileBelowMinimumCalls() {
+
+        record(1, 9);
+
+        assertThat(latencyWindow.percentile(95)).isEqualTo(-1);
+    }
+
+    @Test
+    public void getsPercentileOfRecentLatencies() {
+
+        record(1, 100);
+
+        assertThat(latencyWindow.percentile(95)).isEqualTo(95);
+        assertThat(latencyWindow.percentile(50)).isEqualTo(50);
+    }
+
+    @Test
+    public void keepsPercentileUntilAnotherTwentiethIsRecorded() {
+
+        record(1, 100);
+        assertThat(latencyWindow.percentile(95)).isEqualTo(95);
+
+        record(1000, 1003);
+        assertThat(latencyWindow.percentile(95)).isEqualTo(95);
+
+        latencyWindow.record(1004);
+        assertThat(latencyWindow.percentile(95)).isEqualTo(100);
+    }
+
+    private void record(int from, int to) {
+        for (int latency = from; latency <= to; latency++) {
+            latencyWindow.record(latency);
+        }
+    }
+}
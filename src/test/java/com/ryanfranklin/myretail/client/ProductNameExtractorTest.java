@@ -0,0 +1,134 @@
+package com.ryanfranklin.myretail.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The payloads in src/test/resources/redsky follow the format of the product name resource, where the product name is
+ * at: product.item.product_description.title
+ */
+public class ProductNameExtractorTest {
+
+    private static String PAYLOAD_PATH = "/redsky/";
+
+    private final ProductNameExtractor productNameExtractor = new ProductNameExtractor();
+
+    @Test
+    public void extractName() throws Exception {
+
+        try (InputStream body = payload("pdp-13860428.json")) {
+            assertThat(productNameExtractor.extractName(body)).isEqualTo("The Big Lebowski (Blu-ray)");
+        }
+    }
+
+    @Test
+    public void extractNameWithEscapedCharacters() throws Exception {
+
+        try (InputStream body = payload("pdp-title-escaped.json")) {
+            assertThat(productNameExtractor.extractName(body)).isEqualTo("Beats Solo² Wireless - \"Black\"");
+        }
+    }
+
+    @Test
+    public void extractNameWithoutTitle() throws Exception {
+
+        try (InputStream body = payload("pdp-no-title.json")) {
+            assertThat(productNameExtractor.extractName(body)).isNull();
+        }
+    }
+
+    @Test
+    public void extractNameWithEmptyItem() throws Exception {
+
+        try (InputStream body = payload("pdp-not-found.json")) {
+            assertThat(productNameExtractor.extractName(body)).isNull();
+        }
+    }
+
+    @Test
+    public void extractNameStopsAtTitle() throws Exception {
+
+        String body = "{\"product\":{\"item\":{\"product_description\":{\"title\":\"Beats Solo 2\"},\"buy_url\": <truncated";
+
+        assertThat(productNameExtractor.extractName(stream(body))).isEqualTo("Beats Solo 2");
+    }
+
+    @Test
+    public void extractNameWithTitleNotString() throws Exception {
+
+        String body = "{\"product\":{\"item\":{\"product_description\":{\"title\":{\"value\":\"Beats Solo 2\"}}}}}";
+
+        assertThat(productNameExtractor.extractName(stream(body))).isNull();
+    }
+
+    @Test
+    public void extractNameWithProductNotObject() throws Exception {
+
+        String body = "{\"product\":[{\"item\":{\"product_description\":{\"title\":\"Beats Solo 2\"}}}]}";
+
+        assertThat(productNameExtractor.extractName(stream(body))).isNull();
+    }
+
+    @Test
+    public void extractNameWithBodyNotObject() throws Exception {
+
+        assertThat(productNameExtractor.extractName(stream("[]"))).isNull();
+    }
+
+    @Test
+    public void extractNameWithEmptyBody() throws Exception {
+
+        assertThat(productNameExtractor.extractName(stream(""))).isNull();
+    }
+
+    @Test
+    public void extractNameWithMalformedBody() {
+
+        String body = "{\"product\":{\"item\": <truncated";
+
+        assertThatThrownBy(() -> productNameExtractor.extractName(stream(body)))
+                .isInstanceOf(JsonProcessingException.class);
+    }
+
+    @Test
+    public void extractNameLeavesBodyOpen() throws Exception {
+
+        ClosedTrackingInputStream body = new ClosedTrackingInputStream(payload("pdp-13860428.json"));
+
+        productNameExtractor.extractName(body);
+
+        assertThat(body.closed).isFalse();
+    }
+
+    private InputStream payload(String fileName) {
+        return getClass().getResourceAsStream(PAYLOAD_PATH + fileName);
+    }
+
+    private InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class ClosedTrackingInputStream extends FilterInputStream {
+
+        private boolean closed;
+
+        ClosedTrackingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ryanfranklin.myretail.client;
+
+import com.ryanfranklin.myretail.config.ProductNameProperties;
+import com.ryanfranklin.myretail.exception.NotFoundException;
+import com.ryanfranklin.myretail.exception.ServiceUnavailableException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResilientProductNameClientTest {
+
+    private static String PRODUCT_ID = "13860428";
+    private static String PRODUCT_NAME = "The Big Lebowski (Blu-ray)";
+    private static int MAX_CONCURRENT_CALLS = 2;
+    private static int HEDGE_MINIMUM_CALLS = 10;
+
+    @Mock
+    private ProductNameClient productNameClient;
+
+    private final ProductNameProperties productNameProperties = new ProductNameProperties();
+    private final ExecutorService productNameCallExecutor = new ThreadPoolExecutor(0, MAX_CONCURRENT_CALLS * 2, 60L,
+            TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadPoolExecutor.CallerRunsPolicy());
+    private final ResilientProductNameClient resilientProductNameClient = new ResilientProductNameClient();
+
+    /** Released to let a blocked call return **/
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setup() {
+
+        productNameProperties.getBulkhead().setMaxConcurrentCalls(MAX_CONCURRENT_CALLS);
+        productNameProperties.getBreaker().setWindowSize(4);
+        productNameProperties.getBreaker().setMinimumCalls(2);
+        productNameProperties.getBreaker().setFailureRatePercent(50);
+        productNameProperties.getBreaker().setOpenMillis(60000);
+        productNameProperties.getHedge().setWindowSize(HEDGE_MINIMUM_CALLS);
+        productNameProperties.getHedge().setMinimumCalls(HEDGE_MINIMUM_CALLS);
+
+        ReflectionTestUtils.setField(resilientProductNameClient, "productNameClient", productNameClient);
+        ReflectionTestUtils.setField(resilientProductNameClient, "productNameProperties", productNameProperties);
+        ReflectionTestUtils.setField(resilientProductNameClient, "productNameCallExecutor", productNameCallExecutor);
+        resilientProductNameClient.initIsolation();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        productNameCallExecutor.shutdownNow();
+    }
+
+    @Test
+    public void fetchesName() {
+
+        given(productNameClient.fetchName(PRODUCT_ID)).willReturn(PRODUCT_NAME);
+
+        assertThat(resilientProductNameClient.fetchName(PRODUCT_ID)).isEqualTo(PRODUCT_NAME);
+        assertThat(resilientProductNameClient.getBulkheadAvailable()).isEqualTo(MAX_CONCURRENT_CALLS);
+    }
+
+    @Test
+    public void rejectsCallsWhenBulkheadIsFull() throws Exception {
+
+        CountDownLatch started = new CountDownLatch(MAX_CONCURRENT_CALLS);
+        given(productNameClient.fetchName(PRODUCT_ID)).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return PRODUCT_NAME;
+        });
+        for (int i = 0; i < MAX_CONCURRENT_CALLS; i++) {
+            CompletableFuture.runAsync(() -> resilientProductNameClient.fetchName(PRODUCT_ID));
+        }
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> resilientProductNameClient.fetchName(PRODUCT_ID))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThat(resilientProductNameClient.getBulkheadRejectedCount()).isEqualTo(1);
+        verify(productNameClient, times(MAX_CONCURRENT_CALLS)).fetchName(PRODUCT_ID);
+    }
+
+    @Test
+    public void rejectsCallsWhileCircuitIsOpen() {
+
+        given(productNameClient.fetchName(PRODUCT_ID)).willThrow(new IllegalStateException("redsky is down"));
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> resilientProductNameClient.fetchName(PRODUCT_ID))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+
+        assertThat(resilientProductNameClient.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> resilientProductNameClient.fetchName(PRODUCT_ID))
+                .isInstanceOf(ServiceUnavailableException.class);
+        verify(productNameClient, times(2)).fetchName(PRODUCT_ID);
+        assertThat(resilientProductNameClient.getBulkheadAvailable()).isEqualTo(MAX_CONCURRENT_CALLS);
+    }
+
+    @Test
+    public void notFoundIsNotAFailure() {
+
+        given(productNameClient.fetchName(PRODUCT_ID)).willThrow(new NotFoundException());
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> resilientProductNameClient.fetchName(PRODUCT_ID))
+                    .isInstanceOf(NotFoundException.class);
+        }
+
+        assertThat(resilientProductNameClient.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void hedgesSlowCallAndUsesTheFirstName() throws Exception {
+
+        // Calls of 20ms make the hedge delay long enough for the first call to start before the hedged call
+        productNameProperties.getHedge().setEnabled(true);
+        given(productNameClient.fetchName(anyString())).willAnswer(invocation -> {
+            Thread.sleep(20);
+            return PRODUCT_NAME;
+        });
+        for (int i = 0; i < HEDGE_MINIMUM_CALLS; i++) {
+            resilientProductNameClient.fetchName("fast");
+        }
+        assertThat(resilientProductNameClient.getHedgedCount()).isZero();
+
+        // The first call of the product blocks until released, and the hedged call returns at once
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch firstReturned = new CountDownLatch(1);
+        given(productNameClient.fetchName(PRODUCT_ID)).willAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                release.await();
+                firstReturned.countDown();
+                return "First name";
+            }
+            return "Hedged name";
+        });
+
+        assertThat(resilientProductNameClient.fetchName(PRODUCT_ID)).isEqualTo("Hedged name");
+        assertThat(resilientProductNameClient.getHedgedCount()).isEqualTo(1);
+        assertThat(resilientProductNameClient.getHedgeWonCount()).isEqualTo(1);
+        assertThat(resilientProductNameClient.getBulkheadAvailable()).isEqualTo(MAX_CONCURRENT_CALLS - 1);
+
+        release.countDown();
+        assertThat(firstReturned.await(1, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 100 && resilientProductNameClient.getBulkheadAvailable() < MAX_CONCURRENT_CALLS; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(resilientProductNameClient.getBulkheadAvailable()).isEqualTo(MAX_CONCURRENT_CALLS);
+    }
+}
@@ -0,0 +1,93 @@
+package com.ryanfranklin.myretail.controller;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("test", 4, 2, 6, 4, 2.0, 0.5);
+
+    @Test
+    public void shedsAtLimit() {
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+        }
+        assertThat(limit.tryAcquire()).isFalse();
+        assertThat(limit.getInFlight()).isEqualTo(4);
+        assertThat(limit.getAdmittedCount()).isEqualTo(4);
+        assertThat(limit.getShedCount()).isEqualTo(1);
+
+        limit.release(FAST_NANOS);
+
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void lowersLimitWhenLatencyRises() {
+
+        window(4, FAST_NANOS);
+        assertThat(limit.getBaselineLatencyNanos()).isEqualTo(FAST_NANOS);
+        assertThat(limit.getLimit()).isEqualTo(4);
+
+        window(4, SLOW_NANOS);
+        assertThat(limit.getLimit()).isEqualTo(2);
+
+        window(2, SLOW_NANOS);
+        window(2, SLOW_NANOS);
+        assertThat(limit.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    public void raisesLimitWhenBusyAndFast() {
+
+        window(4, FAST_NANOS);
+        window(4, FAST_NANOS);
+        assertThat(limit.getLimit()).isEqualTo(5);
+
+        window(4, FAST_NANOS);
+        window(4, FAST_NANOS);
+        assertThat(limit.getLimit()).isEqualTo(6);
+    }
+
+    @Test
+    public void keepsLimitWhenIdle() {
+
+        for (int i = 0; i < 12; i++) {
+            window(1, FAST_NANOS);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    public void followsLastingLatencySlowly() {
+
+        window(4, FAST_NANOS);
+        window(4, FAST_NANOS + FAST_NANOS / 2);
+
+        assertThat(limit.getBaselineLatencyNanos()).isGreaterThan(FAST_NANOS).isLessThan(FAST_NANOS + FAST_NANOS / 2);
+    }
+
+    /**
+     * Admits {@code concurrent} requests at once and releases them with {@code latencyNanos}, as many times as it
+     * takes to complete one window of 4 requests.
+     */
+    private void window(int concurrent, long latencyNanos) {
+
+        for (int completed = 0; completed < 4; completed += concurrent) {
+            for (int i = 0; i < concurrent; i++) {
+                assertThat(limit.tryAcquire()).isTrue();
+            }
+            for (int i = 0; i < concurrent; i++) {
+                limit.release(latencyNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.ryanfranklin.myretail.controller;
+
+import com.ryanfranklin.myretail.config.AdmissionProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductAdmissionInterceptorTest {
+
+    @Spy
+    private AdmissionProperties admissionProperties = new AdmissionProperties();
+
+    @InjectMocks
+    private ProductAdmissionInterceptor productAdmissionInterceptor;
+
+    @Before
+    public void setup() {
+        admissionProperties.setInitialLimit(1);
+        admissionProperties.setMinLimit(1);
+        admissionProperties.setUpdateMinLimit(2);
+        admissionProperties.setRetryAfterSeconds(3);
+    }
+
+    @Test
+    public void shedsWithRetryAfterAtLimit() throws Exception {
+
+        MockHttpServletRequest admitted = new MockHttpServletRequest("GET", "/products/123456");
+        assertThat(preHandle(admitted, new MockHttpServletResponse(), "getProductById")).isTrue();
+
+        MockHttpServletResponse shedResponse = new MockHttpServletResponse();
+        assertThat(preHandle(new MockHttpServletRequest("GET", "/products/234567"), shedResponse, "getProductById"))
+                .isFalse();
+        assertThat(shedResponse.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(shedResponse.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+
+        productAdmissionInterceptor.afterCompletion(admitted, new MockHttpServletResponse(),
+                handler("getProductById"), null);
+
+        assertThat(preHandle(new MockHttpServletRequest("GET", "/products/234567"), new MockHttpServletResponse(),
+                "getProductById")).isTrue();
+        AdaptiveConcurrencyLimit limit = productAdmissionInterceptor.getLimits().iterator().next();
+        assertThat(limit.getName()).isEqualTo("get-product-by-id");
+        assertThat(limit.getAdmittedCount()).isEqualTo(2);
+        assertThat(limit.getShedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void updatesAreNotStarvedByScans() throws Exception {
+
+        assertThat(preHandle(new MockHttpServletRequest("GET", "/products"), new MockHttpServletResponse(),
+                "getProducts")).isTrue();
+        assertThat(preHandle(new MockHttpServletRequest("GET", "/products"), new MockHttpServletResponse(),
+                "getProducts")).isFalse();
+
+        assertThat(preHandle(new MockHttpServletRequest("PUT", "/products/123456"), new MockHttpServletResponse(),
+                "updateProductById")).isTrue();
+        assertThat(preHandle(new MockHttpServletRequest("PUT", "/products/234567"), new MockHttpServletResponse(),
+                "updateProductById")).isTrue();
+    }
+
+    @Test
+    public void shedsReadsAtOverallLimitLeavingRoomForUpdates() throws Exception {
+
+        admissionProperties.setOverallLimit(3);
+        admissionProperties.setUpdateReserve(1);
+
+        MockHttpServletRequest admitted = new MockHttpServletRequest("GET", "/products");
+        assertThat(preHandle(admitted, new MockHttpServletResponse(), "getProducts")).isTrue();
+        assertThat(preHandle(new MockHttpServletRequest("GET", "/products/123456"), new MockHttpServletResponse(),
+                "getProductById")).isTrue();
+        MockHttpServletResponse shedResponse = new MockHttpServletResponse();
+        assertThat(preHandle(new MockHttpServletRequest("GET", "/products"), shedResponse, "getProductsByIds"))
+                .isFalse();
+        assertThat(shedResponse.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+
+        assertThat(preHandle(new MockHttpServletRequest("PUT", "/products/123456"), new MockHttpServletResponse(),
+                "updateProductById")).isTrue();
+        assertThat(preHandle(new MockHttpServletRequest("PUT", "/products/234567"), new MockHttpServletResponse(),
+                "updateProductById")).isFalse();
+        assertThat(productAdmissionInterceptor.getInFlight()).isEqualTo(3);
+        assertThat(productAdmissionInterceptor.getOverallShedCount()).isEqualTo(2);
+
+        productAdmissionInterceptor.afterCompletion(admitted, new MockHttpServletResponse(), handler("getProducts"),
+                null);
+
+        assertThat(productAdmissionInterceptor.getInFlight()).isEqualTo(2);
+        assertThat(preHandle(new MockHttpServletRequest("PUT", "/products/234567"), new MockHttpServletResponse(),
+                "updateProductById")).isTrue();
+    }
+
+    @Test
+    public void releasesStreamedRequestWhenComplete() throws Exception {
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(preHandle(request, response, "getProducts")).isTrue();
+        request.startAsync(request, response);
+        productAdmissionInterceptor.afterConcurrentHandlingStarted(request, response, handler("getProducts"));
+
+        assertThat(preHandle(new MockHttpServletRequest("GET", "/products"), new MockHttpServletResponse(),
+                "getProducts")).isFalse();
+
+        request.getAsyncContext().complete();
+
+        assertThat(preHandle(new MockHttpServletRequest("GET", "/products"), new MockHttpServletResponse(),
+                "getProducts")).isTrue();
+    }
+
+    @Test
+    public void admitsEveryRequestWhenDisabled() throws Exception {
+
+        admissionProperties.setEnabled(false);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(preHandle(new MockHttpServletRequest("GET", "/products"), new MockHttpServletResponse(),
+                    "getProducts")).isTrue();
+        }
+        assertThat(productAdmissionInterceptor.getLimits()).isEmpty();
+    }
+
+    private boolean preHandle(MockHttpServletRequest request, MockHttpServletResponse response, String method)
+            throws Exception {
+        return productAdmissionInterceptor.preHandle(request, response, handler(method));
+    }
+
+    private static HandlerMethod handler(String method) {
+        return new HandlerMethod(new Object(), ReflectionUtils.findMethod(ProductController.class, method, (Class<?>[]) null));
+    }
+}
@@ -1,26 +1,62 @@
 package com.ryanfranklin.myretail.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import com.ryanfranklin.myretail.config.SmileHttpMessageConverter;
 import com.ryanfranklin.myretail.exception.NotFoundException;
+import com.ryanfranklin.myretail.exception.PreconditionFailedException;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics;
+import com.ryanfranklin.myretail.model.PriceChange;
+import com.ryanfranklin.myretail.model.PriceUpdate;
+import com.ryanfranklin.myretail.model.PriceUpdateResult;
 import com.ryanfranklin.myretail.model.Product;
+import com.ryanfranklin.myretail.model.ProductBatch;
+import com.ryanfranklin.myretail.model.ProductFields;
+import com.ryanfranklin.myretail.model.ProductPage;
+import com.ryanfranklin.myretail.repository.CatalogSnapshot;
+import com.ryanfranklin.myretail.repository.PriceChangeStream;
 import com.ryanfranklin.myretail.repository.ProductImplRepository;
+import com.ryanfranklin.myretail.repository.ProductJsonCache;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.springframework.boot.test.json.JacksonTester;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
-import static org.mockito.Mockito.doThrow;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
 
 /**
@@ -43,15 +79,36 @@ public class ProductControllerTest {
     private static String PRODUCT_NAME = "Beats Solo 2 Wireless - Black";
     private static String PRICE_VALUE = "50:50";
     private static String PRICE_CURRENCY_CODE = "USD";
+    private static String CATALOG_VERSION = "2-7";
+    private static String SNAPSHOT_VERSION = "snapshot-1-0";
     private MockMvc mockMvc;
 
     @Mock
     private ProductImplRepository productImplRepository;
 
+    @Mock
+    private CatalogSnapshot catalogSnapshot;
+
+    @Spy
+    private PriceChangeStream priceChangeStream = new PriceChangeStream();
+
+    @Spy
+    private ProductPriceProperties productPriceProperties = new ProductPriceProperties();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private ProductJsonCache productJsonCache = new ProductJsonCache();
+
     @InjectMocks
     private ProductController productController;
 
     private JacksonTester<Product> jacksonProductTester;
+    private JacksonTester<Product[]> jacksonProductArrayTester;
+    private JacksonTester<ProductPage> jacksonProductPageTester;
+    private JacksonTester<ProductBatch> jacksonProductBatchTester;
+    private JacksonTester<PriceUpdateResult[]> jacksonPriceUpdateResultsTester;
     private Product productGood;
 
     @Before
@@ -68,8 +125,342 @@ public class ProductControllerTest {
         productGood.setId(PRODUCT_ID);
         productGood.setName(PRODUCT_NAME);
         productGood.setCurrentPrice(currentPrice);
+
+        given(productImplRepository.getCatalogVersion()).willReturn(CATALOG_VERSION);
+        given(catalogSnapshot.getVersion()).willReturn(SNAPSHOT_VERSION);
+
+        ReflectionTestUtils.setField(priceChangeStream, "productPriceProperties", productPriceProperties);
+        ReflectionTestUtils.invokeMethod(priceChangeStream, "initStream");
+
+        ReflectionTestUtils.setField(productJsonCache, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(productJsonCache, "productPriceProperties", productPriceProperties);
+        ReflectionTestUtils.setField(productJsonCache, "pipelineMetrics", new ProductPipelineMetrics());
+        ReflectionTestUtils.invokeMethod(productJsonCache, "initCache");
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(priceChangeStream, "stopStream");
+    }
+
+
+    @Test
+    public void getProducts() throws Exception {
+
+        Product productOther = new Product("234567", PRODUCT_NAME, productGood.getCurrentPrice());
+        given(productImplRepository.findPage(null, ProductController.MAX_PAGE_LIMIT, ProductFields.ALL)).willReturn(
+                new SliceImpl<>(Collections.singletonList(productGood), new PageRequest(0, 1), true));
+        given(productImplRepository.findPage(PRODUCT_ID, ProductController.MAX_PAGE_LIMIT, ProductFields.ALL))
+                .willReturn(new SliceImpl<>(Collections.singletonList(productOther), new PageRequest(0, 1),
+                        false));
+
+        MvcResult result = mockMvc.perform(get(URL_PATH)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+        MockHttpServletResponse response = result.getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).isEqualTo(
+                jacksonProductArrayTester.write(new Product[]{productGood, productOther}).getJson());
+    }
+
+    @Test
+    public void getProductsAsSmile() throws Exception {
+
+        given(productImplRepository.findPage(null, ProductController.MAX_PAGE_LIMIT, ProductFields.ALL)).willReturn(
+                new SliceImpl<>(Collections.singletonList(productGood), new PageRequest(0, 1), false));
+
+        MvcResult result = mockMvc.perform(get(URL_PATH)
+                .accept(SmileHttpMessageConverter.SMILE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+        MockHttpServletResponse response = result.getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentType()).isEqualTo(SmileHttpMessageConverter.SMILE.toString());
+        assertThat(new ObjectMapper(new SmileFactory()).readTree(response.getContentAsByteArray())).isEqualTo(
+                objectMapper.valueToTree(new Product[]{productGood}));
+    }
+
+    @Test
+    public void getProductPage() throws Exception {
+
+        given(productImplRepository.findPage(null, 1, ProductFields.ALL)).willReturn(
+                new SliceImpl<>(Collections.singletonList(productGood), new PageRequest(0, 1), true));
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("limit", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        ProductPage page = jacksonProductPageTester.parseObject(response.getContentAsString());
+        assertThat(page.getProducts()).containsExactly(productGood);
+        assertThat(page.getNextCursor()).isNotEmpty();
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ProductETag.ofCatalog(CATALOG_VERSION));
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT);
+    }
+
+    @Test
+    public void getProductPageFromSnapshot() throws Exception {
+
+        given(catalogSnapshot.isReady()).willReturn(true);
+        given(catalogSnapshot.writePage(any(JsonGenerator.class), eq((String) null), eq(1),
+                eq(ProductFields.ALL))).willAnswer(invocation -> {
+            invocation.getArgumentAt(0, JsonGenerator.class).writeObject(productGood);
+            return PRODUCT_ID;
+        });
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("limit", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        ProductPage page = jacksonProductPageTester.parseObject(response.getContentAsString());
+        assertThat(page.getProducts()).containsExactly(productGood);
+        assertThat(ProductCursor.decode(page.getNextCursor())).isEqualTo(PRODUCT_ID);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ProductETag.ofCatalog(SNAPSHOT_VERSION));
+        verify(productImplRepository, never()).findPage(any(), anyInt(), any());
+    }
+
+    @Test
+    public void getProductPageFromSnapshotComparesSnapshotVersion() throws Exception {
+
+        given(catalogSnapshot.isReady()).willReturn(true);
+
+        MockHttpServletResponse notModified = mockMvc.perform(get(URL_PATH)
+                .header(HttpHeaders.IF_NONE_MATCH, ProductETag.ofCatalog(SNAPSHOT_VERSION))
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .header(HttpHeaders.IF_NONE_MATCH, ProductETag.ofCatalog(CATALOG_VERSION))
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(notModified.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ProductETag.ofCatalog(SNAPSHOT_VERSION));
+        verify(productImplRepository, never()).getCatalogVersion();
+    }
+
+    @Test
+    public void getProductPageNotModified() throws Exception {
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("limit", "1")
+                .header(HttpHeaders.IF_NONE_MATCH, ProductETag.ofCatalog(CATALOG_VERSION))
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(response.getContentAsString()).isEmpty();
+        verify(productImplRepository, never()).findPage(any(String.class), anyInt(), any());
+    }
+
+    @Test
+    public void getProductPageWithCursor() throws Exception {
+
+        given(productImplRepository.findPage(null, 1, ProductFields.ALL)).willReturn(
+                new SliceImpl<>(Collections.singletonList(productGood), new PageRequest(0, 1), true));
+        given(productImplRepository.findPage(PRODUCT_ID, ProductController.DEFAULT_PAGE_LIMIT, ProductFields.ALL))
+                .willReturn(new SliceImpl<>(Collections.emptyList(), new PageRequest(0, 1), false));
+
+        MockHttpServletResponse first = mockMvc.perform(get(URL_PATH)
+                .param("limit", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+        String cursor = jacksonProductPageTester.parseObject(first.getContentAsString()).getNextCursor();
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("cursor", cursor)
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).isEqualTo(
+                jacksonProductPageTester.write(new ProductPage(Collections.emptyList(), null)).getJson());
+        verify(productImplRepository).findPage(PRODUCT_ID, ProductController.DEFAULT_PAGE_LIMIT, ProductFields.ALL);
+    }
+
+    @Test
+    public void getProductPageWithInvalidCursor() throws Exception {
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("cursor", "not a cursor")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        verifyZeroInteractions(productImplRepository);
+    }
+
+    @Test
+    public void getProductPageWithLimitTooLarge() throws Exception {
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("limit", String.valueOf(ProductController.MAX_PAGE_LIMIT + 1))
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        verifyZeroInteractions(productImplRepository);
     }
 
+    @Test
+    public void getProductsByPrice() throws Exception {
+
+        productGood.getCurrentPrice().setMinorUnits(5050L);
+        given(productImplRepository.findByPriceRange(PRICE_CURRENCY_CODE, 1000L, 10000L, null, 1,
+                ProductFields.ALL)).willReturn(
+                new SliceImpl<>(Collections.singletonList(productGood), new PageRequest(0, 1), true));
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("currency", PRICE_CURRENCY_CODE)
+                .param("minPrice", "10")
+                .param("maxPrice", "100.00")
+                .param("limit", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        ProductPage page = jacksonProductPageTester.parseObject(response.getContentAsString());
+        assertThat(page.getProducts()).extracting(Product::getId).containsExactly(PRODUCT_ID);
+        assertThat(page.getNextCursor()).isNotEmpty();
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT);
+    }
+
+    @Test
+    public void getProductsByPriceWithInvalidPrice() throws Exception {
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("currency", PRICE_CURRENCY_CODE)
+                .param("minPrice", "10.005")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        verifyZeroInteractions(productImplRepository);
+    }
+
+    @Test
+    public void getProductsByIds() throws Exception {
+
+        ProductBatch batch = new ProductBatch(Collections.singletonList(productGood), Collections.singletonList("234567"));
+        given(productImplRepository.findAll(Arrays.asList(PRODUCT_ID, "234567"), ProductFields.ALL))
+                .willReturn(batch);
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("ids", PRODUCT_ID + ",234567")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).isEqualTo(jacksonProductBatchTester.write(batch).getJson());
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT);
+    }
+
+    @Test
+    public void getProductsByIdsWithFields() throws Exception {
+
+        ProductBatch batch = new ProductBatch(
+                Collections.singletonList(new Product(PRODUCT_ID, null, productGood.getCurrentPrice())),
+                Collections.singletonList("234567"));
+        given(productImplRepository.findAll(Arrays.asList(PRODUCT_ID, "234567"),
+                ProductFields.parse("currentPrice.value"))).willReturn(batch);
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("ids", PRODUCT_ID + ",234567")
+                .param("fields", "currentPrice.value")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).isEqualTo(
+                "{\"products\":[{\"currentPrice\":{\"value\":\"50:50\"}}],\"missingIds\":[\"234567\"]}");
+    }
+
+    @Test
+    public void getProductsByIdsTooMany() throws Exception {
+
+        String[] ids = new String[ProductController.MAX_BATCH_SIZE + 1];
+        Arrays.fill(ids, PRODUCT_ID);
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH)
+                .param("ids", ids)
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        verifyZeroInteractions(productImplRepository);
+    }
+
+    @Test
+    public void updatePrices() throws Exception {
+
+        given(productImplRepository.updatePrices(any(), eq(false))).willAnswer(ProductControllerTest::updatedResults);
+
+        MockHttpServletResponse response = mockMvc.perform(post(URL_PATH + "prices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"id\":\"123456\",\"value\":\"13.49\",\"currencyCode\":\"USD\"}," +
+                        "{\"id\":\"234567\",\"value\":\"14.49\",\"currencyCode\":\"USD\"}]"))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(jacksonPriceUpdateResultsTester.parseObject(response.getContentAsString())).containsExactly(
+                new PriceUpdateResult(0, "123456", PriceUpdateResult.Status.UPDATED, null),
+                new PriceUpdateResult(1, "234567", PriceUpdateResult.Status.UPDATED, null));
+    }
+
+    @Test
+    public void updatePricesNdjsonOrdered() throws Exception {
+
+        given(productImplRepository.updatePrices(any(), eq(true))).willAnswer(ProductControllerTest::updatedResults);
+
+        MockHttpServletResponse response = mockMvc.perform(post(URL_PATH + "prices")
+                .param("ordered", "true")
+                .contentType(ProductController.MEDIA_TYPE_NDJSON)
+                .content("{\"id\":\"123456\",\"value\":\"13.49\",\"currencyCode\":\"USD\"}\n" +
+                        "{\"id\":\"234567\",\"value\":\"14.49\",\"currencyCode\":\"USD\"}\n"))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(jacksonPriceUpdateResultsTester.parseObject(response.getContentAsString())).containsExactly(
+                new PriceUpdateResult(0, "123456", PriceUpdateResult.Status.UPDATED, null),
+                new PriceUpdateResult(1, "234567", PriceUpdateResult.Status.UPDATED, null));
+    }
+
+    @Test
+    public void updatePricesMalformed() throws Exception {
+
+        MockHttpServletResponse response = mockMvc.perform(post(URL_PATH + "prices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("<prices/>"))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        verifyZeroInteractions(productImplRepository);
+    }
 
     @Test
     public void getProductById() throws Exception {
@@ -82,6 +473,155 @@ public class ProductControllerTest {
                 .getResponse();
 
         assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ProductETag.of(0, PRODUCT_NAME));
+        assertThat(response.getContentAsString()).isEqualTo(
+                jacksonProductTester.write(productGood).getJson());
+    }
+
+    @Test
+    public void getProductByIdAsSmile() throws Exception {
+
+        given(productImplRepository.findOne(productGood.getId())).willReturn(productGood);
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH + productGood.getId())
+                .accept(SmileHttpMessageConverter.SMILE))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentType()).isEqualTo(SmileHttpMessageConverter.SMILE.toString());
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT);
+        assertThat(response.getHeader(HttpHeaders.ETAG))
+                .isEqualTo(ProductETag.of(0, PRODUCT_NAME, SmileHttpMessageConverter.SMILE))
+                .isNotEqualTo(ProductETag.of(0, PRODUCT_NAME));
+        assertThat(new ObjectMapper(new SmileFactory()).readValue(response.getContentAsByteArray(), Product.class))
+                .isEqualTo(productGood);
+    }
+
+    @Test
+    public void getProductByIdAsSmileIsNotModifiedByJsonETag() throws Exception {
+
+        given(productImplRepository.findOne(productGood.getId())).willReturn(productGood);
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH + productGood.getId())
+                .accept(SmileHttpMessageConverter.SMILE)
+                .header(HttpHeaders.IF_NONE_MATCH, ProductETag.of(0, PRODUCT_NAME)))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentType()).isEqualTo(SmileHttpMessageConverter.SMILE.toString());
+    }
+
+    @Test
+    public void getProductByIdPrefersJson() throws Exception {
+
+        given(productImplRepository.findOne(productGood.getId())).willReturn(productGood);
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH + productGood.getId())
+                .header(HttpHeaders.ACCEPT, "application/x-jackson-smile;q=0.5, */*"))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentType()).isEqualTo(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        assertThat(response.getContentAsString()).isEqualTo(
+                jacksonProductTester.write(productGood).getJson());
+    }
+
+    @Test
+    public void getProductByIdFromJsonCache() throws Exception {
+
+        given(productImplRepository.findOne(productGood.getId())).willReturn(productGood);
+
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletResponse response = mockMvc.perform(get(URL_PATH + productGood.getId())
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andReturn()
+                    .getResponse();
+
+            assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+            assertThat(response.getContentAsString()).isEqualTo(
+                    jacksonProductTester.write(productGood).getJson());
+        }
+        productGood.getCurrentPrice().setVersion(1L);
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH + productGood.getId())
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ProductETag.of(1, PRODUCT_NAME));
+        assertThat(productJsonCache.getHitCount()).isEqualTo(1);
+        assertThat(productJsonCache.getMissCount()).isEqualTo(2);
+        verify(objectMapper, times(2)).writeValueAsBytes(productGood);
+    }
+
+    @Test
+    public void getProductByIdWithFields() throws Exception {
+
+        given(productImplRepository.findOne(productGood.getId(), ProductFields.parse("id,currentPrice"))).willReturn(
+                new Product(PRODUCT_ID, null, productGood.getCurrentPrice()));
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH + productGood.getId())
+                .param("fields", "id,currentPrice")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ProductETag.of(0, null));
+        assertThat(response.getContentAsString()).isEqualTo(
+                "{\"id\":\"123456\",\"currentPrice\":{\"value\":\"50:50\",\"currencyCode\":\"USD\"}}");
+        verify(productImplRepository, never()).findOne(any(String.class));
+        verify(productImplRepository, never()).getCachedName(any(String.class));
+    }
+
+    @Test
+    public void getProductByIdWithUnknownField() throws Exception {
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH + productGood.getId())
+                .param("fields", "id,price")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        verifyZeroInteractions(productImplRepository);
+    }
+
+    @Test
+    public void getProductByIdNotModified() throws Exception {
+
+        given(productImplRepository.getCachedName(productGood.getId())).willReturn(PRODUCT_NAME);
+        given(productImplRepository.getCurrentPrice(productGood.getId())).willReturn(productGood.getCurrentPrice());
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH + productGood.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, ProductETag.of(0, PRODUCT_NAME))
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ProductETag.of(0, PRODUCT_NAME));
+        assertThat(response.getContentAsString()).isEmpty();
+        verify(productImplRepository, never()).findOne(any(String.class));
+    }
+
+    @Test
+    public void getProductByIdModified() throws Exception {
+
+        given(productImplRepository.getCachedName(productGood.getId())).willReturn(PRODUCT_NAME);
+        given(productImplRepository.getCurrentPrice(productGood.getId())).willReturn(productGood.getCurrentPrice());
+        given(productImplRepository.findOne(productGood.getId())).willReturn(productGood);
+
+        MockHttpServletResponse response = mockMvc.perform(get(URL_PATH + productGood.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, ProductETag.of(0, "Beats Solo 2 Wireless - White"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ProductETag.of(0, PRODUCT_NAME));
         assertThat(response.getContentAsString()).isEqualTo(
                 jacksonProductTester.write(productGood).getJson());
     }
@@ -115,20 +655,72 @@ public class ProductControllerTest {
     @Test
     public void updateProductById() throws Exception {
 
+        given(productImplRepository.update(productGood.getId(), productGood, null)).willReturn(1L);
+        given(productImplRepository.getCachedName(productGood.getId())).willReturn(PRODUCT_NAME);
+
+        MockHttpServletResponse response = mockMvc.perform(put(URL_PATH + productGood.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jacksonProductTester.write(productGood).getJson()))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ProductETag.of(1, PRODUCT_NAME));
+        assertThat(response.getContentAsString()).isEmpty();
+    }
+
+    @Test
+    public void updateProductByIdIfMatch() throws Exception {
+
+        given(productImplRepository.update(productGood.getId(), productGood, 4L)).willReturn(5L);
+
         MockHttpServletResponse response = mockMvc.perform(put(URL_PATH + productGood.getId())
+                .header(HttpHeaders.IF_MATCH, ProductETag.of(4, PRODUCT_NAME))
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(jacksonProductTester.write(productGood).getJson()))
                 .andReturn()
                 .getResponse();
 
         assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNull();
         assertThat(response.getContentAsString()).isEmpty();
     }
 
+    @Test
+    public void updateProductByIdIfMatchStale() throws Exception {
+
+        given(productImplRepository.update(productGood.getId(), productGood, 4L))
+                .willThrow(new PreconditionFailedException());
+
+        MockHttpServletResponse response = mockMvc.perform(put(URL_PATH + productGood.getId())
+                .header(HttpHeaders.IF_MATCH, "\"4\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jacksonProductTester.write(productGood).getJson()))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.PRECONDITION_FAILED.value());
+        assertThat(response.getContentAsString()).isEmpty();
+    }
+
+    @Test
+    public void updateProductByIdIfMatchInvalid() throws Exception {
+
+        MockHttpServletResponse response = mockMvc.perform(put(URL_PATH + productGood.getId())
+                .header(HttpHeaders.IF_MATCH, "W/\"4\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jacksonProductTester.write(productGood).getJson()))
+                .andReturn()
+                .getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.PRECONDITION_FAILED.value());
+        verifyZeroInteractions(productImplRepository);
+    }
+
     @Test
     public void updateProductByIdNotFound() throws Exception {
 
-        doThrow(new NotFoundException()).when(productImplRepository).update(productGood.getId(), productGood);
+        given(productImplRepository.update(productGood.getId(), productGood, null)).willThrow(new NotFoundException());
 
         MockHttpServletResponse response = mockMvc.perform(put(URL_PATH + productGood.getId())
                 .contentType(MediaType.APPLICATION_JSON)
@@ -316,5 +908,53 @@ public class ProductControllerTest {
         assertThat(response.getContentAsString()).isEmpty();
     }
 
+    @Test
+    public void streamPriceChanges() throws Exception {
+
+        MvcResult result = mockMvc.perform(get(URL_PATH + "prices/changes")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        priceChangeStream.publish(Collections.singletonList(
+                new PriceChange(PRODUCT_ID, PRICE_VALUE, PRICE_CURRENCY_CODE, "12.99", PRICE_CURRENCY_CODE, 3)));
+        MockHttpServletResponse response = result.getResponse();
+
+        for (int i = 0; i < 100 && !response.getContentAsString().endsWith("\n\n"); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(response.getContentAsString())
+                .contains("event:" + ProductController.EVENT_PRICE_CHANGE)
+                .contains("\"id\":\"" + PRODUCT_ID + "\"")
+                .contains("\"value\":\"12.99\"")
+                .contains("\"version\":3");
+        assertThat(priceChangeStream.getSubscriberCount()).isEqualTo(1);
+    }
 
-}
\ No newline at end of file
+    @Test
+    public void streamPriceChangesFromUnknownEventId() throws Exception {
+
+        MvcResult result = mockMvc.perform(get(URL_PATH + "prices/changes")
+                .header(ProductController.HEADER_LAST_EVENT_ID, "0-1")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockHttpServletResponse response = result.getResponse();
+
+        for (int i = 0; i < 100 && !response.getContentAsString().endsWith("\n\n"); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(response.getContentAsString()).contains("event:" + ProductController.EVENT_RESET);
+    }
+
+    private static List<PriceUpdateResult> updatedResults(InvocationOnMock invocation) {
+
+        @SuppressWarnings("unchecked")
+        Iterator<PriceUpdate> priceUpdates = (Iterator<PriceUpdate>) invocation.getArguments()[0];
+        List<PriceUpdateResult> results = new ArrayList<>();
+        while (priceUpdates.hasNext()) {
+            results.add(new PriceUpdateResult(results.size(), priceUpdates.next().getId(),
+                    PriceUpdateResult.Status.UPDATED, null));
+        }
+        return results;
+    }
+}
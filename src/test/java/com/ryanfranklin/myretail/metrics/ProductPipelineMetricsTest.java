@@ -0,0 +1,82 @@
+package com.ryanfranklin.myretail.metrics;
+
+import com.ryanfranklin.myretail.exception.NotFoundException;
+import com.ryanfranklin.myretail.exception.ServiceUnavailableException;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProductPipelineMetricsTest {
+
+    private final ProductPipelineMetrics pipelineMetrics = new ProductPipelineMetrics();
+
+    @Test
+    public void recordsLatencies() {
+
+        pipelineMetrics.begin(ProductPipelineMetrics.Stage.FIND_ONE);
+        pipelineMetrics.completed(ProductPipelineMetrics.Stage.FIND_ONE, TimeUnit.MILLISECONDS.toNanos(2));
+        pipelineMetrics.begin(ProductPipelineMetrics.Stage.FIND_ONE);
+        pipelineMetrics.completed(ProductPipelineMetrics.Stage.FIND_ONE, TimeUnit.MILLISECONDS.toNanos(40));
+        pipelineMetrics.begin(ProductPipelineMetrics.Stage.FIND_ONE);
+
+        Map<String, Number> metrics = metrics();
+        assertThat(metrics.get("stage.find-one.count")).isEqualTo(2L);
+        assertThat(metrics.get("stage.find-one.in-flight")).isEqualTo(1L);
+        assertThat(metrics.get("stage.find-one.p50-millis").doubleValue()).isBetween(1.99, 2.01);
+        assertThat(metrics.get("stage.find-one.max-millis").doubleValue()).isBetween(39.9, 40.1);
+        assertThat(metrics.get("stage.update.count")).isEqualTo(0L);
+    }
+
+    @Test
+    public void keepsLatenciesAcrossReads() {
+
+        long start = pipelineMetrics.begin(ProductPipelineMetrics.Stage.GET_NAME);
+        pipelineMetrics.end(ProductPipelineMetrics.Stage.GET_NAME, start);
+        metrics();
+        start = pipelineMetrics.begin(ProductPipelineMetrics.Stage.GET_NAME);
+        pipelineMetrics.end(ProductPipelineMetrics.Stage.GET_NAME, start);
+
+        assertThat(metrics().get("stage.get-name.count")).isEqualTo(2L);
+    }
+
+    @Test
+    public void countsErrorsByCause() {
+
+        long start = pipelineMetrics.begin(ProductPipelineMetrics.Stage.NAME_FETCH);
+        pipelineMetrics.fail(ProductPipelineMetrics.Stage.NAME_FETCH, start, new NotFoundException());
+        start = pipelineMetrics.begin(ProductPipelineMetrics.Stage.NAME_FETCH);
+        pipelineMetrics.fail(ProductPipelineMetrics.Stage.NAME_FETCH, start,
+                new CompletionException(new ServiceUnavailableException("open")));
+        start = pipelineMetrics.begin(ProductPipelineMetrics.Stage.NAME_FETCH);
+        pipelineMetrics.fail(ProductPipelineMetrics.Stage.NAME_FETCH, start,
+                new ResourceAccessException("timed out", new SocketTimeoutException()));
+        start = pipelineMetrics.begin(ProductPipelineMetrics.Stage.NAME_FETCH);
+        pipelineMetrics.fail(ProductPipelineMetrics.Stage.NAME_FETCH, start, new IllegalStateException());
+
+        Map<String, Number> metrics = metrics();
+        assertThat(metrics.get("stage.name-fetch.count")).isEqualTo(4L);
+        assertThat(metrics.get("stage.name-fetch.in-flight")).isEqualTo(0L);
+        assertThat(metrics.get("stage.name-fetch.errors.not-found")).isEqualTo(1L);
+        assertThat(metrics.get("stage.name-fetch.errors.unavailable")).isEqualTo(1L);
+        assertThat(metrics.get("stage.name-fetch.errors.timeout")).isEqualTo(1L);
+        assertThat(metrics.get("stage.name-fetch.errors.other")).isEqualTo(1L);
+        assertThat(metrics.get("stage.name-fetch.errors.datastore")).isEqualTo(0L);
+    }
+
+    private Map<String, Number> metrics() {
+
+        Map<String, Number> metrics = new HashMap<>();
+        for (Metric<?> metric : pipelineMetrics.metrics()) {
+            metrics.put(metric.getName(), metric.getValue());
+        }
+        return metrics;
+    }
+}
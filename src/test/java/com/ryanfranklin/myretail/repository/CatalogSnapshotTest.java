@@ -0,0 +1,309 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import com.ryanfranklin.myretail.model.PriceAmounts;
+import com.ryanfranklin.myretail.model.PriceChange;
+import com.ryanfranklin.myretail.model.PricePosition;
+import com.ryanfranklin.myretail.model.Product;
+import com.ryanfranklin.myretail.model.ProductFields;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isNull;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CatalogSnapshotTest {
+
+    private static String USD = "USD";
+    private static String EUR = "EUR";
+
+    @Mock
+    private ProductImplRepository productImplRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PriceChangeStream priceChangeStream = new PriceChangeStream();
+    private final CatalogSnapshot catalogSnapshot = new CatalogSnapshot();
+
+    private final List<Product> catalog = new ArrayList<>();
+
+    @Before
+    public void setup() {
+
+        ProductPriceProperties productPriceProperties = new ProductPriceProperties();
+        productPriceProperties.getSnapshot().setPageSize(4);
+        ReflectionTestUtils.setField(priceChangeStream, "productPriceProperties", productPriceProperties);
+        priceChangeStream.initStream();
+        ReflectionTestUtils.setField(catalogSnapshot, "productPriceProperties", productPriceProperties);
+        ReflectionTestUtils.setField(catalogSnapshot, "priceChangeStream", priceChangeStream);
+        ReflectionTestUtils.setField(catalogSnapshot, "productImplRepository", productImplRepository);
+
+        given(productImplRepository.findPageWithKnownNames(isNull(String.class), anyInt())).willAnswer(invocation ->
+                page(null, invocation.getArgumentAt(1, Integer.class)));
+        given(productImplRepository.findPageWithKnownNames(anyString(), anyInt())).willAnswer(invocation ->
+                page(invocation.getArgumentAt(0, String.class), invocation.getArgumentAt(1, Integer.class)));
+    }
+
+    @After
+    public void tearDown() {
+        catalogSnapshot.stopSnapshot();
+        priceChangeStream.stopStream();
+    }
+
+    @Test
+    public void writesPagesOfTheCatalog() throws Exception {
+
+        for (int i = 0; i < 10; i++) {
+            catalog.add(product("1000" + i, i == 3 ? null : "Product \"" + i + "\" é", "1." + i + "9", USD, i));
+        }
+        catalogSnapshot.build();
+
+        List<String> lastIds = new ArrayList<>();
+        String json = write(generator -> {
+            String afterId = null;
+            do {
+                afterId = catalogSnapshot.writePage(generator, afterId, 3, ProductFields.ALL);
+                lastIds.add(afterId);
+            } while (afterId != null);
+        });
+
+        assertThat(catalogSnapshot.isReady()).isTrue();
+        assertThat(catalogSnapshot.getSize()).isEqualTo(10);
+        assertThat(json).isEqualTo(objectMapper.writeValueAsString(catalog));
+        assertThat(lastIds).containsExactly("10002", "10005", "10008", null);
+    }
+
+    @Test
+    public void keepsNameOfPreviousBuildWhenNameIsNotKnown() throws Exception {
+
+        catalog.add(product("10", "Ten", "1.00", USD, 0));
+        catalogSnapshot.build();
+        catalog.set(0, product("10", null, "1.00", USD, 0));
+        catalog.add(product("20", null, "2.00", USD, 0));
+        catalogSnapshot.build();
+
+        assertThat(write(generator -> catalogSnapshot.writePage(generator, null, 10, ProductFields.parse("id,name"))))
+                .isEqualTo("[{\"id\":\"10\",\"name\":\"Ten\"},{\"id\":\"20\",\"name\":null}]");
+    }
+
+    @Test
+    public void writesPageAfterMissingId() throws Exception {
+
+        catalog.add(product("10", "Ten", "1.00", USD, 0));
+        catalog.add(product("30", "Thirty", "3.00", USD, 0));
+        catalogSnapshot.build();
+
+        String json = write(generator -> catalogSnapshot.writePage(generator, "20", 10, ProductFields.ALL));
+
+        assertThat(json).isEqualTo(objectMapper.writeValueAsString(catalog.subList(1, 2)));
+    }
+
+    @Test
+    public void writesOnlyTheRequestedFields() throws Exception {
+
+        catalog.add(product("10", "Ten", "1.00", USD, 0));
+        catalogSnapshot.build();
+
+        assertThat(write(generator -> catalogSnapshot.writePage(generator, null, 10,
+                ProductFields.parse("id,currentPrice.value"))))
+                .isEqualTo("[{\"id\":\"10\",\"currentPrice\":{\"value\":\"1.00\"}}]");
+        assertThat(write(generator -> catalogSnapshot.writePriceRange(generator, USD, 0, 1000, null, 10,
+                ProductFields.parse("name"))))
+                .isEqualTo("[{\"name\":\"Ten\"}]");
+    }
+
+    @Test
+    public void appliesPriceChanges() throws Exception {
+
+        catalog.add(product("10", "Ten", "1.00", USD, 2));
+        catalog.add(product("20", "Twenty", "2.00", USD, 0));
+        catalogSnapshot.build();
+
+        priceChangeStream.publish(Arrays.asList(
+                new PriceChange("10", "1.00", USD, "0.50", EUR, 3),
+                new PriceChange("20", "2.00", USD, "9.00", USD, 0),
+                new PriceChange("99", "1.00", USD, "2.00", USD, 1)));
+        awaitApplied(1);
+
+        catalog.get(0).getCurrentPrice().setValue("0.50");
+        catalog.get(0).getCurrentPrice().setCurrencyCode(EUR);
+        assertThat(write(generator -> catalogSnapshot.writePage(generator, null, 10, ProductFields.ALL)))
+                .isEqualTo(objectMapper.writeValueAsString(catalog));
+        assertThat(write(generator -> catalogSnapshot.writePriceRange(generator, EUR, 0, 100, null, 10,
+                ProductFields.ALL)))
+                .isEqualTo(objectMapper.writeValueAsString(catalog.subList(0, 1)));
+        assertThat(write(generator -> catalogSnapshot.writePriceRange(generator, USD, 0, 1000, null, 10,
+                ProductFields.ALL)))
+                .isEqualTo(objectMapper.writeValueAsString(catalog.subList(1, 2)));
+    }
+
+    @Test
+    public void changesVersionWithChangesAndBuilds() throws Exception {
+
+        assertThat(catalogSnapshot.getVersion()).isNull();
+        catalog.add(product("10", "Ten", "1.00", USD, 0));
+        catalogSnapshot.build();
+        String built = catalogSnapshot.getVersion();
+
+        priceChangeStream.publish(Collections.singletonList(new PriceChange("10", "1.00", USD, "2.00", USD, 1)));
+        awaitApplied(1);
+        String changed = catalogSnapshot.getVersion();
+        catalogSnapshot.build();
+
+        assertThat(built).isNotNull();
+        assertThat(changed).isNotEqualTo(built);
+        assertThat(catalogSnapshot.getVersion()).isNotIn(built, changed);
+    }
+
+    @Test
+    public void buildsAgainWhenProductsAreRemoved() throws Exception {
+
+        given(productImplRepository.count()).willAnswer(invocation -> (long) catalog.size());
+        catalog.add(product("10", "Ten", "1.00", USD, 0));
+        catalog.add(product("20", "Twenty", "2.00", USD, 0));
+        catalogSnapshot.build();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        ReflectionTestUtils.setField(catalogSnapshot, "scheduler", scheduler);
+
+        catalogSnapshot.checkCatalog();
+        catalog.remove(1);
+        catalogSnapshot.checkCatalog();
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.SECONDS);
+
+        assertThat(catalogSnapshot.getBuildCount()).isEqualTo(2);
+        assertThat(write(generator -> catalogSnapshot.writePage(generator, null, 10, ProductFields.ALL)))
+                .isEqualTo(objectMapper.writeValueAsString(catalog));
+    }
+
+    @Test
+    public void writesPriceRangesInPriceOrderAfterChanges() throws Exception {
+
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            catalog.add(product(String.valueOf(1000 + i), "Product " + i, price(random),
+                    random.nextBoolean() ? USD : EUR, 0));
+        }
+        catalogSnapshot.build();
+
+        List<PriceChange> priceChanges = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Product product = catalog.get(random.nextInt(catalog.size()));
+            Product.CurrentPrice currentPrice = product.getCurrentPrice();
+            String value = price(random);
+            String currencyCode = random.nextInt(4) == 0 ? (USD.equals(currentPrice.getCurrencyCode()) ? EUR : USD)
+                    : currentPrice.getCurrencyCode();
+            priceChanges.add(new PriceChange(product.getId(), currentPrice.getValue(), currentPrice.getCurrencyCode(),
+                    value, currencyCode, currentPrice.getVersion() + 1));
+            currentPrice.setValue(value);
+            currentPrice.setCurrencyCode(currencyCode);
+            currentPrice.setMinorUnits(PriceAmounts.toMinorUnits(value, currencyCode));
+            currentPrice.setVersion(currentPrice.getVersion() + 1);
+        }
+        priceChangeStream.publish(priceChanges);
+        awaitApplied(priceChanges.size());
+
+        for (String currencyCode : Arrays.asList(USD, EUR)) {
+            List<Product> expected = catalog.stream()
+                    .filter(product -> currencyCode.equals(product.getCurrentPrice().getCurrencyCode()))
+                    .filter(product -> product.getCurrentPrice().getMinorUnits() >= 250
+                            && product.getCurrentPrice().getMinorUnits() <= 750)
+                    .sorted(Comparator.comparing((Product product) -> product.getCurrentPrice().getMinorUnits())
+                            .thenComparing(Product::getId))
+                    .collect(Collectors.toList());
+
+            ArrayNode products = objectMapper.createArrayNode();
+            PricePosition[] after = new PricePosition[1];
+            do {
+                products.addAll((ArrayNode) objectMapper.readTree(write(generator ->
+                        after[0] = catalogSnapshot.writePriceRange(generator, currencyCode, 250, 750, after[0], 7,
+                                ProductFields.ALL))));
+            } while (after[0] != null);
+
+            assertThat(expected).isNotEmpty();
+            assertThat(products).isEqualTo(objectMapper.valueToTree(expected));
+        }
+    }
+
+    private interface Writer {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    private String write(Writer writer) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            writer.write(generator);
+            generator.writeEndArray();
+        }
+        return outputStream.toString("UTF-8");
+    }
+
+    private void awaitApplied(int changes) throws InterruptedException {
+
+        for (int i = 0; i < 100 && catalogSnapshot.getAppliedCount() < changes; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(catalogSnapshot.getAppliedCount()).isEqualTo(changes);
+    }
+
+    private SliceImpl<Product> page(String afterId, int limit) {
+
+        List<Product> products = new ArrayList<>();
+        for (Product product : catalog) {
+            if ((afterId == null || product.getId().compareTo(afterId) > 0) && products.size() <= limit) {
+                products.add(copy(product));
+            }
+        }
+        boolean hasNext = products.size() > limit;
+        return new SliceImpl<>(hasNext ? products.subList(0, limit) : products, new PageRequest(0, limit), hasNext);
+    }
+
+    private static Product copy(Product product) {
+
+        Product.CurrentPrice currentPrice = product.getCurrentPrice();
+        return product(product.getId(), product.getName(), currentPrice.getValue(), currentPrice.getCurrencyCode(),
+                currentPrice.getVersion());
+    }
+
+    private static Product product(String id, String name, String value, String currencyCode, long version) {
+
+        Product.CurrentPrice currentPrice = new Product.CurrentPrice();
+        currentPrice.setValue(value);
+        currentPrice.setCurrencyCode(currencyCode);
+        currentPrice.setMinorUnits(PriceAmounts.toMinorUnits(value, currencyCode));
+        currentPrice.setVersion(version);
+        return new Product(id, name, currentPrice);
+    }
+
+    private static String price(Random random) {
+        return (random.nextInt(10)) + "." + (random.nextInt(9) + 10);
+    }
+}
@@ -0,0 +1,223 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import com.ryanfranklin.myretail.exception.ServiceUnavailableException;
+import com.ryanfranklin.myretail.model.PriceChange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PriceChangeStreamTest {
+
+    private static int BUFFER_SIZE = 4;
+    private static int MAX_SUBSCRIBERS = 2;
+    private static long SEND_TIMEOUT_MILLIS = 200;
+
+    private final PriceChangeStream priceChangeStream = new PriceChangeStream();
+
+    @Before
+    public void setup() {
+
+        ProductPriceProperties productPriceProperties = new ProductPriceProperties();
+        productPriceProperties.getChanges().setBufferSize(BUFFER_SIZE);
+        productPriceProperties.getChanges().setMaxSubscribers(MAX_SUBSCRIBERS);
+        productPriceProperties.getChanges().setSendTimeoutMillis(SEND_TIMEOUT_MILLIS);
+        ReflectionTestUtils.setField(priceChangeStream, "productPriceProperties", productPriceProperties);
+        priceChangeStream.initStream();
+    }
+
+    @After
+    public void tearDown() {
+        priceChangeStream.stopStream();
+    }
+
+    @Test
+    public void sendsChangesPublishedAfterSubscribing() throws Exception {
+
+        publish("1");
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        priceChangeStream.subscribe(null, subscriber);
+        publish("2", "3");
+
+        assertThat(subscriber.next().getId()).isEqualTo("2");
+        assertThat(subscriber.next().getId()).isEqualTo("3");
+        assertThat(subscriber.tokens.poll()).isNotEqualTo(subscriber.tokens.poll());
+        assertThat(priceChangeStream.getPublishedCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void resumesAfterToken() throws Exception {
+
+        RecordingSubscriber first = new RecordingSubscriber();
+        priceChangeStream.subscribe(null, first);
+        publish("1", "2", "3");
+        first.next();
+        String token = first.tokens.take();
+
+        RecordingSubscriber resumed = new RecordingSubscriber();
+        priceChangeStream.subscribe(token, resumed);
+
+        assertThat(resumed.next().getId()).isEqualTo("2");
+        assertThat(resumed.next().getId()).isEqualTo("3");
+        assertThat(resumed.resets).isEmpty();
+    }
+
+    @Test
+    public void resetsWhenTokenIsNoLongerBuffered() throws Exception {
+
+        RecordingSubscriber first = new RecordingSubscriber();
+        PriceChangeStream.Subscription subscription = priceChangeStream.subscribe(null, first);
+        publish("1");
+        first.next();
+        String token = first.tokens.take();
+        subscription.cancel();
+        publish("2", "3", "4", "5", "6");
+
+        RecordingSubscriber resumed = new RecordingSubscriber();
+        priceChangeStream.subscribe(token, resumed);
+        publish("7");
+
+        assertThat(resumed.resets.poll(1, TimeUnit.SECONDS)).isNotNull();
+        assertThat(resumed.next().getId()).isEqualTo("7");
+        assertThat(priceChangeStream.getResetCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void resetsWhenTokenIsFromAnotherStream() throws Exception {
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        priceChangeStream.subscribe("0-1", subscriber);
+
+        assertThat(subscriber.resets.poll(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    public void rejectsSubscribersOverMaximum() {
+
+        for (int i = 0; i < MAX_SUBSCRIBERS; i++) {
+            priceChangeStream.subscribe(null, new RecordingSubscriber());
+        }
+
+        assertThatThrownBy(() -> priceChangeStream.subscribe(null, new RecordingSubscriber()))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    @Test
+    public void closesSubscriberWhenSendFails() throws Exception {
+
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void send(String token, PriceChange priceChange) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        priceChangeStream.subscribe(null, subscriber);
+        publish("1");
+
+        assertThat(subscriber.closed.poll(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(priceChangeStream.getSubscriberCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void subscribesInProcessOverMaximum() throws Exception {
+
+        for (int i = 0; i < MAX_SUBSCRIBERS; i++) {
+            priceChangeStream.subscribe(null, new RecordingSubscriber());
+        }
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        priceChangeStream.subscribeInProcess(null, subscriber);
+        publish("1");
+
+        assertThat(subscriber.next().getId()).isEqualTo("1");
+        assertThat(priceChangeStream.getSubscriberCount()).isEqualTo(MAX_SUBSCRIBERS + 1);
+    }
+
+    @Test
+    public void dropsStalledSubscriberWithoutHoldingUpOthers() throws Exception {
+
+        CountDownLatch sendStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSubscriber stalled = new RecordingSubscriber() {
+            @Override
+            public void send(String token, PriceChange priceChange) throws IOException {
+                sendStarted.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+        };
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        priceChangeStream.subscribe(null, stalled);
+        priceChangeStream.subscribe(null, subscriber);
+        publish("1", "2");
+
+        assertThat(sendStarted.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.next().getId()).isEqualTo("1");
+        assertThat(subscriber.next().getId()).isEqualTo("2");
+
+        assertThat(stalled.closed.poll(SEND_TIMEOUT_MILLIS * 5, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(priceChangeStream.getStalledCount()).isEqualTo(1);
+        assertThat(priceChangeStream.getSubscriberCount()).isEqualTo(1);
+        publish("3");
+        assertThat(subscriber.next().getId()).isEqualTo("3");
+    }
+
+    private void publish(String... ids) {
+
+        PriceChange[] priceChanges = new PriceChange[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            priceChanges[i] = new PriceChange(ids[i], "13.49", "USD", "12.99", "USD", 1);
+        }
+        priceChangeStream.publish(Arrays.asList(priceChanges));
+    }
+
+    private static class RecordingSubscriber implements PriceChangeStream.Subscriber {
+
+        final BlockingQueue<PriceChange> priceChanges = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> tokens = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> resets = new LinkedBlockingQueue<>();
+        final BlockingQueue<Boolean> closed = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(String token, PriceChange priceChange) throws IOException {
+            tokens.add(token);
+            priceChanges.add(priceChange);
+        }
+
+        @Override
+        public void reset(String token) throws IOException {
+            resets.add(token);
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+        }
+
+        @Override
+        public void close() {
+            closed.add(true);
+        }
+
+        PriceChange next() throws InterruptedException {
+
+            PriceChange priceChange = priceChanges.poll(1, TimeUnit.SECONDS);
+            assertThat(priceChange).isNotNull();
+            return priceChange;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+import com.ryanfranklin.myretail.model.PriceUpdate;
+import com.ryanfranklin.myretail.model.Product;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductCurrentPriceRepositoryImplTest {
+
+    private static String PRODUCT_ID = "13860428";
+
+    @Mock
+    private MongoOperations mongoOperations;
+
+    @InjectMocks
+    private ProductCurrentPriceRepositoryImpl currentPriceRepository;
+
+    @Test
+    public void findCatalogVersionCombinesCountAndWrites() {
+
+        given(mongoOperations.count(any(Query.class), eq(Product.CurrentPrice.class))).willReturn(3L);
+        given(mongoOperations.findOne(any(Query.class), eq(DBObject.class),
+                eq(ProductCurrentPriceRepositoryImpl.COLLECTION_CATALOG_VERSION)))
+                .willReturn(new BasicDBObject(ProductCurrentPriceRepositoryImpl.FIELD_WRITES, 7L));
+
+        assertThat(currentPriceRepository.findCatalogVersion()).isEqualTo("3-7");
+    }
+
+    @Test
+    public void findCatalogVersionBeforeAnyWrite() {
+
+        given(mongoOperations.count(any(Query.class), eq(Product.CurrentPrice.class))).willReturn(3L);
+
+        assertThat(currentPriceRepository.findCatalogVersion()).isEqualTo("3-0");
+    }
+
+    @Test
+    public void findAndUpdatePriceCountsTheWrite() {
+
+        given(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Product.CurrentPrice.class))).willReturn(new Product.CurrentPrice());
+
+        currentPriceRepository.findAndUpdatePrice(PRODUCT_ID, "1.00", "USD", null);
+
+        verifyWriteCounted();
+    }
+
+    @Test
+    public void findAndUpdatePriceWithoutMatchIsNotCounted() {
+
+        currentPriceRepository.findAndUpdatePrice(PRODUCT_ID, "1.00", "USD", 4L);
+
+        verify(mongoOperations, never()).upsert(any(Query.class), any(Update.class), any(String.class));
+    }
+
+    @Test
+    public void updatePricesReadsUnmatchedPricesToTellConflictsFromRemovedPrices() {
+
+        List<PriceUpdate> priceUpdates = Arrays.asList(new PriceUpdate("10", "1.50", "USD"),
+                new PriceUpdate("20", "2.50", "USD"), new PriceUpdate("30", "3.50", "USD"));
+        BulkOperations bulkOperations = mock(BulkOperations.class);
+        BulkWriteResult bulkWriteResult = mock(BulkWriteResult.class);
+        given(mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.CurrentPrice.class))
+                .willReturn(bulkOperations);
+        given(bulkOperations.execute()).willReturn(bulkWriteResult);
+        given(bulkWriteResult.getMatchedCount()).willReturn(1);
+        given(mongoOperations.find(any(Query.class), eq(Product.CurrentPrice.class))).willReturn(Arrays.asList(
+                currentPrice("10", "1.50", 4L), currentPrice("20", "2.00", 7L)));
+
+        List<BulkWriteError> errors = currentPriceRepository.updatePrices(priceUpdates, Arrays.asList(3L, 1L, 0L),
+                false);
+
+        assertThat(errors).hasSize(2);
+        assertThat(errors.get(0).getIndex()).isEqualTo(1);
+        assertThat(ProductCurrentPriceRepositoryImpl.isVersionConflict(errors.get(0))).isTrue();
+        assertThat(errors.get(1).getIndex()).isEqualTo(2);
+        assertThat(ProductCurrentPriceRepositoryImpl.isNotFound(errors.get(1))).isTrue();
+        verify(bulkOperations, times(3)).updateOne(any(Query.class), any(Update.class));
+        verify(bulkOperations, never()).upsert(any(Query.class), any(Update.class));
+        verifyWriteCounted();
+    }
+
+    @Test
+    public void updatePricesDoesNotReadAgainWhenAllMatched() {
+
+        BulkOperations bulkOperations = mock(BulkOperations.class);
+        BulkWriteResult bulkWriteResult = mock(BulkWriteResult.class);
+        given(mongoOperations.bulkOps(BulkOperations.BulkMode.ORDERED, Product.CurrentPrice.class))
+                .willReturn(bulkOperations);
+        given(bulkOperations.execute()).willReturn(bulkWriteResult);
+        given(bulkWriteResult.getMatchedCount()).willReturn(1);
+
+        assertThat(currentPriceRepository.updatePrices(Collections.singletonList(new PriceUpdate("10", "1.50", "USD")),
+                Collections.singletonList(3L), true)).isEmpty();
+
+        verify(mongoOperations, never()).find(any(Query.class), eq(Product.CurrentPrice.class));
+    }
+
+    @Test
+    public void updateNameCountsTheWrite() {
+
+        given(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(Product.CurrentPrice.class)))
+                .willReturn(new WriteResult(1, true, null));
+
+        currentPriceRepository.updateName(PRODUCT_ID, "The Big Lebowski", new Date());
+
+        verifyWriteCounted();
+    }
+
+    @Test
+    public void backfillMinorUnitsReadsOnFromTheLastIdAndRecordsCompletion() {
+
+        Product.CurrentPrice currentPrice = new Product.CurrentPrice();
+        ReflectionTestUtils.setField(currentPrice, "id", PRODUCT_ID);
+        currentPrice.setValue("13.49");
+        currentPrice.setCurrencyCode("USD");
+        BulkOperations bulkOperations = mock(BulkOperations.class);
+        BulkWriteResult bulkWriteResult = mock(BulkWriteResult.class);
+        given(mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.CurrentPrice.class))
+                .willReturn(bulkOperations);
+        given(bulkOperations.execute()).willReturn(bulkWriteResult);
+        given(bulkWriteResult.getModifiedCount()).willReturn(1);
+        given(mongoOperations.find(any(Query.class), eq(Product.CurrentPrice.class)))
+                .willReturn(Collections.singletonList(currentPrice))
+                .willReturn(Collections.emptyList());
+
+        assertThat(currentPriceRepository.backfillMinorUnits(1)).isEqualTo(1);
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoOperations, times(2)).find(queries.capture(), eq(Product.CurrentPrice.class));
+        List<Query> reads = queries.getAllValues();
+        assertThat(reads.get(0).getQueryObject().containsField(ProductCurrentPriceRepositoryImpl.FIELD_ID)).isFalse();
+        assertThat(reads.get(1).getQueryObject().get(ProductCurrentPriceRepositoryImpl.FIELD_ID))
+                .isEqualTo(new BasicDBObject("$gt", PRODUCT_ID));
+        verify(mongoOperations).upsert(any(Query.class), any(Update.class),
+                eq(ProductCurrentPriceRepositoryImpl.COLLECTION_MIGRATIONS));
+    }
+
+    private static Product.CurrentPrice currentPrice(String id, String value, Long version) {
+
+        Product.CurrentPrice currentPrice = new Product.CurrentPrice();
+        ReflectionTestUtils.setField(currentPrice, "id", id);
+        currentPrice.setValue(value);
+        currentPrice.setCurrencyCode("USD");
+        currentPrice.setVersion(version);
+        return currentPrice;
+    }
+
+    private void verifyWriteCounted() {
+        verify(mongoOperations).upsert(any(Query.class),
+                eq(new Update().inc(ProductCurrentPriceRepositoryImpl.FIELD_WRITES, 1L)),
+                eq(ProductCurrentPriceRepositoryImpl.COLLECTION_CATALOG_VERSION));
+    }
+}
@@ -0,0 +1,113 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isNull;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductIdFilterTest {
+
+    private static int CATALOG_SIZE = 5000;
+    private static int PAGE_SIZE = 1000;
+
+    @Mock
+    private ProductCurrentPriceRepository currentPriceRepository;
+
+    private final ProductIdFilter productIdFilter = new ProductIdFilter();
+
+    private final List<String> ids = new ArrayList<>();
+
+    @Before
+    public void setup() {
+
+        ProductPriceProperties productPriceProperties = new ProductPriceProperties();
+        productPriceProperties.getIdFilter().setPageSize(PAGE_SIZE);
+        ReflectionTestUtils.setField(productIdFilter, "productPriceProperties", productPriceProperties);
+        ReflectionTestUtils.setField(productIdFilter, "currentPriceRepository", currentPriceRepository);
+
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            ids.add(String.valueOf(10000000 + i));
+        }
+        given(currentPriceRepository.count()).willReturn((long) CATALOG_SIZE);
+        given(currentPriceRepository.findIds(isNull(String.class), anyInt())).willAnswer(invocation ->
+                ids(null, invocation.getArgumentAt(1, Integer.class)));
+        given(currentPriceRepository.findIds(anyString(), anyInt())).willAnswer(invocation ->
+                ids(invocation.getArgumentAt(0, String.class), invocation.getArgumentAt(1, Integer.class)));
+    }
+
+    @Test
+    public void letsEveryIdThroughUntilBuilt() {
+
+        assertThat(productIdFilter.isReady()).isFalse();
+        assertThat(productIdFilter.mightContain("unknown")).isTrue();
+        assertThat(productIdFilter.getRejectedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void letsKnownIdsThroughAndTurnsAwayMostUnknownIds() {
+
+        productIdFilter.build();
+
+        for (String id : ids) {
+            assertThat(productIdFilter.mightContain(id)).isTrue();
+        }
+        int letThrough = 0;
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            if (productIdFilter.mightContain("unknown-" + i)) {
+                letThrough++;
+            }
+        }
+
+        assertThat(productIdFilter.isReady()).isTrue();
+        assertThat(productIdFilter.getSize()).isBetween(CATALOG_SIZE * 95L / 100, CATALOG_SIZE * 105L / 100);
+        assertThat(productIdFilter.getCapacity()).isEqualTo(CATALOG_SIZE * 2);
+        // About 9.6 bits an id of capacity at a 1% false positive rate
+        assertThat(productIdFilter.getBytes()).isBetween(CATALOG_SIZE * 2 * 9L / 8, CATALOG_SIZE * 2 * 10L / 8);
+        assertThat(letThrough).isLessThan(CATALOG_SIZE / 50);
+        assertThat(productIdFilter.getRejectedCount()).isEqualTo(CATALOG_SIZE - letThrough);
+    }
+
+    @Test
+    public void letsAddedIdsThrough() {
+
+        productIdFilter.build();
+        productIdFilter.add("added");
+
+        assertThat(productIdFilter.mightContain("added")).isTrue();
+    }
+
+    @Test
+    public void keepsFilterWhenBuildFails() {
+
+        productIdFilter.build();
+        given(currentPriceRepository.count()).willThrow(new IllegalStateException("Unreachable"));
+        productIdFilter.build();
+
+        assertThat(productIdFilter.isReady()).isTrue();
+        assertThat(productIdFilter.getBuildCount()).isEqualTo(1);
+    }
+
+    private List<String> ids(String afterId, int limit) {
+
+        List<String> page = new ArrayList<>();
+        for (String id : ids) {
+            if ((afterId == null || id.compareTo(afterId) > 0) && page.size() < limit) {
+                page.add(id);
+            }
+        }
+        return page;
+    }
+}
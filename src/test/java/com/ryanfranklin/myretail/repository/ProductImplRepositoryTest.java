@@ -0,0 +1,423 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.google.common.base.Ticker;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.ryanfranklin.myretail.client.ResilientProductNameClient;
+import com.ryanfranklin.myretail.config.ProductNameProperties;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import com.ryanfranklin.myretail.exception.NotFoundException;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics;
+import com.ryanfranklin.myretail.model.PriceChange;
+import com.ryanfranklin.myretail.model.PriceUpdate;
+import com.ryanfranklin.myretail.model.PriceUpdateResult;
+import com.ryanfranklin.myretail.model.Product;
+import com.ryanfranklin.myretail.model.ProductBatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.validation.Validator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductImplRepositoryTest {
+
+    private static String USD = "USD";
+    private static String PRODUCT_ID = "13860428";
+    private static String PRODUCT_NAME = "The Big Lebowski (Blu-ray)";
+
+    @Mock
+    private ProductCurrentPriceRepository currentPriceRepository;
+
+    @Mock
+    private ResilientProductNameClient productNameClient;
+
+    @Mock
+    private Validator validator;
+
+    @Mock
+    private PriceChangeStream priceChangeStream;
+
+    @Mock
+    private ProductJsonCache productJsonCache;
+
+    @Mock
+    private ProductIdFilter productIdFilter;
+
+    private final ProductNameProperties productNameProperties = new ProductNameProperties();
+    private final ProductPriceProperties productPriceProperties = new ProductPriceProperties();
+    private final ExecutorService productNameExecutor = Executors.newCachedThreadPool();
+    private final ExecutorService productPriceExecutor = Executors.newCachedThreadPool();
+    private final ProductImplRepository productImplRepository = new ProductImplRepository();
+
+    /** The nanos of the ticker the name caches read **/
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Before
+    public void setup() {
+
+        given(productIdFilter.mightContain(anyString())).willReturn(true);
+
+        ReflectionTestUtils.setField(productImplRepository, "currentPriceRepository", currentPriceRepository);
+        ReflectionTestUtils.setField(productImplRepository, "productNameClient", productNameClient);
+        ReflectionTestUtils.setField(productImplRepository, "productNameExecutor", productNameExecutor);
+        ReflectionTestUtils.setField(productImplRepository, "productPriceExecutor", productPriceExecutor);
+        ReflectionTestUtils.setField(productImplRepository, "productNameProperties", productNameProperties);
+        ReflectionTestUtils.setField(productImplRepository, "productPriceProperties", productPriceProperties);
+        ReflectionTestUtils.setField(productImplRepository, "validator", validator);
+        ReflectionTestUtils.setField(productImplRepository, "pipelineMetrics", new ProductPipelineMetrics());
+        ReflectionTestUtils.setField(productImplRepository, "priceChangeStream", priceChangeStream);
+        ReflectionTestUtils.setField(productImplRepository, "productJsonCache", productJsonCache);
+        ReflectionTestUtils.setField(productImplRepository, "productIdFilter", productIdFilter);
+        ReflectionTestUtils.setField(productImplRepository, "ticker", new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        });
+        productImplRepository.initNameCaches();
+        productImplRepository.initCatalogVersion();
+    }
+
+    @After
+    public void tearDown() {
+        productNameExecutor.shutdownNow();
+        productPriceExecutor.shutdownNow();
+    }
+
+    @Test
+    public void updatePricesReportsConflictsAndPublishesOnlyUpdates() {
+
+        List<PriceUpdate> priceUpdates = Arrays.asList(
+                new PriceUpdate("10", "1.50", USD), new PriceUpdate("20", "2.50", USD));
+        given(currentPriceRepository.findAll(anyCollectionOf(String.class))).willReturn(Arrays.asList(
+                currentPrice("10", "1.00", 3L), currentPrice("20", "2.00", null)));
+        given(currentPriceRepository.updatePrices(priceUpdates, Arrays.asList(3L, 0L), false)).willReturn(
+                Collections.singletonList(new BulkWriteError(ProductCurrentPriceRepositoryImpl.VERSION_CONFLICT_CODE,
+                        "The price changed while it was updated.", new BasicDBObject(), 1)));
+
+        List<PriceUpdateResult> results = productImplRepository.updatePrices(priceUpdates.iterator(), false);
+
+        assertThat(results).containsExactly(
+                new PriceUpdateResult(0, "10", PriceUpdateResult.Status.UPDATED, null),
+                new PriceUpdateResult(1, "20", PriceUpdateResult.Status.CONFLICT,
+                        "The price changed while it was updated."));
+        verify(priceChangeStream).publish(Collections.singletonList(
+                new PriceChange("10", "1.00", USD, "1.50", USD, 4)));
+        verify(productJsonCache).invalidateAll(Collections.singletonList("10"));
+    }
+
+    @Test
+    public void updatePricesReportsRemovedPricesAsNotFoundWithoutStopping() {
+
+        List<PriceUpdate> priceUpdates = Arrays.asList(
+                new PriceUpdate("10", "1.50", USD), new PriceUpdate("20", "2.50", USD));
+        given(currentPriceRepository.findAll(anyCollectionOf(String.class))).willReturn(Arrays.asList(
+                currentPrice("10", "1.00", 3L), currentPrice("20", "2.00", 1L)));
+        given(currentPriceRepository.updatePrices(eq(priceUpdates), eq(Arrays.asList(3L, 1L)), eq(true)))
+                .willReturn(Collections.singletonList(new BulkWriteError(
+                        ProductCurrentPriceRepositoryImpl.NOT_FOUND_CODE, "The price was removed while it was updated.",
+                        new BasicDBObject(), 0)));
+
+        List<PriceUpdateResult> results = productImplRepository.updatePrices(priceUpdates.iterator(), true);
+
+        assertThat(results).containsExactly(
+                new PriceUpdateResult(0, "10", PriceUpdateResult.Status.NOT_FOUND, null),
+                new PriceUpdateResult(1, "20", PriceUpdateResult.Status.UPDATED, null));
+        verify(priceChangeStream).publish(Collections.singletonList(
+                new PriceChange("20", "2.00", USD, "2.50", USD, 2)));
+    }
+
+    @Test
+    public void updatePricesReportsOtherErrorsAsFailed() {
+
+        List<PriceUpdate> priceUpdates = Arrays.asList(
+                new PriceUpdate("10", "1.50", USD), new PriceUpdate("20", "2.50", USD));
+        given(currentPriceRepository.findAll(anyCollectionOf(String.class))).willReturn(Arrays.asList(
+                currentPrice("10", "1.00", 3L), currentPrice("20", "2.00", 1L)));
+        given(currentPriceRepository.updatePrices(eq(priceUpdates), eq(Arrays.asList(3L, 1L)), eq(true)))
+                .willReturn(Collections.singletonList(new BulkWriteError(2, "bad value", new BasicDBObject(), 0)));
+
+        List<PriceUpdateResult> results = productImplRepository.updatePrices(priceUpdates.iterator(), true);
+
+        assertThat(results).extracting(PriceUpdateResult::getStatus).containsExactly(
+                PriceUpdateResult.Status.FAILED, PriceUpdateResult.Status.SKIPPED);
+        verify(priceChangeStream).publish(Collections.emptyList());
+    }
+
+    @Test
+    public void findOneReadsStoredNameFirst() {
+
+        productNameProperties.getStore().setEnabled(true);
+        Product.CurrentPrice currentPrice = currentPrice(PRODUCT_ID, "13.49", 1L);
+        currentPrice.setName(PRODUCT_NAME);
+        currentPrice.setNameFetchedAt(new Date());
+        given(currentPriceRepository.findOne(PRODUCT_ID)).willReturn(currentPrice);
+
+        Product product = productImplRepository.findOne(PRODUCT_ID);
+
+        assertThat(product.getName()).isEqualTo(PRODUCT_NAME);
+        verifyZeroInteractions(productNameClient);
+        verify(currentPriceRepository, never()).updateName(anyString(), anyString(), any(Date.class));
+    }
+
+    @Test
+    public void findOneLooksUpAndStoresNameNotStored() {
+
+        productNameProperties.getStore().setEnabled(true);
+        given(currentPriceRepository.findOne(PRODUCT_ID)).willReturn(currentPrice(PRODUCT_ID, "13.49", 1L));
+        given(productNameClient.fetchName(PRODUCT_ID)).willReturn(PRODUCT_NAME);
+
+        Product product = productImplRepository.findOne(PRODUCT_ID);
+
+        assertThat(product.getName()).isEqualTo(PRODUCT_NAME);
+        verify(currentPriceRepository, timeout(1000)).updateName(eq(PRODUCT_ID), eq(PRODUCT_NAME), any(Date.class));
+    }
+
+    @Test
+    public void findOneRefreshesStaleStoredName() {
+
+        productNameProperties.getStore().setEnabled(true);
+        Product.CurrentPrice currentPrice = currentPrice(PRODUCT_ID, "13.49", 1L);
+        currentPrice.setName("The Big Lebowski");
+        currentPrice.setNameFetchedAt(new Date(0));
+        given(currentPriceRepository.findOne(PRODUCT_ID)).willReturn(currentPrice);
+        given(productNameClient.fetchName(PRODUCT_ID)).willReturn(PRODUCT_NAME);
+
+        Product product = productImplRepository.findOne(PRODUCT_ID);
+
+        assertThat(product.getName()).isEqualTo("The Big Lebowski");
+        verify(currentPriceRepository, timeout(1000)).updateName(eq(PRODUCT_ID), eq(PRODUCT_NAME), any(Date.class));
+    }
+
+    @Test
+    public void findPageWithKnownNamesLooksUpNoName() {
+
+        given(currentPriceRepository.findOne(PRODUCT_ID)).willReturn(currentPrice(PRODUCT_ID, "13.49", 1L));
+        given(productNameClient.fetchName(PRODUCT_ID)).willReturn(PRODUCT_NAME);
+        productImplRepository.findOne(PRODUCT_ID);
+        given(currentPriceRepository.findAllBy(any(Pageable.class))).willReturn(new SliceImpl<>(Arrays.asList(
+                currentPrice(PRODUCT_ID, "13.49", 1L), currentPrice("15643793", "9.99", 1L)),
+                new PageRequest(0, 2), false));
+
+        List<Product> products = productImplRepository.findPageWithKnownNames(null, 2).getContent();
+
+        assertThat(products).extracting(Product::getName).containsExactly(PRODUCT_NAME, null);
+        verify(productNameClient, times(1)).fetchName(anyString());
+    }
+
+    @Test
+    public void findOneDoesNotStoreNamesByDefault() {
+
+        given(currentPriceRepository.findOne(PRODUCT_ID)).willReturn(currentPrice(PRODUCT_ID, "13.49", 1L));
+        given(productNameClient.fetchName(PRODUCT_ID)).willReturn(PRODUCT_NAME);
+
+        Product product = productImplRepository.findOne(PRODUCT_ID);
+
+        assertThat(product.getName()).isEqualTo(PRODUCT_NAME);
+        verify(currentPriceRepository, never()).updateName(anyString(), anyString(), any(Date.class));
+    }
+
+    @Test
+    public void findOneFailsFastWhenThePriceIsMissing() {
+
+        productNameProperties.getLookup().setDeadlineMillis(5000);
+        given(productNameClient.fetchName(PRODUCT_ID)).willAnswer(invocation -> {
+            Thread.sleep(5000);
+            return PRODUCT_NAME;
+        });
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> productImplRepository.findOne(PRODUCT_ID)).isInstanceOf(NotFoundException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+    }
+
+    @Test
+    public void findOneFailsFastWhenTheNameIsMissing() {
+
+        productNameProperties.getLookup().setDeadlineMillis(5000);
+        given(productNameClient.fetchName(PRODUCT_ID)).willThrow(new NotFoundException());
+        given(currentPriceRepository.findOne(PRODUCT_ID)).willAnswer(invocation -> {
+            Thread.sleep(5000);
+            return currentPrice(PRODUCT_ID, "13.49", 1L);
+        });
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> productImplRepository.findOne(PRODUCT_ID)).isInstanceOf(NotFoundException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+    }
+
+    @Test
+    public void findAllReturnsAtDeadlineWhenLookupsAreSlow() {
+
+        productNameProperties.getLookup().setDeadlineMillis(100);
+        given(currentPriceRepository.findAll(anyCollectionOf(String.class))).willReturn(Arrays.asList(
+                currentPrice("10", "1.00", 1L), currentPrice("20", "2.00", 1L)));
+        given(productNameClient.fetchName(anyString())).willAnswer(invocation -> {
+            Thread.sleep(5000);
+            return PRODUCT_NAME;
+        });
+
+        long start = System.nanoTime();
+        ProductBatch batch = productImplRepository.findAll(Arrays.asList("10", "20"));
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        assertThat(batch.getProducts()).extracting(Product::getName).containsExactly(null, null);
+    }
+
+    @Test
+    public void findAllTreatsRejectedLookupsAsMissingNames() throws Exception {
+
+        ThreadPoolExecutor fullExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            fullExecutor.execute(() -> awaitQuietly(release));
+            fullExecutor.execute(() -> awaitQuietly(release));
+            ReflectionTestUtils.setField(productImplRepository, "productNameExecutor", fullExecutor);
+            given(currentPriceRepository.findAll(anyCollectionOf(String.class))).willReturn(
+                    Collections.singletonList(currentPrice("10", "1.00", 1L)));
+
+            ProductBatch batch = productImplRepository.findAll(Collections.singletonList("10"));
+
+            assertThat(batch.getProducts()).extracting(Product::getName).containsExactly((String) null);
+            verifyZeroInteractions(productNameClient);
+        } finally {
+            release.countDown();
+            fullExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void nameCacheServesNameUntilItExpires() {
+
+        productNameProperties.getCache().setExpireAfterWriteMillis(1000);
+        productNameProperties.getCache().setRefreshAfterWriteMillis(2000);
+        productImplRepository.initNameCaches();
+        given(currentPriceRepository.findOne(PRODUCT_ID)).willReturn(currentPrice(PRODUCT_ID, "13.49", 1L));
+        given(productNameClient.fetchName(PRODUCT_ID)).willReturn(PRODUCT_NAME);
+
+        productImplRepository.findOne(PRODUCT_ID);
+        advanceMillis(999);
+        assertThat(productImplRepository.findOne(PRODUCT_ID).getName()).isEqualTo(PRODUCT_NAME);
+        verify(productNameClient).fetchName(PRODUCT_ID);
+
+        advanceMillis(1);
+        assertThat(productImplRepository.getCachedName(PRODUCT_ID)).isNull();
+        assertThat(productImplRepository.findOne(PRODUCT_ID).getName()).isEqualTo(PRODUCT_NAME);
+        verify(productNameClient, times(2)).fetchName(PRODUCT_ID);
+    }
+
+    @Test
+    public void nameCacheRemembersNamesNotFound() {
+
+        productNameProperties.getCache().setNotFoundExpireAfterWriteMillis(1000);
+        productImplRepository.initNameCaches();
+        given(currentPriceRepository.findOne(PRODUCT_ID)).willReturn(currentPrice(PRODUCT_ID, "13.49", 1L));
+        given(productNameClient.fetchName(PRODUCT_ID)).willThrow(new NotFoundException());
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> productImplRepository.findOne(PRODUCT_ID)).isInstanceOf(NotFoundException.class);
+        }
+        verify(productNameClient).fetchName(PRODUCT_ID);
+
+        advanceMillis(1000);
+        assertThatThrownBy(() -> productImplRepository.findOne(PRODUCT_ID)).isInstanceOf(NotFoundException.class);
+        verify(productNameClient, times(2)).fetchName(PRODUCT_ID);
+    }
+
+    @Test
+    public void nameCacheReloadsNameInTheBackground() throws Exception {
+
+        productNameProperties.getCache().setExpireAfterWriteMillis(2000);
+        productNameProperties.getCache().setRefreshAfterWriteMillis(1000);
+        productImplRepository.initNameCaches();
+        given(currentPriceRepository.findOne(PRODUCT_ID)).willReturn(currentPrice(PRODUCT_ID, "13.49", 1L));
+        given(productNameClient.fetchName(PRODUCT_ID)).willReturn("The Big Lebowski");
+
+        productImplRepository.findOne(PRODUCT_ID);
+        advanceMillis(1500);
+
+        // The reload is held until the stale name has been served
+        CountDownLatch reloadStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(productNameClient.fetchName(PRODUCT_ID)).willAnswer(invocation -> {
+            reloadStarted.countDown();
+            release.await();
+            return PRODUCT_NAME;
+        });
+        try {
+            assertThat(productImplRepository.findOne(PRODUCT_ID).getName()).isEqualTo("The Big Lebowski");
+            assertThat(reloadStarted.await(1, TimeUnit.SECONDS)).isTrue();
+            assertThat(productImplRepository.getCachedName(PRODUCT_ID)).isEqualTo("The Big Lebowski");
+        } finally {
+            release.countDown();
+        }
+
+        for (int i = 0; i < 100 && !PRODUCT_NAME.equals(productImplRepository.getCachedName(PRODUCT_ID)); i++) {
+            sleepQuietly(10);
+        }
+        assertThat(productImplRepository.getCachedName(PRODUCT_ID)).isEqualTo(PRODUCT_NAME);
+    }
+
+    private void advanceMillis(long millis) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Product.CurrentPrice currentPrice(String id, String value, Long version) {
+
+        Product.CurrentPrice currentPrice = new Product.CurrentPrice();
+        ReflectionTestUtils.setField(currentPrice, "id", id);
+        currentPrice.setValue(value);
+        currentPrice.setCurrencyCode(USD);
+        currentPrice.setVersion(version);
+        return currentPrice;
+    }
+}
@@ -0,0 +1,91 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryanfranklin.myretail.config.ProductPriceProperties;
+import com.ryanfranklin.myretail.metrics.ProductPipelineMetrics;
+import com.ryanfranklin.myretail.model.Product;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProductJsonCacheTest {
+
+    private static String PRODUCT_ID = "13860428";
+    private static String PRODUCT_NAME = "The Big Lebowski (Blu-ray) (Widescreen)";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ProductPriceProperties productPriceProperties = new ProductPriceProperties();
+    private final ProductJsonCache productJsonCache = new ProductJsonCache();
+
+    @Before
+    public void setup() {
+
+        ReflectionTestUtils.setField(productJsonCache, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(productJsonCache, "productPriceProperties", productPriceProperties);
+        ReflectionTestUtils.setField(productJsonCache, "pipelineMetrics", new ProductPipelineMetrics());
+        productJsonCache.initCache();
+    }
+
+    @Test
+    public void writesCachedJsonForSameVersionAndName() throws Exception {
+
+        byte[] json = productJsonCache.getJson(product(PRODUCT_NAME, 2));
+
+        assertThat(productJsonCache.getJson(product(PRODUCT_NAME, 2))).isSameAs(json);
+        assertThat(json).isEqualTo(objectMapper.writeValueAsBytes(product(PRODUCT_NAME, 2)));
+        assertThat(productJsonCache.getHitCount()).isEqualTo(1);
+        assertThat(productJsonCache.getMissCount()).isEqualTo(1);
+        assertThat(productJsonCache.getBytes()).isEqualTo(json.length);
+    }
+
+    @Test
+    public void serializesAgainWhenVersionOrNameChanged() throws Exception {
+
+        productJsonCache.getJson(product(PRODUCT_NAME, 2));
+
+        assertThat(productJsonCache.getJson(product(PRODUCT_NAME, 3)))
+                .isEqualTo(objectMapper.writeValueAsBytes(product(PRODUCT_NAME, 3)));
+        assertThat(productJsonCache.getJson(product(null, 3)))
+                .isEqualTo(objectMapper.writeValueAsBytes(product(null, 3)));
+        assertThat(productJsonCache.getMissCount()).isEqualTo(3);
+        assertThat(productJsonCache.getSize()).isEqualTo(1);
+        assertThat(productJsonCache.getBytes()).isEqualTo(objectMapper.writeValueAsBytes(product(null, 3)).length);
+    }
+
+    @Test
+    public void invalidatesJsonOfUpdatedProducts() {
+
+        productJsonCache.getJson(product(PRODUCT_NAME, 2));
+        productJsonCache.invalidateAll(Collections.singletonList(PRODUCT_ID));
+        productJsonCache.invalidate(PRODUCT_ID);
+
+        assertThat(productJsonCache.getSize()).isEqualTo(0);
+        assertThat(productJsonCache.getBytes()).isEqualTo(0);
+        assertThat(productJsonCache.getInvalidationCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void serializesEveryTimeWhenDisabled() {
+
+        productPriceProperties.getJsonCache().setEnabled(false);
+
+        productJsonCache.getJson(product(PRODUCT_NAME, 2));
+        productJsonCache.getJson(product(PRODUCT_NAME, 2));
+
+        assertThat(productJsonCache.getSize()).isEqualTo(0);
+        assertThat(productJsonCache.getHitCount()).isEqualTo(0);
+    }
+
+    private static Product product(String name, long version) {
+
+        Product.CurrentPrice currentPrice = new Product.CurrentPrice();
+        currentPrice.setValue("13.49");
+        currentPrice.setCurrencyCode("USD");
+        currentPrice.setVersion(version);
+        return new Product(PRODUCT_ID, name, currentPrice);
+    }
+}
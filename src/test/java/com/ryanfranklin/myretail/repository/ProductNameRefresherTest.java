@@ -0,0 +1,84 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.ryanfranklin.myretail.config.ProductNameProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductNameRefresherTest {
+
+    @Mock
+    private ProductImplRepository productImplRepository;
+
+    @Spy
+    private ProductNameProperties productNameProperties = new ProductNameProperties();
+
+    @InjectMocks
+    private ProductNameRefresher productNameRefresher;
+
+    @Before
+    public void setup() {
+
+        productNameProperties.getCache().setExpireAfterWriteMillis(3000);
+        productNameProperties.getRefresh().setEnabled(true);
+        productNameProperties.getRefresh().setIntervalMillis(10);
+        productNameProperties.getRefresh().setAheadMillis(1000);
+        productNameProperties.getRefresh().setRatePerSecond(1000);
+    }
+
+    @After
+    public void tearDown() {
+        productNameRefresher.stopRefreshing();
+    }
+
+    @Test
+    public void refreshesNamesAheadOfExpiry() {
+
+        given(productImplRepository.getNamesFetchedBefore(anyLong()))
+                .willReturn(Arrays.asList("10", "20"))
+                .willReturn(Collections.emptyList());
+
+        long start = System.nanoTime();
+        productNameRefresher.startRefreshing();
+
+        verify(productImplRepository, timeout(1000)).refreshName("10");
+        verify(productImplRepository, timeout(1000)).refreshName("20");
+        assertThat(productNameRefresher.getRefreshedCount()).isEqualTo(2);
+
+        // Names fetched more than the expiry less the refresh ahead time ago are about to expire
+        ArgumentCaptor<Long> fetchedBefore = ArgumentCaptor.forClass(Long.class);
+        verify(productImplRepository, atLeastOnce()).getNamesFetchedBefore(fetchedBefore.capture());
+        long refreshAgeMillis = TimeUnit.NANOSECONDS.toMillis(start - fetchedBefore.getAllValues().get(0));
+        assertThat(refreshAgeMillis).isBetween(1000L, 2000L);
+    }
+
+    @Test
+    public void doesNotRefreshWhenDisabled() throws Exception {
+
+        productNameProperties.getRefresh().setEnabled(false);
+
+        productNameRefresher.startRefreshing();
+        Thread.sleep(50);
+
+        verifyZeroInteractions(productImplRepository);
+    }
+}
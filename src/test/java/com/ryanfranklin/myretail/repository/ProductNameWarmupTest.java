@@ -0,0 +1,122 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.ryanfranklin.myretail.config.ProductNameProperties;
+import com.ryanfranklin.myretail.model.Product;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductNameWarmupTest {
+
+    @Mock
+    private ProductCurrentPriceRepository currentPriceRepository;
+
+    @Mock
+    private ProductImplRepository productImplRepository;
+
+    @Spy
+    private ProductNameProperties productNameProperties = new ProductNameProperties();
+
+    @InjectMocks
+    private ProductNameWarmup productNameWarmup;
+
+    private final List<Product.CurrentPrice> currentPrices = Arrays.asList(currentPrice("10"), currentPrice("20"));
+
+    @Before
+    public void setup() {
+
+        productNameProperties.getWarmup().setEnabled(true);
+        productNameProperties.getWarmup().setRatePerSecond(1000);
+        productNameProperties.getWarmup().setConcurrency(1);
+        given(currentPriceRepository.findAllBy(any(Pageable.class))).willReturn(
+                new SliceImpl<>(currentPrices, new PageRequest(0, 100), false));
+    }
+
+    @Test
+    public void isOutOfServiceUntilNamesAreLoaded() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        given(productImplRepository.loadName(currentPrices.get(0))).willAnswer(invocation -> {
+            release.await();
+            return true;
+        });
+        given(productImplRepository.loadName(currentPrices.get(1))).willReturn(false);
+
+        assertThat(productNameWarmup.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        CompletableFuture<Void> warmup = CompletableFuture.runAsync(() -> run(productNameWarmup));
+        Thread.sleep(50);
+        assertThat(productNameWarmup.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        release.countDown();
+        warmup.get(1, TimeUnit.SECONDS);
+
+        Health health = productNameWarmup.health();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("loaded", 1L).containsEntry("notFound", 1L)
+                .containsEntry("budgetExceeded", false);
+    }
+
+    @Test
+    public void stopsAtTimeBudget() throws Exception {
+
+        productNameProperties.getWarmup().setBudgetMillis(100);
+        given(productImplRepository.loadName(any(Product.CurrentPrice.class))).willAnswer(invocation -> {
+            Thread.sleep(5000);
+            return true;
+        });
+
+        long start = System.nanoTime();
+        productNameWarmup.run(null);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        Health health = productNameWarmup.health();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("budgetExceeded", true);
+    }
+
+    @Test
+    public void isUpAtOnceWhenDisabled() throws Exception {
+
+        productNameProperties.getWarmup().setEnabled(false);
+
+        productNameWarmup.run(null);
+
+        assertThat(productNameWarmup.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    private static void run(ProductNameWarmup productNameWarmup) {
+        try {
+            productNameWarmup.run(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Product.CurrentPrice currentPrice(String id) {
+
+        Product.CurrentPrice currentPrice = new Product.CurrentPrice();
+        ReflectionTestUtils.setField(currentPrice, "id", id);
+        return currentPrice;
+    }
+}
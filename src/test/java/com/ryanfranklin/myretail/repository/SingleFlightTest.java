@@ -0,0 +1,110 @@
+package com.ryanfranklin.myretail.repository;
+
+import com.ryanfranklin.myretail.exception.NotFoundException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+
+    private static String KEY = "123456";
+    private static int CALLERS = 8;
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void executeSharesCallInFlight() throws Exception {
+
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = submitCallers(() -> {
+            calls.incrementAndGet();
+            await(release);
+            return "Beats Solo 2";
+        });
+
+        awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("Beats Solo 2");
+        }
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(singleFlight.getInFlightCount()).isZero();
+    }
+
+    @Test
+    public void executeSharesException() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = submitCallers(() -> {
+            await(release);
+            throw new NotFoundException();
+        });
+
+        awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(NotFoundException.class);
+        }
+        assertThat(singleFlight.getInFlightCount()).isZero();
+    }
+
+    @Test
+    public void executeCallsAgainAfterCompletion() {
+
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute(KEY, () -> String.valueOf(calls.incrementAndGet()));
+        String result = singleFlight.execute(KEY, () -> String.valueOf(calls.incrementAndGet()));
+
+        assertThat(result).isEqualTo("2");
+        assertThat(singleFlight.getCoalescedCount()).isZero();
+    }
+
+    private List<Future<String>> submitCallers(Supplier<String> call) {
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute(KEY, call)));
+        }
+        return results;
+    }
+
+    private void awaitCoalesced(long count) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.getCoalescedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(singleFlight.getCoalescedCount()).isEqualTo(count);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}